@@ -0,0 +1,59 @@
+package com.example.dpd.audit;
+
+import java.util.function.Supplier;
+
+/**
+ * Who the current thread is changing users for, as recorded in the audit trail. Bound by {@link AuditActorFilter}
+ * on the servlet thread and carried over to executor threads with {@link #propagate}; work no request started,
+ * such as scheduled jobs, is recorded as {@link #SYSTEM}.
+ */
+public final class AuditActor {
+
+    public static final String SYSTEM = "system";
+    public static final String ANONYMOUS = "anonymous";
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private AuditActor() {
+    }
+
+    public static String current() {
+        String actor = CURRENT.get();
+        return actor == null ? SYSTEM : actor;
+    }
+
+    /** Work that, wherever it runs, is audited as done by the actor submitting it. */
+    public static <T> Supplier<T> propagate(Supplier<T> work) {
+        String actor = CURRENT.get();
+        if (actor == null) {
+            return work;
+        }
+        return () -> {
+            String previous = bind(actor);
+            try {
+                return work.get();
+            } finally {
+                bind(previous);
+            }
+        };
+    }
+
+    public static Runnable propagate(Runnable work) {
+        Supplier<Void> propagated = propagate(() -> {
+            work.run();
+            return null;
+        });
+        return propagated::get;
+    }
+
+    static String bind(String actor) {
+        String previous = CURRENT.get();
+        if (actor == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(actor);
+        }
+        return previous;
+    }
+
+}
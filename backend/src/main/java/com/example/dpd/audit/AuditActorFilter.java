@@ -0,0 +1,35 @@
+package com.example.dpd.audit;
+
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Binds the {@link AuditActor} of a request from its {@code X-Actor} header. The API has no authentication of its
+ * own, so the header is trusted as sent; requests without one are audited as {@link AuditActor#ANONYMOUS}.
+ */
+public class AuditActorFilter extends OncePerRequestFilter {
+
+    static final String ACTOR_HEADER = "X-Actor";
+    private static final int MAX_LENGTH = 255;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String actor = StringUtils.hasText(request.getHeader(ACTOR_HEADER))
+                ? request.getHeader(ACTOR_HEADER).strip()
+                : AuditActor.ANONYMOUS;
+        String previous = AuditActor.bind(actor.length() > MAX_LENGTH ? actor.substring(0, MAX_LENGTH) : actor);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            AuditActor.bind(previous);
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.example.dpd.audit;
+
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+import java.util.function.Supplier;
+
+/**
+ * The gRPC counterpart of {@link AuditActorFilter}: binds the {@link AuditActor} from the {@code x-actor} metadata
+ * around every callback of a call, whichever thread it runs on.
+ */
+public class AuditActorGrpcInterceptor implements ServerInterceptor {
+
+    static final Metadata.Key<String> ACTOR_KEY = Metadata.Key.of("x-actor", Metadata.ASCII_STRING_MARSHALLER);
+    private static final int MAX_LENGTH = 255;
+
+    @Override
+    public <Q, R> ServerCall.Listener<Q> interceptCall(ServerCall<Q, R> call, Metadata headers,
+                                                       ServerCallHandler<Q, R> next) {
+        String header = headers.get(ACTOR_KEY);
+        String actor = header == null || header.isBlank() ? AuditActor.ANONYMOUS : header.strip();
+        String bound = actor.length() > MAX_LENGTH ? actor.substring(0, MAX_LENGTH) : actor;
+        ServerCall.Listener<Q> listener = callAs(bound, () -> next.startCall(call, headers));
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onMessage(Q message) {
+                runAs(bound, () -> super.onMessage(message));
+            }
+
+            @Override
+            public void onHalfClose() {
+                runAs(bound, super::onHalfClose);
+            }
+
+            @Override
+            public void onCancel() {
+                runAs(bound, super::onCancel);
+            }
+
+            @Override
+            public void onComplete() {
+                runAs(bound, super::onComplete);
+            }
+
+            @Override
+            public void onReady() {
+                runAs(bound, super::onReady);
+            }
+        };
+    }
+
+    private static void runAs(String actor, Runnable work) {
+        callAs(actor, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    private static <T> T callAs(String actor, Supplier<T> work) {
+        String previous = AuditActor.bind(actor);
+        try {
+            return work.get();
+        } finally {
+            AuditActor.bind(previous);
+        }
+    }
+
+}
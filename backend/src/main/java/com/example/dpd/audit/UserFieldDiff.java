@@ -0,0 +1,100 @@
+package com.example.dpd.audit;
+
+import com.example.dpd.dto.AddressDTO;
+import com.example.dpd.dto.PhoneNumberDTO;
+import com.example.dpd.dto.UserDTO;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * The fields that differ between two states of a user. Addresses and phone numbers are compared one by one by
+ * their id, and reported as {@code addresses[<id>]} and {@code phoneNumbers[<id>]} with the whole element as its
+ * value, so that an added, removed or edited element is one change.
+ */
+public final class UserFieldDiff {
+
+    private static final Map<String, Function<UserDTO, Object>> SCALARS = new LinkedHashMap<>();
+
+    static {
+        SCALARS.put("name", UserDTO::getName);
+        SCALARS.put("email", UserDTO::getEmail);
+        SCALARS.put("dateOfBirth", UserDTO::getDateOfBirth);
+        SCALARS.put("placeOfBirth", UserDTO::getPlaceOfBirth);
+        SCALARS.put("motherMaidenName", UserDTO::getMotherMaidenName);
+        SCALARS.put("taj", UserDTO::getTaj);
+        SCALARS.put("taxId", UserDTO::getTaxId);
+        SCALARS.put("status", UserDTO::getStatus);
+    }
+
+    private UserFieldDiff() {
+    }
+
+    /** Changes from {@code before} to {@code after}; either may be null for a user that did not or no longer exist. */
+    public static List<FieldChange> diff(UserDTO before, UserDTO after) {
+        List<FieldChange> changes = new ArrayList<>();
+        SCALARS.forEach((field, getter) -> {
+            String oldValue = before == null ? null : text(getter.apply(before));
+            String newValue = after == null ? null : text(getter.apply(after));
+            if (!Objects.equals(oldValue, newValue)) {
+                changes.add(new FieldChange(field, oldValue, newValue));
+            }
+        });
+        diffElements(changes, "addresses", elements(before, UserDTO::getAddresses, AddressDTO::getId, UserFieldDiff::text),
+                elements(after, UserDTO::getAddresses, AddressDTO::getId, UserFieldDiff::text));
+        diffElements(changes, "phoneNumbers",
+                elements(before, UserDTO::getPhoneNumbers, PhoneNumberDTO::getId, PhoneNumberDTO::getPhoneNumber),
+                elements(after, UserDTO::getPhoneNumbers, PhoneNumberDTO::getId, PhoneNumberDTO::getPhoneNumber));
+        return changes;
+    }
+
+    private static void diffElements(List<FieldChange> changes, String field, Map<String, String> before,
+                                     Map<String, String> after) {
+        Set<String> keys = new TreeSet<>(before.keySet());
+        keys.addAll(after.keySet());
+        for (String key : keys) {
+            String oldValue = before.get(key);
+            String newValue = after.get(key);
+            if (!Objects.equals(oldValue, newValue)) {
+                changes.add(new FieldChange(field + "[" + key + "]", oldValue, newValue));
+            }
+        }
+    }
+
+    private static <E> Map<String, String> elements(UserDTO user, Function<UserDTO, Set<E>> collection,
+                                                    Function<E, UUID> id, Function<E, String> text) {
+        if (user == null || collection.apply(user) == null) {
+            return Map.of();
+        }
+        Map<String, String> elements = new HashMap<>();
+        for (E element : collection.apply(user)) {
+            String value = text.apply(element);
+            // Elements not yet saved have no id; their value is the best key there is
+            elements.put(id.apply(element) == null ? String.valueOf(value) : id.apply(element).toString(), value);
+        }
+        return elements;
+    }
+
+    private static String text(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static String text(AddressDTO address) {
+        StringJoiner text = new StringJoiner(", ");
+        Optional.ofNullable(join(address.getPostalCode(), address.getCity())).ifPresent(text::add);
+        Optional.ofNullable(join(address.getStreet(), address.getHouseNumber())).ifPresent(text::add);
+        Optional.ofNullable(address.getOtherInfo()).filter(info -> !info.isBlank()).ifPresent(text::add);
+        return text.toString();
+    }
+
+    private static String join(String first, String second) {
+        StringJoiner joined = new StringJoiner(" ");
+        Optional.ofNullable(first).filter(value -> !value.isBlank()).ifPresent(joined::add);
+        Optional.ofNullable(second).filter(value -> !value.isBlank()).ifPresent(joined::add);
+        return joined.length() == 0 ? null : joined.toString();
+    }
+
+    public record FieldChange(String field, String oldValue, String newValue) {
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.example.dpd.audit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded queue between many producers and one writer that never blocks or locks the producers: a slot is
+ * reserved with a compare-and-set on the size before the element goes onto a lock-free linked queue, and an element
+ * that finds the queue full is dropped and counted instead of waiting.
+ */
+public final class WriteBehindQueue<T> {
+
+    private final ConcurrentLinkedQueue<T> elements = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final int capacity;
+
+    public WriteBehindQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    /** False, and counted as dropped, when the queue is full. */
+    public boolean offer(T element) {
+        int current;
+        do {
+            current = size.get();
+            if (current >= capacity) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        elements.offer(element);
+        return true;
+    }
+
+    /** Removes up to {@code max} elements in the order they were offered. */
+    public List<T> drain(int max) {
+        List<T> drained = new ArrayList<>(Math.min(max, Math.max(size.get(), 0)));
+        T element;
+        while (drained.size() < max && (element = elements.poll()) != null) {
+            drained.add(element);
+        }
+        size.addAndGet(-drained.size());
+        return drained;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+
+}
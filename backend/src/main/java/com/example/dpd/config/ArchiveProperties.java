@@ -0,0 +1,27 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.archive")
+public class ArchiveProperties {
+
+    /** Cron expression of the archival run; "-" leaves it to POST /admin/archive. */
+    private String cron = "0 15 4 * * *";
+
+    /** Users depersonalised at least this long ago are moved to users_archive. */
+    private Duration minAge = Duration.ofDays(30);
+
+    /** Users moved per transaction. */
+    private int chunkSize = 500;
+
+    /** Pause between two chunks, to leave database capacity for regular traffic. */
+    private Duration pause = Duration.ofMillis(50);
+
+    /** Runs VACUUM (ANALYZE) on users after a run that moved any, so that the freed space is reused right away. */
+    private boolean vacuum = true;
+
+}
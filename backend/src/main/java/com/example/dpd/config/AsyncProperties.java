@@ -0,0 +1,39 @@
+package com.example.dpd.config;
+
+import com.example.dpd.dto.Bulkhead;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.async")
+public class AsyncProperties {
+
+    /** Runs the user endpoints on the bulkhead executors; when off they run on the servlet thread as before. */
+    private boolean enabled = true;
+
+    /** Executor settings per operation class; classes not listed use the defaults of {@link Pool}. */
+    private Map<Bulkhead, Pool> pools = new EnumMap<>(Bulkhead.class);
+
+    public Pool pool(Bulkhead bulkhead) {
+        return pools.getOrDefault(bulkhead, new Pool());
+    }
+
+    @Data
+    public static class Pool {
+
+        /** Operations of this class running at the same time, each holding a database connection. */
+        private int threads = 2;
+
+        /** Operations waiting for a thread; requests beyond this are answered with 503 straight away. */
+        private int queueCapacity = 50;
+
+        /** Time from submission to completion after which the request is answered with 503. */
+        private Duration timeout = Duration.ofSeconds(10);
+
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.example.dpd.config;
+
+import com.example.dpd.audit.AuditActorFilter;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Binds the actor of every request for the audit trail, see {@link com.example.dpd.service.UserAuditServiceImp}.
+ */
+@Configuration
+public class AuditConfig {
+
+    @Bean
+    public FilterRegistrationBean<AuditActorFilter> auditActorFilter() {
+        FilterRegistrationBean<AuditActorFilter> registration = new FilterRegistrationBean<>(new AuditActorFilter());
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.audit")
+public class AuditProperties {
+
+    public enum Mode {
+        /** Written in the transaction of the change: never lost, but every write pays for the audit insert. */
+        SYNC,
+        /** Queued after commit and written behind in batches: entries still queued are lost if the process dies. */
+        ASYNC
+    }
+
+    private Mode mode = Mode.ASYNC;
+
+    /** Entries waiting for the writer; beyond this further entries are dropped and counted. */
+    private int queueCapacity = 100_000;
+
+    /** Changes written per batch; a change is one row per changed field. */
+    private int batchSize = 500;
+
+    /** How often the writer drains the queue. */
+    private long flushIntervalMillis = 200;
+
+    /**
+     * Runs a batch may fail in a row before its changes are written one by one; a change that fails on its own too
+     * is moved to user_audit_dead_letter instead of blocking the changes queued after it.
+     */
+    private int maxAttempts = 10;
+
+}
@@ -0,0 +1,22 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.autocomplete")
+public class AutocompleteProperties {
+
+    /** Suggestions returned when the request does not ask for a number. */
+    private int defaultLimit = 10;
+
+    /** Most suggestions one request may ask for. */
+    private int maxLimit = 50;
+
+    /** Rows fetched per round trip while the index is built from the addresses table. */
+    private int fetchSize = 5000;
+
+    /** Cron expression of the full rebuild that corrects any drift of the incremental updates. */
+    private String rebuildCron = "0 45 3 * * *";
+
+}
@@ -34,6 +34,12 @@ public class BeansConfig {
                 "PUT",
                 "PATCH"
         ));
+        // Readable by the frontend, see UserController#getAllUsers
+        config.setExposedHeaders(Arrays.asList(
+                "X-Total-Count",
+                "X-Total-Count-Mode",
+                "X-Total-Count-Estimated"
+        ));
         source.registerCorsConfiguration("/**", config);
         return new CorsFilter(source);
     }
@@ -0,0 +1,16 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.bulk-update")
+public class BulkUpdateProperties {
+
+    /** Largest number of users one bulk update may touch, whether listed or matched by a filter. */
+    private int maxItems = 1000;
+
+    /** Users loaded by one IN query and flushed together; best-effort mode also commits per batch. */
+    private int batchSize = 200;
+
+}
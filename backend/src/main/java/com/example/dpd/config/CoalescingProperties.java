@@ -0,0 +1,18 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.coalescing")
+public class CoalescingProperties {
+
+    /** Lets concurrent identical user reads share one load, see SingleFlight. */
+    private boolean enabled = true;
+
+    /** How long a read waits for the identical one already running before it is answered with 503. */
+    private Duration maxWait = Duration.ofSeconds(2);
+
+}
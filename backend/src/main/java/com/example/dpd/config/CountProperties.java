@@ -0,0 +1,13 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.count")
+public class CountProperties {
+
+    /** How often the cached user counts are recounted, correcting the writes of other instances. */
+    private long refreshIntervalMillis = 300_000;
+
+}
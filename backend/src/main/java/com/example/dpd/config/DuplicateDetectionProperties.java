@@ -0,0 +1,31 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.duplicates")
+public class DuplicateDetectionProperties {
+
+    /** Users read per page while computing blocking keys. */
+    private int pageSize = 1000;
+
+    /**
+     * Blocks with more members than this are skipped. Very common keys (a frequent name born on the same day,
+     * a shared switchboard number) would otherwise bring back quadratic comparisons.
+     */
+    private int maxBlockSize = 50;
+
+    /** Candidate pairs scored together by one worker. */
+    private int scoringBatchSize = 1000;
+
+    /**
+     * Scoring worker threads. Each holds a database connection while it loads the people of a batch, on top of the
+     * one streaming the candidate pairs, and those come out of the pool the request bulkheads draw on.
+     */
+    private int scoringThreads = 2;
+
+    /** Minimum score for a candidate pair to be considered the same person. */
+    private double matchThreshold = 0.6;
+
+}
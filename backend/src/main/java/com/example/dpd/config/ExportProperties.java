@@ -0,0 +1,28 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.export")
+public class ExportProperties {
+
+    /** Export jobs running at the same time. */
+    private int threads = 2;
+
+    /** Export jobs waiting for a thread; submissions beyond this are refused. */
+    private int queueCapacity = 10;
+
+    /** Users read from the database per page (and per read-only transaction). */
+    private int pageSize = 1000;
+
+    /** Directory the compressed export files are written to. */
+    private Path dir;
+
+    /** How long a finished export stays downloadable before its file is deleted. */
+    private Duration retention = Duration.ofHours(24);
+
+}
@@ -0,0 +1,56 @@
+package com.example.dpd.config;
+
+import liquibase.integration.spring.SpringLiquibase;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+
+/**
+ * Beans of the {@code fast} profile, which cuts the cold start of instances added by the autoscaler.
+ * See application-fast.yml for the property side.
+ */
+@Configuration(proxyBeanMethods = false)
+@Profile("fast")
+@EnableConfigurationProperties(LiquibaseProperties.class)
+public class FastStartConfig {
+
+    /** A lazy bean is only created on first use, so the @Scheduled methods of an unused one would never run. */
+    @Bean
+    static LazyInitializationExcludeFilter scheduledBeansStayEager() {
+        return (beanName, beanDefinition, beanType) -> !MethodIntrospector.selectMethods(beanType,
+                (MethodIntrospector.MetadataLookup<Scheduled>) method ->
+                        AnnotatedElementUtils.findMergedAnnotation(method, Scheduled.class)).isEmpty();
+    }
+
+    /**
+     * Replaces the auto-configured SpringLiquibase, taking the same spring.liquibase.* settings. Sharded setups
+     * migrate every shard with the plain one instead, see ShardingConfig.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "dpd.sharding", name = "enabled", havingValue = "false", matchIfMissing = true)
+    public SpringLiquibase liquibase(DataSource dataSource, LiquibaseProperties properties) {
+        SpringLiquibase liquibase = SpringLiquibaseSettings.apply(new FingerprintSpringLiquibase(), properties);
+        liquibase.setDataSource(dataSource);
+        return liquibase;
+    }
+
+    /** Used by the AppCDS training run of the appcds Maven profile: start, serve nothing, exit and dump the archive. */
+    @Bean
+    @ConditionalOnProperty("dpd.startup.exit-after-ready")
+    public ApplicationListener<ApplicationReadyEvent> exitAfterReady() {
+        return event -> System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+
+}
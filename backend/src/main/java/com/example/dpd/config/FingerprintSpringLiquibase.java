@@ -0,0 +1,107 @@
+package com.example.dpd.config;
+
+import liquibase.exception.LiquibaseException;
+import liquibase.integration.spring.SpringLiquibase;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Skips Liquibase entirely when the changelog files are byte-for-byte the ones last applied to this database.
+ * <p>
+ * Liquibase itself would reach the same "nothing to do" result, but only after scanning the includeAll directory,
+ * parsing every changeset and validating its checksum against databasechangelog. Hashing the few changelog files
+ * is much cheaper. The fingerprint is recorded only after a successful update, so a failed or partial migration
+ * always runs the full path again on the next start.
+ * <p>
+ * Some changesets are gated on online migrations having completed, see
+ * {@link com.example.dpd.migration.OnlineMigration}, so the fingerprint also covers the completed ones. The set is
+ * read before Liquibase runs and recorded as read: a migration completing while Liquibase runs, on this or another
+ * instance, changes the fingerprint, and the next start looks at the changesets waiting for it.
+ */
+@Slf4j
+public class FingerprintSpringLiquibase extends SpringLiquibase {
+
+    private static final String CLASSPATH_PREFIX = "classpath:";
+
+    @Override
+    public void afterPropertiesSet() throws LiquibaseException {
+        if (!shouldRun) {
+            super.afterPropertiesSet();
+            return;
+        }
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(getDataSource());
+        // Created here rather than by a changeset: it has to exist before we decide whether Liquibase runs at all
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS databasechangelog_fingerprint "
+                + "(id INT PRIMARY KEY, fingerprint VARCHAR(64) NOT NULL, applied_at TIMESTAMP NOT NULL)");
+        String fingerprint = fingerprint(completedOnlineMigrations(jdbcTemplate));
+        List<String> recorded = jdbcTemplate.queryForList(
+                "SELECT fingerprint FROM databasechangelog_fingerprint WHERE id = 1", String.class);
+        if (recorded.contains(fingerprint)) {
+            log.info("Changelog {} unchanged since last update (fingerprint {}), skipping Liquibase", getChangeLog(), fingerprint);
+            return;
+        }
+        super.afterPropertiesSet();
+        jdbcTemplate.update("INSERT INTO databasechangelog_fingerprint (id, fingerprint, applied_at) VALUES (1, ?, now()) "
+                + "ON CONFLICT (id) DO UPDATE SET fingerprint = EXCLUDED.fingerprint, applied_at = EXCLUDED.applied_at", fingerprint);
+    }
+
+    /** None before the changeset creating online_migrations has run. */
+    private static List<String> completedOnlineMigrations(JdbcTemplate jdbcTemplate) {
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass('online_migrations') IS NOT NULL", Boolean.class))) {
+            return List.of();
+        }
+        return jdbcTemplate.queryForList(
+                "SELECT name FROM online_migrations WHERE status = 'COMPLETED' ORDER BY name", String.class);
+    }
+
+    /**
+     * SHA-256 over the relative path and content of every file next to and below the master changelog, and the
+     * names of the completed online migrations.
+     */
+    String fingerprint(List<String> completedOnlineMigrations) {
+        String changeLog = getChangeLog().startsWith(CLASSPATH_PREFIX)
+                ? getChangeLog().substring(CLASSPATH_PREFIX.length())
+                : getChangeLog();
+        String directory = changeLog.substring(0, changeLog.lastIndexOf('/') + 1);
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver(getResourceLoader())
+                    .getResources("classpath*:" + directory + "**/*");
+            SortedMap<String, Resource> files = new TreeMap<>();
+            for (Resource resource : resources) {
+                if (resource.isReadable()) {
+                    String url = resource.getURL().toString();
+                    files.put(url.substring(url.lastIndexOf(directory)), resource);
+                }
+            }
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Map.Entry<String, Resource> file : files.entrySet()) {
+                digest.update(file.getKey().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                try (InputStream in = file.getValue().getInputStream()) {
+                    digest.update(in.readAllBytes());
+                }
+            }
+            for (String migration : completedOnlineMigrations) {
+                digest.update(("online_migrations/" + migration).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read changelog " + changeLog, e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.example.dpd.config;
+
+import com.example.dpd.exception.BadRequestException;
+import com.example.dpd.exception.ResourceNotFoundException;
+import com.example.dpd.sql.SqlStatsThreadLocalAccessor;
+import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import graphql.analysis.FieldComplexityCalculator;
+import graphql.analysis.MaxQueryComplexityInstrumentation;
+import graphql.analysis.MaxQueryDepthInstrumentation;
+import graphql.schema.DataFetchingEnvironment;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.graphql.execution.DataFetcherExceptionResolver;
+import org.springframework.graphql.execution.DataFetcherExceptionResolverAdapter;
+import org.springframework.graphql.execution.ErrorType;
+
+/**
+ * Limits on what a single GraphQL query may ask for, checked before anything is fetched, and the request state its
+ * data fetchers need.
+ */
+@Configuration
+public class GraphQlConfig {
+
+    @Bean
+    public MaxQueryDepthInstrumentation maxQueryDepthInstrumentation(GraphQlProperties properties) {
+        return new MaxQueryDepthInstrumentation(properties.getMaxDepth());
+    }
+
+    /** A field taking {@code first} weighs its selection once per element it may return. */
+    @Bean
+    public MaxQueryComplexityInstrumentation maxQueryComplexityInstrumentation(GraphQlProperties properties) {
+        FieldComplexityCalculator calculator = (environment, childComplexity) ->
+                environment.getArguments().get("first") instanceof Integer first
+                        ? 1 + childComplexity * Math.max(first, 1)
+                        : 1 + childComplexity;
+        return new MaxQueryComplexityInstrumentation(properties.getMaxComplexity(), calculator);
+    }
+
+    @Bean
+    public SqlStatsThreadLocalAccessor sqlStatsThreadLocalAccessor() {
+        return new SqlStatsThreadLocalAccessor();
+    }
+
+    /** The GraphQL counterpart of GlobalExceptionHandle. */
+    @Bean
+    public DataFetcherExceptionResolver graphQlExceptionResolver() {
+        return new DataFetcherExceptionResolverAdapter() {
+            @Override
+            protected GraphQLError resolveToSingleError(Throwable exception, DataFetchingEnvironment environment) {
+                ErrorType type;
+                if (exception instanceof BadRequestException) {
+                    type = ErrorType.BAD_REQUEST;
+                } else if (exception instanceof ResourceNotFoundException) {
+                    type = ErrorType.NOT_FOUND;
+                } else {
+                    return null;
+                }
+                return GraphqlErrorBuilder.newError(environment)
+                        .errorType(type)
+                        .message(exception.getMessage())
+                        .build();
+            }
+        };
+    }
+
+}
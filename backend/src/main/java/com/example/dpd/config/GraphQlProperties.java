@@ -0,0 +1,22 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.graphql")
+public class GraphQlProperties {
+
+    /** Deepest field nesting a query may have; users { edges { node { addresses { city } } } } is 5. */
+    private int maxDepth = 8;
+
+    /** Largest complexity a query may have: one per field, with the fields of a page counted once per user. */
+    private int maxComplexity = 5000;
+
+    /** Users per page when the query does not ask for a number. */
+    private int defaultPageSize = 20;
+
+    /** Most users one page may ask for. */
+    private int maxPageSize = 100;
+
+}
@@ -0,0 +1,21 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.group-commit")
+public class GroupCommitProperties {
+
+    /** Persists concurrent single-user creates together, see UserGroupCommit. */
+    private boolean enabled = false;
+
+    /** How long the first create of a group waits for others to join it; added to the latency of every create. */
+    private Duration window = Duration.ofMillis(5);
+
+    /** A group this large is written at once, without waiting out the window. */
+    private int maxBatchSize = 50;
+
+}
@@ -0,0 +1,66 @@
+package com.example.dpd.config;
+
+import com.example.dpd.audit.AuditActorGrpcInterceptor;
+import com.example.dpd.grpc.UserGrpcService;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves {@link UserGrpcService} on its own port, started and stopped with the application context.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "dpd.grpc", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class GrpcConfig {
+
+    @Bean
+    public SmartLifecycle grpcServer(GrpcProperties properties, UserGrpcService userGrpcService) {
+        Server server = NettyServerBuilder.forPort(properties.getPort())
+                .addService(ServerInterceptors.intercept(userGrpcService, new AuditActorGrpcInterceptor()))
+                .build();
+        return new SmartLifecycle() {
+            private volatile boolean running;
+
+            @Override
+            public void start() {
+                try {
+                    server.start();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not start the gRPC server on port " + properties.getPort(), e);
+                }
+                running = true;
+                log.info("gRPC server started on port {}", server.getPort());
+            }
+
+            @Override
+            public void stop() {
+                running = false;
+                server.shutdown();
+                try {
+                    if (!server.awaitTermination(properties.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                        server.shutdownNow();
+                    }
+                } catch (InterruptedException e) {
+                    server.shutdownNow();
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public boolean isRunning() {
+                return running;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.grpc")
+public class GrpcProperties {
+
+    /** Whether the gRPC server of UserGrpcService is started next to the HTTP one. */
+    private boolean enabled = true;
+
+    private int port = 9090;
+
+    /** Users read from the database at a time while a ListUsers stream is being sent. */
+    private int listPageSize = 500;
+
+    /** How long calls still running at shutdown may take before they are cancelled. */
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+
+}
@@ -0,0 +1,28 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.import")
+public class ImportProperties {
+
+    /** Number of CSV rows validated and persisted together in one transaction. */
+    private int chunkSize = 500;
+
+    /** Upper bound of chunks parsed but not yet persisted; this is what keeps memory independent of file size. */
+    private int maxInFlightChunks = 8;
+
+    /** Worker threads validating and persisting chunks; 0 means one per available core. */
+    private int workerThreads = 0;
+
+    /** Directory the rejected-rows reports are written to. */
+    private Path reportDir;
+
+    /** How long a finished import stays listed; its rejected-rows report, holding the raw rows, is deleted with it. */
+    private Duration retention = Duration.ofHours(24);
+
+}
@@ -0,0 +1,29 @@
+package com.example.dpd.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.multipart.MultipartResolver;
+import org.springframework.web.multipart.support.StandardServletMultipartResolver;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Multipart requests are parsed by the container as usual, except for the import endpoint, which streams the
+ * uploaded file straight from the request, see {@link com.example.dpd.controller.UserImportController}.
+ */
+@Configuration
+public class MultipartConfig {
+
+    static final String STREAMING_PATH = "/users/imports";
+
+    @Bean
+    public MultipartResolver multipartResolver() {
+        return new StandardServletMultipartResolver() {
+            @Override
+            public boolean isMultipart(HttpServletRequest request) {
+                return !STREAMING_PATH.equals(request.getServletPath()) && super.isMultipart(request);
+            }
+        };
+    }
+
+}
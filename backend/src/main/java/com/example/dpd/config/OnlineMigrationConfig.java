@@ -0,0 +1,32 @@
+package com.example.dpd.config;
+
+import com.example.dpd.entity.Address;
+import com.example.dpd.entity.PhoneNumber;
+import com.example.dpd.migration.OnlineMigration;
+import com.example.dpd.migration.OrphanedRowsMigration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Online migrations that are not components of their own. Each gates the changesets of
+ * 2026-10-19-08-user-id-not-null.sql.
+ */
+@Configuration(proxyBeanMethods = false)
+public class OnlineMigrationConfig {
+
+    @Bean
+    public OnlineMigration addressesWithoutUser(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        return new OrphanedRowsMigration("addresses-without-user", "addresses", Address.class, jdbcTemplate,
+                entityManagerFactory);
+    }
+
+    @Bean
+    public OnlineMigration phoneNumbersWithoutUser(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        return new OrphanedRowsMigration("phone-numbers-without-user", "phone_numbers", PhoneNumber.class, jdbcTemplate,
+                entityManagerFactory);
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.migrations")
+public class OnlineMigrationProperties {
+
+    /** Resumes every online migration that has not completed yet after startup and every resume interval. */
+    private boolean enabled = true;
+
+    /** Also picks up migrations whose instance went away while running them, once their lease has run out. */
+    private Duration resumeInterval = Duration.ofMinutes(5);
+
+    /** Rows looked at per chunk, each chunk in its own transaction. */
+    private int chunkSize = 1000;
+
+    /** Pause after every chunk, to leave database capacity for regular traffic. */
+    private Duration pause = Duration.ofMillis(50);
+
+    /**
+     * How long a migration that stopped making progress stays with the instance running it before another one may
+     * take it over. Must be well above the time of one chunk and the pause after it.
+     */
+    private Duration lease = Duration.ofMinutes(1);
+
+}
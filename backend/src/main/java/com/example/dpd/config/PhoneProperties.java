@@ -0,0 +1,18 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.phone")
+public class PhoneProperties {
+
+    /** Phone numbers whose owners are kept in memory for the by-phone lookup. */
+    private long lookupCacheSize = 10_000;
+
+    /** Upper bound on how long a cached owner list is served; writes invalidate affected numbers right away. */
+    private Duration lookupCacheTtl = Duration.ofSeconds(60);
+
+}
@@ -0,0 +1,28 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.pii")
+public class PiiProperties {
+
+    /** Version of the key new values are encrypted with. */
+    private int currentKeyVersion = 1;
+
+    /** Base64 encoded 256-bit AES keys by version. Old versions stay configured until re-encryption is done. */
+    private Map<Integer, String> keys = new HashMap<>();
+
+    /** Base64 encoded HMAC key for the blind indexes. Changing it invalidates every stored index. */
+    private String blindIndexKey;
+
+    /** Rows re-encrypted per transaction by the re-encryption job. */
+    private int reencryptionChunkSize = 500;
+
+    /** Pause between two re-encryption chunks, to leave database capacity for regular traffic. */
+    private long reencryptionPauseMillis = 50;
+
+}
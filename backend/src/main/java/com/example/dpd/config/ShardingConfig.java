@@ -0,0 +1,55 @@
+package com.example.dpd.config;
+
+import com.example.dpd.shard.ShardRoutingDataSource;
+import com.example.dpd.shard.ShardedSpringLiquibase;
+import com.zaxxer.hikari.HikariDataSource;
+import liquibase.integration.spring.SpringLiquibase;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the spring.datasource pool with one pool per shard behind a {@link ShardRoutingDataSource}, and the
+ * Liquibase run with one per shard. See {@link com.example.dpd.shard.Shards} for how users are placed.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "dpd.sharding", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(LiquibaseProperties.class)
+public class ShardingConfig {
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardingProperties properties) {
+        if (properties.getShards().isEmpty()) {
+            throw new IllegalStateException("dpd.sharding.enabled is set but no dpd.sharding.shards are configured");
+        }
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (ShardingProperties.Shard shard : properties.getShards()) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("shard-" + pools.size());
+            pool.setJdbcUrl(shard.getUrl());
+            pool.setUsername(shard.getUsername());
+            pool.setPassword(shard.getPassword());
+            pool.setMaximumPoolSize(shard.getMaximumPoolSize());
+            pools.add(pool);
+        }
+        return new ShardRoutingDataSource(pools);
+    }
+
+    @Bean
+    public SpringLiquibase liquibase(DataSource dataSource, ShardingProperties properties,
+                                     LiquibaseProperties liquibaseProperties) {
+        SpringLiquibase liquibase = SpringLiquibaseSettings.apply(
+                new ShardedSpringLiquibase(properties.getShards().size()), liquibaseProperties);
+        liquibase.setDataSource(dataSource);
+        return liquibase;
+    }
+
+}
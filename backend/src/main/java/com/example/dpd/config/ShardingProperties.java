@@ -0,0 +1,36 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.sharding")
+public class ShardingProperties {
+
+    /** Spreads users over the databases below instead of the single spring.datasource one. */
+    private boolean enabled = false;
+
+    /**
+     * The databases, in shard order. A user lives on the shard its id hashes to, so shards may only ever be added
+     * at the end, and existing users have to be moved when they are. The first shard also keeps every table that
+     * is not sharded.
+     */
+    private List<Shard> shards = new ArrayList<>();
+
+    @Data
+    public static class Shard {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        private int maximumPoolSize = 10;
+
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.example.dpd.config;
+
+import liquibase.integration.spring.SpringLiquibase;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseProperties;
+
+/**
+ * The spring.liquibase.* settings the auto-configured SpringLiquibase would get, for the ones defined here instead.
+ */
+final class SpringLiquibaseSettings {
+
+    private SpringLiquibaseSettings() {
+    }
+
+    static <T extends SpringLiquibase> T apply(T liquibase, LiquibaseProperties properties) {
+        liquibase.setChangeLog(properties.getChangeLog());
+        liquibase.setContexts(properties.getContexts());
+        liquibase.setLabels(properties.getLabels());
+        liquibase.setDefaultSchema(properties.getDefaultSchema());
+        liquibase.setLiquibaseSchema(properties.getLiquibaseSchema());
+        liquibase.setLiquibaseTablespace(properties.getLiquibaseTablespace());
+        liquibase.setDatabaseChangeLogTable(properties.getDatabaseChangeLogTable());
+        liquibase.setDatabaseChangeLogLockTable(properties.getDatabaseChangeLogLockTable());
+        liquibase.setDropFirst(properties.isDropFirst());
+        liquibase.setShouldRun(properties.isEnabled());
+        liquibase.setChangeLogParameters(properties.getParameters());
+        liquibase.setTag(properties.getTag());
+        return liquibase;
+    }
+
+}
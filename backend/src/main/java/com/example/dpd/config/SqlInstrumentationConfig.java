@@ -0,0 +1,45 @@
+package com.example.dpd.config;
+
+import com.example.dpd.sql.SqlStatementListener;
+import com.example.dpd.sql.SqlStatsFilter;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+
+/**
+ * Routes every JDBC statement through datasource-proxy so that it is counted and timed per request, see
+ * {@link SqlStatementListener} and {@link SqlStatsFilter}.
+ */
+@Configuration
+public class SqlInstrumentationConfig {
+
+    @Bean
+    public static BeanPostProcessor sqlInstrumentingDataSourcePostProcessor(SqlProperties properties) {
+        SqlStatementListener listener = new SqlStatementListener(properties.getSlowQueryThreshold());
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                    return ProxyDataSourceBuilder.create(beanName, dataSource).listener(listener).build();
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<SqlStatsFilter> sqlStatsFilter(SqlProperties properties) {
+        FilterRegistrationBean<SqlStatsFilter> registration =
+                new FilterRegistrationBean<>(new SqlStatsFilter(properties.isResponseHeaders()));
+        // Outermost, so that the statements of every other filter count too
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+}
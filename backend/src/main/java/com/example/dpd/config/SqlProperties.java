@@ -0,0 +1,18 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.sql")
+public class SqlProperties {
+
+    /** Statements taking at least this long are logged, with parameter shapes but no values. */
+    private Duration slowQueryThreshold = Duration.ofMillis(200);
+
+    /** Adds X-Sql-Statements and X-Sql-Time-Ms headers to every response. */
+    private boolean responseHeaders = false;
+
+}
@@ -0,0 +1,19 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.stats")
+public class StatsProperties {
+
+    /** Width of the birth-year buckets in years; 10 gives decades such as 1980-1989. */
+    private int birthYearBucketSize = 10;
+
+    /** How often buffered count deltas are written to user_stat_counts. */
+    private long flushIntervalMillis = 1000;
+
+    /** Cron expression of the full recount that corrects any drift of the incremental counts. */
+    private String reconciliationCron = "0 30 3 * * *";
+
+}
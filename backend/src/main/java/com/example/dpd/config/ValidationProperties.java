@@ -0,0 +1,19 @@
+package com.example.dpd.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "dpd.validation")
+public class ValidationProperties {
+
+    /** Largest number of users accepted by one POST /users/validate request. */
+    private int maxBatchSize = 10_000;
+
+    /** Users validated together by one worker task. */
+    private int chunkSize = 256;
+
+    /** Worker threads validating chunks; 0 means one per available core. */
+    private int workerThreads = 0;
+
+}
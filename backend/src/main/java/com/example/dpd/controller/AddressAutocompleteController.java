@@ -0,0 +1,38 @@
+package com.example.dpd.controller;
+
+import com.example.dpd.dto.AddressField;
+import com.example.dpd.dto.AutocompleteSuggestionDTO;
+import com.example.dpd.service.AddressAutocompleteService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Suggestions for the address form, most used values first. Matching ignores case and accents.
+ */
+@RestController
+@RequestMapping("/users/autocomplete")
+@RequiredArgsConstructor
+public class AddressAutocompleteController {
+
+    private final AddressAutocompleteService addressAutocompleteService;
+
+    @GetMapping("/city")
+    public ResponseEntity<List<AutocompleteSuggestionDTO>> suggestCities(@RequestParam String prefix,
+                                                                         @RequestParam(required = false) Integer limit) {
+        return new ResponseEntity<>(addressAutocompleteService.suggest(AddressField.CITY, prefix, limit), HttpStatus.OK);
+    }
+
+    @GetMapping("/street")
+    public ResponseEntity<List<AutocompleteSuggestionDTO>> suggestStreets(@RequestParam String prefix,
+                                                                          @RequestParam(required = false) Integer limit) {
+        return new ResponseEntity<>(addressAutocompleteService.suggest(AddressField.STREET, prefix, limit), HttpStatus.OK);
+    }
+
+}
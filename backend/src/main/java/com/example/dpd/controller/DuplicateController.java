@@ -0,0 +1,51 @@
+package com.example.dpd.controller;
+
+import com.example.dpd.dto.DuplicateClusterDTO;
+import com.example.dpd.dto.DuplicateClusterStatus;
+import com.example.dpd.dto.DuplicateRunDTO;
+import com.example.dpd.dto.ReviewDuplicateClusterDTO;
+import com.example.dpd.exception.ResourceNotFoundException;
+import com.example.dpd.service.DuplicateDetectionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/users/duplicates")
+@RequiredArgsConstructor
+public class DuplicateController {
+
+    private final DuplicateDetectionService duplicateDetectionService;
+
+    @PostMapping("/runs")
+    public ResponseEntity<DuplicateRunDTO> startRun() {
+        return new ResponseEntity<>(duplicateDetectionService.startRun(), HttpStatus.ACCEPTED);
+    }
+
+    @GetMapping("/runs/last")
+    public ResponseEntity<DuplicateRunDTO> getLastRun() {
+        return duplicateDetectionService.getLastRun()
+                .map(run -> new ResponseEntity<>(run, HttpStatus.OK))
+                .orElseThrow(() -> new ResourceNotFoundException("No duplicate detection run yet"));
+    }
+
+    @GetMapping
+    public ResponseEntity<List<DuplicateClusterDTO>> getClusters(
+            @RequestParam(defaultValue = "PENDING") DuplicateClusterStatus status,
+            @RequestParam(required = false) UUID after,
+            @RequestParam(defaultValue = "50") int limit) {
+        return new ResponseEntity<>(duplicateDetectionService.getClusters(status, after, Math.min(limit, 500)), HttpStatus.OK);
+    }
+
+    @PatchMapping("/{id}")
+    public ResponseEntity<DuplicateClusterDTO> reviewCluster(@PathVariable UUID id,
+                                                             @Valid @RequestBody ReviewDuplicateClusterDTO review) {
+        return new ResponseEntity<>(duplicateDetectionService.reviewCluster(id, review.getStatus()), HttpStatus.OK);
+    }
+
+}
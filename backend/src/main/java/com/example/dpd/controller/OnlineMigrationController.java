@@ -0,0 +1,34 @@
+package com.example.dpd.controller;
+
+import com.example.dpd.dto.OnlineMigrationDTO;
+import com.example.dpd.service.OnlineMigrationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin/migrations")
+@RequiredArgsConstructor
+public class OnlineMigrationController {
+
+    private final OnlineMigrationService onlineMigrationService;
+
+    @GetMapping
+    public ResponseEntity<List<OnlineMigrationDTO>> getMigrations() {
+        return new ResponseEntity<>(onlineMigrationService.getMigrations(), HttpStatus.OK);
+    }
+
+    /** Resumes a failed migration; one that has completed, or is running, is left as it is. */
+    @PostMapping("/{name}")
+    public ResponseEntity<List<OnlineMigrationDTO>> startMigration(@PathVariable String name) {
+        return new ResponseEntity<>(onlineMigrationService.startMigration(name), HttpStatus.ACCEPTED);
+    }
+
+}
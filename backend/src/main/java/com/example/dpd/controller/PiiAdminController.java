@@ -0,0 +1,30 @@
+package com.example.dpd.controller;
+
+import com.example.dpd.dto.ReencryptionStatusDTO;
+import com.example.dpd.service.PiiReencryptionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/admin/pii/reencryption")
+@RequiredArgsConstructor
+public class PiiAdminController {
+
+    private final PiiReencryptionService piiReencryptionService;
+
+    @PostMapping
+    public ResponseEntity<ReencryptionStatusDTO> startReencryption() {
+        return new ResponseEntity<>(piiReencryptionService.startReencryption(), HttpStatus.ACCEPTED);
+    }
+
+    @GetMapping
+    public ResponseEntity<ReencryptionStatusDTO> getStatus() {
+        return new ResponseEntity<>(piiReencryptionService.getStatus(), HttpStatus.OK);
+    }
+
+}
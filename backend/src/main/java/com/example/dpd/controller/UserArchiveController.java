@@ -0,0 +1,30 @@
+package com.example.dpd.controller;
+
+import com.example.dpd.dto.ArchivalStatusDTO;
+import com.example.dpd.service.UserArchiveService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/admin/archive")
+@RequiredArgsConstructor
+public class UserArchiveController {
+
+    private final UserArchiveService userArchiveService;
+
+    @PostMapping
+    public ResponseEntity<ArchivalStatusDTO> startArchival() {
+        return new ResponseEntity<>(userArchiveService.startArchival(), HttpStatus.ACCEPTED);
+    }
+
+    @GetMapping
+    public ResponseEntity<ArchivalStatusDTO> getStatus() {
+        return new ResponseEntity<>(userArchiveService.getStatus(), HttpStatus.OK);
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.example.dpd.controller;
+
+import com.example.dpd.dto.BulkUpdateResultDTO;
+import com.example.dpd.dto.Bulkhead;
+import com.example.dpd.dto.BulkUpdateUserDTO;
+import com.example.dpd.service.BulkheadService;
+import com.example.dpd.service.UserBulkUpdateService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/users")
+@RequiredArgsConstructor
+public class UserBulkUpdateController {
+
+    private final UserBulkUpdateService userBulkUpdateService;
+    private final BulkheadService bulkheadService;
+
+    /**
+     * Partial update of many users, listed by id or selected by an address filter. Answers 409 with the per-item
+     * results when an all-or-nothing update had to be rolled back.
+     */
+    @PatchMapping
+    public CompletableFuture<ResponseEntity<BulkUpdateResultDTO>> bulkUpdateUsers(
+            @RequestBody BulkUpdateUserDTO bulkUpdateUserDTO) {
+        return bulkheadService.submit(Bulkhead.BULK, () -> {
+            BulkUpdateResultDTO result = userBulkUpdateService.bulkUpdate(bulkUpdateUserDTO);
+            return new ResponseEntity<>(result, result.isCommitted() ? HttpStatus.OK : HttpStatus.CONFLICT);
+        });
+    }
+
+}
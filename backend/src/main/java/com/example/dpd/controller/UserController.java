@@ -1,56 +1,167 @@
 package com.example.dpd.controller;
 
+import com.example.dpd.dto.Bulkhead;
+import com.example.dpd.dto.CountMode;
 import com.example.dpd.dto.CreateUserDTO;
 import com.example.dpd.dto.UpdateUserDTO;
+import com.example.dpd.dto.UserAuditEntryDTO;
+import com.example.dpd.dto.UserCountDTO;
 import com.example.dpd.dto.UserDTO;
+import com.example.dpd.dto.UserLookupDTO;
+import com.example.dpd.dto.UserLookupResultDTO;
+import com.example.dpd.dto.UserSearchDTO;
+import com.example.dpd.exception.BadRequestException;
 import com.example.dpd.exception.ResourceNotFoundException;
+import com.example.dpd.service.BulkheadService;
+import com.example.dpd.service.UserAuditService;
+import com.example.dpd.service.UserCountService;
+import com.example.dpd.service.UserPhoneLookupService;
 import com.example.dpd.service.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Every endpoint runs on the executor of its {@link Bulkhead}, see {@link BulkheadService}; request validation still
+ * happens on the servlet thread.
+ */
 @RestController
 @RequestMapping("/users")
 @RequiredArgsConstructor
 public class UserController {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_LOOKUP_IDS = 1000;
+
     private final UserService userService;
+    private final UserPhoneLookupService userPhoneLookupService;
+    private final BulkheadService bulkheadService;
+    private final UserAuditService userAuditService;
+    private final UserCountService userCountService;
 
     @PostMapping
-    public ResponseEntity<UserDTO> createUser(@Valid @RequestBody CreateUserDTO createUserDTO) {
-        UserDTO createdUser = userService.createUser(createUserDTO);
-        return new ResponseEntity<>(createdUser, HttpStatus.CREATED);
+    public CompletableFuture<ResponseEntity<UserDTO>> createUser(@Valid @RequestBody CreateUserDTO createUserDTO) {
+        return bulkheadService.submit(Bulkhead.WRITE, () ->
+                new ResponseEntity<>(userService.createUser(createUserDTO), HttpStatus.CREATED));
     }
 
     @PatchMapping("/{id}")
-    public ResponseEntity<UserDTO> updateUser(@PathVariable UUID id, @Valid @RequestBody UpdateUserDTO updateUserDTO) {
-        UserDTO updatedUser = userService.updateUser(id, updateUserDTO);
-        return new ResponseEntity<>(updatedUser, HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<UserDTO>> updateUser(@PathVariable UUID id,
+                                                                 @Valid @RequestBody UpdateUserDTO updateUserDTO) {
+        return bulkheadService.submit(Bulkhead.WRITE, () ->
+                new ResponseEntity<>(userService.updateUser(id, updateUserDTO), HttpStatus.OK));
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteUser(@PathVariable UUID id) {
-        userService.deleteUser(id);
-        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    public CompletableFuture<ResponseEntity<Void>> deleteUser(@PathVariable UUID id) {
+        return bulkheadService.submit(Bulkhead.WRITE, () -> {
+            userService.deleteUser(id);
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        });
     }
 
+    /**
+     * Every user, or with {@code after} and/or {@code limit} one keyset page of users ordered by id: pass the id of
+     * the last user of a page as {@code after} to get the next one. Depersonalised users are left out unless
+     * {@code includeDepersonalised} is set.
+     * <p>
+     * With {@code count} the response also carries the total number of users in {@code X-Total-Count}, obtained as
+     * the {@link CountMode} says; {@code X-Total-Count-Estimated} is true unless the count is exact.
+     */
     @GetMapping
-    public ResponseEntity<List<UserDTO>> getAllUsers() {
-        List<UserDTO> users = userService.getAllUsers();
-        return new ResponseEntity<>(users, HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<List<UserDTO>>> getAllUsers(@RequestParam(required = false) UUID after,
+                                                                        @RequestParam(required = false) Integer limit,
+                                                                        @RequestParam(defaultValue = "false") boolean includeDepersonalised,
+                                                                        @RequestParam(required = false) CountMode count) {
+        if (after == null && limit == null) {
+            return bulkheadService.submit(Bulkhead.READ, () ->
+                    new ResponseEntity<>(userService.getAllUsers(includeDepersonalised),
+                            countHeaders(count, includeDepersonalised), HttpStatus.OK));
+        }
+        int size = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (size < 1) {
+            throw new BadRequestException("limit must be positive");
+        }
+        return bulkheadService.submit(Bulkhead.READ, () ->
+                new ResponseEntity<>(userService.getUserPage(after, Math.min(size, MAX_PAGE_SIZE), includeDepersonalised),
+                        countHeaders(count, includeDepersonalised), HttpStatus.OK));
+    }
+
+    private HttpHeaders countHeaders(CountMode mode, boolean includeDepersonalised) {
+        HttpHeaders headers = new HttpHeaders();
+        if (mode != null) {
+            UserCountDTO count = userCountService.count(mode, includeDepersonalised);
+            headers.set("X-Total-Count", String.valueOf(count.getCount()));
+            headers.set("X-Total-Count-Mode", count.getMode().name());
+            headers.set("X-Total-Count-Estimated", String.valueOf(count.isEstimated()));
+        }
+        return headers;
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<UserDTO> getUserById(@PathVariable UUID id) {
-        Optional<UserDTO> userDTO = userService.getUserById(id);
-        return userDTO.map(dto -> new ResponseEntity<>(dto, HttpStatus.OK))
-                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    public CompletableFuture<ResponseEntity<UserDTO>> getUserById(@PathVariable UUID id,
+                                                                  @RequestParam(defaultValue = "false") boolean includeDepersonalised) {
+        return bulkheadService.submit(Bulkhead.READ, () -> userService.getUserById(id, includeDepersonalised)
+                .map(dto -> new ResponseEntity<>(dto, HttpStatus.OK))
+                .orElseThrow(() -> new ResourceNotFoundException("User not found")));
+    }
+
+    /**
+     * Exact-match lookup by TAJ and/or tax id. A POST body keeps the identifiers out of URLs and access logs.
+     */
+    @PostMapping("/search")
+    public CompletableFuture<ResponseEntity<List<UserDTO>>> searchUsers(@RequestBody UserSearchDTO userSearchDTO,
+                                                                        @RequestParam(defaultValue = "false") boolean includeDepersonalised) {
+        if (userSearchDTO.getTaj() == null && userSearchDTO.getTaxId() == null) {
+            throw new BadRequestException("Either taj or taxId is required");
+        }
+        return bulkheadService.submit(Bulkhead.READ, () ->
+                new ResponseEntity<>(userService.searchUsers(userSearchDTO, includeDepersonalised), HttpStatus.OK));
+    }
+
+    /**
+     * Many users by id in one request, in the order asked for. Ids without a user, or only a depersonalised one
+     * unless {@code includeDepersonalised} is set, are listed as missing rather than failing the request.
+     */
+    @PostMapping("/lookup")
+    public CompletableFuture<ResponseEntity<UserLookupResultDTO>> lookupUsers(@RequestBody UserLookupDTO userLookupDTO,
+                                                                              @RequestParam(defaultValue = "false") boolean includeDepersonalised) {
+        List<UUID> ids = userLookupDTO.getIds();
+        if (ids == null || ids.isEmpty() || ids.contains(null)) {
+            throw new BadRequestException("ids must be a non-empty list of user ids");
+        }
+        if (ids.size() > MAX_LOOKUP_IDS) {
+            throw new BadRequestException("At most " + MAX_LOOKUP_IDS + " users can be looked up at once");
+        }
+        return bulkheadService.submit(Bulkhead.READ, () ->
+                new ResponseEntity<>(userService.lookupUsers(ids, includeDepersonalised), HttpStatus.OK));
+    }
+
+    /**
+     * Owners of a phone number, in any spelling: {@code +36301234567}, {@code 06-30-123-4567} and the like.
+     */
+    @GetMapping("/by-phone/{number}")
+    public CompletableFuture<ResponseEntity<List<UserDTO>>> getUsersByPhoneNumber(@PathVariable String number) {
+        return bulkheadService.submit(Bulkhead.READ, () ->
+                new ResponseEntity<>(userPhoneLookupService.findByPhoneNumber(number), HttpStatus.OK));
+    }
+
+    /**
+     * Who changed which field of the user and when, oldest first. In ASYNC audit mode the latest changes appear once
+     * the writer has caught up, normally within a fraction of a second.
+     */
+    @GetMapping("/{id}/audit")
+    public CompletableFuture<ResponseEntity<List<UserAuditEntryDTO>>> getUserAudit(@PathVariable UUID id) {
+        return bulkheadService.submit(Bulkhead.READ, () ->
+                new ResponseEntity<>(userAuditService.getHistory(id), HttpStatus.OK));
     }
 
     // gtpr endpoint removed
@@ -0,0 +1,61 @@
+package com.example.dpd.controller;
+
+import com.example.dpd.dto.CreateExportDTO;
+import com.example.dpd.dto.ExportJobDTO;
+import com.example.dpd.exception.ResourceNotFoundException;
+import com.example.dpd.service.UserExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import javax.validation.Valid;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/users/exports")
+@RequiredArgsConstructor
+public class UserExportController {
+
+    private final UserExportService userExportService;
+
+    @PostMapping
+    public ResponseEntity<ExportJobDTO> submitExport(@Valid @RequestBody CreateExportDTO createExportDTO) {
+        ExportJobDTO job = userExportService.submitExport(createExportDTO.getFormat());
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(job.getId()).toUri())
+                .body(job);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ExportJobDTO> getExportJob(@PathVariable UUID id) {
+        return userExportService.getExportJob(id)
+                .map(job -> new ResponseEntity<>(job, HttpStatus.OK))
+                .orElseThrow(() -> new ResourceNotFoundException("Export job not found"));
+    }
+
+    /**
+     * Downloads a finished export. Range requests are answered with partial content, so interrupted downloads of
+     * large files can be resumed.
+     */
+    @GetMapping("/{id}/file")
+    public ResponseEntity<Resource> getExportFile(@PathVariable UUID id) {
+        return userExportService.getExportFile(id)
+                .map(file -> ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType("application/gzip"))
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFilename() + "\"")
+                        .body(file))
+                .orElseThrow(() -> new ResourceNotFoundException("Export file not found"));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> cancelExport(@PathVariable UUID id) {
+        userExportService.cancelExport(id);
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.example.dpd.controller;
+
+import com.example.dpd.config.GraphQlProperties;
+import com.example.dpd.dto.AddressDTO;
+import com.example.dpd.dto.Bulkhead;
+import com.example.dpd.dto.PageInfoDTO;
+import com.example.dpd.dto.PhoneNumberDTO;
+import com.example.dpd.dto.UserConnectionDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.dto.UserEdgeDTO;
+import com.example.dpd.exception.BadRequestException;
+import com.example.dpd.service.BulkheadService;
+import com.example.dpd.service.UserGraphQlService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The GraphQL schema of users, see graphql/schema.graphqls.
+ * <p>
+ * Queries load users without their collections. The addresses and phone numbers of all users of a query are then
+ * collected by per-request data loaders and fetched together, so a page of a hundred users with both collections
+ * takes three statements per shard rather than two per user. Like the REST endpoints, every fetch runs on the read
+ * {@link Bulkhead}.
+ */
+@Controller
+@RequiredArgsConstructor
+public class UserGraphQlController {
+
+    private static final String CURSOR_PREFIX = "user:";
+
+    private final UserGraphQlService userGraphQlService;
+    private final BulkheadService bulkheadService;
+    private final GraphQlProperties properties;
+
+    @QueryMapping
+    public CompletableFuture<UserDTO> user(@Argument UUID id, @Argument Boolean includeDepersonalised) {
+        return bulkheadService.submit(Bulkhead.READ, () ->
+                userGraphQlService.getUser(id, Boolean.TRUE.equals(includeDepersonalised)).orElse(null));
+    }
+
+    @QueryMapping
+    public CompletableFuture<UserConnectionDTO> users(@Argument Integer first, @Argument String after,
+                                                      @Argument Boolean includeDepersonalised) {
+        int size = first == null ? properties.getDefaultPageSize() : first;
+        if (size < 1 || size > properties.getMaxPageSize()) {
+            throw new BadRequestException("first must be between 1 and " + properties.getMaxPageSize());
+        }
+        UUID cursor = after == null ? null : decodeCursor(after);
+        return bulkheadService.submit(Bulkhead.READ, () -> {
+            // One more than asked for tells whether there is a next page
+            List<UserDTO> users = userGraphQlService.getUserPage(cursor, size + 1, Boolean.TRUE.equals(includeDepersonalised));
+            List<UserEdgeDTO> edges = users.stream()
+                    .limit(size)
+                    .map(user -> new UserEdgeDTO(encodeCursor(user.getId()), user))
+                    .toList();
+            String endCursor = edges.isEmpty() ? null : edges.get(edges.size() - 1).getCursor();
+            return new UserConnectionDTO(edges, new PageInfoDTO(users.size() > size, endCursor));
+        });
+    }
+
+    @BatchMapping(typeName = "User")
+    public Mono<Map<UserDTO, List<AddressDTO>>> addresses(List<UserDTO> users) {
+        return Mono.fromFuture(bulkheadService.submit(Bulkhead.READ, () ->
+                byUser(users, userGraphQlService.getAddresses(ids(users)))));
+    }
+
+    @BatchMapping(typeName = "User")
+    public Mono<Map<UserDTO, List<PhoneNumberDTO>>> phoneNumbers(List<UserDTO> users) {
+        return Mono.fromFuture(bulkheadService.submit(Bulkhead.READ, () ->
+                byUser(users, userGraphQlService.getPhoneNumbers(ids(users)))));
+    }
+
+    private static List<UUID> ids(List<UserDTO> users) {
+        return users.stream().map(UserDTO::getId).toList();
+    }
+
+    private static <T> Map<UserDTO, List<T>> byUser(List<UserDTO> users, Map<UUID, List<T>> values) {
+        Map<UserDTO, List<T>> result = new HashMap<>();
+        for (UserDTO user : users) {
+            result.put(user, values.getOrDefault(user.getId(), List.of()));
+        }
+        return result;
+    }
+
+    /** Opaque to clients, so that the keyset behind it may change. */
+    private static String encodeCursor(UUID id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_PREFIX + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static UUID decodeCursor(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (decoded.startsWith(CURSOR_PREFIX)) {
+                return UUID.fromString(decoded.substring(CURSOR_PREFIX.length()));
+            }
+        } catch (IllegalArgumentException e) {
+            // Reported below like any other unknown cursor
+        }
+        throw new BadRequestException("Not a valid cursor: " + cursor);
+    }
+
+}
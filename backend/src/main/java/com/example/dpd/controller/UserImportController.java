@@ -0,0 +1,73 @@
+package com.example.dpd.controller;
+
+import com.example.dpd.dto.ImportJobDTO;
+import com.example.dpd.exception.BadRequestException;
+import com.example.dpd.exception.ResourceNotFoundException;
+import com.example.dpd.service.UserImportService;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/users/imports")
+@RequiredArgsConstructor
+public class UserImportController {
+
+    private final UserImportService userImportService;
+
+    /**
+     * Imports the {@code file} part of a multipart request. The part is consumed straight from the request
+     * stream, which {@link com.example.dpd.config.MultipartConfig} leaves unparsed for this path; progress can be
+     * followed on {@code GET /users/imports} while the upload is running.
+     */
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ImportJobDTO> importUsers(HttpServletRequest request) throws IOException, FileUploadException {
+        FileItemIterator parts = new ServletFileUpload().getItemIterator(request);
+        while (parts.hasNext()) {
+            FileItemStream part = parts.next();
+            if (!part.isFormField() && "file".equals(part.getFieldName())) {
+                try (InputStream csv = part.openStream()) {
+                    ImportJobDTO job = userImportService.importUsers(part.getName(), csv);
+                    return new ResponseEntity<>(job, HttpStatus.OK);
+                }
+            }
+        }
+        throw new BadRequestException("Multipart request has no 'file' part");
+    }
+
+    @GetMapping
+    public ResponseEntity<List<ImportJobDTO>> getImportJobs() {
+        return new ResponseEntity<>(userImportService.getImportJobs(), HttpStatus.OK);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ImportJobDTO> getImportJob(@PathVariable UUID id) {
+        return userImportService.getImportJob(id)
+                .map(job -> new ResponseEntity<>(job, HttpStatus.OK))
+                .orElseThrow(() -> new ResourceNotFoundException("Import job not found"));
+    }
+
+    @GetMapping(value = "/{id}/rejected", produces = "text/csv")
+    public ResponseEntity<Resource> getRejectedReport(@PathVariable UUID id) {
+        return userImportService.getRejectedReport(id)
+                .map(report -> ResponseEntity.ok()
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + id + "-rejected.csv\"")
+                        .body(report))
+                .orElseThrow(() -> new ResourceNotFoundException("Rejected-rows report not found"));
+    }
+
+}
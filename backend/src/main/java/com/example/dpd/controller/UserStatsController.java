@@ -0,0 +1,71 @@
+package com.example.dpd.controller;
+
+import com.example.dpd.dto.AuditStatsDTO;
+import com.example.dpd.dto.AutocompleteIndexStatsDTO;
+import com.example.dpd.dto.BulkheadStatsDTO;
+import com.example.dpd.dto.CacheRegionStatsDTO;
+import com.example.dpd.dto.CoalescingStatsDTO;
+import com.example.dpd.dto.UserStatsDTO;
+import com.example.dpd.service.AddressAutocompleteService;
+import com.example.dpd.service.BulkheadService;
+import com.example.dpd.service.CacheStatsService;
+import com.example.dpd.service.UserAuditService;
+import com.example.dpd.service.UserService;
+import com.example.dpd.service.UserStatsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/users/stats")
+@RequiredArgsConstructor
+public class UserStatsController {
+
+    private final UserStatsService userStatsService;
+    private final CacheStatsService cacheStatsService;
+    private final BulkheadService bulkheadService;
+    private final AddressAutocompleteService addressAutocompleteService;
+    private final UserAuditService userAuditService;
+    private final UserService userService;
+
+    @GetMapping
+    public ResponseEntity<UserStatsDTO> getStats() {
+        return new ResponseEntity<>(userStatsService.getStats(), HttpStatus.OK);
+    }
+
+    /** Second-level cache hit ratios per region. */
+    @GetMapping("/cache")
+    public ResponseEntity<List<CacheRegionStatsDTO>> getCacheStats() {
+        return new ResponseEntity<>(cacheStatsService.getRegionStats(), HttpStatus.OK);
+    }
+
+    /** Threads, queue depth, rejections and timeouts of the request executors. */
+    @GetMapping("/executors")
+    public ResponseEntity<List<BulkheadStatsDTO>> getExecutorStats() {
+        return new ResponseEntity<>(bulkheadService.getStats(), HttpStatus.OK);
+    }
+
+    /** Size and estimated heap footprint of the address autocomplete indexes. */
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<AutocompleteIndexStatsDTO>> getAutocompleteStats() {
+        return new ResponseEntity<>(addressAutocompleteService.getIndexStats(), HttpStatus.OK);
+    }
+
+    /** Audit mode, write-behind queue depth and how many changes were written, dropped or failed to write. */
+    @GetMapping("/audit")
+    public ResponseEntity<AuditStatsDTO> getAuditStats() {
+        return new ResponseEntity<>(userAuditService.getStats(), HttpStatus.OK);
+    }
+
+    /** Reads that ran their own load and reads that shared an identical one already running, see SingleFlight. */
+    @GetMapping("/coalescing")
+    public ResponseEntity<List<CoalescingStatsDTO>> getCoalescingStats() {
+        return new ResponseEntity<>(userService.getCoalescingStats(), HttpStatus.OK);
+    }
+
+}
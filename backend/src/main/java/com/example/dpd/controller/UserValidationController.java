@@ -0,0 +1,34 @@
+package com.example.dpd.controller;
+
+import com.example.dpd.dto.BatchValidationResultDTO;
+import com.example.dpd.dto.CreateUserDTO;
+import com.example.dpd.service.UserValidationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/users/validate")
+@RequiredArgsConstructor
+public class UserValidationController {
+
+    private final UserValidationService userValidationService;
+
+    /**
+     * Checks candidate users against the POST /users constraints without writing anything. Answers 200 also when
+     * some users are invalid; their violations are listed by array index. The body, a JSON array of
+     * {@link CreateUserDTO}, is read as a stream, so that a batch over the maximum size is refused early.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchValidationResultDTO> validateUsers(InputStream users) throws IOException {
+        return new ResponseEntity<>(userValidationService.validate(users), HttpStatus.OK);
+    }
+
+}
@@ -0,0 +1,7 @@
+package com.example.dpd.dto;
+
+/** Address fields offered for autocompletion. */
+public enum AddressField {
+    CITY,
+    STREET
+}
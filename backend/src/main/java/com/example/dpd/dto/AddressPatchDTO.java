@@ -0,0 +1,15 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+/**
+ * Non-null fields are written to the addresses matched by a bulk update filter; other addresses stay as they are.
+ */
+@Data
+public class AddressPatchDTO {
+    private String postalCode;
+    private String city;
+    private String street;
+    private String houseNumber;
+    private String otherInfo;
+}
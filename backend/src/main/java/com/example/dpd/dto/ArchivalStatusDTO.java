@@ -0,0 +1,20 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/** Table and index sizes are those of users, in bytes, summed over the shards. */
+@Data
+public class ArchivalStatusDTO {
+    private String status;
+    private Instant cutoff;
+    private long usersArchived;
+    private long tableBytesBefore;
+    private long indexBytesBefore;
+    private long tableBytesAfter;
+    private long indexBytesAfter;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private String failureReason;
+}
@@ -0,0 +1,14 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+@Data
+public class AuditStatsDTO {
+    private String mode;
+    private int queued;
+    private int queueCapacity;
+    private long written;
+    private long dropped;
+    private long failed;
+    private long deadLettered;
+}
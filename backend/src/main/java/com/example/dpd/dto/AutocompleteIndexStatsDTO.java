@@ -0,0 +1,11 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+@Data
+public class AutocompleteIndexStatsDTO {
+    private AddressField field;
+    private int distinctValues;
+    private long addresses;
+    private long estimatedBytes;
+}
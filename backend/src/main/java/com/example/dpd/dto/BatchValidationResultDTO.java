@@ -0,0 +1,14 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchValidationResultDTO {
+    private int total;
+    private int valid;
+    private int invalid;
+    /** Only the users with violations, in submission order. */
+    private List<UserValidationResultDTO> invalidUsers;
+}
@@ -0,0 +1,15 @@
+package com.example.dpd.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUpdateItemDTO {
+    private UUID id;
+    private UpdateUserDTO patch;
+}
@@ -0,0 +1,19 @@
+package com.example.dpd.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUpdateItemResultDTO {
+
+    public enum Status { UPDATED, NOT_FOUND, INVALID, FAILED, ROLLED_BACK }
+
+    private UUID id;
+    private Status status;
+    private String message;
+}
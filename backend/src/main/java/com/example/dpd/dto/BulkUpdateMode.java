@@ -0,0 +1,8 @@
+package com.example.dpd.dto;
+
+public enum BulkUpdateMode {
+    /** One transaction: any invalid, missing or failing item rolls back every item. */
+    ALL_OR_NOTHING,
+    /** Items are committed in batches; a failing item is reported and the others are still written. */
+    BEST_EFFORT
+}
@@ -0,0 +1,16 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkUpdateResultDTO {
+    private BulkUpdateMode mode;
+    /** False only when an all-or-nothing update was rolled back. */
+    private boolean committed;
+    private int requested;
+    private int updated;
+    private int failed;
+    private List<BulkUpdateItemResultDTO> items;
+}
@@ -0,0 +1,18 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Either {@code items}, each with its own patch, or {@code filter} with one {@code patch} and/or
+ * {@code addressPatch} applied to every matching user.
+ */
+@Data
+public class BulkUpdateUserDTO {
+    private BulkUpdateMode mode = BulkUpdateMode.ALL_OR_NOTHING;
+    private List<BulkUpdateItemDTO> items;
+    private BulkUserFilterDTO filter;
+    private UpdateUserDTO patch;
+    private AddressPatchDTO addressPatch;
+}
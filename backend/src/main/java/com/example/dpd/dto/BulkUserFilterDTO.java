@@ -0,0 +1,12 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+/**
+ * Selects the users having at least one address that matches every non-null field.
+ */
+@Data
+public class BulkUserFilterDTO {
+    private String city;
+    private String postalCode;
+}
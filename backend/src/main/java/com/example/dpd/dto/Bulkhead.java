@@ -0,0 +1,13 @@
+package com.example.dpd.dto;
+
+/**
+ * Operation classes that get their own executor, so that one class backing up cannot starve the others.
+ */
+public enum Bulkhead {
+    /** Single-user and list reads, searches. */
+    READ,
+    /** Single-user creates, updates and deletes. */
+    WRITE,
+    /** Requests touching many users at once, such as bulk updates. */
+    BULK
+}
@@ -0,0 +1,16 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+@Data
+public class BulkheadStatsDTO {
+    private Bulkhead bulkhead;
+    private int threads;
+    private int activeThreads;
+    private int queued;
+    private int queueCapacity;
+    private long timeoutMillis;
+    private long completed;
+    private long rejected;
+    private long timedOut;
+}
@@ -0,0 +1,13 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+@Data
+public class CacheRegionStatsDTO {
+    private String region;
+    private long hitCount;
+    private long missCount;
+    private long putCount;
+    private long elementCountInMemory;
+    private double hitRatio;
+}
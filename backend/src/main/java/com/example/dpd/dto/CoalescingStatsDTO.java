@@ -0,0 +1,12 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+@Data
+public class CoalescingStatsDTO {
+    private String name;
+    private long executed;
+    private long coalesced;
+    private long timedOut;
+    private int inFlight;
+}
@@ -0,0 +1,13 @@
+package com.example.dpd.dto;
+
+/**
+ * How a total count is obtained, from most to least expensive.
+ */
+public enum CountMode {
+    /** Counts the rows. */
+    EXACT,
+    /** The row estimate of the query planner, as fresh as the last ANALYZE of the table. */
+    ESTIMATE,
+    /** An exact count recounted in the background and adjusted by creates and depersonalisations in between. */
+    CACHED
+}
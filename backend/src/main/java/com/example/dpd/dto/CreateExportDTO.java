@@ -0,0 +1,11 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+import javax.validation.constraints.NotNull;
+
+@Data
+public class CreateExportDTO {
+    @NotNull(message = "Format is mandatory")
+    private ExportFormat format;
+}
@@ -1,5 +1,7 @@
 package com.example.dpd.dto;
 
+import com.example.dpd.validation.ValidTaj;
+import com.example.dpd.validation.ValidTaxId;
 import lombok.Builder;
 import lombok.Data;
 
@@ -25,8 +27,10 @@ public class CreateUserDTO {
     @NotBlank(message = "Mother maiden name is mandatory")
     private String motherMaidenName;
     @NotBlank(message = "TAJ is mandatory")
+    @ValidTaj
     private String taj;
     @NotBlank(message = "Tax id is mandatory")
+    @ValidTaxId
     private String taxId;
 
     private Set<AddressDTO> addresses;
@@ -0,0 +1,17 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+public class DuplicateClusterDTO {
+    private UUID id;
+    private DuplicateClusterStatus status;
+    private double maxScore;
+    private Instant createdAt;
+    private Instant reviewedAt;
+    private List<UserDTO> members;
+}
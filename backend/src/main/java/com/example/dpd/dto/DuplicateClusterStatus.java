@@ -0,0 +1,7 @@
+package com.example.dpd.dto;
+
+public enum DuplicateClusterStatus {
+    PENDING,
+    CONFIRMED,
+    REJECTED
+}
@@ -0,0 +1,19 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+public class DuplicateRunDTO {
+    private UUID id;
+    private String status;
+    private long usersScanned;
+    private long candidatePairs;
+    private long matchedPairs;
+    private long clusters;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private String failureReason;
+}
@@ -0,0 +1,16 @@
+package com.example.dpd.dto;
+
+public enum ExportFormat {
+    NDJSON("ndjson.gz"),
+    CSV("csv.gz");
+
+    private final String fileExtension;
+
+    ExportFormat(String fileExtension) {
+        this.fileExtension = fileExtension;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+}
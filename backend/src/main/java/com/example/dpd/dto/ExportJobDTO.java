@@ -0,0 +1,19 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+public class ExportJobDTO {
+    private UUID id;
+    private ExportFormat format;
+    private String status;
+    private long rowsWritten;
+    private Long fileSize;
+    private Instant createdAt;
+    private Instant finishedAt;
+    private Instant expiresAt;
+    private String failureReason;
+}
@@ -0,0 +1,19 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+public class ImportJobDTO {
+    private UUID id;
+    private String fileName;
+    private String status;
+    private long rowsRead;
+    private long rowsImported;
+    private long rowsRejected;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private String failureReason;
+}
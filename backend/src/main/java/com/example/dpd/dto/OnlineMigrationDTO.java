@@ -0,0 +1,20 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+public class OnlineMigrationDTO {
+    private String name;
+    private int shard;
+    private String status;
+    private UUID lastId;
+    private long rowsScanned;
+    private long rowsChanged;
+    private Instant startedAt;
+    private Instant updatedAt;
+    private Instant completedAt;
+    private String failureReason;
+}
@@ -0,0 +1,13 @@
+package com.example.dpd.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageInfoDTO {
+    private boolean hasNextPage;
+    private String endCursor;
+}
@@ -0,0 +1,17 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class ReencryptionStatusDTO {
+    private String status;
+    private long rowsScanned;
+    private long rowsUpdated;
+    private long auditRowsScanned;
+    private long auditRowsUpdated;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private String failureReason;
+}
@@ -0,0 +1,11 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+import javax.validation.constraints.NotNull;
+
+@Data
+public class ReviewDuplicateClusterDTO {
+    @NotNull(message = "Status is mandatory")
+    private DuplicateClusterStatus status;
+}
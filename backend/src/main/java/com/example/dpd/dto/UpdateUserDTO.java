@@ -1,5 +1,7 @@
 package com.example.dpd.dto;
 
+import com.example.dpd.validation.ValidTaj;
+import com.example.dpd.validation.ValidTaxId;
 import lombok.Builder;
 import lombok.Data;
 
@@ -18,7 +20,9 @@ public class UpdateUserDTO {
     private LocalDate dateOfBirth;
     private String placeOfBirth;
     private String motherMaidenName;
+    @ValidTaj
     private String taj;
+    @ValidTaxId
     private String taxId;
 
     private Set<AddressDTO> addresses;
@@ -0,0 +1,19 @@
+package com.example.dpd.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserAuditEntryDTO {
+    private Instant changedAt;
+    private String actor;
+    private String changeType;
+    private String field;
+    private String oldValue;
+    private String newValue;
+}
@@ -0,0 +1,18 @@
+package com.example.dpd.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A page of users in the connection shape of the GraphQL schema.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserConnectionDTO {
+    private List<UserEdgeDTO> edges;
+    private PageInfoDTO pageInfo;
+}
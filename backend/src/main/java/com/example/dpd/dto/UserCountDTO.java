@@ -0,0 +1,15 @@
+package com.example.dpd.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserCountDTO {
+    private long count;
+    private CountMode mode;
+    /** False only for EXACT: the other modes may be off by the writes they have not seen. */
+    private boolean estimated;
+}
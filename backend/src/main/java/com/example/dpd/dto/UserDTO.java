@@ -1,5 +1,6 @@
 package com.example.dpd.dto;
 
+import com.example.dpd.entity.UserStatus;
 import lombok.Data;
 
 import java.time.LocalDate;
@@ -18,4 +19,5 @@ public class UserDTO {
     private String taxId;
     private Set<AddressDTO> addresses;
     private Set<PhoneNumberDTO> phoneNumbers;
+    private UserStatus status;
 }
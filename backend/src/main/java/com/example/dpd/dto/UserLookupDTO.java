@@ -0,0 +1,11 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+public class UserLookupDTO {
+    private List<UUID> ids;
+}
@@ -0,0 +1,14 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+public class UserLookupResultDTO {
+    /** In the order of the requested ids, each user once. */
+    private List<UserDTO> users;
+    /** Requested ids with no user to return, in request order. */
+    private List<UUID> missing;
+}
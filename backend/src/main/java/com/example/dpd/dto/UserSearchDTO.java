@@ -0,0 +1,9 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+@Data
+public class UserSearchDTO {
+    private String taj;
+    private String taxId;
+}
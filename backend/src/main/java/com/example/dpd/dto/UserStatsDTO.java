@@ -0,0 +1,12 @@
+package com.example.dpd.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+public class UserStatsDTO {
+    private Map<String, Long> byCity;
+    private Map<String, Long> byPostalCode;
+    private Map<String, Long> byBirthYear;
+}
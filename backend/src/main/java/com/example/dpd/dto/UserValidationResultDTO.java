@@ -0,0 +1,16 @@
+package com.example.dpd.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserValidationResultDTO {
+    /** Position of the user in the submitted array. */
+    private int index;
+    private List<ViolationDTO> violations;
+}
@@ -0,0 +1,29 @@
+package com.example.dpd.entity;
+
+import com.example.dpd.security.PiiCipher;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+
+/**
+ * Keeps the blind-index columns of {@link User} in step with the plaintext TAJ and tax id.
+ */
+public class BlindIndexListener {
+
+    public static final String TAJ = "taj";
+    public static final String TAX_ID = "tax_id";
+
+    private final PiiCipher piiCipher;
+
+    public BlindIndexListener(PiiCipher piiCipher) {
+        this.piiCipher = piiCipher;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void updateBlindIndexes(User user) {
+        user.setTajBlindIndex(piiCipher.blindIndex(TAJ, user.getTaj()));
+        user.setTaxIdBlindIndex(piiCipher.blindIndex(TAX_ID, user.getTaxId()));
+    }
+
+}
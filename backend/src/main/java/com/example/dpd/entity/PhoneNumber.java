@@ -1,6 +1,8 @@
 package com.example.dpd.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
@@ -14,6 +16,7 @@ import java.util.UUID;
 @Getter
 @Setter
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "phone_numbers")
 public class PhoneNumber {
     @Id
@@ -29,4 +32,9 @@ public class PhoneNumber {
     @Column(name = "phone_number")
     private String phoneNumber;
 
+    /** {@link #phoneNumber} in E.164 form, null when it cannot be parsed. Indexed for the reverse lookup. */
+    @Size(max = 16)
+    @Column(name = "phone_number_e164")
+    private String phoneNumberE164;
+
 }
\ No newline at end of file
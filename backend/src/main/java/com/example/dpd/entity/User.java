@@ -1,6 +1,9 @@
 package com.example.dpd.entity;
 
+import com.example.dpd.entity.converter.EncryptedStringConverter;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
@@ -17,6 +20,8 @@ import java.util.UUID;
 @Getter
 @Setter
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(BlindIndexListener.class)
 @Table(name = "users", uniqueConstraints = {
         @UniqueConstraint(name = "users_email_key", columnNames = {"email"})
 })
@@ -41,21 +46,40 @@ public class User {
     private String placeOfBirth;
 
     @Size(max = 255)
-    @Column(name = "mother_maiden_name")
+    @Convert(converter = EncryptedStringConverter.class)
+    @Column(name = "mother_maiden_name", length = 512)
     private String motherMaidenName;
 
     @Size(max = 9)
-    @Column(name = "taj", length = 9)
+    @Convert(converter = EncryptedStringConverter.class)
+    @Column(name = "taj", length = 128)
     private String taj;
 
     @Size(max = 10)
-    @Column(name = "tax_id", length = 10)
+    @Convert(converter = EncryptedStringConverter.class)
+    @Column(name = "tax_id", length = 128)
     private String taxId;
 
-    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL)
+    @Column(name = "taj_bidx", length = 64)
+    private String tajBlindIndex;
+
+    @Column(name = "tax_id_bidx", length = 64)
+    private String taxIdBlindIndex;
+
+    @Builder.Default
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private UserStatus status = UserStatus.ACTIVE;
+
+    @Column(name = "depersonalised_at")
+    private OffsetDateTime depersonalisedAt;
+
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<Address> addresses = new LinkedHashSet<>();
 
-    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<PhoneNumber> phoneNumbers = new LinkedHashSet<>();
 
 }
\ No newline at end of file
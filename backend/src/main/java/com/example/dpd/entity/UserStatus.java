@@ -0,0 +1,7 @@
+package com.example.dpd.entity;
+
+public enum UserStatus {
+    ACTIVE,
+    /** Erased by deleteUser: the row only keeps its id and placeholders. */
+    DEPERSONALISED
+}
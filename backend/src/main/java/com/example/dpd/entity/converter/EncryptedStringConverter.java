@@ -0,0 +1,31 @@
+package com.example.dpd.entity.converter;
+
+import com.example.dpd.security.PiiCipher;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Encrypts a string attribute at rest. Instantiated by Hibernate through the Spring bean container, which supplies
+ * the {@link PiiCipher}.
+ */
+@Converter
+public class EncryptedStringConverter implements AttributeConverter<String, String> {
+
+    private final PiiCipher piiCipher;
+
+    public EncryptedStringConverter(PiiCipher piiCipher) {
+        this.piiCipher = piiCipher;
+    }
+
+    @Override
+    public String convertToDatabaseColumn(String attribute) {
+        return piiCipher.encrypt(attribute);
+    }
+
+    @Override
+    public String convertToEntityAttribute(String dbData) {
+        return piiCipher.decrypt(dbData);
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.example.dpd.event;
+
+import com.example.dpd.dto.UserDTO;
+import lombok.Value;
+
+/**
+ * Published by the user service after a user was written. {@code before} is null for a created user; for a
+ * depersonalisation {@code after} holds the erased record.
+ */
+@Value
+public class UserChangedEvent {
+
+    public enum Type { CREATED, UPDATED, DEPERSONALISED }
+
+    Type type;
+    UserDTO before;
+    UserDTO after;
+
+    public static UserChangedEvent created(UserDTO after) {
+        return new UserChangedEvent(Type.CREATED, null, after);
+    }
+
+    public static UserChangedEvent updated(UserDTO before, UserDTO after) {
+        return new UserChangedEvent(Type.UPDATED, before, after);
+    }
+
+    public static UserChangedEvent depersonalised(UserDTO before, UserDTO after) {
+        return new UserChangedEvent(Type.DEPERSONALISED, before, after);
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.example.dpd.exception;
 
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
@@ -10,12 +11,35 @@ import org.zalando.problem.Status;
 public class GlobalExceptionHandle extends ResponseEntityExceptionHandler {
 
     @ExceptionHandler(ResourceNotFoundException.class)
-    public Problem handleResourceNotFoundException(ResourceNotFoundException exception) {
-        return Problem.builder()
+    public ResponseEntity<Problem> handleResourceNotFoundException(ResourceNotFoundException exception) {
+        return respond(Problem.builder()
                 .withStatus(Status.NOT_FOUND)
                 .withTitle("User not found")
                 .withDetail(exception.getMessage())
-                .build();
+                .build());
+    }
+
+    @ExceptionHandler(BadRequestException.class)
+    public ResponseEntity<Problem> handleBadRequestException(BadRequestException exception) {
+        return respond(Problem.builder()
+                .withStatus(Status.BAD_REQUEST)
+                .withTitle("Bad request")
+                .withDetail(exception.getMessage())
+                .build());
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<Problem> handleServiceUnavailableException(ServiceUnavailableException exception) {
+        return respond(Problem.builder()
+                .withStatus(Status.SERVICE_UNAVAILABLE)
+                .withTitle("Service unavailable")
+                .withDetail(exception.getMessage())
+                .build());
+    }
+
+    /** Answers with the status of the problem; a bare Problem return value would go out as 200. */
+    private static ResponseEntity<Problem> respond(Problem problem) {
+        return ResponseEntity.status(problem.getStatus().getStatusCode()).body(problem);
     }
 
 }
@@ -0,0 +1,243 @@
+package com.example.dpd.grpc;
+
+import com.example.dpd.config.GrpcProperties;
+import com.example.dpd.dto.Bulkhead;
+import com.example.dpd.dto.CreateUserDTO;
+import com.example.dpd.dto.UpdateUserDTO;
+import com.example.dpd.exception.BadRequestException;
+import com.example.dpd.exception.ResourceNotFoundException;
+import com.example.dpd.exception.ServiceUnavailableException;
+import com.example.dpd.grpc.proto.CreateUserRequest;
+import com.example.dpd.grpc.proto.DepersonaliseUserRequest;
+import com.example.dpd.grpc.proto.GetUserRequest;
+import com.example.dpd.grpc.proto.ListUsersRequest;
+import com.example.dpd.grpc.proto.PatchUserRequest;
+import com.example.dpd.grpc.proto.User;
+import com.example.dpd.grpc.proto.UserServiceGrpc;
+import com.example.dpd.service.BulkheadService;
+import com.example.dpd.service.UserService;
+import com.google.protobuf.Empty;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * The operations of UserController over gRPC, see user_service.proto, for internal consumers that would rather not
+ * parse JSON.
+ * <p>
+ * Requests are mapped to the DTOs {@link UserService} takes and validated like the REST request bodies, and the work
+ * runs on the same {@link Bulkhead}s, so gRPC and REST callers share their limits. {@code ListUsers} streams every
+ * user in id order with flow control: a keyset page is read only once the previous one has been sent, and sending
+ * stops whenever the client is not ready for more, so a slow consumer holds one page in memory rather than the table.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
+
+    private final UserService userService;
+    private final BulkheadService bulkheadService;
+    private final UserProtoMapper mapper;
+    private final Validator validator;
+    private final GrpcProperties properties;
+
+    @Override
+    public void createUser(CreateUserRequest request, StreamObserver<User> responseObserver) {
+        try {
+            CreateUserDTO createUserDTO = valid(mapper.toCreateUserDTO(request));
+            reply(responseObserver, Bulkhead.WRITE, () -> mapper.toProto(userService.createUser(createUserDTO)));
+        } catch (RuntimeException e) {
+            responseObserver.onError(toStatus(e));
+        }
+    }
+
+    @Override
+    public void getUser(GetUserRequest request, StreamObserver<User> responseObserver) {
+        try {
+            UUID id = mapper.toId(request.getId());
+            reply(responseObserver, Bulkhead.READ, () -> userService.getUserById(id, request.getIncludeDepersonalised())
+                    .map(mapper::toProto)
+                    .orElseThrow(() -> new ResourceNotFoundException("User not found")));
+        } catch (RuntimeException e) {
+            responseObserver.onError(toStatus(e));
+        }
+    }
+
+    @Override
+    public void patchUser(PatchUserRequest request, StreamObserver<User> responseObserver) {
+        try {
+            UUID id = mapper.toId(request.getId());
+            UpdateUserDTO updateUserDTO = valid(mapper.toUpdateUserDTO(request));
+            reply(responseObserver, Bulkhead.WRITE, () -> mapper.toProto(userService.updateUser(id, updateUserDTO)));
+        } catch (RuntimeException e) {
+            responseObserver.onError(toStatus(e));
+        }
+    }
+
+    @Override
+    public void depersonaliseUser(DepersonaliseUserRequest request, StreamObserver<Empty> responseObserver) {
+        try {
+            UUID id = mapper.toId(request.getId());
+            reply(responseObserver, Bulkhead.WRITE, () -> {
+                userService.deleteUser(id);
+                return Empty.getDefaultInstance();
+            });
+        } catch (RuntimeException e) {
+            responseObserver.onError(toStatus(e));
+        }
+    }
+
+    @Override
+    public void listUsers(ListUsersRequest request, StreamObserver<User> responseObserver) {
+        try {
+            UUID after = request.getAfter().isEmpty() ? null : mapper.toId(request.getAfter());
+            new UserStream((ServerCallStreamObserver<User>) responseObserver, after, request.getIncludeDepersonalised())
+                    .start();
+        } catch (RuntimeException e) {
+            responseObserver.onError(toStatus(e));
+        }
+    }
+
+    private <T> void reply(StreamObserver<T> responseObserver, Bulkhead bulkhead, Supplier<T> work) {
+        bulkheadService.submit(bulkhead, work).whenComplete((result, failure) -> {
+            if (failure != null) {
+                responseObserver.onError(toStatus(failure));
+            } else {
+                responseObserver.onNext(result);
+                responseObserver.onCompleted();
+            }
+        });
+    }
+
+    private <T> T valid(T dto) {
+        Set<ConstraintViolation<T>> violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            throw new BadRequestException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+        return dto;
+    }
+
+    /** The status of a failure, with the same meaning as the status GlobalExceptionHandle answers REST calls with. */
+    StatusRuntimeException toStatus(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (cause instanceof ResourceNotFoundException) {
+            return Status.NOT_FOUND.withDescription(cause.getMessage()).asRuntimeException();
+        }
+        if (cause instanceof BadRequestException) {
+            return Status.INVALID_ARGUMENT.withDescription(cause.getMessage()).asRuntimeException();
+        }
+        if (cause instanceof ServiceUnavailableException) {
+            return Status.UNAVAILABLE.withDescription(cause.getMessage()).asRuntimeException();
+        }
+        if (cause instanceof StatusRuntimeException status) {
+            return status;
+        }
+        log.error("gRPC call failed", cause);
+        return Status.INTERNAL.withDescription("Internal error").asRuntimeException();
+    }
+
+    /**
+     * One ListUsers call. Everything runs under the lock of the stream: the transport calls back when the client is
+     * ready again and the bulkhead when a page has been read, and either may find the other one's work to do.
+     */
+    private class UserStream {
+
+        private final ServerCallStreamObserver<User> call;
+        private final boolean includeDepersonalised;
+        private final Deque<User> unsent = new ArrayDeque<>();
+        private UUID after;
+        private CompletableFuture<List<User>> reading;
+        private boolean lastPageRead;
+        private boolean done;
+
+        UserStream(ServerCallStreamObserver<User> call, UUID after, boolean includeDepersonalised) {
+            this.call = call;
+            this.after = after;
+            this.includeDepersonalised = includeDepersonalised;
+        }
+
+        void start() {
+            call.setOnCancelHandler(this::cancel);
+            call.setOnReadyHandler(this::send);
+            send();
+        }
+
+        private synchronized void cancel() {
+            done = true;
+            unsent.clear();
+        }
+
+        private synchronized void send() {
+            while (!done) {
+                if (!unsent.isEmpty()) {
+                    if (!call.isReady()) {
+                        return;
+                    }
+                    call.onNext(unsent.poll());
+                } else if (reading != null) {
+                    if (!reading.isDone()) {
+                        return;
+                    }
+                    take(reading);
+                } else if (lastPageRead) {
+                    done = true;
+                    call.onCompleted();
+                } else {
+                    reading = read();
+                    // A page read on this thread is taken by the loop rather than by a nested call
+                    if (!reading.isDone()) {
+                        reading.whenComplete((page, failure) -> send());
+                    }
+                }
+            }
+        }
+
+        private void take(CompletableFuture<List<User>> page) {
+            reading = null;
+            try {
+                List<User> users = page.join();
+                unsent.addAll(users);
+                lastPageRead = users.size() < properties.getListPageSize();
+                if (!users.isEmpty()) {
+                    after = UUID.fromString(users.get(users.size() - 1).getId());
+                }
+            } catch (RuntimeException e) {
+                done = true;
+                call.onError(toStatus(e));
+            }
+        }
+
+        private CompletableFuture<List<User>> read() {
+            UUID from = after;
+            try {
+                return bulkheadService.submit(Bulkhead.READ, () ->
+                        userService.getUserPage(from, properties.getListPageSize(), includeDepersonalised).stream()
+                                .map(mapper::toProto)
+                                .toList());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+    }
+
+}
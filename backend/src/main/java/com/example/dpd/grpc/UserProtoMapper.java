@@ -0,0 +1,140 @@
+package com.example.dpd.grpc;
+
+import com.example.dpd.dto.AddressDTO;
+import com.example.dpd.dto.CreateUserDTO;
+import com.example.dpd.dto.PhoneNumberDTO;
+import com.example.dpd.dto.UpdateUserDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.exception.BadRequestException;
+import com.example.dpd.grpc.proto.Address;
+import com.example.dpd.grpc.proto.CreateUserRequest;
+import com.example.dpd.grpc.proto.PatchUserRequest;
+import com.example.dpd.grpc.proto.PhoneNumber;
+import com.example.dpd.grpc.proto.User;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Maps between the protobuf messages of user_service.proto and the DTOs of {@link com.example.dpd.service.UserService}.
+ * Unset optional fields are null on the DTO side and null DTO fields are left unset, as in the JSON of the REST API.
+ */
+@Component
+public class UserProtoMapper {
+
+    public User toProto(UserDTO userDTO) {
+        User.Builder user = User.newBuilder().setId(userDTO.getId().toString());
+        setIfPresent(userDTO.getName(), user::setName);
+        setIfPresent(userDTO.getEmail(), user::setEmail);
+        if (userDTO.getDateOfBirth() != null) {
+            user.setDateOfBirth(userDTO.getDateOfBirth().toString());
+        }
+        setIfPresent(userDTO.getPlaceOfBirth(), user::setPlaceOfBirth);
+        setIfPresent(userDTO.getMotherMaidenName(), user::setMotherMaidenName);
+        setIfPresent(userDTO.getTaj(), user::setTaj);
+        setIfPresent(userDTO.getTaxId(), user::setTaxId);
+        if (userDTO.getStatus() != null) {
+            user.setStatus(com.example.dpd.grpc.proto.UserStatus.valueOf(userDTO.getStatus().name()));
+        }
+        if (userDTO.getAddresses() != null) {
+            userDTO.getAddresses().forEach(address -> user.addAddresses(toProto(address)));
+        }
+        if (userDTO.getPhoneNumbers() != null) {
+            userDTO.getPhoneNumbers().forEach(phoneNumber -> user.addPhoneNumbers(PhoneNumber.newBuilder()
+                    .setId(phoneNumber.getId().toString())
+                    .setPhoneNumber(phoneNumber.getPhoneNumber())));
+        }
+        return user.build();
+    }
+
+    public CreateUserDTO toCreateUserDTO(CreateUserRequest request) {
+        // Empty strings stay empty so that validation reports them as blank, like missing JSON fields
+        return CreateUserDTO.builder()
+                .name(request.getName())
+                .email(request.getEmail())
+                .dateOfBirth(request.getDateOfBirth().isEmpty() ? null : toDate(request.getDateOfBirth()))
+                .placeOfBirth(request.getPlaceOfBirth())
+                .motherMaidenName(request.getMotherMaidenName())
+                .taj(request.getTaj())
+                .taxId(request.getTaxId())
+                .addresses(toAddressDTOs(request.getAddressesList()))
+                .phoneNumbers(toPhoneNumberDTOs(request.getPhoneNumbersList()))
+                .build();
+    }
+
+    public UpdateUserDTO toUpdateUserDTO(PatchUserRequest request) {
+        return UpdateUserDTO.builder()
+                .name(request.hasName() ? request.getName() : null)
+                .email(request.hasEmail() ? request.getEmail() : null)
+                .dateOfBirth(request.hasDateOfBirth() ? toDate(request.getDateOfBirth()) : null)
+                .placeOfBirth(request.hasPlaceOfBirth() ? request.getPlaceOfBirth() : null)
+                .motherMaidenName(request.hasMotherMaidenName() ? request.getMotherMaidenName() : null)
+                .taj(request.hasTaj() ? request.getTaj() : null)
+                .taxId(request.hasTaxId() ? request.getTaxId() : null)
+                .addresses(request.hasAddresses() ? toAddressDTOs(request.getAddresses().getAddressesList()) : null)
+                .phoneNumbers(request.hasPhoneNumbers()
+                        ? toPhoneNumberDTOs(request.getPhoneNumbers().getPhoneNumbersList()) : null)
+                .build();
+    }
+
+    public UUID toId(String id) {
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Not a valid user id: " + id);
+        }
+    }
+
+    private Address toProto(AddressDTO addressDTO) {
+        Address.Builder address = Address.newBuilder().setId(addressDTO.getId().toString());
+        setIfPresent(addressDTO.getPostalCode(), address::setPostalCode);
+        setIfPresent(addressDTO.getCity(), address::setCity);
+        setIfPresent(addressDTO.getStreet(), address::setStreet);
+        setIfPresent(addressDTO.getHouseNumber(), address::setHouseNumber);
+        setIfPresent(addressDTO.getOtherInfo(), address::setOtherInfo);
+        return address.build();
+    }
+
+    private Set<AddressDTO> toAddressDTOs(Collection<Address> addresses) {
+        return addresses.stream().map(address -> {
+            AddressDTO addressDTO = new AddressDTO();
+            addressDTO.setId(address.getId().isEmpty() ? null : toId(address.getId()));
+            addressDTO.setPostalCode(address.hasPostalCode() ? address.getPostalCode() : null);
+            addressDTO.setCity(address.hasCity() ? address.getCity() : null);
+            addressDTO.setStreet(address.hasStreet() ? address.getStreet() : null);
+            addressDTO.setHouseNumber(address.hasHouseNumber() ? address.getHouseNumber() : null);
+            addressDTO.setOtherInfo(address.hasOtherInfo() ? address.getOtherInfo() : null);
+            return addressDTO;
+        }).collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private Set<PhoneNumberDTO> toPhoneNumberDTOs(Collection<PhoneNumber> phoneNumbers) {
+        return phoneNumbers.stream().map(phoneNumber -> {
+            PhoneNumberDTO phoneNumberDTO = new PhoneNumberDTO();
+            phoneNumberDTO.setPhoneNumber(phoneNumber.getPhoneNumber());
+            return phoneNumberDTO;
+        }).collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private static LocalDate toDate(String date) {
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Not an ISO date: " + date);
+        }
+    }
+
+    private static void setIfPresent(String value, Consumer<String> setter) {
+        if (value != null) {
+            setter.accept(value);
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.example.dpd.migration;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A data migration run online by {@link com.example.dpd.service.OnlineMigrationService}: in chunks of rows in
+ * primary-key order, each chunk in a short transaction of its own, while the application keeps serving traffic.
+ * <p>
+ * A schema change that needs one goes in three steps. A changeset adds what is new without rewriting or locking the
+ * table for long, and the application writes the old and the new columns from then on. The migration then brings
+ * the existing rows in line. Last, the changesets that drop the old or rely on every row having been migrated run,
+ * gated on the migration having completed on their database, see 2026-10-19-08-user-id-not-null.sql.
+ * <p>
+ * A chunk only changes rows that still need it, and only as long as they still do, so that concurrent writes of the
+ * application are never overwritten.
+ */
+public interface OnlineMigration {
+
+    /** Key of its checkpoints in online_migrations, which the changesets depending on it check. */
+    String name();
+
+    /**
+     * Migrates the rows with an id after {@code after}, at most {@code limit} of them, in the transaction of the
+     * caller. A chunk that looked at fewer than {@code limit} rows is the last one.
+     */
+    Chunk migrateChunk(UUID after, int limit);
+
+    /** The completion check: rows that still need migrating, counted once the last chunk is done. */
+    long remaining();
+
+    /**
+     * Called once the transaction of a chunk has committed. Rows written with plain SQL bypass the second-level
+     * cache, so a migration of rows of a cached entity evicts the changed ones here; before the commit another
+     * transaction could load the old row into the cache again.
+     */
+    default void committed(Chunk chunk) {
+    }
+
+    /** Called once it has completed on a shard. */
+    default void completed() {
+    }
+
+    /**
+     * @param lastId  the last id looked at, where the next chunk starts; null when there were no rows left
+     * @param scanned rows looked at
+     * @param changed ids of the rows changed
+     */
+    record Chunk(UUID lastId, int scanned, List<UUID> changed) {
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.example.dpd.migration;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Deletes the rows of a child table of users that belong to no user. The API only reaches addresses and phone
+ * numbers through their user, so these are invisible and never cleaned up otherwise; once none are left, user_id
+ * can be made NOT NULL. The deleted rows are evicted from the second-level cache of their entity.
+ */
+public class OrphanedRowsMigration implements OnlineMigration {
+
+    private final String name;
+    private final String table;
+    private final Class<?> entity;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public OrphanedRowsMigration(String name, String table, Class<?> entity, JdbcTemplate jdbcTemplate,
+                                 EntityManagerFactory entityManagerFactory) {
+        this.name = name;
+        this.table = table;
+        this.entity = entity;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public Chunk migrateChunk(UUID after, int limit) {
+        List<Object[]> orphaned = new ArrayList<>();
+        List<UUID> ids = jdbcTemplate.query(
+                "SELECT id, user_id IS NULL AS orphaned FROM " + table + " WHERE id > ? ORDER BY id LIMIT ?",
+                (rs, rowNum) -> {
+                    UUID id = rs.getObject("id", UUID.class);
+                    if (rs.getBoolean("orphaned")) {
+                        orphaned.add(new Object[]{id});
+                    }
+                    return id;
+                }, after, limit);
+        List<UUID> changed = new ArrayList<>();
+        if (!orphaned.isEmpty()) {
+            int[] counts = jdbcTemplate.batchUpdate("DELETE FROM " + table + " WHERE id = ? AND user_id IS NULL", orphaned);
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    changed.add((UUID) orphaned.get(i)[0]);
+                }
+            }
+        }
+        return new Chunk(ids.isEmpty() ? null : ids.get(ids.size() - 1), ids.size(), changed);
+    }
+
+    @Override
+    public void committed(Chunk chunk) {
+        chunk.changed().forEach(id -> entityManagerFactory.getCache().evict(entity, id));
+    }
+
+    @Override
+    public long remaining() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE user_id IS NULL", Long.class);
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.example.dpd.repository;
+
+import com.example.dpd.dto.AddressDTO;
+import com.example.dpd.dto.PhoneNumberDTO;
+import com.example.dpd.dto.UpdateUserDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.entity.BlindIndexListener;
+import com.example.dpd.entity.User;
+import com.example.dpd.entity.UserStatus;
+import com.example.dpd.security.PiiCipher;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Writes a PATCH that only carries scalar fields as one UPDATE of exactly those columns.
+ * <p>
+ * The statement locks the row, updates it and returns the old and new values together with the user's addresses
+ * and phone numbers, so the whole PATCH is a single round trip instead of a load, a dirty check and a full-row
+ * UPDATE. No returned row means no active user with that id; a depersonalised user is not updated. Because it
+ * bypasses Hibernate, this class does what the entity mapping would otherwise do: encrypts the PII columns, keeps
+ * the blind indexes in step and evicts the user from the second-level cache.
+ */
+@Repository
+public class ScalarUserPatcher {
+
+    private static final String[] USER_COLUMNS = {
+            "name", "email", "date_of_birth", "place_of_birth", "mother_maiden_name", "taj", "tax_id", "status"};
+    private static final TypeReference<Set<AddressDTO>> ADDRESSES = new TypeReference<>() { };
+    private static final TypeReference<Set<PhoneNumberDTO>> PHONE_NUMBERS = new TypeReference<>() { };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PiiCipher piiCipher;
+    private final ObjectMapper objectMapper;
+    private final EntityManagerFactory entityManagerFactory;
+
+    @Value("${dpd.scalar-patch.enabled:true}")
+    private boolean enabled;
+
+    public ScalarUserPatcher(JdbcTemplate jdbcTemplate, PiiCipher piiCipher, ObjectMapper objectMapper,
+                             EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.piiCipher = piiCipher;
+        this.objectMapper = objectMapper;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** True when the update sets at least one scalar field and leaves both collections alone. */
+    public static boolean isScalarOnly(UpdateUserDTO updateUserDTO) {
+        return updateUserDTO.getAddresses() == null && updateUserDTO.getPhoneNumbers() == null
+                && (updateUserDTO.getName() != null || updateUserDTO.getEmail() != null
+                || updateUserDTO.getDateOfBirth() != null || updateUserDTO.getPlaceOfBirth() != null
+                || updateUserDTO.getMotherMaidenName() != null || updateUserDTO.getTaj() != null
+                || updateUserDTO.getTaxId() != null);
+    }
+
+    /**
+     * Applies the non-null scalar fields of the update. Empty when no active user has this id.
+     */
+    public Optional<Patched> patch(UUID id, UpdateUserDTO updateUserDTO) {
+        List<String> assignments = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        set(assignments, args, "name", updateUserDTO.getName());
+        set(assignments, args, "email", updateUserDTO.getEmail());
+        set(assignments, args, "date_of_birth",
+                updateUserDTO.getDateOfBirth() == null ? null : Date.valueOf(updateUserDTO.getDateOfBirth()));
+        set(assignments, args, "place_of_birth", updateUserDTO.getPlaceOfBirth());
+        set(assignments, args, "mother_maiden_name", piiCipher.encrypt(updateUserDTO.getMotherMaidenName()));
+        set(assignments, args, "taj", piiCipher.encrypt(updateUserDTO.getTaj()));
+        set(assignments, args, "taj_bidx", piiCipher.blindIndex(BlindIndexListener.TAJ, updateUserDTO.getTaj()));
+        set(assignments, args, "tax_id", piiCipher.encrypt(updateUserDTO.getTaxId()));
+        set(assignments, args, "tax_id_bidx", piiCipher.blindIndex(BlindIndexListener.TAX_ID, updateUserDTO.getTaxId()));
+        if (assignments.isEmpty()) {
+            throw new IllegalArgumentException("Update carries no scalar field");
+        }
+        args.add(id);
+
+        List<Patched> rows = jdbcTemplate.query(sql(assignments), (rs, rowNum) -> new Patched(
+                mapUser(rs, "old_"),
+                mapUser(rs, "")), args.toArray());
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        entityManagerFactory.getCache().evict(User.class, id);
+        return Optional.of(rows.get(0));
+    }
+
+    private static void set(List<String> assignments, List<Object> args, String column, Object value) {
+        if (value != null) {
+            assignments.add(column + " = ?");
+            args.add(value);
+        }
+    }
+
+    private static String sql(List<String> assignments) {
+        StringJoiner returning = new StringJoiner(", ", "RETURNING ", "").add("u.id");
+        for (String column : USER_COLUMNS) {
+            returning.add("u." + column).add("old." + column + " AS old_" + column);
+        }
+        return "WITH changed AS ("
+                + "UPDATE users u SET " + String.join(", ", assignments) + " "
+                + "FROM (SELECT * FROM users WHERE id = ? AND status = 'ACTIVE' FOR UPDATE) old WHERE u.id = old.id "
+                + returning + ") "
+                + "SELECT c.*, "
+                + "(SELECT COALESCE(json_agg(json_build_object('id', a.id, 'postalCode', a.postal_code, 'city', a.city, "
+                + "'street', a.street, 'houseNumber', a.house_number, 'otherInfo', a.other_info)), '[]') "
+                + "FROM addresses a WHERE a.user_id = c.id) AS addresses, "
+                + "(SELECT COALESCE(json_agg(json_build_object('id', p.id, 'phoneNumber', p.phone_number)), '[]') "
+                + "FROM phone_numbers p WHERE p.user_id = c.id) AS phone_numbers "
+                + "FROM changed c";
+    }
+
+    private UserDTO mapUser(ResultSet rs, String prefix) throws SQLException {
+        UserDTO user = new UserDTO();
+        user.setId(rs.getObject("id", UUID.class));
+        user.setName(rs.getString(prefix + "name"));
+        user.setEmail(rs.getString(prefix + "email"));
+        Date dateOfBirth = rs.getDate(prefix + "date_of_birth");
+        user.setDateOfBirth(dateOfBirth == null ? null : dateOfBirth.toLocalDate());
+        user.setPlaceOfBirth(rs.getString(prefix + "place_of_birth"));
+        user.setMotherMaidenName(piiCipher.decrypt(rs.getString(prefix + "mother_maiden_name")));
+        user.setTaj(piiCipher.decrypt(rs.getString(prefix + "taj")));
+        user.setTaxId(piiCipher.decrypt(rs.getString(prefix + "tax_id")));
+        user.setStatus(UserStatus.valueOf(rs.getString(prefix + "status")));
+        try {
+            user.setAddresses(objectMapper.readValue(rs.getString("addresses"), ADDRESSES));
+            user.setPhoneNumbers(objectMapper.readValue(rs.getString("phone_numbers"), PHONE_NUMBERS));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read collections of user " + user.getId(), e);
+        }
+        return user;
+    }
+
+    /** The user before and after the update. */
+    public record Patched(UserDTO before, UserDTO after) {
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.example.dpd.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * users_archive, the cold table of depersonalised users. An erased user holds nothing but placeholders, so its id
+ * and dates are all that is kept; it reads as it did before it was archived, see UserServiceImp. Like users, every
+ * row lives on the shard of its id.
+ */
+@Repository
+public class UserArchive {
+
+    private static final String ARCHIVE_CHUNK = "WITH moved AS ("
+            + "DELETE FROM users WHERE id IN (SELECT id FROM users WHERE status = 'DEPERSONALISED' "
+            + "AND (depersonalised_at IS NULL OR depersonalised_at < ?) LIMIT ? FOR UPDATE SKIP LOCKED) "
+            + "RETURNING id, depersonalised_at) "
+            + "INSERT INTO users_archive (id, depersonalised_at, archived_at) "
+            + "SELECT id, depersonalised_at, now() FROM moved RETURNING id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserArchive(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public boolean contains(UUID id) {
+        return !jdbcTemplate.queryForList("SELECT 1 FROM users_archive WHERE id = ?", Integer.class, id).isEmpty();
+    }
+
+    /**
+     * Moves at most {@code limit} users depersonalised before the cutoff, or before depersonalised_at existed, from
+     * users to the archive, in the transaction of the caller, and returns their ids. Rows locked by a concurrent
+     * write are left for the next run.
+     */
+    public List<UUID> archiveChunk(OffsetDateTime cutoff, int limit) {
+        return jdbcTemplate.queryForList(ARCHIVE_CHUNK, UUID.class, cutoff, limit);
+    }
+
+}
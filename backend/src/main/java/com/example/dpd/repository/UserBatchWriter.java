@@ -0,0 +1,50 @@
+package com.example.dpd.repository;
+
+import com.example.dpd.entity.User;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * Persists freshly built users in a single transaction.
+ * <p>
+ * {@link UserRepository#save} merges entities with an assigned id, which costs a SELECT per row. New users
+ * always carry a fresh UUID, so they are persisted directly and the inserts are sent as JDBC batches.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserBatchWriter {
+
+    private final EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    @Transactional
+    public List<User> persistAll(List<User> users) {
+        for (int i = 0; i < users.size(); i++) {
+            entityManager.persist(users.get(i));
+            if ((i + 1) % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return users;
+    }
+
+    /**
+     * Sends the pending changes of the current transaction, batched by hibernate.jdbc.batch_size, and detaches
+     * everything so that the next batch starts from an empty persistence context.
+     */
+    public void flushAndClear() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+}
@@ -1,11 +1,88 @@
 package com.example.dpd.repository;
 
 import com.example.dpd.entity.User;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 public interface UserRepository extends JpaRepository<User, UUID> {
 
-}
+    List<User> findByTajBlindIndex(String tajBlindIndex);
+
+    List<User> findByTaxIdBlindIndex(String taxIdBlindIndex);
+
+    /* The status is a literal rather than a parameter so that the planner can use the partial index on active ids */
+
+    @Query("select u from User u where u.status = com.example.dpd.entity.UserStatus.ACTIVE")
+    List<User> findAllActive();
+
+    @Query("select u from User u order by u.id")
+    List<User> findFirstPage(Pageable pageable);
+
+    @Query("select u from User u where u.id > :after order by u.id")
+    List<User> findPageAfter(@Param("after") UUID after, Pageable pageable);
+
+    @Query("select u from User u where u.status = com.example.dpd.entity.UserStatus.ACTIVE order by u.id")
+    List<User> findFirstActivePage(Pageable pageable);
+
+    @Query("select u from User u where u.status = com.example.dpd.entity.UserStatus.ACTIVE and u.id > :after "
+            + "order by u.id")
+    List<User> findActivePageAfter(@Param("after") UUID after, Pageable pageable);
 
+    @Query("select distinct u from User u left join fetch u.addresses where u.id in :ids")
+    List<User> findWithAddressesByIdIn(@Param("ids") Collection<UUID> ids);
+
+    @Query("select distinct u from User u left join fetch u.phoneNumbers where u.id in :ids")
+    List<User> findWithPhoneNumbersByIdIn(@Param("ids") Collection<UUID> ids);
+
+    @Query("select distinct u from User u join u.phoneNumbers p where p.phoneNumberE164 = :number")
+    List<User> findByPhoneNumberE164(@Param("number") String number);
+
+    /** Active users only: addresses left behind on a depersonalised user do not make it a target. */
+    @Query("select distinct a.user.id from Address a where a.user.status = com.example.dpd.entity.UserStatus.ACTIVE "
+            + "and (:city is null or a.city = :city) and (:postalCode is null or a.postalCode = :postalCode) "
+            + "order by a.user.id")
+    List<UUID> findIdsByAddress(@Param("city") String city, @Param("postalCode") String postalCode, Pageable pageable);
+
+    /** Keyset page of users ordered by id, active ones only unless {@code includeDepersonalised}. */
+    default List<User> findPage(UUID after, int size, boolean includeDepersonalised) {
+        PageRequest page = PageRequest.of(0, size);
+        if (includeDepersonalised) {
+            return after == null ? findFirstPage(page) : findPageAfter(after, page);
+        }
+        return after == null ? findFirstActivePage(page) : findActivePageAfter(after, page);
+    }
+
+    /**
+     * {@link #findPage}, with addresses and phone numbers initialised in two extra queries instead of two per user.
+     * Must run inside a transaction so that all three queries share one persistence context.
+     */
+    default List<User> findPageWithCollections(UUID after, int size, boolean includeDepersonalised) {
+        List<User> users = findPage(after, size, includeDepersonalised);
+        if (!users.isEmpty()) {
+            List<UUID> ids = users.stream().map(User::getId).toList();
+            findWithAddressesByIdIn(ids);
+            findWithPhoneNumbersByIdIn(ids);
+        }
+        return users;
+    }
+
+    /**
+     * The users with these ids, with addresses and phone numbers initialised, in two queries however many ids there
+     * are. Must run inside a transaction, like {@link #findPageWithCollections}.
+     */
+    default List<User> findAllWithCollectionsByIdIn(Collection<UUID> ids) {
+        List<User> users = findWithAddressesByIdIn(ids);
+        if (!users.isEmpty()) {
+            findWithPhoneNumbersByIdIn(users.stream().map(User::getId).toList());
+        }
+        return users;
+    }
+
+}
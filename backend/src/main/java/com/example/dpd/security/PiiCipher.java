@@ -0,0 +1,168 @@
+package com.example.dpd.security;
+
+import com.example.dpd.config.PiiProperties;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * AES-GCM encryption of PII columns and HMAC-SHA256 blind indexes for exact-match lookups on them.
+ * <p>
+ * Stored values look like {@code v<keyVersion>:<base64(iv || ciphertext || tag)>}, so rows written with an older
+ * key remain readable while they are re-encrypted. Values without that prefix are legacy plaintext and are
+ * returned unchanged.
+ */
+@Component
+public class PiiCipher {
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+
+    private final Map<Integer, SecretKeySpec> keys = new HashMap<>();
+    private final int currentKeyVersion;
+    private final String currentPrefix;
+    private final SecretKeySpec blindIndexKey;
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(() -> newInstance(() -> Cipher.getInstance(TRANSFORMATION)));
+    private final ThreadLocal<Mac> macs;
+
+    public PiiCipher(PiiProperties properties) {
+        properties.getKeys().forEach((version, key) ->
+                keys.put(version, new SecretKeySpec(decodeKey(key, 32, "dpd.pii.keys." + version), "AES")));
+        if (!keys.containsKey(properties.getCurrentKeyVersion())) {
+            throw new IllegalStateException("No key configured for dpd.pii.current-key-version "
+                    + properties.getCurrentKeyVersion());
+        }
+        this.currentKeyVersion = properties.getCurrentKeyVersion();
+        this.currentPrefix = "v" + currentKeyVersion + ":";
+        this.blindIndexKey = new SecretKeySpec(decodeKey(properties.getBlindIndexKey(), 32, "dpd.pii.blind-index-key"), "HmacSHA256");
+        this.macs = ThreadLocal.withInitial(() -> newInstance(() -> {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(blindIndexKey);
+            return mac;
+        }));
+    }
+
+    public String encrypt(String plaintext) {
+        if (plaintext == null) {
+            return null;
+        }
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        try {
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.ENCRYPT_MODE, keys.get(currentKeyVersion), new GCMParameterSpec(TAG_BITS, iv));
+            byte[] input = plaintext.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer output = ByteBuffer.allocate(IV_LENGTH + cipher.getOutputSize(input.length));
+            output.put(iv);
+            cipher.doFinal(ByteBuffer.wrap(input), output);
+            return currentPrefix + Base64.getEncoder().encodeToString(output.array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PII encryption failed", e);
+        }
+    }
+
+    public String decrypt(String stored) {
+        int keyVersion = keyVersion(stored);
+        if (keyVersion < 0) {
+            return stored;
+        }
+        SecretKeySpec key = keys.get(keyVersion);
+        if (key == null) {
+            throw new IllegalStateException("No key configured for PII key version " + keyVersion);
+        }
+        byte[] payload = Base64.getDecoder().decode(stored.substring(stored.indexOf(':') + 1));
+        try {
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, payload, 0, IV_LENGTH));
+            return new String(cipher.doFinal(payload, IV_LENGTH, payload.length - IV_LENGTH), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PII decryption failed", e);
+        }
+    }
+
+    /** The prefix of values encrypted with the current key, without its colon, e.g. {@code v2}. */
+    public String currentKeyVersion() {
+        return "v" + currentKeyVersion;
+    }
+
+    /**
+     * Whether a stored value is already encrypted with the current key (null counts as current).
+     */
+    public boolean isCurrent(String stored) {
+        return stored == null || stored.startsWith(currentPrefix);
+    }
+
+    /**
+     * Deterministic keyed hash of a value for equality lookups. The column name is mixed in so the same value
+     * in two columns yields unrelated indexes; whitespace and dashes are ignored so that formatted input matches.
+     */
+    public String blindIndex(String column, String plaintext) {
+        if (plaintext == null) {
+            return null;
+        }
+        StringBuilder normalised = new StringBuilder(column.length() + 1 + plaintext.length()).append(column).append(':');
+        for (int i = 0; i < plaintext.length(); i++) {
+            char c = plaintext.charAt(i);
+            if (!Character.isWhitespace(c) && c != '-') {
+                normalised.append(Character.toUpperCase(c));
+            }
+        }
+        byte[] hash = macs.get().doFinal(normalised.toString().getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    private static int keyVersion(String stored) {
+        if (stored == null || stored.length() < 3 || stored.charAt(0) != 'v') {
+            return -1;
+        }
+        int version = 0;
+        for (int i = 1; i < stored.length(); i++) {
+            char c = stored.charAt(i);
+            if (c == ':') {
+                return i > 1 ? version : -1;
+            }
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            version = version * 10 + (c - '0');
+        }
+        return -1;
+    }
+
+    private static byte[] decodeKey(String key, int length, String property) {
+        if (key == null || key.isBlank()) {
+            throw new IllegalStateException(property + " is not configured");
+        }
+        byte[] decoded = Base64.getDecoder().decode(key);
+        if (decoded.length != length) {
+            throw new IllegalStateException(property + " must be a base64 encoded " + (length * 8) + "-bit key");
+        }
+        return decoded;
+    }
+
+    private static <T> T newInstance(CryptoSupplier<T> supplier) {
+        try {
+            return supplier.get();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface CryptoSupplier<T> {
+        T get() throws GeneralSecurityException;
+    }
+
+}
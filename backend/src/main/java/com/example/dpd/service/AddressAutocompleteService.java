@@ -0,0 +1,12 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.AddressField;
+import com.example.dpd.dto.AutocompleteIndexStatsDTO;
+import com.example.dpd.dto.AutocompleteSuggestionDTO;
+
+import java.util.List;
+
+public interface AddressAutocompleteService {
+    List<AutocompleteSuggestionDTO> suggest(AddressField field, String prefix, Integer limit);
+    List<AutocompleteIndexStatsDTO> getIndexStats();
+}
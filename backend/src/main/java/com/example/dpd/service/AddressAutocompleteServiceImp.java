@@ -0,0 +1,116 @@
+package com.example.dpd.service;
+
+import com.example.dpd.config.AutocompleteProperties;
+import com.example.dpd.dto.*;
+import com.example.dpd.event.UserChangedEvent;
+import com.example.dpd.exception.BadRequestException;
+import com.example.dpd.shard.Shards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.PreparedStatement;
+import java.util.*;
+
+/**
+ * City and street autocompletion served from memory.
+ * <p>
+ * One {@link PrefixIndex} per field is built from the addresses table at startup and then follows every committed
+ * user change: the addresses a user had before are taken out, the ones after put in. Suggestions never touch the
+ * database, so they run on the servlet thread. Ranking is all the counts are used for, so the nightly rebuild is
+ * enough to correct the little drift writes racing with a rebuild can leave behind.
+ */
+@Slf4j
+@Service
+public class AddressAutocompleteServiceImp implements AddressAutocompleteService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AutocompleteProperties properties;
+    private final Shards shards;
+    private volatile Map<AddressField, PrefixIndex> indexes = emptyIndexes();
+
+    public AddressAutocompleteServiceImp(JdbcTemplate jdbcTemplate, AutocompleteProperties properties, Shards shards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.shards = shards;
+    }
+
+    public List<AutocompleteSuggestionDTO> suggest(AddressField field, String prefix, Integer limit) {
+        int size = limit == null ? properties.getDefaultLimit() : limit;
+        if (size < 1 || size > properties.getMaxLimit()) {
+            throw new BadRequestException("limit must be between 1 and " + properties.getMaxLimit());
+        }
+        return indexes.get(field).suggest(prefix, size);
+    }
+
+    public List<AutocompleteIndexStatsDTO> getIndexStats() {
+        List<AutocompleteIndexStatsDTO> stats = new ArrayList<>();
+        indexes.forEach((field, index) -> {
+            AutocompleteIndexStatsDTO dto = new AutocompleteIndexStatsDTO();
+            dto.setField(field);
+            dto.setDistinctValues(index.distinctValues());
+            dto.setAddresses(index.addresses());
+            dto.setEstimatedBytes(index.estimatedBytes());
+            stats.add(dto);
+        });
+        return stats;
+    }
+
+    /** Applied after commit only, so rolled-back writes never reach the index. */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        Map<AddressField, PrefixIndex> current = indexes;
+        apply(current, event.getBefore(), PrefixIndex::remove);
+        apply(current, event.getAfter(), PrefixIndex::add);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${dpd.autocomplete.rebuild-cron:0 45 3 * * *}")
+    public synchronized void rebuild() {
+        Map<AddressField, PrefixIndex> rebuilt = emptyIndexes();
+        // Each shard in its read-only transaction: the driver only streams with a fetch size inside one, otherwise
+        // it would load every address. The indexes take concurrent adds.
+        shards.scatter(() -> {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement("SELECT city, street FROM addresses");
+                statement.setFetchSize(properties.getFetchSize());
+                return statement;
+            }, rs -> {
+                rebuilt.get(AddressField.CITY).add(rs.getString("city"));
+                rebuilt.get(AddressField.STREET).add(rs.getString("street"));
+            });
+            return null;
+        });
+        indexes = rebuilt;
+        log.info("Address autocomplete index built: {} cities, {} streets",
+                rebuilt.get(AddressField.CITY).distinctValues(), rebuilt.get(AddressField.STREET).distinctValues());
+    }
+
+    private static void apply(Map<AddressField, PrefixIndex> indexes, UserDTO user, IndexUpdate update) {
+        if (user == null || user.getAddresses() == null) {
+            return;
+        }
+        for (AddressDTO address : user.getAddresses()) {
+            update.apply(indexes.get(AddressField.CITY), address.getCity());
+            update.apply(indexes.get(AddressField.STREET), address.getStreet());
+        }
+    }
+
+    private static Map<AddressField, PrefixIndex> emptyIndexes() {
+        Map<AddressField, PrefixIndex> indexes = new EnumMap<>(AddressField.class);
+        for (AddressField field : AddressField.values()) {
+            indexes.put(field, new PrefixIndex());
+        }
+        return indexes;
+    }
+
+    @FunctionalInterface
+    private interface IndexUpdate {
+        void apply(PrefixIndex index, String value);
+    }
+
+}
@@ -0,0 +1,13 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.Bulkhead;
+import com.example.dpd.dto.BulkheadStatsDTO;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+public interface BulkheadService {
+    <T> CompletableFuture<T> submit(Bulkhead bulkhead, Supplier<T> work);
+    List<BulkheadStatsDTO> getStats();
+}
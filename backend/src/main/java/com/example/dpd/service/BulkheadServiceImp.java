@@ -0,0 +1,167 @@
+package com.example.dpd.service;
+
+import com.example.dpd.audit.AuditActor;
+import com.example.dpd.config.AsyncProperties;
+import com.example.dpd.dto.Bulkhead;
+import com.example.dpd.dto.BulkheadStatsDTO;
+import com.example.dpd.exception.ServiceUnavailableException;
+import com.example.dpd.sql.RequestSqlStats;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs controller work on a bounded executor per {@link Bulkhead}.
+ * <p>
+ * Each operation class has its own threads and queue, so a burst of slow writes or a large bulk update can only
+ * fill its own queue while reads keep their threads. A full queue is answered with 503 at once instead of holding a
+ * servlet thread. An operation still waiting in the queue at its timeout is dropped and answered with 503, so the
+ * client knows it never ran. A read that already started is answered with 503 as well and left to finish in the
+ * background. A write that already started is not timed out: it may commit, and a 503 would make the client retry a
+ * write that went through, so it is answered with its outcome however long it takes.
+ * <p>
+ * The worker binds an EntityManager for the duration of the operation, like open-in-view does for the servlet
+ * thread, so the services behave the same in both modes.
+ */
+@Service
+public class BulkheadServiceImp implements BulkheadService {
+
+    private final AsyncProperties properties;
+    private final EntityManagerFactory entityManagerFactory;
+    private final Map<Bulkhead, Pool> pools = new EnumMap<>(Bulkhead.class);
+    private final ScheduledThreadPoolExecutor timeouts;
+
+    public BulkheadServiceImp(AsyncProperties properties, EntityManagerFactory entityManagerFactory) {
+        this.properties = properties;
+        this.entityManagerFactory = entityManagerFactory;
+        for (Bulkhead bulkhead : Bulkhead.values()) {
+            pools.put(bulkhead, new Pool(bulkhead, properties.pool(bulkhead)));
+        }
+        this.timeouts = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "bulkhead-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Most operations finish long before their timeout; do not keep the cancelled timers around
+        this.timeouts.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pools.values().forEach(pool -> pool.executor.shutdownNow());
+        timeouts.shutdownNow();
+    }
+
+    public <T> CompletableFuture<T> submit(Bulkhead bulkhead, Supplier<T> work) {
+        if (!properties.isEnabled()) {
+            return CompletableFuture.completedFuture(work.get());
+        }
+        Pool pool = pools.get(bulkhead);
+        Supplier<T> requestWork = AuditActor.propagate(RequestSqlStats.propagate(work));
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // Set by whichever comes first: the worker starting the operation or the timeout dropping it
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<?> task;
+        try {
+            task = pool.executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    result.complete(inPersistenceContext(requestWork));
+                } catch (RuntimeException | Error e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    pool.completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pool.rejected.increment();
+            throw new ServiceUnavailableException("Too many " + bulkhead.name().toLowerCase() + " requests queued, try again later");
+        }
+        ScheduledFuture<?> timeout = timeouts.schedule(() -> {
+            if (claimed.compareAndSet(false, true)) {
+                // Free the queue slot before answering; a cancelled task would otherwise hold it until a worker polls it
+                if (task.cancel(false) && task instanceof Runnable runnable) {
+                    pool.executor.remove(runnable);
+                }
+            } else if (bulkhead != Bulkhead.READ) {
+                // A started write commits whatever the client is told, so it is answered once it has
+                return;
+            }
+            if (result.completeExceptionally(new ServiceUnavailableException(
+                    bulkhead.name().toLowerCase() + " request timed out after " + pool.timeoutMillis + " ms"))) {
+                pool.timedOut.increment();
+            }
+        }, pool.timeoutMillis, TimeUnit.MILLISECONDS);
+        result.whenComplete((value, failure) -> timeout.cancel(false));
+        return result;
+    }
+
+    public List<BulkheadStatsDTO> getStats() {
+        List<BulkheadStatsDTO> stats = new ArrayList<>();
+        for (Pool pool : pools.values()) {
+            BulkheadStatsDTO dto = new BulkheadStatsDTO();
+            dto.setBulkhead(pool.bulkhead);
+            dto.setThreads(pool.executor.getMaximumPoolSize());
+            dto.setActiveThreads(pool.executor.getActiveCount());
+            dto.setQueued(pool.executor.getQueue().size());
+            dto.setQueueCapacity(pool.executor.getQueue().size() + pool.executor.getQueue().remainingCapacity());
+            dto.setTimeoutMillis(pool.timeoutMillis);
+            dto.setCompleted(pool.completed.sum());
+            dto.setRejected(pool.rejected.sum());
+            dto.setTimedOut(pool.timedOut.sum());
+            stats.add(dto);
+        }
+        return stats;
+    }
+
+    private <T> T inPersistenceContext(Supplier<T> work) {
+        if (TransactionSynchronizationManager.hasResource(entityManagerFactory)) {
+            return work.get();
+        }
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+        try {
+            return work.get();
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            EntityManagerFactoryUtils.closeEntityManager(entityManager);
+        }
+    }
+
+    private static final class Pool {
+
+        private final Bulkhead bulkhead;
+        private final ThreadPoolExecutor executor;
+        private final long timeoutMillis;
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder timedOut = new LongAdder();
+
+        private Pool(Bulkhead bulkhead, AsyncProperties.Pool settings) {
+            this.bulkhead = bulkhead;
+            this.timeoutMillis = settings.getTimeout().toMillis();
+            String name = "bulkhead-" + bulkhead.name().toLowerCase();
+            this.executor = new ThreadPoolExecutor(settings.getThreads(), settings.getThreads(),
+                    0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(settings.getQueueCapacity()),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+
+    }
+
+}
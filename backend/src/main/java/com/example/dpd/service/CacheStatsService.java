@@ -0,0 +1,9 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.CacheRegionStatsDTO;
+
+import java.util.List;
+
+public interface CacheStatsService {
+    List<CacheRegionStatsDTO> getRegionStats();
+}
@@ -0,0 +1,44 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.CacheRegionStatsDTO;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hit ratios of the Hibernate second-level cache regions, counted since startup.
+ */
+@Service
+public class CacheStatsServiceImp implements CacheStatsService {
+
+    private final Statistics statistics;
+
+    public CacheStatsServiceImp(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    public List<CacheRegionStatsDTO> getRegionStats() {
+        return Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(region -> toDTO(region, statistics.getDomainDataRegionStatistics(region)))
+                .toList();
+    }
+
+    private static CacheRegionStatsDTO toDTO(String region, CacheRegionStatistics regionStatistics) {
+        CacheRegionStatsDTO dto = new CacheRegionStatsDTO();
+        dto.setRegion(region);
+        dto.setHitCount(regionStatistics.getHitCount());
+        dto.setMissCount(regionStatistics.getMissCount());
+        dto.setPutCount(regionStatistics.getPutCount());
+        dto.setElementCountInMemory(regionStatistics.getElementCountInMemory());
+        long lookups = regionStatistics.getHitCount() + regionStatistics.getMissCount();
+        dto.setHitRatio(lookups == 0 ? 0 : (double) regionStatistics.getHitCount() / lookups);
+        return dto;
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.example.dpd.service;
+
+import com.example.dpd.entity.User;
+import com.example.dpd.migration.OnlineMigration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Marks the users depersonalised before users.status existed, only recognisable by their placeholder name, as
+ * DEPERSONALISED. Walks all users by id rather than updating them in one statement, which would lock every matching
+ * row until it is done. Cached users are evicted after each chunk.
+ */
+@Component
+public class DepersonalisedStatusBackfill implements OnlineMigration {
+
+    private static final String ERASED = "name = '[DELETED]' AND status = 'ACTIVE'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public DepersonalisedStatusBackfill(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public String name() {
+        return "users-depersonalised-status";
+    }
+
+    @Override
+    public Chunk migrateChunk(UUID after, int limit) {
+        List<Object[]> erased = new ArrayList<>();
+        List<UUID> ids = jdbcTemplate.query(
+                "SELECT id, " + ERASED + " AS erased FROM users WHERE id > ? ORDER BY id LIMIT ?",
+                (rs, rowNum) -> {
+                    UUID id = rs.getObject("id", UUID.class);
+                    if (rs.getBoolean("erased")) {
+                        erased.add(new Object[]{id});
+                    }
+                    return id;
+                }, after, limit);
+        List<UUID> changed = new ArrayList<>();
+        if (!erased.isEmpty()) {
+            int[] counts = jdbcTemplate.batchUpdate(
+                    "UPDATE users SET status = 'DEPERSONALISED' WHERE id = ? AND " + ERASED, erased);
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    changed.add((UUID) erased.get(i)[0]);
+                }
+            }
+        }
+        return new Chunk(ids.isEmpty() ? null : ids.get(ids.size() - 1), ids.size(), changed);
+    }
+
+    @Override
+    public void committed(Chunk chunk) {
+        chunk.changed().forEach(id -> entityManagerFactory.getCache().evict(User.class, id));
+    }
+
+    @Override
+    public long remaining() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE " + ERASED, Long.class);
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.DuplicateClusterDTO;
+import com.example.dpd.dto.DuplicateClusterStatus;
+import com.example.dpd.dto.DuplicateRunDTO;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface DuplicateDetectionService {
+    DuplicateRunDTO startRun();
+    Optional<DuplicateRunDTO> getLastRun();
+    List<DuplicateClusterDTO> getClusters(DuplicateClusterStatus status, UUID after, int limit);
+    DuplicateClusterDTO reviewCluster(UUID id, DuplicateClusterStatus status);
+}
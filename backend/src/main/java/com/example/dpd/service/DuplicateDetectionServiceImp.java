@@ -0,0 +1,426 @@
+package com.example.dpd.service;
+
+import com.example.dpd.config.DuplicateDetectionProperties;
+import com.example.dpd.dto.DuplicateClusterDTO;
+import com.example.dpd.dto.DuplicateClusterStatus;
+import com.example.dpd.dto.DuplicateRunDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.exception.ResourceNotFoundException;
+import com.example.dpd.repository.UserRepository;
+import com.example.dpd.shard.Shards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Finds users that are probably the same person.
+ * <p>
+ * Every user gets a handful of blocking keys (normalised name + date of birth, TAJ and tax id blind indexes, phone
+ * numbers) in a staging table. Only users sharing a key are compared, and oversized blocks are skipped, so the
+ * number of comparisons grows with the number of users rather than its square. Candidate pairs are streamed from
+ * the database and scored in parallel batches; matching pairs are merged into clusters with a union-find and
+ * stored for review.
+ * <p>
+ * The staging table and the clusters live on the home shard; the keys of users on other shards are copied there.
+ */
+@Slf4j
+@Service
+public class DuplicateDetectionServiceImp implements DuplicateDetectionService {
+
+    private static final UUID MIN_ID = new UUID(0L, 0L);
+
+    private static final String SELECT_CLUSTERS =
+            "SELECT id, status, max_score, created_at, reviewed_at FROM duplicate_clusters ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final UserRepository userRepository;
+    private final UserMapper userMapper;
+    private final DuplicateDetectionProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final Shards shards;
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "duplicate-detection");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService scorers;
+    private final int scoringThreads;
+    private volatile DuplicateRunDTO lastRun;
+
+    public DuplicateDetectionServiceImp(JdbcTemplate jdbcTemplate, UserRepository userRepository, UserMapper userMapper,
+                                        DuplicateDetectionProperties properties,
+                                        PlatformTransactionManager transactionManager, Shards shards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.userRepository = userRepository;
+        this.userMapper = userMapper;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = shards;
+        this.scoringThreads = Math.max(1, properties.getScoringThreads());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.scorers = Executors.newFixedThreadPool(scoringThreads, runnable -> {
+            Thread thread = new Thread(runnable, "duplicate-scorer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        runner.shutdownNow();
+        scorers.shutdownNow();
+    }
+
+    public synchronized DuplicateRunDTO startRun() {
+        if (lastRun != null && "RUNNING".equals(lastRun.getStatus())) {
+            return lastRun;
+        }
+        DuplicateRunDTO run = new DuplicateRunDTO();
+        run.setId(UUID.randomUUID());
+        run.setStatus("RUNNING");
+        run.setStartedAt(Instant.now());
+        lastRun = run;
+        runner.submit(() -> execute(run));
+        return run;
+    }
+
+    public Optional<DuplicateRunDTO> getLastRun() {
+        return Optional.ofNullable(lastRun);
+    }
+
+    @Transactional(readOnly = true)
+    public List<DuplicateClusterDTO> getClusters(DuplicateClusterStatus status, UUID after, int limit) {
+        return withMembers(jdbcTemplate.query(SELECT_CLUSTERS + "WHERE status = ? AND id > ? ORDER BY id LIMIT ?",
+                this::mapCluster, status.name(), after == null ? MIN_ID : after, limit));
+    }
+
+    @Transactional
+    public DuplicateClusterDTO reviewCluster(UUID id, DuplicateClusterStatus status) {
+        int updated = jdbcTemplate.update("UPDATE duplicate_clusters SET status = ?, reviewed_at = ? WHERE id = ?",
+                status.name(), status == DuplicateClusterStatus.PENDING ? null : Timestamp.from(Instant.now()), id);
+        if (updated == 0) {
+            throw new ResourceNotFoundException("Duplicate cluster not found");
+        }
+        return withMembers(jdbcTemplate.query(SELECT_CLUSTERS + "WHERE id = ?", this::mapCluster, id)).get(0);
+    }
+
+    private DuplicateClusterDTO mapCluster(ResultSet rs, int rowNum) throws SQLException {
+        DuplicateClusterDTO cluster = new DuplicateClusterDTO();
+        cluster.setId(rs.getObject("id", UUID.class));
+        cluster.setStatus(DuplicateClusterStatus.valueOf(rs.getString("status")));
+        cluster.setMaxScore(rs.getDouble("max_score"));
+        cluster.setCreatedAt(rs.getTimestamp("created_at").toInstant());
+        Timestamp reviewedAt = rs.getTimestamp("reviewed_at");
+        cluster.setReviewedAt(reviewedAt == null ? null : reviewedAt.toInstant());
+        return cluster;
+    }
+
+    private List<DuplicateClusterDTO> withMembers(List<DuplicateClusterDTO> clusters) {
+        if (clusters.isEmpty()) {
+            return clusters;
+        }
+        Map<UUID, List<UUID>> memberIds = new HashMap<>();
+        namedJdbcTemplate.query("SELECT cluster_id, user_id FROM duplicate_cluster_members WHERE cluster_id IN (:ids)",
+                new MapSqlParameterSource("ids", clusters.stream().map(DuplicateClusterDTO::getId).toList()),
+                rs -> {
+                    memberIds.computeIfAbsent(rs.getObject("cluster_id", UUID.class), id -> new ArrayList<>())
+                            .add(rs.getObject("user_id", UUID.class));
+                });
+        List<UUID> userIds = memberIds.values().stream().flatMap(List::stream).distinct().toList();
+        Map<UUID, UserDTO> users = new HashMap<>();
+        shards.scatter(shards.groupByShard(userIds, Function.identity()), ids -> {
+            userRepository.findWithPhoneNumbersByIdIn(ids);
+            return userRepository.findWithAddressesByIdIn(ids).stream().map(userMapper::convertToDTO).toList();
+        }).forEach(part -> part.forEach(user -> users.put(user.getId(), user)));
+        clusters.forEach(cluster -> cluster.setMembers(memberIds.getOrDefault(cluster.getId(), List.of()).stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .toList()));
+        return clusters;
+    }
+
+    private void execute(DuplicateRunDTO run) {
+        UUID runId = run.getId();
+        try {
+            writeBlockingKeys(run);
+            Map<UUID, UUID> reviewed = loadReviewedMemberships();
+            List<ScoredPair> matches = scoreCandidatePairs(run, reviewed);
+            run.setMatchedPairs(matches.size());
+            run.setClusters(writeClusters(runId, matches));
+            run.setStatus("COMPLETED");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(run, "Interrupted");
+        } catch (ExecutionException e) {
+            log.error("Duplicate detection run {} failed", runId, e.getCause());
+            fail(run, e.getCause().getMessage());
+        } catch (RuntimeException e) {
+            log.error("Duplicate detection run {} failed", runId, e);
+            fail(run, e.getMessage());
+        } finally {
+            jdbcTemplate.update("DELETE FROM duplicate_blocking_keys WHERE run_id = ?", runId);
+            run.setFinishedAt(Instant.now());
+        }
+    }
+
+    private static void fail(DuplicateRunDTO run, String reason) {
+        run.setStatus("FAILED");
+        run.setFailureReason(reason);
+    }
+
+    private void writeBlockingKeys(DuplicateRunDTO run) {
+        shards.forEachShard(shard -> writeBlockingKeys(run, shard));
+        shards.on(Shards.HOME, () -> {
+            jdbcTemplate.execute("ANALYZE duplicate_blocking_keys");
+            return null;
+        });
+    }
+
+    /** Runs with the shard bound; the staging table itself is written on the home shard. */
+    private void writeBlockingKeys(DuplicateRunDTO run, int shard) {
+        UUID runId = run.getId();
+        // Name keys need Java-side normalisation; they are computed page by page
+        UUID after = MIN_ID;
+        while (true) {
+            List<Object[]> keys = new ArrayList<>();
+            List<UUID> ids = jdbcTemplate.query("SELECT id, name, date_of_birth FROM users WHERE id > ? ORDER BY id LIMIT ?",
+                    (rs, rowNum) -> {
+                        UUID id = rs.getObject("id", UUID.class);
+                        String name = DuplicateScorer.normaliseName(rs.getString("name"));
+                        LocalDate dateOfBirth = rs.getObject("date_of_birth", LocalDate.class);
+                        if (name != null && dateOfBirth != null) {
+                            keys.add(new Object[]{runId, truncate("N:" + name + "|" + dateOfBirth), id});
+                        }
+                        return id;
+                    }, after, properties.getPageSize());
+            insertKeys(keys);
+            run.setUsersScanned(run.getUsersScanned() + ids.size());
+            if (ids.size() < properties.getPageSize()) {
+                break;
+            }
+            after = ids.get(ids.size() - 1);
+        }
+
+        // Identifier and phone keys are derived entirely in the database, and on the home shard also stored there
+        copyKeys(shard, runId, "SELECT ?, 'T:' || taj_bidx, id FROM users WHERE taj_bidx IS NOT NULL");
+        copyKeys(shard, runId, "SELECT ?, 'X:' || tax_id_bidx, id FROM users WHERE tax_id_bidx IS NOT NULL");
+        copyKeys(shard, runId, "SELECT DISTINCT ?, 'P:' || RIGHT(digits, 9), user_id FROM "
+                + "(SELECT user_id, REGEXP_REPLACE(phone_number, '\\D', '', 'g') AS digits FROM phone_numbers) p "
+                + "WHERE user_id IS NOT NULL AND LENGTH(digits) >= 6");
+    }
+
+    private void copyKeys(int shard, UUID runId, String select) {
+        if (shard == Shards.HOME) {
+            jdbcTemplate.update("INSERT INTO duplicate_blocking_keys (run_id, block_key, user_id) " + select, runId);
+            return;
+        }
+        List<Object[]> keys = jdbcTemplate.query(select,
+                (rs, rowNum) -> new Object[]{runId, rs.getString(2), rs.getObject(3, UUID.class)}, runId);
+        for (int from = 0; from < keys.size(); from += properties.getPageSize()) {
+            insertKeys(keys.subList(from, Math.min(from + properties.getPageSize(), keys.size())));
+        }
+    }
+
+    private void insertKeys(List<Object[]> keys) {
+        if (!keys.isEmpty()) {
+            shards.on(Shards.HOME, () -> jdbcTemplate.batchUpdate(
+                    "INSERT INTO duplicate_blocking_keys (run_id, block_key, user_id) VALUES (?, ?, ?)", keys));
+        }
+    }
+
+    private Map<UUID, UUID> loadReviewedMemberships() {
+        Map<UUID, UUID> clusterByUser = new HashMap<>();
+        jdbcTemplate.query("SELECT m.user_id, m.cluster_id FROM duplicate_cluster_members m "
+                        + "JOIN duplicate_clusters c ON c.id = m.cluster_id WHERE c.status <> 'PENDING'",
+                rs -> {
+                    clusterByUser.put(rs.getObject("user_id", UUID.class), rs.getObject("cluster_id", UUID.class));
+                });
+        return clusterByUser;
+    }
+
+    private List<ScoredPair> scoreCandidatePairs(DuplicateRunDTO run, Map<UUID, UUID> reviewed)
+            throws InterruptedException, ExecutionException {
+        Queue<ScoredPair> matches = new ConcurrentLinkedQueue<>();
+        // One batch waiting per scorer; the scorers, not the cursor, set the pace
+        Semaphore inFlight = new Semaphore(scoringThreads * 2);
+        List<Future<?>> pending = new ArrayList<>();
+        AtomicLong candidates = new AtomicLong();
+
+        // Streaming the pairs needs a cursor, hence a transaction around the query
+        transactionTemplate.executeWithoutResult(tx -> {
+            List<UUID[]> batch = new ArrayList<>(properties.getScoringBatchSize());
+            jdbcTemplate.query(con -> {
+                var statement = con.prepareStatement("WITH blocks AS ("
+                        + " SELECT block_key FROM duplicate_blocking_keys WHERE run_id = ?"
+                        + " GROUP BY block_key HAVING COUNT(*) BETWEEN 2 AND ?)"
+                        + " SELECT DISTINCT a.user_id AS a, b.user_id AS b"
+                        + " FROM duplicate_blocking_keys a JOIN blocks k ON k.block_key = a.block_key"
+                        + " JOIN duplicate_blocking_keys b ON b.run_id = a.run_id AND b.block_key = a.block_key AND a.user_id < b.user_id"
+                        + " WHERE a.run_id = ?");
+                statement.setObject(1, run.getId());
+                statement.setInt(2, properties.getMaxBlockSize());
+                statement.setObject(3, run.getId());
+                statement.setFetchSize(properties.getScoringBatchSize());
+                return statement;
+            }, rs -> {
+                UUID a = rs.getObject("a", UUID.class);
+                UUID b = rs.getObject("b", UUID.class);
+                UUID reviewedA = reviewed.get(a);
+                if (reviewedA != null && reviewedA.equals(reviewed.get(b))) {
+                    return;
+                }
+                candidates.incrementAndGet();
+                batch.add(new UUID[]{a, b});
+                if (batch.size() == properties.getScoringBatchSize()) {
+                    pending.add(submitBatch(new ArrayList<>(batch), matches, inFlight));
+                    batch.clear();
+                }
+            });
+            if (!batch.isEmpty()) {
+                pending.add(submitBatch(batch, matches, inFlight));
+            }
+        });
+        for (Future<?> future : pending) {
+            future.get();
+        }
+        run.setCandidatePairs(candidates.get());
+        return new ArrayList<>(matches);
+    }
+
+    private Future<?> submitBatch(List<UUID[]> pairs, Queue<ScoredPair> matches, Semaphore inFlight) {
+        inFlight.acquireUninterruptibly();
+        return scorers.submit(() -> {
+            try {
+                Map<UUID, DuplicateScorer.Person> people = loadPeople(pairs.stream()
+                        .flatMap(pair -> Arrays.stream(pair))
+                        .collect(Collectors.toSet()));
+                for (UUID[] pair : pairs) {
+                    DuplicateScorer.Person a = people.get(pair[0]);
+                    DuplicateScorer.Person b = people.get(pair[1]);
+                    if (a == null || b == null) {
+                        continue;
+                    }
+                    double score = DuplicateScorer.score(a, b);
+                    if (score >= properties.getMatchThreshold()) {
+                        matches.add(new ScoredPair(pair[0], pair[1], score));
+                    }
+                }
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private Map<UUID, DuplicateScorer.Person> loadPeople(Set<UUID> ids) {
+        Map<UUID, DuplicateScorer.Person> people = new HashMap<>();
+        shards.groupByShard(ids, Function.identity()).forEach((shard, shardIds) -> shards.on(shard, () -> {
+            loadPeopleOnShard(shardIds).forEach(person -> people.put(person.getId(), person));
+            return null;
+        }));
+        return people;
+    }
+
+    private List<DuplicateScorer.Person> loadPeopleOnShard(List<UUID> ids) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource("ids", ids);
+        Map<UUID, Set<String>> phones = new HashMap<>();
+        namedJdbcTemplate.query("SELECT user_id, phone_number FROM phone_numbers WHERE user_id IN (:ids)", parameters, rs -> {
+            String key = DuplicateScorer.phoneKey(rs.getString("phone_number"));
+            if (key != null) {
+                phones.computeIfAbsent(rs.getObject("user_id", UUID.class), id -> new HashSet<>()).add(key);
+            }
+        });
+        return namedJdbcTemplate.query("SELECT id, name, date_of_birth, place_of_birth, taj_bidx, tax_id_bidx "
+                        + "FROM users WHERE id IN (:ids)", parameters,
+                (rs, rowNum) -> {
+                    UUID id = rs.getObject("id", UUID.class);
+                    return new DuplicateScorer.Person(id,
+                            DuplicateScorer.normaliseName(rs.getString("name")),
+                            rs.getObject("date_of_birth", LocalDate.class),
+                            rs.getString("place_of_birth"),
+                            rs.getString("taj_bidx"),
+                            rs.getString("tax_id_bidx"),
+                            phones.getOrDefault(id, Set.of()));
+                });
+    }
+
+    private long writeClusters(UUID runId, List<ScoredPair> matches) {
+        Map<UUID, UUID> parent = new HashMap<>();
+        for (ScoredPair pair : matches) {
+            UUID rootA = find(parent, pair.a());
+            UUID rootB = find(parent, pair.b());
+            if (!rootA.equals(rootB)) {
+                parent.put(rootA, rootB);
+            }
+        }
+        Map<UUID, Set<UUID>> members = new HashMap<>();
+        Map<UUID, Double> maxScores = new HashMap<>();
+        for (ScoredPair pair : matches) {
+            UUID root = find(parent, pair.a());
+            Set<UUID> cluster = members.computeIfAbsent(root, r -> new HashSet<>());
+            cluster.add(pair.a());
+            cluster.add(pair.b());
+            maxScores.merge(root, pair.score(), Math::max);
+        }
+
+        Timestamp now = Timestamp.from(Instant.now());
+        transactionTemplate.executeWithoutResult(tx -> {
+            // Unreviewed clusters of earlier runs are superseded by this run
+            jdbcTemplate.update("DELETE FROM duplicate_clusters WHERE status = 'PENDING'");
+            List<Object[]> clusterRows = new ArrayList<>();
+            List<Object[]> memberRows = new ArrayList<>();
+            members.forEach((root, users) -> {
+                UUID clusterId = UUID.randomUUID();
+                clusterRows.add(new Object[]{clusterId, runId, DuplicateClusterStatus.PENDING.name(), maxScores.get(root), now});
+                users.forEach(user -> memberRows.add(new Object[]{clusterId, user}));
+            });
+            jdbcTemplate.batchUpdate("INSERT INTO duplicate_clusters (id, run_id, status, max_score, created_at) "
+                    + "VALUES (?, ?, ?, ?, ?)", clusterRows);
+            jdbcTemplate.batchUpdate("INSERT INTO duplicate_cluster_members (cluster_id, user_id) VALUES (?, ?)", memberRows);
+        });
+        return members.size();
+    }
+
+    private static UUID find(Map<UUID, UUID> parent, UUID id) {
+        UUID root = id;
+        UUID next;
+        while ((next = parent.get(root)) != null) {
+            root = next;
+        }
+        // Path compression keeps later lookups near constant time
+        UUID current = id;
+        while (!current.equals(root)) {
+            UUID following = parent.get(current);
+            parent.put(current, root);
+            current = following;
+        }
+        return root;
+    }
+
+    private static String truncate(String key) {
+        return key.length() > 128 ? key.substring(0, 128) : key;
+    }
+
+    private record ScoredPair(UUID a, UUID b, double score) {
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.example.dpd.service;
+
+import lombok.Value;
+
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Blocking keys and pairwise similarity for duplicate-person detection.
+ * <p>
+ * Strong identifiers (TAJ, tax id) decide on their own; otherwise the score is built from name similarity, date and
+ * place of birth and shared phone numbers. Scores are in [0, 1].
+ */
+public final class DuplicateScorer {
+
+    private static final double IDENTIFIER_WEIGHT = 0.6;
+    private static final double NAME_WEIGHT = 0.35;
+    private static final double DATE_OF_BIRTH_WEIGHT = 0.25;
+    private static final double PLACE_OF_BIRTH_WEIGHT = 0.1;
+    private static final double PHONE_WEIGHT = 0.25;
+
+    private DuplicateScorer() {
+    }
+
+    @Value
+    public static class Person {
+        UUID id;
+        String normalisedName;
+        LocalDate dateOfBirth;
+        String placeOfBirth;
+        String tajIndex;
+        String taxIdIndex;
+        Set<String> phoneKeys;
+    }
+
+    public static double score(Person a, Person b) {
+        double score = 0;
+        if (a.getTajIndex() != null && a.getTajIndex().equals(b.getTajIndex())) {
+            score += IDENTIFIER_WEIGHT;
+        }
+        if (a.getTaxIdIndex() != null && a.getTaxIdIndex().equals(b.getTaxIdIndex())) {
+            score += IDENTIFIER_WEIGHT;
+        }
+        if (a.getNormalisedName() != null && b.getNormalisedName() != null) {
+            score += NAME_WEIGHT * jaroWinkler(a.getNormalisedName(), b.getNormalisedName());
+        }
+        if (a.getDateOfBirth() != null && a.getDateOfBirth().equals(b.getDateOfBirth())) {
+            score += DATE_OF_BIRTH_WEIGHT;
+        }
+        if (a.getPlaceOfBirth() != null && a.getPlaceOfBirth().equalsIgnoreCase(b.getPlaceOfBirth())) {
+            score += PLACE_OF_BIRTH_WEIGHT;
+        }
+        if (a.getPhoneKeys().stream().anyMatch(b.getPhoneKeys()::contains)) {
+            score += PHONE_WEIGHT;
+        }
+        return Math.min(1.0, score);
+    }
+
+    /**
+     * Lower-cased, accent-free name with its tokens sorted, so "Kovács János" and "janos kovacs" block together.
+     */
+    public static String normaliseName(String name) {
+        if (name == null || name.isBlank() || name.startsWith("[DELETED")) {
+            return null;
+        }
+        String plain = Normalizer.normalize(name, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[^a-z0-9 ]", " ")
+                .trim();
+        if (plain.isEmpty()) {
+            return null;
+        }
+        String[] tokens = plain.split("\\s+");
+        Arrays.sort(tokens);
+        return String.join(" ", tokens);
+    }
+
+    /**
+     * Last nine digits of a phone number, which ignores country prefixes and formatting.
+     */
+    public static String phoneKey(String phoneNumber) {
+        if (phoneNumber == null) {
+            return null;
+        }
+        String digits = phoneNumber.replaceAll("\\D", "");
+        if (digits.length() < 6) {
+            return null;
+        }
+        return digits.length() > 9 ? digits.substring(digits.length() - 9) : digits;
+    }
+
+    static double jaroWinkler(String s1, String s2) {
+        if (s1.equals(s2)) {
+            return 1.0;
+        }
+        int matchDistance = Math.max(0, Math.max(s1.length(), s2.length()) / 2 - 1);
+        boolean[] s1Matches = new boolean[s1.length()];
+        boolean[] s2Matches = new boolean[s2.length()];
+        int matches = 0;
+        for (int i = 0; i < s1.length(); i++) {
+            int start = Math.max(0, i - matchDistance);
+            int end = Math.min(i + matchDistance + 1, s2.length());
+            for (int j = start; j < end; j++) {
+                if (!s2Matches[j] && s1.charAt(i) == s2.charAt(j)) {
+                    s1Matches[i] = true;
+                    s2Matches[j] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0) {
+            return 0.0;
+        }
+        int transpositions = 0;
+        for (int i = 0, k = 0; i < s1.length(); i++) {
+            if (s1Matches[i]) {
+                while (!s2Matches[k]) {
+                    k++;
+                }
+                if (s1.charAt(i) != s2.charAt(k)) {
+                    transpositions++;
+                }
+                k++;
+            }
+        }
+        double m = matches;
+        double jaro = (m / s1.length() + m / s2.length() + (m - transpositions / 2.0) / m) / 3.0;
+        int prefix = 0;
+        while (prefix < Math.min(4, Math.min(s1.length(), s2.length())) && s1.charAt(prefix) == s2.charAt(prefix)) {
+            prefix++;
+        }
+        return jaro + prefix * 0.1 * (1 - jaro);
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.ExportFormat;
+import com.example.dpd.dto.ExportJobDTO;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State of one export. The file is written under a temporary name and only moved to {@link #file} once complete,
+ * so a download never sees a partial archive.
+ */
+@Getter
+class ExportJob {
+
+    enum Status { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    private final UUID id = UUID.randomUUID();
+    private final ExportFormat format;
+    private final Path file;
+    private final Path partFile;
+    private final Instant createdAt = Instant.now();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant finishedAt;
+    private volatile Instant expiresAt;
+    private volatile String failureReason;
+    @Setter
+    private volatile Future<?> future;
+
+    ExportJob(ExportFormat format, Path dir) {
+        this.format = format;
+        this.file = dir.resolve("users-" + id + "." + format.getFileExtension());
+        this.partFile = dir.resolve("users-" + id + "." + format.getFileExtension() + ".part");
+    }
+
+    boolean isCancelled() {
+        return status == Status.CANCELLED;
+    }
+
+    boolean isFinished() {
+        return status != Status.QUEUED && status != Status.RUNNING;
+    }
+
+    synchronized boolean start() {
+        if (status != Status.QUEUED) {
+            return false;
+        }
+        status = Status.RUNNING;
+        return true;
+    }
+
+    /** Returns false, changing nothing, if the job has already finished. */
+    synchronized boolean finish(Status status, String failureReason, Instant expiresAt) {
+        if (isFinished()) {
+            return false;
+        }
+        this.failureReason = failureReason;
+        this.finishedAt = Instant.now();
+        this.expiresAt = expiresAt;
+        this.status = status;
+        return true;
+    }
+
+    ExportJobDTO toDTO() {
+        ExportJobDTO dto = new ExportJobDTO();
+        dto.setId(id);
+        dto.setFormat(format);
+        dto.setStatus(status.name());
+        dto.setRowsWritten(rowsWritten.get());
+        dto.setFileSize(status == Status.COMPLETED && Files.exists(file) ? file.toFile().length() : null);
+        dto.setCreatedAt(createdAt);
+        dto.setFinishedAt(finishedAt);
+        dto.setExpiresAt(expiresAt);
+        dto.setFailureReason(failureReason);
+        return dto;
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.ImportJobDTO;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one CSV import. Counters are updated by the worker threads and read by the status endpoint.
+ */
+@Getter
+class ImportJob {
+
+    enum Status { RUNNING, COMPLETED, FAILED }
+
+    private final UUID id = UUID.randomUUID();
+    private final String fileName;
+    private final Path rejectedReport;
+    private final Instant startedAt = Instant.now();
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsImported = new AtomicLong();
+    private final AtomicLong rowsRejected = new AtomicLong();
+    private volatile Status status = Status.RUNNING;
+    private volatile Instant finishedAt;
+    private volatile String failureReason;
+
+    ImportJob(String fileName, Path reportDir) {
+        this.fileName = fileName;
+        this.rejectedReport = reportDir.resolve(id + "-rejected.csv");
+    }
+
+    boolean isFinished() {
+        return status != Status.RUNNING;
+    }
+
+    void complete() {
+        finish(Status.COMPLETED, null);
+    }
+
+    void fail(String reason) {
+        finish(Status.FAILED, reason);
+    }
+
+    private void finish(Status status, String reason) {
+        this.failureReason = reason;
+        this.finishedAt = Instant.now();
+        this.status = status;
+    }
+
+    ImportJobDTO toDTO() {
+        ImportJobDTO dto = new ImportJobDTO();
+        dto.setId(id);
+        dto.setFileName(fileName);
+        dto.setStatus(status.name());
+        dto.setRowsRead(rowsRead.get());
+        dto.setRowsImported(rowsImported.get());
+        dto.setRowsRejected(rowsRejected.get());
+        dto.setStartedAt(startedAt);
+        dto.setFinishedAt(finishedAt);
+        dto.setFailureReason(failureReason);
+        return dto;
+    }
+
+}
@@ -0,0 +1,10 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.OnlineMigrationDTO;
+
+import java.util.List;
+
+public interface OnlineMigrationService {
+    List<OnlineMigrationDTO> getMigrations();
+    List<OnlineMigrationDTO> startMigration(String name);
+}
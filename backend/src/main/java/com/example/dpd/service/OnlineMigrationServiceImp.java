@@ -0,0 +1,221 @@
+package com.example.dpd.service;
+
+import com.example.dpd.config.OnlineMigrationProperties;
+import com.example.dpd.dto.OnlineMigrationDTO;
+import com.example.dpd.exception.ResourceNotFoundException;
+import com.example.dpd.migration.OnlineMigration;
+import com.example.dpd.shard.Shards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the {@link OnlineMigration}s: after startup, and again every resume interval, every one that has not completed
+ * yet; on request a failed one right away.
+ * <p>
+ * Progress is kept per shard in online_migrations. Every chunk commits together with the checkpoint after it, so a
+ * migration stopped by a failure or a deployment resumes after its last committed chunk. After the commit the
+ * migration is told about the chunk, to evict what it changed from the second-level cache. Migrations run one after
+ * the other on a single background thread, shards one after the other, with a pause after every chunk. Across
+ * instances a migration is leased: the instance running it renews the lease with every chunk, and another one only
+ * takes over once the lease has run out, on its next resume; a chunk that finds its lease taken is rolled back.
+ * <p>
+ * After the last chunk the completion check of the migration decides. With no rows left it is COMPLETED, which is
+ * what the changesets depending on it check for; the changelog fingerprint covers the completed migrations, so that
+ * Liquibase looks at those again on the next start. With rows left, usually written meanwhile by an instance that does not write the
+ * new columns yet, it is FAILED and walks all rows again when resumed.
+ */
+@Slf4j
+@Service
+public class OnlineMigrationServiceImp implements OnlineMigrationService {
+
+    private static final UUID MIN_ID = new UUID(0L, 0L);
+
+    private static final String SELECT_ALL = "SELECT name, status, last_id, rows_scanned, rows_changed, started_at, "
+            + "updated_at, completed_at, failure_reason FROM online_migrations";
+
+    private static final String INSERT = "INSERT INTO online_migrations (name, status, started_at, updated_at) "
+            + "VALUES (?, 'PENDING', now(), now()) ON CONFLICT (name) DO NOTHING";
+
+    private static final String CLAIM = "UPDATE online_migrations SET status = 'RUNNING', owner = ?, "
+            + "failure_reason = NULL, updated_at = now() WHERE name = ? AND (status IN ('PENDING', 'FAILED') "
+            + "OR (status = 'RUNNING' AND updated_at < now() - ? * INTERVAL '1 millisecond'))";
+
+    private static final String CHECKPOINT = "UPDATE online_migrations SET last_id = ?, "
+            + "rows_scanned = rows_scanned + ?, rows_changed = rows_changed + ?, updated_at = now() "
+            + "WHERE name = ? AND owner = ? AND status = 'RUNNING'";
+
+    private static final String COMPLETE = "UPDATE online_migrations SET status = 'COMPLETED', completed_at = now(), "
+            + "updated_at = now() WHERE name = ? AND owner = ? AND status = 'RUNNING'";
+
+    private static final String FAIL = "UPDATE online_migrations SET status = 'FAILED', failure_reason = ?, "
+            + "updated_at = now() WHERE name = ? AND owner = ? AND status = 'RUNNING'";
+
+    private static final String RESTART = "UPDATE online_migrations SET status = 'FAILED', failure_reason = ?, "
+            + "last_id = NULL, updated_at = now() WHERE name = ? AND owner = ? AND status = 'RUNNING'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Shards shards;
+    private final OnlineMigrationProperties properties;
+    private final Map<String, OnlineMigration> migrations = new LinkedHashMap<>();
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private final String owner = UUID.randomUUID().toString();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "online-migration");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public OnlineMigrationServiceImp(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                     Shards shards, OnlineMigrationProperties properties,
+                                     List<OnlineMigration> migrations) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = shards;
+        this.properties = properties;
+        migrations.forEach(migration -> this.migrations.put(migration.name(), migration));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${dpd.migrations.resume-interval:PT5M}",
+            initialDelayString = "${dpd.migrations.resume-interval:PT5M}")
+    public void resume() {
+        if (properties.isEnabled()) {
+            migrations.values().forEach(this::submit);
+        }
+    }
+
+    public List<OnlineMigrationDTO> getMigrations() {
+        Map<Integer, Integer> all = new TreeMap<>();
+        for (int shard = 0; shard < shards.count(); shard++) {
+            all.put(shard, shard);
+        }
+        List<OnlineMigrationDTO> result = new ArrayList<>();
+        for (Map<String, OnlineMigrationDTO> onShard : shards.scatter(all, this::readShard)) {
+            result.addAll(onShard.values());
+        }
+        return result;
+    }
+
+    public List<OnlineMigrationDTO> startMigration(String name) {
+        OnlineMigration migration = migrations.get(name);
+        if (migration == null) {
+            throw new ResourceNotFoundException("Online migration not found");
+        }
+        submit(migration);
+        return getMigrations().stream().filter(dto -> dto.getName().equals(name)).toList();
+    }
+
+    private void submit(OnlineMigration migration) {
+        if (queued.add(migration.name())) {
+            executor.submit(() -> {
+                try {
+                    shards.forEachShard(shard -> run(migration, shard));
+                } finally {
+                    queued.remove(migration.name());
+                }
+            });
+        }
+    }
+
+    private void run(OnlineMigration migration, int shard) {
+        String name = migration.name();
+        jdbcTemplate.update(INSERT, name);
+        if (jdbcTemplate.update(CLAIM, owner, name, properties.getLease().toMillis()) == 0) {
+            // Completed, or running on another instance
+            return;
+        }
+        try {
+            UUID last = jdbcTemplate.queryForObject("SELECT last_id FROM online_migrations WHERE name = ?", UUID.class, name);
+            UUID after = last == null ? MIN_ID : last;
+            while (true) {
+                UUID cursor = after;
+                OnlineMigration.Chunk chunk = transactionTemplate.execute(tx -> migrateChunk(migration, cursor));
+                migration.committed(chunk);
+                if (chunk.scanned() < properties.getChunkSize()) {
+                    break;
+                }
+                after = chunk.lastId();
+                Thread.sleep(properties.getPause().toMillis());
+            }
+            long remaining = migration.remaining();
+            if (remaining > 0) {
+                log.warn("Online migration {} left {} rows on shard {}, it starts over when resumed", name, remaining, shard);
+                jdbcTemplate.update(RESTART, remaining + " rows still need migrating after the last chunk", name, owner);
+                return;
+            }
+            if (jdbcTemplate.update(COMPLETE, name, owner) > 0) {
+                migration.completed();
+                log.info("Online migration {} completed on shard {}", name, shard);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            jdbcTemplate.update(FAIL, "Interrupted", name, owner);
+        } catch (RuntimeException e) {
+            log.error("Online migration {} failed on shard {}, it resumes from its last chunk", name, shard, e);
+            jdbcTemplate.update(FAIL, String.valueOf(e.getMessage()), name, owner);
+        }
+    }
+
+    private OnlineMigration.Chunk migrateChunk(OnlineMigration migration, UUID after) {
+        OnlineMigration.Chunk chunk = migration.migrateChunk(after, properties.getChunkSize());
+        UUID last = chunk.lastId() == null ? after : chunk.lastId();
+        if (jdbcTemplate.update(CHECKPOINT, last, chunk.scanned(), chunk.changed().size(), migration.name(), owner) == 0) {
+            throw new IllegalStateException("Online migration " + migration.name() + " was taken over by another instance");
+        }
+        return chunk;
+    }
+
+    private Map<String, OnlineMigrationDTO> readShard(int shard) {
+        Map<String, OnlineMigrationDTO> byName = new LinkedHashMap<>();
+        migrations.keySet().forEach(name -> byName.put(name, pending(name, shard)));
+        jdbcTemplate.query(SELECT_ALL, rs -> {
+            OnlineMigrationDTO dto = pending(rs.getString("name"), shard);
+            dto.setStatus(rs.getString("status"));
+            dto.setLastId(rs.getObject("last_id", UUID.class));
+            dto.setRowsScanned(rs.getLong("rows_scanned"));
+            dto.setRowsChanged(rs.getLong("rows_changed"));
+            dto.setStartedAt(instant(rs, "started_at"));
+            dto.setUpdatedAt(instant(rs, "updated_at"));
+            dto.setCompletedAt(instant(rs, "completed_at"));
+            dto.setFailureReason(rs.getString("failure_reason"));
+            byName.put(dto.getName(), dto);
+        });
+        return byName;
+    }
+
+    private static OnlineMigrationDTO pending(String name, int shard) {
+        OnlineMigrationDTO dto = new OnlineMigrationDTO();
+        dto.setName(name);
+        dto.setShard(shard);
+        dto.setStatus("PENDING");
+        return dto;
+    }
+
+    private static Instant instant(ResultSet rs, String column) throws SQLException {
+        Timestamp timestamp = rs.getTimestamp(column);
+        return timestamp == null ? null : timestamp.toInstant();
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.example.dpd.service;
+
+import com.example.dpd.entity.PhoneNumber;
+import com.example.dpd.migration.OnlineMigration;
+import com.example.dpd.validation.PhoneNumbers;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Fills phone_number_e164 for numbers stored before the column existed. Normalisation needs libphonenumber, so it
+ * cannot be a Liquibase UPDATE; instead it runs as an online migration, walking the not yet normalised rows by id.
+ * Each row is only written while still empty, so new writes are never overwritten. Numbers that cannot be parsed
+ * stay empty, and do not count against completion. Cached numbers are evicted after each chunk.
+ */
+@Component
+public class PhoneNumberBackfill implements OnlineMigration {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public PhoneNumberBackfill(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public String name() {
+        return "phone-number-e164";
+    }
+
+    @Override
+    public Chunk migrateChunk(UUID after, int limit) {
+        List<Row> rows = jdbcTemplate.query(
+                "SELECT id, phone_number FROM phone_numbers WHERE phone_number_e164 IS NULL "
+                        + "AND phone_number IS NOT NULL AND id > ? ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new Row(rs.getObject("id", UUID.class), rs.getString("phone_number")),
+                after, limit);
+        List<UUID> ids = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        for (Row row : rows) {
+            String e164 = PhoneNumbers.toE164(row.phoneNumber());
+            if (e164 != null) {
+                ids.add(row.id());
+                updates.add(new Object[]{e164, row.id()});
+            }
+        }
+        List<UUID> changed = new ArrayList<>();
+        if (!updates.isEmpty()) {
+            int[] counts = jdbcTemplate.batchUpdate(
+                    "UPDATE phone_numbers SET phone_number_e164 = ? WHERE id = ? AND phone_number_e164 IS NULL",
+                    updates);
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    changed.add(ids.get(i));
+                }
+            }
+        }
+        return new Chunk(rows.isEmpty() ? null : rows.get(rows.size() - 1).id(), rows.size(), changed);
+    }
+
+    @Override
+    public void committed(Chunk chunk) {
+        chunk.changed().forEach(id -> entityManagerFactory.getCache().evict(PhoneNumber.class, id));
+    }
+
+    @Override
+    public long remaining() {
+        long[] remaining = new long[1];
+        // Only the numbers that could not be parsed are left by now, so this reads few rows
+        jdbcTemplate.query("SELECT phone_number FROM phone_numbers WHERE phone_number_e164 IS NULL AND phone_number IS NOT NULL",
+                rs -> {
+                    if (PhoneNumbers.toE164(rs.getString("phone_number")) != null) {
+                        remaining[0]++;
+                    }
+                });
+        return remaining[0];
+    }
+
+    private record Row(UUID id, String phoneNumber) {
+    }
+
+}
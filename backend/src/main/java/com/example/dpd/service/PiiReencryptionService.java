@@ -0,0 +1,8 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.ReencryptionStatusDTO;
+
+public interface PiiReencryptionService {
+    ReencryptionStatusDTO startReencryption();
+    ReencryptionStatusDTO getStatus();
+}
@@ -0,0 +1,235 @@
+package com.example.dpd.service;
+
+import com.example.dpd.config.PiiProperties;
+import com.example.dpd.dto.ReencryptionStatusDTO;
+import com.example.dpd.entity.BlindIndexListener;
+import com.example.dpd.entity.User;
+import com.example.dpd.security.PiiCipher;
+import com.example.dpd.shard.Shards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Re-encrypts PII columns with the current key and fills in missing blind indexes, online.
+ * <p>
+ * Rows are walked in primary-key order in small chunks, each in its own transaction. An update only applies if the
+ * row still holds the values that were read, so a concurrent write through the application (which always uses the
+ * current key) is never overwritten. Shards are walked one after the other. The rows are written past Hibernate,
+ * so the users updated by a chunk are evicted from the second-level cache once it has committed. The values of the
+ * audit trail in user_audit, on the same shard, are re-encrypted after the users; an entry redacted meanwhile stays
+ * redacted.
+ */
+@Slf4j
+@Service
+public class PiiReencryptionServiceImp implements PiiReencryptionService {
+
+    private static final UUID MIN_ID = new UUID(0L, 0L);
+
+    private static final String SELECT_CHUNK = "SELECT id, taj, tax_id, mother_maiden_name, taj_bidx, tax_id_bidx "
+            + "FROM users WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String UPDATE_ROW = "UPDATE users SET taj = ?, tax_id = ?, mother_maiden_name = ?, "
+            + "taj_bidx = ?, tax_id_bidx = ? WHERE id = ? AND taj IS NOT DISTINCT FROM ? "
+            + "AND tax_id IS NOT DISTINCT FROM ? AND mother_maiden_name IS NOT DISTINCT FROM ?";
+
+    private static final String SELECT_AUDIT_CHUNK = "SELECT id, old_value, new_value FROM user_audit "
+            + "WHERE id > ? ORDER BY id LIMIT ?";
+
+    /**
+     * The user_audit trigger only lets an update through that keeps the row but moves its values onto the key version
+     * the transaction declared with {@link #DECLARE_AUDIT_KEY_VERSION}.
+     */
+    private static final String UPDATE_AUDIT_ROW = "UPDATE user_audit SET old_value = ?, new_value = ? "
+            + "WHERE id = ? AND old_value IS NOT DISTINCT FROM ? AND new_value IS NOT DISTINCT FROM ?";
+
+    private static final String DECLARE_AUDIT_KEY_VERSION = "SELECT set_config('dpd.audit_key_version', ?, true)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final PiiCipher piiCipher;
+    private final PiiProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final Shards shards;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pii-reencryption");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong rowsScanned = new AtomicLong();
+    private final AtomicLong rowsUpdated = new AtomicLong();
+    private final AtomicLong auditRowsScanned = new AtomicLong();
+    private final AtomicLong auditRowsUpdated = new AtomicLong();
+    private volatile String status = "IDLE";
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String failureReason;
+
+    public PiiReencryptionServiceImp(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory,
+                                     PiiCipher piiCipher, PiiProperties properties,
+                                     PlatformTransactionManager transactionManager, Shards shards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+        this.piiCipher = piiCipher;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = shards;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public synchronized ReencryptionStatusDTO startReencryption() {
+        if (!"RUNNING".equals(status)) {
+            rowsScanned.set(0);
+            rowsUpdated.set(0);
+            auditRowsScanned.set(0);
+            auditRowsUpdated.set(0);
+            startedAt = Instant.now();
+            finishedAt = null;
+            failureReason = null;
+            status = "RUNNING";
+            executor.submit(this::run);
+        }
+        return getStatus();
+    }
+
+    public ReencryptionStatusDTO getStatus() {
+        ReencryptionStatusDTO dto = new ReencryptionStatusDTO();
+        dto.setStatus(status);
+        dto.setRowsScanned(rowsScanned.get());
+        dto.setRowsUpdated(rowsUpdated.get());
+        dto.setAuditRowsScanned(auditRowsScanned.get());
+        dto.setAuditRowsUpdated(auditRowsUpdated.get());
+        dto.setStartedAt(startedAt);
+        dto.setFinishedAt(finishedAt);
+        dto.setFailureReason(failureReason);
+        return dto;
+    }
+
+    private void run() {
+        try {
+            for (int shard = 0; shard < shards.count(); shard++) {
+                UUID after = MIN_ID;
+                while (after != null && !Thread.currentThread().isInterrupted()) {
+                    UUID cursor = after;
+                    Chunk chunk = shards.on(shard, () -> transactionTemplate.execute(tx -> reencryptChunk(cursor)));
+                    chunk.updated().forEach(id -> entityManagerFactory.getCache().evict(User.class, id));
+                    after = chunk.next();
+                    pause(after != null);
+                }
+                Long auditAfter = 0L;
+                while (auditAfter != null && !Thread.currentThread().isInterrupted()) {
+                    Long cursor = auditAfter;
+                    auditAfter = shards.on(shard, () -> transactionTemplate.execute(tx -> reencryptAuditChunk(cursor)));
+                    pause(auditAfter != null);
+                }
+            }
+            finish("COMPLETED", null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish("FAILED", "Interrupted");
+        } catch (RuntimeException e) {
+            log.error("PII re-encryption failed", e);
+            finish("FAILED", e.getMessage());
+        }
+    }
+
+    private Chunk reencryptChunk(UUID after) {
+        List<Object[]> updates = new ArrayList<>();
+        List<UUID> ids = jdbcTemplate.query(SELECT_CHUNK, (rs, rowNum) -> {
+            UUID id = rs.getObject("id", UUID.class);
+            String taj = rs.getString("taj");
+            String taxId = rs.getString("tax_id");
+            String motherMaidenName = rs.getString("mother_maiden_name");
+            if (!piiCipher.isCurrent(taj) || !piiCipher.isCurrent(taxId) || !piiCipher.isCurrent(motherMaidenName)
+                    || (taj != null && rs.getString("taj_bidx") == null)
+                    || (taxId != null && rs.getString("tax_id_bidx") == null)) {
+                String plainTaj = piiCipher.decrypt(taj);
+                String plainTaxId = piiCipher.decrypt(taxId);
+                updates.add(new Object[]{
+                        piiCipher.encrypt(plainTaj),
+                        piiCipher.encrypt(plainTaxId),
+                        piiCipher.encrypt(piiCipher.decrypt(motherMaidenName)),
+                        piiCipher.blindIndex(BlindIndexListener.TAJ, plainTaj),
+                        piiCipher.blindIndex(BlindIndexListener.TAX_ID, plainTaxId),
+                        id, taj, taxId, motherMaidenName
+                });
+            }
+            return id;
+        }, after, properties.getReencryptionChunkSize());
+
+        rowsScanned.addAndGet(ids.size());
+        List<UUID> updated = new ArrayList<>(updates.size());
+        if (!updates.isEmpty()) {
+            int[] counts = jdbcTemplate.batchUpdate(UPDATE_ROW, updates);
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    rowsUpdated.addAndGet(counts[i]);
+                    updated.add((UUID) updates.get(i)[5]);
+                }
+            }
+        }
+        return new Chunk(ids.size() < properties.getReencryptionChunkSize() ? null : ids.get(ids.size() - 1), updated);
+    }
+
+    /** The cursor of the next chunk, null after the last one. Redacted values stay NULL. */
+    private Long reencryptAuditChunk(long after) {
+        List<Object[]> updates = new ArrayList<>();
+        List<Long> ids = jdbcTemplate.query(SELECT_AUDIT_CHUNK, (rs, rowNum) -> {
+            long id = rs.getLong("id");
+            String oldValue = rs.getString("old_value");
+            String newValue = rs.getString("new_value");
+            if (!piiCipher.isCurrent(oldValue) || !piiCipher.isCurrent(newValue)) {
+                updates.add(new Object[]{
+                        piiCipher.encrypt(piiCipher.decrypt(oldValue)),
+                        piiCipher.encrypt(piiCipher.decrypt(newValue)),
+                        id, oldValue, newValue
+                });
+            }
+            return id;
+        }, after, properties.getReencryptionChunkSize());
+
+        auditRowsScanned.addAndGet(ids.size());
+        if (!updates.isEmpty()) {
+            // Until the end of this transaction only
+            jdbcTemplate.queryForObject(DECLARE_AUDIT_KEY_VERSION, String.class, piiCipher.currentKeyVersion());
+            for (int count : jdbcTemplate.batchUpdate(UPDATE_AUDIT_ROW, updates)) {
+                auditRowsUpdated.addAndGet(Math.max(count, 0));
+            }
+        }
+        return ids.size() < properties.getReencryptionChunkSize() ? null : ids.get(ids.size() - 1);
+    }
+
+    private void pause(boolean more) throws InterruptedException {
+        if (more && properties.getReencryptionPauseMillis() > 0) {
+            Thread.sleep(properties.getReencryptionPauseMillis());
+        }
+    }
+
+    private void finish(String status, String failureReason) {
+        this.failureReason = failureReason;
+        this.finishedAt = Instant.now();
+        this.status = status;
+    }
+
+    /** The cursor of the next chunk, null after the last one, and the rows this one rewrote. */
+    private record Chunk(UUID next, List<UUID> updated) {
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.AutocompleteSuggestionDTO;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Values of one address field with the number of addresses using each, kept sorted by their folded form
+ * (lower case, accents and repeated spaces removed), so that all values starting with a prefix are one contiguous
+ * range found by a single descent of the skip list. Lookups read without locking; writes are serialised, which is
+ * cheap because they are rare next to keystrokes.
+ */
+public final class PrefixIndex {
+
+    /** Rough per-value overhead of the skip list node, its share of index nodes and the term object. */
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final ConcurrentSkipListMap<String, Term> terms = new ConcurrentSkipListMap<>();
+    private long addresses;
+
+    public synchronized void add(String value) {
+        String key = fold(value);
+        if (key.isEmpty()) {
+            return;
+        }
+        Term term = terms.get(key);
+        if (term == null) {
+            terms.put(key, new Term(value.strip(), 1));
+        } else {
+            term.count++;
+        }
+        addresses++;
+    }
+
+    public synchronized void remove(String value) {
+        String key = fold(value);
+        Term term = key.isEmpty() ? null : terms.get(key);
+        if (term == null) {
+            return;
+        }
+        if (--term.count <= 0) {
+            terms.remove(key);
+        }
+        addresses--;
+    }
+
+    /**
+     * The most used values starting with the prefix, most used first; ties in alphabetical order.
+     */
+    public List<AutocompleteSuggestionDTO> suggest(String prefix, int limit) {
+        String key = fold(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        // Min-heap of the best candidates so far: the root is the first to drop out
+        PriorityQueue<Candidate> best = new PriorityQueue<>(limit + 1, Candidate.RANKING.reversed());
+        for (Map.Entry<String, Term> entry : terms.tailMap(key).entrySet()) {
+            if (!entry.getKey().startsWith(key)) {
+                break;
+            }
+            Term term = entry.getValue();
+            int count = term.count;
+            if (best.size() == limit && count < best.peek().count()) {
+                continue;
+            }
+            best.offer(new Candidate(entry.getKey(), term.display, count));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<Candidate> ranked = new ArrayList<>(best);
+        ranked.sort(Candidate.RANKING);
+        return ranked.stream().map(candidate -> new AutocompleteSuggestionDTO(candidate.display(), candidate.count())).toList();
+    }
+
+    public int distinctValues() {
+        return terms.size();
+    }
+
+    public synchronized long addresses() {
+        return addresses;
+    }
+
+    /** Approximate heap footprint: both strings of every value plus the per-entry overhead of the skip list. */
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (Map.Entry<String, Term> entry : terms.entrySet()) {
+            bytes += ENTRY_OVERHEAD_BYTES + stringBytes(entry.getKey()) + stringBytes(entry.getValue().display);
+        }
+        return bytes;
+    }
+
+    /** Lower case without accents and with single spaces, so "Győr" is found by typing "gyo". */
+    static String fold(String value) {
+        if (value == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        boolean space = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                space = folded.length() > 0;
+                continue;
+            }
+            if (space) {
+                folded.append(' ');
+                space = false;
+            }
+            folded.append(Character.toLowerCase(c));
+        }
+        return folded.toString();
+    }
+
+    private static long stringBytes(String value) {
+        boolean latin1 = value.chars().allMatch(c -> c <= 0xFF);
+        long array = 16 + (long) value.length() * (latin1 ? 1 : 2);
+        return 24 + ((array + 7) & ~7);
+    }
+
+    private static final class Term {
+
+        private final String display;
+        private volatile int count;
+
+        private Term(String display, int count) {
+            this.display = display;
+            this.count = count;
+        }
+
+    }
+
+    private record Candidate(String key, String display, int count) {
+
+        static final Comparator<Candidate> RANKING = Comparator.comparingInt(Candidate::count).reversed()
+                .thenComparing(Candidate::key);
+
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.CoalescingStatsDTO;
+import com.example.dpd.exception.ServiceUnavailableException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the load and callers arriving while it runs
+ * wait for its result instead of running their own. Nothing is kept once the load has finished, so this is not a
+ * cache; it only stops a burst of identical reads from turning into a burst of identical queries.
+ * <p>
+ * Waiting callers get the same result object as the caller that ran the load, and its failure if it failed. They
+ * wait at most {@code maxWait} and are then answered with 503, like a request that timed out in its bulkhead.
+ * After a write, {@link #forget} the keys it affects, so that callers arriving after the write run a fresh load
+ * rather than joining one that may have read the data from before it.
+ */
+public class SingleFlight<K, V> {
+
+    private final String name;
+    private final Duration maxWait;
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    public SingleFlight(String name, Duration maxWait) {
+        this.name = name;
+        this.maxWait = maxWait;
+    }
+
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            coalesced.increment();
+            return await(running);
+        }
+        executed.increment();
+        try {
+            V result = loader.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            // Only this load's entry: a forgotten key may already have a newer load of its own
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /** Callers arriving from now on start a new load of the key; callers already waiting keep theirs. */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    public void forgetAll() {
+        inFlight.clear();
+    }
+
+    public CoalescingStatsDTO getStats() {
+        CoalescingStatsDTO stats = new CoalescingStatsDTO();
+        stats.setName(name);
+        stats.setExecuted(executed.sum());
+        stats.setCoalesced(coalesced.sum());
+        stats.setTimedOut(timedOut.sum());
+        stats.setInFlight(inFlight.size());
+        return stats;
+    }
+
+    private V await(CompletableFuture<V> running) {
+        try {
+            return running.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            timedOut.increment();
+            throw new ServiceUnavailableException("Timed out waiting for the same " + name + " read of another request");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while waiting for the same " + name + " read of another request");
+        }
+    }
+
+}
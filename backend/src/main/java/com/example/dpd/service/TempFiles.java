@@ -0,0 +1,44 @@
+package com.example.dpd.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Jobs are only held in memory, so the files of jobs from an earlier process are known to nobody; this is what
+ * eventually deletes them.
+ */
+@Slf4j
+final class TempFiles {
+
+    private TempFiles() {
+    }
+
+    /** Deletes the regular files directly in the directory last modified before the instant, except the known ones. */
+    static void deleteOlderThan(Path dir, Instant before, Set<Path> known) {
+        if (dir == null || !Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(Files::isRegularFile)
+                    .filter(file -> !known.contains(file))
+                    .forEach(file -> {
+                        try {
+                            if (Files.getLastModifiedTime(file).toInstant().isBefore(before)) {
+                                Files.deleteIfExists(file);
+                            }
+                        } catch (IOException e) {
+                            log.warn("Could not delete {}", file, e);
+                        }
+                    });
+        } catch (IOException e) {
+            log.warn("Could not list {}", dir, e);
+        }
+    }
+
+}
@@ -0,0 +1,8 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.ArchivalStatusDTO;
+
+public interface UserArchiveService {
+    ArchivalStatusDTO startArchival();
+    ArchivalStatusDTO getStatus();
+}
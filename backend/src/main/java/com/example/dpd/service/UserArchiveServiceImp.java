@@ -0,0 +1,173 @@
+package com.example.dpd.service;
+
+import com.example.dpd.config.ArchiveProperties;
+import com.example.dpd.dto.ArchivalStatusDTO;
+import com.example.dpd.entity.User;
+import com.example.dpd.repository.UserArchive;
+import com.example.dpd.shard.Shards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves users depersonalised longer ago than {@code dpd.archive.min-age} from users to {@link UserArchive}, so that
+ * the hot table and its indexes only carry the users still worth reading.
+ * <p>
+ * Users are moved in small chunks, each in its own transaction, with a pause in between; shards one after the
+ * other. Archived users are evicted from the second-level cache. Deleting rows leaves dead tuples behind that only
+ * VACUUM makes reusable, so a run that moved any ends with one, which takes no lock that blocks reads or writes.
+ * VACUUM does not hand the space back to the operating system, apart from empty pages at the end of the table,
+ * so the sizes reported after a run drop less than the rows moved would suggest; what they show is that the table
+ * stops growing until new rows have filled the freed space.
+ */
+@Slf4j
+@Service
+public class UserArchiveServiceImp implements UserArchiveService {
+
+    private static final String SIZES = "SELECT pg_table_size('users') AS table_bytes, "
+            + "pg_indexes_size('users') AS index_bytes";
+
+    private final UserArchive userArchive;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ArchiveProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final Shards shards;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-archival");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong usersArchived = new AtomicLong();
+    private volatile String status = "IDLE";
+    private volatile Instant cutoff;
+    private volatile long[] sizesBefore = new long[2];
+    private volatile long[] sizesAfter = new long[2];
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String failureReason;
+
+    public UserArchiveServiceImp(UserArchive userArchive, JdbcTemplate jdbcTemplate,
+                                 EntityManagerFactory entityManagerFactory, ArchiveProperties properties,
+                                 PlatformTransactionManager transactionManager, Shards shards) {
+        this.userArchive = userArchive;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = shards;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Scheduled(cron = "${dpd.archive.cron:0 15 4 * * *}")
+    public void scheduledArchival() {
+        startArchival();
+    }
+
+    public synchronized ArchivalStatusDTO startArchival() {
+        if (!"RUNNING".equals(status)) {
+            usersArchived.set(0);
+            startedAt = Instant.now();
+            cutoff = startedAt.minus(properties.getMinAge());
+            sizesBefore = new long[2];
+            sizesAfter = new long[2];
+            finishedAt = null;
+            failureReason = null;
+            status = "RUNNING";
+            executor.submit(this::run);
+        }
+        return getStatus();
+    }
+
+    public ArchivalStatusDTO getStatus() {
+        ArchivalStatusDTO dto = new ArchivalStatusDTO();
+        dto.setStatus(status);
+        dto.setCutoff(cutoff);
+        dto.setUsersArchived(usersArchived.get());
+        dto.setTableBytesBefore(sizesBefore[0]);
+        dto.setIndexBytesBefore(sizesBefore[1]);
+        dto.setTableBytesAfter(sizesAfter[0]);
+        dto.setIndexBytesAfter(sizesAfter[1]);
+        dto.setStartedAt(startedAt);
+        dto.setFinishedAt(finishedAt);
+        dto.setFailureReason(failureReason);
+        return dto;
+    }
+
+    private void run() {
+        try {
+            sizesBefore = sizes();
+            OffsetDateTime before = cutoff.atOffset(ZoneOffset.UTC);
+            for (int shard = 0; shard < shards.count(); shard++) {
+                long archivedOnShard = 0;
+                boolean more = true;
+                while (more && !Thread.currentThread().isInterrupted()) {
+                    List<UUID> archived = shards.on(shard, () -> transactionTemplate.execute(tx ->
+                            userArchive.archiveChunk(before, properties.getChunkSize())));
+                    // After the commit: an evicted user read back in between would otherwise be cached again
+                    archived.forEach(id -> entityManagerFactory.getCache().evict(User.class, id));
+                    archivedOnShard += archived.size();
+                    usersArchived.addAndGet(archived.size());
+                    more = archived.size() == properties.getChunkSize();
+                    if (more && !properties.getPause().isZero()) {
+                        Thread.sleep(properties.getPause().toMillis());
+                    }
+                }
+                if (properties.isVacuum() && archivedOnShard > 0) {
+                    shards.on(shard, () -> {
+                        jdbcTemplate.execute("VACUUM (ANALYZE) users");
+                        return null;
+                    });
+                }
+            }
+            sizesAfter = sizes();
+            log.info("Archived {} depersonalised users; users went from {} to {} table bytes and from {} to {} "
+                            + "index bytes", usersArchived.get(), sizesBefore[0], sizesAfter[0], sizesBefore[1],
+                    sizesAfter[1]);
+            finish("COMPLETED", null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish("FAILED", "Interrupted");
+        } catch (RuntimeException e) {
+            log.error("Archival of depersonalised users failed", e);
+            finish("FAILED", e.getMessage());
+        }
+    }
+
+    /** Table and index bytes of users over every shard. */
+    private long[] sizes() {
+        long[] sizes = new long[2];
+        for (long[] onShard : shards.scatter(() -> jdbcTemplate.queryForObject(SIZES,
+                (rs, rowNum) -> new long[]{rs.getLong("table_bytes"), rs.getLong("index_bytes")}))) {
+            sizes[0] += onShard[0];
+            sizes[1] += onShard[1];
+        }
+        return sizes;
+    }
+
+    private void finish(String status, String failureReason) {
+        this.failureReason = failureReason;
+        this.finishedAt = Instant.now();
+        this.status = status;
+    }
+
+}
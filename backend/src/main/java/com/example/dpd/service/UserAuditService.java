@@ -0,0 +1,13 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.AuditStatsDTO;
+import com.example.dpd.dto.UserAuditEntryDTO;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface UserAuditService {
+    /** Every recorded change of the user, oldest first. */
+    List<UserAuditEntryDTO> getHistory(UUID userId);
+    AuditStatsDTO getStats();
+}
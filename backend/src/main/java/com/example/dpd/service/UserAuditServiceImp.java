@@ -0,0 +1,276 @@
+package com.example.dpd.service;
+
+import com.example.dpd.audit.AuditActor;
+import com.example.dpd.audit.UserFieldDiff;
+import com.example.dpd.audit.UserFieldDiff.FieldChange;
+import com.example.dpd.audit.WriteBehindQueue;
+import com.example.dpd.config.AuditProperties;
+import com.example.dpd.dto.AuditStatsDTO;
+import com.example.dpd.dto.UserAuditEntryDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.event.UserChangedEvent;
+import com.example.dpd.security.PiiCipher;
+import com.example.dpd.shard.Shards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Field-level history of every user change in the append-only user_audit table, next to the user on its shard.
+ * <p>
+ * The diff is taken from the {@link UserChangedEvent} of the write. In ASYNC mode it is queued after commit and a
+ * scheduled writer inserts the queue in batches, so a write only pays for the diff; when the queue is full further
+ * changes are dropped and counted rather than slowing writes down. SYNC mode inserts in the transaction of the
+ * change instead. Values are stored encrypted like the PII columns of users, and re-encrypted with them when the key
+ * is rotated. A depersonalisation records which fields were erased without their values, and redacts the values of
+ * the user's earlier entries in its own transaction in either mode, so that erasing never depends on a queued
+ * change being written. Changes of a depersonalised user that are still queued are written without their values,
+ * so the audit never brings erased data back.
+ */
+@Slf4j
+@Service
+public class UserAuditServiceImp implements UserAuditService {
+
+    private static final String INSERT = "INSERT INTO user_audit "
+            + "(user_id, changed_at, actor, change_type, field, old_value, new_value) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String DEAD_LETTER = "INSERT INTO user_audit_dead_letter "
+            + "(user_id, changed_at, actor, change_type, fields, failure, failed_at) VALUES (?, ?, ?, ?, ?, ?, now())";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PiiCipher piiCipher;
+    private final AuditProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final Shards shards;
+    private final WriteBehindQueue<Change> queue;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private volatile List<Change> unwritten = List.of();
+    /** Runs in a row the unwritten changes have failed in. */
+    private int attempts;
+
+    public UserAuditServiceImp(JdbcTemplate jdbcTemplate, PiiCipher piiCipher, AuditProperties properties,
+                               PlatformTransactionManager transactionManager, Shards shards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.piiCipher = piiCipher;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = shards;
+        this.queue = new WriteBehindQueue<>(properties.getQueueCapacity());
+    }
+
+    /** SYNC mode: commits or rolls back together with the change. The history is redacted this way in both modes. */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void recordInTransaction(UserChangedEvent event) {
+        if (event.getType() == UserChangedEvent.Type.DEPERSONALISED && event.getBefore() != null) {
+            redactHistory(event.getBefore().getId());
+        }
+        if (properties.getMode() == AuditProperties.Mode.SYNC) {
+            Change change = capture(event);
+            if (change != null) {
+                insert(List.of(change));
+                written.incrementAndGet();
+            }
+        }
+    }
+
+    /** ASYNC mode: queued after commit only, so rolled-back writes are never audited. */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void recordAfterCommit(UserChangedEvent event) {
+        if (properties.getMode() == AuditProperties.Mode.ASYNC) {
+            Change change = capture(event);
+            if (change != null && !queue.offer(change) && queue.dropped() % 1000 == 1) {
+                log.warn("Audit queue full at {} changes, {} dropped so far", queue.capacity(), queue.dropped());
+            }
+        }
+    }
+
+    /**
+     * Drains the queue, one transaction per shard and batch. Changes that could not be written are retried on the
+     * next run before anything queued after them, so the entries of a user are always written in order. Once they
+     * have failed max-attempts runs in a row, they are written one by one, and a change that fails on its own as
+     * well goes to user_audit_dead_letter without its values, so that it stops holding up the queue.
+     */
+    @Scheduled(fixedDelayString = "${dpd.audit.flush-interval-millis:200}")
+    public synchronized void flush() {
+        while (true) {
+            List<Change> batch = unwritten.isEmpty() ? queue.drain(properties.getBatchSize()) : unwritten;
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<Change> failedChanges = new ArrayList<>();
+            shards.groupByShard(batch, Change::userId).forEach((shard, changes) -> {
+                try {
+                    write(shard, changes);
+                    written.addAndGet(changes.size());
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                    log.warn("Could not write {} audited changes on shard {}, retrying on next flush", changes.size(), shard, e);
+                    failedChanges.addAll(changes);
+                }
+            });
+            List<Change> remaining = failedChanges;
+            if (!remaining.isEmpty() && ++attempts >= properties.getMaxAttempts()) {
+                remaining = writeOneByOne(remaining);
+            }
+            if (remaining.isEmpty()) {
+                attempts = 0;
+            }
+            unwritten = remaining;
+            if (!remaining.isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    /** The changes that could neither be written nor dead-lettered, the database being unavailable rather. */
+    private List<Change> writeOneByOne(List<Change> changes) {
+        attempts = 0;
+        List<Change> remaining = new ArrayList<>();
+        for (Change change : changes) {
+            int shard = shards.shardOf(change.userId());
+            try {
+                write(shard, List.of(change));
+                written.incrementAndGet();
+            } catch (RuntimeException e) {
+                try {
+                    shards.on(shard, () -> jdbcTemplate.update(DEAD_LETTER, change.userId(),
+                            Timestamp.from(change.changedAt()), change.actor(), change.type().name(),
+                            change.fields().stream().map(FieldChange::field).collect(Collectors.joining(", ")),
+                            String.valueOf(e.getMessage())));
+                    deadLettered.incrementAndGet();
+                    log.error("Audited {} change of user {} failed {} times, moved to user_audit_dead_letter",
+                            change.type(), change.userId(), properties.getMaxAttempts(), e);
+                } catch (RuntimeException deadLetterFailure) {
+                    remaining.add(change);
+                }
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * A change queued on any instance can land after the user was depersonalised and its history redacted, so it is
+     * written without values then. The users are locked until the insert commits, so a depersonalisation either
+     * happened before and is seen here, or waits and redacts these entries too.
+     */
+    private void write(int shard, List<Change> changes) {
+        shards.on(shard, () -> {
+            transactionTemplate.executeWithoutResult(status -> {
+                Set<UUID> erased = erasedUsers(changes);
+                insert(changes.stream().map(change -> erased.contains(change.userId()) ? change.redacted() : change).toList());
+            });
+            return null;
+        });
+    }
+
+    private Set<UUID> erasedUsers(List<Change> changes) {
+        List<UUID> ids = changes.stream().map(Change::userId).distinct().toList();
+        String in = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        Set<UUID> found = new HashSet<>();
+        Set<UUID> erased = new HashSet<>();
+        jdbcTemplate.query("SELECT id, status FROM users WHERE id IN (" + in + ") ORDER BY id FOR SHARE", rs -> {
+            UUID id = rs.getObject("id", UUID.class);
+            found.add(id);
+            if ("DEPERSONALISED".equals(rs.getString("status"))) {
+                erased.add(id);
+            }
+        }, ids.toArray());
+        List<UUID> missing = ids.stream().filter(id -> !found.contains(id)).toList();
+        if (!missing.isEmpty()) {
+            // Archived users were depersonalised long before
+            erased.addAll(jdbcTemplate.queryForList("SELECT id FROM users_archive WHERE id IN ("
+                    + String.join(", ", Collections.nCopies(missing.size(), "?")) + ")", UUID.class, missing.toArray()));
+        }
+        return erased;
+    }
+
+    /** Whatever is still queued is written before the data source goes away. */
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    public List<UserAuditEntryDTO> getHistory(UUID userId) {
+        return shards.on(userId, () -> jdbcTemplate.query(
+                "SELECT changed_at, actor, change_type, field, old_value, new_value FROM user_audit "
+                        + "WHERE user_id = ? ORDER BY changed_at, id",
+                (rs, rowNum) -> new UserAuditEntryDTO(
+                        rs.getTimestamp("changed_at").toInstant(),
+                        rs.getString("actor"),
+                        rs.getString("change_type"),
+                        rs.getString("field"),
+                        piiCipher.decrypt(rs.getString("old_value")),
+                        piiCipher.decrypt(rs.getString("new_value"))),
+                userId));
+    }
+
+    public AuditStatsDTO getStats() {
+        AuditStatsDTO stats = new AuditStatsDTO();
+        stats.setMode(properties.getMode().name());
+        stats.setQueued(queue.size() + unwritten.size());
+        stats.setQueueCapacity(queue.capacity());
+        stats.setWritten(written.get());
+        stats.setDropped(queue.dropped());
+        stats.setFailed(failed.get());
+        stats.setDeadLettered(deadLettered.get());
+        return stats;
+    }
+
+    private Change capture(UserChangedEvent event) {
+        UserDTO user = event.getAfter() != null ? event.getAfter() : event.getBefore();
+        List<FieldChange> fields = UserFieldDiff.diff(event.getBefore(), event.getAfter());
+        if (user == null || user.getId() == null || fields.isEmpty()) {
+            return null;
+        }
+        Change change = new Change(user.getId(), Instant.now(), AuditActor.current(), event.getType(), fields);
+        return event.getType() == UserChangedEvent.Type.DEPERSONALISED ? change.redacted() : change;
+    }
+
+    private void insert(List<Change> changes) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Change change : changes) {
+            Timestamp changedAt = Timestamp.from(change.changedAt());
+            for (FieldChange field : change.fields()) {
+                rows.add(new Object[]{change.userId(), changedAt, change.actor(), change.type().name(), field.field(),
+                        piiCipher.encrypt(field.oldValue()), piiCipher.encrypt(field.newValue())});
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT, rows);
+    }
+
+    /**
+     * Runs before Hibernate flushes the erased user, so the row is locked first: an audit write holding it commits
+     * before the update below, and one that comes later waits and then sees the user depersonalised.
+     */
+    private void redactHistory(UUID userId) {
+        jdbcTemplate.queryForList("SELECT id FROM users WHERE id = ? FOR UPDATE", UUID.class, userId);
+        jdbcTemplate.update("UPDATE user_audit SET old_value = NULL, new_value = NULL "
+                + "WHERE user_id = ? AND (old_value IS NOT NULL OR new_value IS NOT NULL)", userId);
+    }
+
+    private record Change(UUID userId, Instant changedAt, String actor, UserChangedEvent.Type type,
+                          List<FieldChange> fields) {
+
+        /** Which fields changed, without their values. */
+        Change redacted() {
+            return new Change(userId, changedAt, actor, type,
+                    fields.stream().map(field -> new FieldChange(field.field(), null, null)).toList());
+        }
+
+    }
+
+}
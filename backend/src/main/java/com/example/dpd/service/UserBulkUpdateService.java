@@ -0,0 +1,8 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.BulkUpdateResultDTO;
+import com.example.dpd.dto.BulkUpdateUserDTO;
+
+public interface UserBulkUpdateService {
+    BulkUpdateResultDTO bulkUpdate(BulkUpdateUserDTO bulkUpdateUserDTO);
+}
@@ -0,0 +1,347 @@
+package com.example.dpd.service;
+
+import com.example.dpd.config.BulkUpdateProperties;
+import com.example.dpd.dto.*;
+import com.example.dpd.dto.BulkUpdateItemResultDTO.Status;
+import com.example.dpd.entity.Address;
+import com.example.dpd.entity.User;
+import com.example.dpd.entity.UserStatus;
+import com.example.dpd.event.UserChangedEvent;
+import com.example.dpd.exception.BadRequestException;
+import com.example.dpd.repository.UserBatchWriter;
+import com.example.dpd.repository.UserRepository;
+import com.example.dpd.shard.Shards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Applies one partial update to many users.
+ * <p>
+ * Targets are loaded a batch at a time with IN queries (users, then their addresses and phone numbers) and the
+ * changes of a batch are flushed together, so Hibernate sends them as JDBC batches. All-or-nothing runs every batch
+ * in one transaction; best-effort commits per batch and, when a batch fails, retries its items one by one so that
+ * only the offending ones are reported as failed.
+ * <p>
+ * Targets on different shards are updated in parallel, one transaction per shard. All-or-nothing holds each shard's
+ * transaction open until every shard has applied its part and then commits or rolls back all of them; only a
+ * commit failing after another shard committed can still leave a partial update, which is logged.
+ */
+@Slf4j
+@Service
+public class UserBulkUpdateServiceImp implements UserBulkUpdateService {
+
+    private final UserRepository userRepository;
+    private final UserBatchWriter userBatchWriter;
+    private final UserMapper userMapper;
+    private final Validator validator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BulkUpdateProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final Shards shards;
+
+    public UserBulkUpdateServiceImp(UserRepository userRepository, UserBatchWriter userBatchWriter, UserMapper userMapper,
+                                    Validator validator, ApplicationEventPublisher eventPublisher,
+                                    BulkUpdateProperties properties, PlatformTransactionManager transactionManager,
+                                    Shards shards) {
+        this.userRepository = userRepository;
+        this.userBatchWriter = userBatchWriter;
+        this.userMapper = userMapper;
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = shards;
+    }
+
+    public BulkUpdateResultDTO bulkUpdate(BulkUpdateUserDTO request) {
+        List<Target> targets = request.getFilter() != null ? filterTargets(request) : itemTargets(request);
+        BulkUpdateItemResultDTO[] results = new BulkUpdateItemResultDTO[targets.size()];
+        List<Integer> writable = new ArrayList<>();
+        Set<UUID> seen = new HashSet<>();
+        for (int i = 0; i < targets.size(); i++) {
+            Target target = targets.get(i);
+            String invalid = target.id() == null ? "Id is mandatory"
+                    : !seen.add(target.id()) ? "Duplicate id"
+                    : target.patch() == null && request.getAddressPatch() == null ? "Patch is mandatory"
+                    : violations(target.patch());
+            if (invalid != null) {
+                results[i] = new BulkUpdateItemResultDTO(target.id(), Status.INVALID, invalid);
+            } else {
+                writable.add(i);
+            }
+        }
+
+        boolean committed = request.getMode() == BulkUpdateMode.BEST_EFFORT
+                ? updateBestEffort(request, targets, writable, results)
+                : updateAllOrNothing(request, targets, writable, results);
+
+        BulkUpdateResultDTO result = new BulkUpdateResultDTO();
+        result.setMode(request.getMode());
+        result.setCommitted(committed);
+        result.setRequested(targets.size());
+        result.setItems(Arrays.asList(results));
+        result.setUpdated((int) result.getItems().stream().filter(item -> item.getStatus() == Status.UPDATED).count());
+        result.setFailed(result.getRequested() - result.getUpdated());
+        return result;
+    }
+
+    private List<Target> itemTargets(BulkUpdateUserDTO request) {
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            throw new BadRequestException("Either items or filter is required");
+        }
+        if (request.getAddressPatch() != null) {
+            throw new BadRequestException("addressPatch needs a filter selecting the addresses to change");
+        }
+        if (request.getItems().size() > properties.getMaxItems()) {
+            throw new BadRequestException("At most " + properties.getMaxItems() + " users can be updated at once");
+        }
+        return request.getItems().stream()
+                .map(item -> new Target(item == null ? null : item.getId(), item == null ? null : item.getPatch()))
+                .toList();
+    }
+
+    private List<Target> filterTargets(BulkUpdateUserDTO request) {
+        BulkUserFilterDTO filter = request.getFilter();
+        if (request.getItems() != null && !request.getItems().isEmpty()) {
+            throw new BadRequestException("Use either items or filter, not both");
+        }
+        if (filter.getCity() == null && filter.getPostalCode() == null) {
+            throw new BadRequestException("Filter needs a city or a postal code");
+        }
+        if (request.getPatch() == null && request.getAddressPatch() == null) {
+            throw new BadRequestException("Filter updates need a patch or an addressPatch");
+        }
+        String invalid = violations(request.getPatch());
+        if (invalid != null) {
+            throw new BadRequestException(invalid);
+        }
+        List<List<UUID>> matches = shards.scatter(() -> userRepository.findIdsByAddress(filter.getCity(),
+                filter.getPostalCode(), PageRequest.of(0, properties.getMaxItems() + 1)));
+        List<UUID> ids = Shards.merge(matches, Shards.ID_ORDER, properties.getMaxItems() + 1);
+        if (ids.size() > properties.getMaxItems()) {
+            throw new BadRequestException("Filter matches more than " + properties.getMaxItems() + " users, narrow it down");
+        }
+        return ids.stream().map(id -> new Target(id, request.getPatch())).toList();
+    }
+
+    private boolean updateAllOrNothing(BulkUpdateUserDTO request, List<Target> targets, List<Integer> writable,
+                                       BulkUpdateItemResultDTO[] results) {
+        boolean anyInvalid = writable.size() < targets.size();
+        if (!anyInvalid) {
+            SortedMap<Integer, List<Integer>> byShard = byShard(targets, writable);
+            CountDownLatch applied = new CountDownLatch(byShard.size());
+            AtomicBoolean failed = new AtomicBoolean();
+            try {
+                shards.onEach(byShard.keySet(), shard -> {
+                    applyOnShard(request, targets, byShard.get(shard), results, applied, failed);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                if (!failed.get() && byShard.size() > 1) {
+                    log.error("All-or-nothing bulk update of {} users failed to commit on a shard after every shard "
+                            + "applied it; other shards may have committed", targets.size(), e);
+                } else {
+                    log.warn("All-or-nothing bulk update of {} users rolled back", targets.size(), e);
+                }
+                for (int i : writable) {
+                    results[i] = new BulkUpdateItemResultDTO(targets.get(i).id(), Status.FAILED, rootMessage(e));
+                }
+                return false;
+            }
+        }
+        boolean committed = Arrays.stream(results).allMatch(item -> item != null && item.getStatus() == Status.UPDATED);
+        if (!committed) {
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null || results[i].getStatus() == Status.UPDATED) {
+                    results[i] = new BulkUpdateItemResultDTO(targets.get(i).id(), Status.ROLLED_BACK, null);
+                }
+            }
+        }
+        return committed;
+    }
+
+    /**
+     * One shard's part of an all-or-nothing update: applies it, waits until every shard has applied its part, then
+     * commits unless any of them failed.
+     */
+    private void applyOnShard(BulkUpdateUserDTO request, List<Target> targets, List<Integer> indexes,
+                              BulkUpdateItemResultDTO[] results, CountDownLatch applied, AtomicBoolean failed) {
+        AtomicBoolean arrived = new AtomicBoolean();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try {
+                    boolean shardFailed = false;
+                    for (List<Integer> batch : batches(indexes)) {
+                        shardFailed |= !applyBatch(request, targets, batch, results, !shardFailed && !failed.get());
+                    }
+                    if (shardFailed) {
+                        failed.set(true);
+                    }
+                } catch (RuntimeException e) {
+                    failed.set(true);
+                    throw e;
+                } finally {
+                    arrived.set(true);
+                    applied.countDown();
+                }
+                awaitUninterruptibly(applied);
+                if (failed.get()) {
+                    status.setRollbackOnly();
+                }
+            });
+        } finally {
+            if (!arrived.get()) {
+                // The transaction did not even start; the other shards must not wait for this one
+                failed.set(true);
+                applied.countDown();
+            }
+        }
+    }
+
+    private boolean updateBestEffort(BulkUpdateUserDTO request, List<Target> targets, List<Integer> writable,
+                                     BulkUpdateItemResultDTO[] results) {
+        SortedMap<Integer, List<Integer>> byShard = byShard(targets, writable);
+        shards.onEach(byShard.keySet(), shard -> {
+            for (List<Integer> batch : batches(byShard.get(shard))) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> applyBatch(request, targets, batch, results, true));
+                } catch (RuntimeException batchFailure) {
+                    // Usually a unique email clash; retry item by item so that only the offending items fail
+                    for (int i : batch) {
+                        try {
+                            transactionTemplate.executeWithoutResult(status ->
+                                    applyBatch(request, targets, List.of(i), results, true));
+                        } catch (RuntimeException itemFailure) {
+                            results[i] = new BulkUpdateItemResultDTO(targets.get(i).id(), Status.FAILED, rootMessage(itemFailure));
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+        return true;
+    }
+
+    private SortedMap<Integer, List<Integer>> byShard(List<Target> targets, List<Integer> indexes) {
+        return shards.groupByShard(indexes, i -> targets.get(i).id());
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Loads and, when {@code apply} is set, updates one batch inside the current transaction. Returns false when
+     * some targets do not exist; a depersonalised user counts as not existing, as it does for a single PATCH.
+     */
+    private boolean applyBatch(BulkUpdateUserDTO request, List<Target> targets, List<Integer> batch,
+                               BulkUpdateItemResultDTO[] results, boolean apply) {
+        List<UUID> ids = batch.stream().map(i -> targets.get(i).id()).toList();
+        Map<UUID, User> users = userRepository.findWithAddressesByIdIn(ids).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        userRepository.findWithPhoneNumbersByIdIn(ids);
+
+        boolean allFound = true;
+        for (int i : batch) {
+            Target target = targets.get(i);
+            User user = users.get(target.id());
+            if (user == null || user.getStatus() != UserStatus.ACTIVE) {
+                results[i] = new BulkUpdateItemResultDTO(target.id(), Status.NOT_FOUND, "User not found");
+                allFound = false;
+            } else if (apply) {
+                UserDTO before = userMapper.convertToDTO(user);
+                if (target.patch() != null) {
+                    userMapper.applyUpdate(user, target.patch());
+                }
+                if (request.getAddressPatch() != null) {
+                    applyAddressPatch(user, request.getFilter(), request.getAddressPatch());
+                }
+                // Delivered after commit only, see the @TransactionalEventListener consumers
+                eventPublisher.publishEvent(UserChangedEvent.updated(before, userMapper.convertToDTO(user)));
+                results[i] = new BulkUpdateItemResultDTO(target.id(), Status.UPDATED, null);
+            }
+        }
+        if (apply) {
+            userBatchWriter.flushAndClear();
+        }
+        return allFound;
+    }
+
+    private static void applyAddressPatch(User user, BulkUserFilterDTO filter, AddressPatchDTO patch) {
+        for (Address address : user.getAddresses()) {
+            if (filter != null && (filter.getCity() != null && !filter.getCity().equals(address.getCity())
+                    || filter.getPostalCode() != null && !filter.getPostalCode().equals(address.getPostalCode()))) {
+                continue;
+            }
+            if (patch.getPostalCode() != null) {
+                address.setPostalCode(patch.getPostalCode());
+            }
+            if (patch.getCity() != null) {
+                address.setCity(patch.getCity());
+            }
+            if (patch.getStreet() != null) {
+                address.setStreet(patch.getStreet());
+            }
+            if (patch.getHouseNumber() != null) {
+                address.setHouseNumber(patch.getHouseNumber());
+            }
+            if (patch.getOtherInfo() != null) {
+                address.setOtherInfo(patch.getOtherInfo());
+            }
+        }
+    }
+
+    private String violations(UpdateUserDTO patch) {
+        if (patch == null) {
+            return null;
+        }
+        Set<ConstraintViolation<UpdateUserDTO>> violations = validator.validate(patch);
+        return violations.isEmpty() ? null : violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private List<List<Integer>> batches(List<Integer> indexes) {
+        List<List<Integer>> batches = new ArrayList<>();
+        for (int from = 0; from < indexes.size(); from += properties.getBatchSize()) {
+            batches.add(indexes.subList(from, Math.min(from + properties.getBatchSize(), indexes.size())));
+        }
+        return batches;
+    }
+
+    private static String rootMessage(Throwable throwable) {
+        Throwable root = throwable;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage();
+    }
+
+    private record Target(UUID id, UpdateUserDTO patch) {
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.CountMode;
+import com.example.dpd.dto.UserCountDTO;
+
+public interface UserCountService {
+    UserCountDTO count(CountMode mode, boolean includeDepersonalised);
+    void refresh();
+}
@@ -0,0 +1,127 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.CountMode;
+import com.example.dpd.dto.UserCountDTO;
+import com.example.dpd.entity.UserStatus;
+import com.example.dpd.event.UserChangedEvent;
+import com.example.dpd.shard.Shards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Total user counts for list endpoints, which cannot afford a full scan of users on every page load.
+ * <p>
+ * EXACT counts every shard. ESTIMATE asks the planner of every shard for its row estimate instead, which costs the
+ * same for ten million users as for ten. CACHED answers from memory: a background recount plus the creates and
+ * depersonalisations this instance has committed since. Writes of other instances only show up after the next
+ * recount.
+ */
+@Slf4j
+@Service
+public class UserCountServiceImp implements UserCountService {
+
+    private static final Pattern PLAN_ROWS = Pattern.compile("rows=(\\d+)");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Shards shards;
+    private final CachedCount active = new CachedCount();
+    private final CachedCount all = new CachedCount();
+    private volatile boolean loaded;
+
+    public UserCountServiceImp(JdbcTemplate jdbcTemplate, Shards shards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shards = shards;
+    }
+
+    public UserCountDTO count(CountMode mode, boolean includeDepersonalised) {
+        return switch (mode) {
+            case EXACT -> new UserCountDTO(exact(includeDepersonalised), mode, false);
+            case ESTIMATE -> new UserCountDTO(shards.scatter(() -> estimate(includeDepersonalised)).stream()
+                    .mapToLong(Long::longValue).sum(), mode, true);
+            case CACHED -> {
+                if (!loaded) {
+                    refresh();
+                }
+                yield new UserCountDTO((includeDepersonalised ? all : active).get(), mode, true);
+            }
+        };
+    }
+
+    /** Counted after commit only, so rolled-back writes never change the cache. */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getType() == UserChangedEvent.Type.CREATED) {
+            active.add(1);
+            all.add(1);
+        } else if (event.getType() == UserChangedEvent.Type.DEPERSONALISED
+                && event.getBefore().getStatus() == UserStatus.ACTIVE) {
+            active.add(-1);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${dpd.count.refresh-interval-millis:300000}",
+            initialDelayString = "${dpd.count.refresh-interval-millis:300000}")
+    public synchronized void refresh() {
+        long activeChanges = active.changes();
+        long allChanges = all.changes();
+        active.recounted(exact(false), activeChanges);
+        all.recounted(exact(true), allChanges);
+        loaded = true;
+        log.debug("User counts refreshed: {} active, {} in all", active.get(), all.get());
+    }
+
+    private long exact(boolean includeDepersonalised) {
+        String sql = includeDepersonalised
+                ? "SELECT count(*) FROM users"
+                : "SELECT count(*) FROM users WHERE status = 'ACTIVE'";
+        return shards.scatter(() -> jdbcTemplate.queryForObject(sql, Long.class)).stream()
+                .mapToLong(Long::longValue).sum();
+    }
+
+    private long estimate(boolean includeDepersonalised) {
+        String sql = includeDepersonalised
+                ? "EXPLAIN SELECT 1 FROM users"
+                : "EXPLAIN SELECT 1 FROM users WHERE status = 'ACTIVE'";
+        // The first line of the plan is its top node, whose row estimate is that of the whole query
+        Matcher rows = PLAN_ROWS.matcher(jdbcTemplate.queryForList(sql, String.class).get(0));
+        return rows.find() ? Long.parseLong(rows.group(1)) : 0;
+    }
+
+    /**
+     * The last recount plus the changes seen since. A change committed while a recount runs may be counted twice
+     * until the next one, but none is ever lost.
+     */
+    private static final class CachedCount {
+
+        private final AtomicLong changes = new AtomicLong();
+        private volatile long base;
+
+        long get() {
+            return base + changes.get();
+        }
+
+        long changes() {
+            return changes.get();
+        }
+
+        void add(long delta) {
+            changes.addAndGet(delta);
+        }
+
+        /** {@code changesBefore} is what {@link #changes()} returned before the recount started. */
+        void recounted(long count, long changesBefore) {
+            base = count - changesBefore;
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.AddressDTO;
+import com.example.dpd.dto.CreateUserDTO;
+import com.example.dpd.dto.PhoneNumberDTO;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * CSV layout shared by the bulk import and export of users.
+ * <p>
+ * One row per user. Addresses are separated by {@code ;} and their fields by {@code |} in the order
+ * postal code, city, street, house number, other info. Phone numbers are separated by {@code ;}.
+ */
+public final class UserCsvFormat {
+
+    public static final String NAME = "name";
+    public static final String EMAIL = "email";
+    public static final String DATE_OF_BIRTH = "date_of_birth";
+    public static final String PLACE_OF_BIRTH = "place_of_birth";
+    public static final String MOTHER_MAIDEN_NAME = "mother_maiden_name";
+    public static final String TAJ = "taj";
+    public static final String TAX_ID = "tax_id";
+    public static final String ADDRESSES = "addresses";
+    public static final String PHONE_NUMBERS = "phone_numbers";
+
+    public static final String[] HEADER = {
+            NAME, EMAIL, DATE_OF_BIRTH, PLACE_OF_BIRTH, MOTHER_MAIDEN_NAME, TAJ, TAX_ID, ADDRESSES, PHONE_NUMBERS
+    };
+
+    public static final CSVFormat READ_FORMAT = CSVFormat.DEFAULT.builder()
+            .setHeader()
+            .setSkipHeaderRecord(true)
+            .setIgnoreEmptyLines(true)
+            .setTrim(true)
+            .build();
+
+    private static final String ENTRY_SEPARATOR = ";";
+    private static final String FIELD_SEPARATOR = "|";
+
+    private UserCsvFormat() {
+    }
+
+    public static CreateUserDTO parse(CSVRecord record) {
+        Set<AddressDTO> addresses = new LinkedHashSet<>();
+        for (String entry : split(value(record, ADDRESSES), ENTRY_SEPARATOR)) {
+            String[] fields = entry.split("\\|", -1);
+            AddressDTO address = new AddressDTO();
+            address.setPostalCode(field(fields, 0));
+            address.setCity(field(fields, 1));
+            address.setStreet(field(fields, 2));
+            address.setHouseNumber(field(fields, 3));
+            address.setOtherInfo(field(fields, 4));
+            addresses.add(address);
+        }
+
+        Set<PhoneNumberDTO> phoneNumbers = new LinkedHashSet<>();
+        for (String entry : split(value(record, PHONE_NUMBERS), ENTRY_SEPARATOR)) {
+            PhoneNumberDTO phoneNumber = new PhoneNumberDTO();
+            phoneNumber.setPhoneNumber(entry);
+            phoneNumbers.add(phoneNumber);
+        }
+
+        return CreateUserDTO.builder()
+                .name(value(record, NAME))
+                .email(value(record, EMAIL))
+                .dateOfBirth(date(value(record, DATE_OF_BIRTH)))
+                .placeOfBirth(value(record, PLACE_OF_BIRTH))
+                .motherMaidenName(value(record, MOTHER_MAIDEN_NAME))
+                .taj(value(record, TAJ))
+                .taxId(value(record, TAX_ID))
+                .addresses(addresses)
+                .phoneNumbers(phoneNumbers)
+                .build();
+    }
+
+    public static String formatAddresses(Set<AddressDTO> addresses) {
+        if (addresses == null) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        for (AddressDTO address : addresses) {
+            if (builder.length() > 0) {
+                builder.append(ENTRY_SEPARATOR);
+            }
+            builder.append(nullToEmpty(address.getPostalCode())).append(FIELD_SEPARATOR)
+                    .append(nullToEmpty(address.getCity())).append(FIELD_SEPARATOR)
+                    .append(nullToEmpty(address.getStreet())).append(FIELD_SEPARATOR)
+                    .append(nullToEmpty(address.getHouseNumber())).append(FIELD_SEPARATOR)
+                    .append(nullToEmpty(address.getOtherInfo()));
+        }
+        return builder.toString();
+    }
+
+    public static String formatPhoneNumbers(Set<PhoneNumberDTO> phoneNumbers) {
+        if (phoneNumbers == null) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        for (PhoneNumberDTO phoneNumber : phoneNumbers) {
+            if (builder.length() > 0) {
+                builder.append(ENTRY_SEPARATOR);
+            }
+            builder.append(nullToEmpty(phoneNumber.getPhoneNumber()));
+        }
+        return builder.toString();
+    }
+
+    private static String value(CSVRecord record, String column) {
+        if (!record.isMapped(column) || !record.isSet(column)) {
+            return null;
+        }
+        String value = record.get(column);
+        return value.isEmpty() ? null : value;
+    }
+
+    private static LocalDate date(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + DATE_OF_BIRTH + ": " + value);
+        }
+    }
+
+    private static String[] split(String value, String separator) {
+        return value == null ? new String[0] : value.split(separator);
+    }
+
+    private static String field(String[] fields, int index) {
+        if (index >= fields.length) {
+            return null;
+        }
+        String value = fields[index].trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+}
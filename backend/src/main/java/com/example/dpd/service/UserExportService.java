@@ -0,0 +1,15 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.ExportFormat;
+import com.example.dpd.dto.ExportJobDTO;
+import org.springframework.core.io.Resource;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public interface UserExportService {
+    ExportJobDTO submitExport(ExportFormat format);
+    Optional<ExportJobDTO> getExportJob(UUID id);
+    Optional<Resource> getExportFile(UUID id);
+    void cancelExport(UUID id);
+}
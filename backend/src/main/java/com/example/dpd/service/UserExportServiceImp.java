@@ -0,0 +1,232 @@
+package com.example.dpd.service;
+
+import com.example.dpd.config.ExportProperties;
+import com.example.dpd.dto.ExportFormat;
+import com.example.dpd.dto.ExportJobDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.exception.ResourceNotFoundException;
+import com.example.dpd.exception.ServiceUnavailableException;
+import com.example.dpd.repository.UserRepository;
+import com.example.dpd.shard.Shards;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Runs user exports in the background on a bounded pool.
+ * <p>
+ * Users are read in keyset pages, each in its own short read-only transaction, and streamed into a gzip file, so
+ * neither memory nor transaction length grows with the number of users. Finished jobs are forgotten along with
+ * their files once they expire; files no job knows about, left behind by an earlier process, go once they are
+ * older than {@code dpd.export.retention}.
+ */
+@Slf4j
+@Service
+public class UserExportServiceImp implements UserExportService {
+
+    private final UserRepository userRepository;
+    private final UserMapper userMapper;
+    private final ObjectWriter jsonWriter;
+    private final ExportProperties properties;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Shards shards;
+    private final ThreadPoolExecutor executor;
+    private final Map<UUID, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    public UserExportServiceImp(UserRepository userRepository, UserMapper userMapper, ObjectMapper objectMapper,
+                                ExportProperties properties, PlatformTransactionManager transactionManager,
+                                Shards shards) {
+        this.userRepository = userRepository;
+        this.userMapper = userMapper;
+        this.jsonWriter = objectMapper.writerFor(UserDTO.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.properties = properties;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.shards = shards;
+        this.executor = new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "user-export");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public ExportJobDTO submitExport(ExportFormat format) {
+        try {
+            Files.createDirectories(properties.getDir());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create export directory", e);
+        }
+        ExportJob job = new ExportJob(format, properties.getDir());
+        jobs.put(job.getId(), job);
+        try {
+            job.setFuture(executor.submit(() -> run(job)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw new ServiceUnavailableException("Too many export jobs queued, try again later");
+        }
+        return job.toDTO();
+    }
+
+    public Optional<ExportJobDTO> getExportJob(UUID id) {
+        return Optional.ofNullable(jobs.get(id)).map(ExportJob::toDTO);
+    }
+
+    public Optional<Resource> getExportFile(UUID id) {
+        return Optional.ofNullable(jobs.get(id))
+                .filter(job -> job.getStatus() == ExportJob.Status.COMPLETED)
+                .map(ExportJob::getFile)
+                .filter(Files::exists)
+                .map(FileSystemResource::new);
+    }
+
+    public void cancelExport(UUID id) {
+        ExportJob job = jobs.get(id);
+        if (job == null) {
+            throw new ResourceNotFoundException("Export job not found");
+        }
+        // A finished export keeps its status and file until it expires
+        if (!job.finish(ExportJob.Status.CANCELLED, null, Instant.now())) {
+            return;
+        }
+        Future<?> future = job.getFuture();
+        if (future != null) {
+            future.cancel(true);
+        }
+        executor.purge();
+        deleteFiles(job);
+    }
+
+    @Scheduled(fixedDelayString = "${dpd.export.cleanup-interval:PT10M}")
+    public void deleteExpiredExports() {
+        Instant now = Instant.now();
+        jobs.values().removeIf(job -> {
+            if (job.isFinished() && job.getExpiresAt() != null && job.getExpiresAt().isBefore(now)) {
+                deleteFiles(job);
+                return true;
+            }
+            return false;
+        });
+        Set<Path> known = new HashSet<>();
+        jobs.values().forEach(job -> {
+            known.add(job.getFile());
+            known.add(job.getPartFile());
+        });
+        TempFiles.deleteOlderThan(properties.getDir(), now.minus(properties.getRetention()), known);
+    }
+
+    private void run(ExportJob job) {
+        if (!job.start()) {
+            return;
+        }
+        try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(job.getPartFile())), 64 * 1024)) {
+            if (job.getFormat() == ExportFormat.CSV) {
+                writeCsv(job, out);
+            } else {
+                writeNdjson(job, out);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!job.isCancelled()) {
+                log.warn("Export {} failed", job.getId(), e);
+                job.finish(ExportJob.Status.FAILED, e.getMessage(), Instant.now().plus(properties.getRetention()));
+            }
+            deleteFiles(job);
+            return;
+        }
+        if (job.isCancelled()) {
+            deleteFiles(job);
+            return;
+        }
+        try {
+            Files.move(job.getPartFile(), job.getFile(), StandardCopyOption.ATOMIC_MOVE);
+            job.finish(ExportJob.Status.COMPLETED, null, Instant.now().plus(properties.getRetention()));
+        } catch (IOException e) {
+            job.finish(ExportJob.Status.FAILED, e.getMessage(), Instant.now().plus(properties.getRetention()));
+            deleteFiles(job);
+        }
+    }
+
+    private void writeNdjson(ExportJob job, OutputStream out) throws IOException {
+        forEachPage(job, page -> {
+            for (UserDTO user : page) {
+                jsonWriter.writeValue(out, user);
+                out.write('\n');
+            }
+        });
+    }
+
+    private void writeCsv(ExportJob job, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT.builder().setHeader(UserCsvFormat.HEADER).build());
+        forEachPage(job, page -> {
+            for (UserDTO user : page) {
+                printer.printRecord(user.getName(), user.getEmail(), user.getDateOfBirth(), user.getPlaceOfBirth(),
+                        user.getMotherMaidenName(), user.getTaj(), user.getTaxId(),
+                        UserCsvFormat.formatAddresses(user.getAddresses()),
+                        UserCsvFormat.formatPhoneNumbers(user.getPhoneNumbers()));
+            }
+        });
+        printer.flush();
+    }
+
+    /** Shard by shard, each in id order: a file has no use for one global order that would cost a merge per page. */
+    private void forEachPage(ExportJob job, PageConsumer consumer) throws IOException {
+        for (int shard = 0; shard < shards.count(); shard++) {
+            UUID after = null;
+            while (!job.isCancelled() && !Thread.currentThread().isInterrupted()) {
+                UUID cursor = after;
+                List<UserDTO> page = shards.on(shard, () -> readOnlyTransaction.execute(status ->
+                        userRepository.findPageWithCollections(cursor, properties.getPageSize(), true).stream()
+                                .map(userMapper::convertToDTO)
+                                .toList()));
+                if (page == null || page.isEmpty()) {
+                    break;
+                }
+                consumer.accept(page);
+                job.getRowsWritten().addAndGet(page.size());
+                after = page.get(page.size() - 1).getId();
+            }
+        }
+    }
+
+    private static void deleteFiles(ExportJob job) {
+        try {
+            Files.deleteIfExists(job.getPartFile());
+            Files.deleteIfExists(job.getFile());
+        } catch (IOException e) {
+            log.warn("Could not delete files of export {}", job.getId(), e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface PageConsumer {
+        void accept(List<UserDTO> page) throws IOException;
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.AddressDTO;
+import com.example.dpd.dto.PhoneNumberDTO;
+import com.example.dpd.dto.UserDTO;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Reads behind the GraphQL schema. Users come without addresses and phone numbers, which are loaded separately for
+ * many users at once.
+ */
+public interface UserGraphQlService {
+    Optional<UserDTO> getUser(UUID id, boolean includeDepersonalised);
+    /** Users ordered by id, starting after the given one. */
+    List<UserDTO> getUserPage(UUID after, int limit, boolean includeDepersonalised);
+    /** By user id; users that do not exist are left out. */
+    Map<UUID, List<AddressDTO>> getAddresses(Collection<UUID> userIds);
+    /** By user id; users that do not exist are left out. */
+    Map<UUID, List<PhoneNumberDTO>> getPhoneNumbers(Collection<UUID> userIds);
+}
@@ -0,0 +1,62 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.AddressDTO;
+import com.example.dpd.dto.PhoneNumberDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.entity.User;
+import com.example.dpd.entity.UserStatus;
+import com.example.dpd.repository.UserRepository;
+import com.example.dpd.shard.Shards;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Every read is one query per shard involved, however many users it is for.
+ */
+@Service
+@RequiredArgsConstructor
+public class UserGraphQlServiceImp implements UserGraphQlService {
+
+    private final UserRepository userRepository;
+    private final UserMapper userMapper;
+    private final Shards shards;
+
+    public Optional<UserDTO> getUser(UUID id, boolean includeDepersonalised) {
+        return shards.on(id, () -> userRepository.findById(id)
+                .filter(user -> includeDepersonalised || user.getStatus() == UserStatus.ACTIVE)
+                .map(userMapper::convertToScalarDTO));
+    }
+
+    public List<UserDTO> getUserPage(UUID after, int limit, boolean includeDepersonalised) {
+        List<List<UserDTO>> pages = shards.scatter(() ->
+                userRepository.findPage(after, limit, includeDepersonalised).stream()
+                        .map(userMapper::convertToScalarDTO)
+                        .toList());
+        return Shards.merge(pages, Comparator.comparing(UserDTO::getId, Shards.ID_ORDER), limit);
+    }
+
+    public Map<UUID, List<AddressDTO>> getAddresses(Collection<UUID> userIds) {
+        return byUser(userIds, ids -> userRepository.findWithAddressesByIdIn(ids).stream()
+                .collect(Collectors.toMap(User::getId, user -> user.getAddresses().stream()
+                        .map(userMapper::convertToAddressDTO)
+                        .toList())));
+    }
+
+    public Map<UUID, List<PhoneNumberDTO>> getPhoneNumbers(Collection<UUID> userIds) {
+        return byUser(userIds, ids -> userRepository.findWithPhoneNumbersByIdIn(ids).stream()
+                .collect(Collectors.toMap(User::getId, user -> user.getPhoneNumbers().stream()
+                        .map(userMapper::convertToPhoneNumberDTO)
+                        .toList())));
+    }
+
+    private <T> Map<UUID, List<T>> byUser(Collection<UUID> userIds, Function<List<UUID>, Map<UUID, List<T>>> read) {
+        Map<UUID, List<T>> values = new HashMap<>();
+        shards.scatter(shards.groupByShard(new LinkedHashSet<>(userIds), id -> id), read).forEach(values::putAll);
+        return values;
+    }
+
+}
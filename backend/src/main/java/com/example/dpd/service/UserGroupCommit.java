@@ -0,0 +1,154 @@
+package com.example.dpd.service;
+
+import com.example.dpd.config.GroupCommitProperties;
+import com.example.dpd.entity.User;
+import com.example.dpd.repository.UserBatchWriter;
+import com.example.dpd.shard.Shards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit of new users: concurrent creates are collected for a short window, or until the group is full, and
+ * persisted together, one transaction with batched inserts per shard, so that a burst of single-user creates pays
+ * for a few commits rather than one each.
+ * <p>
+ * The first create of a group waits out the window on its own thread and then writes the whole group; the others
+ * wait for their own result, so the size of a group is bounded by the threads creating users at the same time, that
+ * is the write bulkhead. Waiting creates hold no database connection. When a group cannot be written, usually
+ * because of a unique email clash, its users are written one by one, so that only the creates at fault fail, each
+ * with the error it would have had on its own.
+ */
+@Slf4j
+@Component
+public class UserGroupCommit {
+
+    private final UserBatchWriter userBatchWriter;
+    private final Shards shards;
+    private final GroupCommitProperties properties;
+    private Group open;
+
+    public UserGroupCommit(UserBatchWriter userBatchWriter, Shards shards, GroupCommitProperties properties) {
+        this.userBatchWriter = userBatchWriter;
+        this.shards = shards;
+        this.properties = properties;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /** Persists the new user together with those of concurrent calls and returns it once committed. */
+    public User persist(User user) {
+        Pending pending = new Pending(user);
+        Group group;
+        boolean first;
+        synchronized (this) {
+            first = open == null;
+            if (first) {
+                open = new Group();
+            }
+            group = open;
+            group.members.add(pending);
+            if (group.members.size() >= properties.getMaxBatchSize()) {
+                open = null;
+                group.full.countDown();
+            }
+        }
+        if (first) {
+            awaitWindow(group);
+            write(group.members);
+        }
+        return pending.await();
+    }
+
+    private void awaitWindow(Group group) {
+        try {
+            group.full.await(properties.getWindow().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            // The group is written all the same; the others are waiting for it
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this) {
+                if (open == group) {
+                    open = null;
+                }
+            }
+        }
+    }
+
+    private void write(List<Pending> members) {
+        try {
+            SortedMap<Integer, List<Pending>> byShard = shards.groupByShard(members, pending -> pending.user.getId());
+            shards.onEach(byShard.keySet(), shard -> {
+                writeOnShard(byShard.get(shard));
+                return null;
+            });
+        } catch (RuntimeException | Error e) {
+            members.forEach(pending -> pending.result.completeExceptionally(e));
+            throw e;
+        }
+    }
+
+    private void writeOnShard(List<Pending> members) {
+        try {
+            userBatchWriter.persistAll(members.stream().map(pending -> pending.user).toList());
+            members.forEach(pending -> pending.result.complete(pending.user));
+            return;
+        } catch (RuntimeException groupFailure) {
+            if (members.size() == 1) {
+                members.get(0).result.completeExceptionally(groupFailure);
+                return;
+            }
+            log.debug("Group of {} new users could not be written together, writing them one by one", members.size(),
+                    groupFailure);
+        }
+        for (Pending pending : members) {
+            try {
+                userBatchWriter.persistAll(List.of(pending.user));
+                pending.result.complete(pending.user);
+            } catch (RuntimeException e) {
+                pending.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class Group {
+        private final List<Pending> members = new ArrayList<>();
+        private final CountDownLatch full = new CountDownLatch(1);
+    }
+
+    private static final class Pending {
+
+        private final User user;
+        private final CompletableFuture<User> result = new CompletableFuture<>();
+
+        private Pending(User user) {
+            this.user = user;
+        }
+
+        /** Not interruptible: the user may be written all the same, and the caller must not be told otherwise. */
+        private User await() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+    }
+
+}
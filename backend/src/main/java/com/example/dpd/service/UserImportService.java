@@ -0,0 +1,16 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.ImportJobDTO;
+import org.springframework.core.io.Resource;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface UserImportService {
+    ImportJobDTO importUsers(String fileName, InputStream csv);
+    List<ImportJobDTO> getImportJobs();
+    Optional<ImportJobDTO> getImportJob(UUID id);
+    Optional<Resource> getRejectedReport(UUID id);
+}
@@ -0,0 +1,298 @@
+package com.example.dpd.service;
+
+import com.example.dpd.audit.AuditActor;
+import com.example.dpd.config.ImportProperties;
+import com.example.dpd.dto.CreateUserDTO;
+import com.example.dpd.dto.ImportJobDTO;
+import com.example.dpd.entity.User;
+import com.example.dpd.event.UserChangedEvent;
+import com.example.dpd.repository.UserBatchWriter;
+import com.example.dpd.shard.Shards;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Streams a CSV of users into the database.
+ * <p>
+ * The calling thread only parses rows and hands them out in chunks. Worker threads validate and persist each
+ * chunk in its own transaction, so validation runs on all cores. At most {@code maxInFlightChunks} chunks exist
+ * at any time, which bounds memory regardless of the file size. Rows that fail parsing, validation or the insert
+ * itself are written to a per-job rejected-rows report, with the TAJ, tax id and mother's maiden name masked. A file
+ * the parser cannot read past fails the job. Finished jobs and their reports, which still hold the rest of the
+ * rejected rows, are deleted after {@code dpd.import.retention}, and so are reports left behind by an earlier process.
+ */
+@Slf4j
+@Service
+public class UserImportServiceImp implements UserImportService {
+
+    private static final List<String> MASKED_COLUMNS =
+            List.of(UserCsvFormat.TAJ, UserCsvFormat.TAX_ID, UserCsvFormat.MOTHER_MAIDEN_NAME);
+    private static final String MASK = "***";
+
+    private final UserMapper userMapper;
+    private final UserBatchWriter userBatchWriter;
+    private final Validator validator;
+    private final ImportProperties properties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Shards shards;
+    private final ExecutorService workers;
+    private final Map<UUID, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    public UserImportServiceImp(UserMapper userMapper, UserBatchWriter userBatchWriter, Validator validator,
+                                ImportProperties properties, ApplicationEventPublisher eventPublisher, Shards shards) {
+        this.userMapper = userMapper;
+        this.userBatchWriter = userBatchWriter;
+        this.validator = validator;
+        this.properties = properties;
+        this.eventPublisher = eventPublisher;
+        this.shards = shards;
+        int threads = properties.getWorkerThreads() > 0
+                ? properties.getWorkerThreads()
+                : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "user-import-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    public ImportJobDTO importUsers(String fileName, InputStream csv) {
+        ImportJob job;
+        try {
+            Files.createDirectories(properties.getReportDir());
+            job = new ImportJob(fileName, properties.getReportDir());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create import report directory", e);
+        }
+        jobs.put(job.getId(), job);
+
+        Semaphore inFlight = new Semaphore(properties.getMaxInFlightChunks());
+        List<Future<?>> pending = new ArrayList<>();
+        try (CSVPrinter rejected = new CSVPrinter(Files.newBufferedWriter(job.getRejectedReport()), CSVFormat.DEFAULT);
+             CSVParser parser = CSVParser.parse(new InputStreamReader(csv, StandardCharsets.UTF_8), UserCsvFormat.READ_FORMAT)) {
+            rejected.printRecord("record_number", "reason", "record");
+
+            List<CSVRecord> chunk = new ArrayList<>(properties.getChunkSize());
+            for (CSVRecord record : parser) {
+                job.getRowsRead().incrementAndGet();
+                chunk.add(record);
+                if (chunk.size() == properties.getChunkSize()) {
+                    drainCompleted(pending);
+                    pending.add(submit(job, chunk, rejected, inFlight));
+                    chunk = new ArrayList<>(properties.getChunkSize());
+                }
+            }
+            if (!chunk.isEmpty()) {
+                pending.add(submit(job, chunk, rejected, inFlight));
+            }
+            awaitAll(pending);
+            job.complete();
+        } catch (IOException | RuntimeException | InterruptedException e) {
+            // Also a header the parser rejects; whatever the cause, the job must not be left RUNNING
+            pending.forEach(future -> future.cancel(true));
+            log.warn("Import {} of {} failed", job.getId(), fileName, e);
+            job.fail(e.getMessage());
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        } catch (ExecutionException e) {
+            pending.forEach(future -> future.cancel(true));
+            log.warn("Import {} of {} failed", job.getId(), fileName, e.getCause());
+            job.fail(e.getCause().getMessage());
+        }
+        return job.toDTO();
+    }
+
+    public List<ImportJobDTO> getImportJobs() {
+        return jobs.values().stream()
+                .map(ImportJob::toDTO)
+                .sorted(Comparator.comparing(ImportJobDTO::getStartedAt).reversed())
+                .collect(Collectors.toList());
+    }
+
+    public Optional<ImportJobDTO> getImportJob(UUID id) {
+        return Optional.ofNullable(jobs.get(id)).map(ImportJob::toDTO);
+    }
+
+    public Optional<Resource> getRejectedReport(UUID id) {
+        return Optional.ofNullable(jobs.get(id))
+                .map(ImportJob::getRejectedReport)
+                .filter(Files::exists)
+                .map(FileSystemResource::new);
+    }
+
+    @Scheduled(fixedDelayString = "${dpd.import.cleanup-interval:PT10M}")
+    public void deleteExpiredImports() {
+        Instant expired = Instant.now().minus(properties.getRetention());
+        jobs.values().removeIf(job -> {
+            if (job.isFinished() && job.getFinishedAt().isBefore(expired)) {
+                try {
+                    Files.deleteIfExists(job.getRejectedReport());
+                } catch (IOException e) {
+                    log.warn("Could not delete rejected-rows report of import {}", job.getId(), e);
+                    return false;
+                }
+                return true;
+            }
+            return false;
+        });
+        Set<Path> known = jobs.values().stream().map(ImportJob::getRejectedReport).collect(Collectors.toSet());
+        TempFiles.deleteOlderThan(properties.getReportDir(), expired, known);
+    }
+
+    private Future<?> submit(ImportJob job, List<CSVRecord> chunk, CSVPrinter rejected, Semaphore inFlight)
+            throws InterruptedException {
+        inFlight.acquire();
+        try {
+            return workers.submit(AuditActor.propagate(() -> {
+                try {
+                    processChunk(job, chunk, rejected);
+                } finally {
+                    inFlight.release();
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private void processChunk(ImportJob job, List<CSVRecord> chunk, CSVPrinter rejected) {
+        List<CSVRecord> accepted = new ArrayList<>(chunk.size());
+        List<User> users = new ArrayList<>(chunk.size());
+        for (CSVRecord record : chunk) {
+            CreateUserDTO createUserDTO;
+            try {
+                createUserDTO = UserCsvFormat.parse(record);
+            } catch (IllegalArgumentException e) {
+                reject(job, rejected, record, e.getMessage());
+                continue;
+            }
+            Set<ConstraintViolation<CreateUserDTO>> violations = validator.validate(createUserDTO);
+            if (!violations.isEmpty()) {
+                reject(job, rejected, record, violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+                continue;
+            }
+            accepted.add(record);
+            users.add(userMapper.convertToUser(createUserDTO));
+        }
+        if (users.isEmpty()) {
+            return;
+        }
+
+        // One batch per shard; a chunk of freshly generated ids spreads over all of them
+        for (Map.Entry<Integer, List<Integer>> group
+                : shards.groupByShard(indexes(users.size()), i -> users.get(i).getId()).entrySet()) {
+            int shard = group.getKey();
+            List<User> batch = group.getValue().stream().map(users::get).toList();
+            try {
+                shards.on(shard, () -> userBatchWriter.persistAll(batch));
+                job.getRowsImported().addAndGet(batch.size());
+                batch.forEach(this::publishCreated);
+            } catch (RuntimeException batchFailure) {
+                // Usually a unique email clash; retry row by row so that only the offending rows are rejected
+                for (int i : group.getValue()) {
+                    try {
+                        shards.on(shard, () -> userBatchWriter.persistAll(List.of(users.get(i))));
+                        job.getRowsImported().incrementAndGet();
+                        publishCreated(users.get(i));
+                    } catch (RuntimeException rowFailure) {
+                        reject(job, rejected, accepted.get(i), rootMessage(rowFailure));
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<Integer> indexes(int size) {
+        List<Integer> indexes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            indexes.add(i);
+        }
+        return indexes;
+    }
+
+    private void publishCreated(User user) {
+        eventPublisher.publishEvent(UserChangedEvent.created(userMapper.convertToDTO(user)));
+    }
+
+    private void reject(ImportJob job, CSVPrinter rejected, CSVRecord record, String reason) {
+        job.getRowsRejected().incrementAndGet();
+        synchronized (rejected) {
+            try {
+                rejected.printRecord(record.getRecordNumber(), reason, String.join(",", masked(record)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /** The row as read, with the identifiers that the report has no use for masked. */
+    private static String[] masked(CSVRecord record) {
+        String[] values = record.values();
+        Map<String, Integer> header = record.getParser().getHeaderMap();
+        for (String column : MASKED_COLUMNS) {
+            Integer index = header.get(column);
+            if (index != null && index < values.length && !values[index].isEmpty()) {
+                values[index] = MASK;
+            }
+        }
+        return values;
+    }
+
+    private static void drainCompleted(List<Future<?>> pending) throws InterruptedException, ExecutionException {
+        Iterator<Future<?>> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            Future<?> future = iterator.next();
+            if (future.isDone()) {
+                future.get();
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void awaitAll(List<Future<?>> pending) throws InterruptedException, ExecutionException {
+        for (Future<?> future : pending) {
+            future.get();
+        }
+    }
+
+    private static String rootMessage(Throwable throwable) {
+        Throwable root = throwable;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage();
+    }
+
+}
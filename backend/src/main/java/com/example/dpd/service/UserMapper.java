@@ -0,0 +1,163 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.*;
+import com.example.dpd.entity.Address;
+import com.example.dpd.entity.PhoneNumber;
+import com.example.dpd.entity.User;
+import com.example.dpd.validation.PhoneNumbers;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Component
+public class UserMapper {
+
+    public User convertToUser(CreateUserDTO createUserDTO) {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setName(createUserDTO.getName());
+        user.setEmail(createUserDTO.getEmail());
+        user.setDateOfBirth(createUserDTO.getDateOfBirth());
+        user.setPlaceOfBirth(createUserDTO.getPlaceOfBirth());
+        user.setMotherMaidenName(createUserDTO.getMotherMaidenName());
+        user.setTaj(createUserDTO.getTaj());
+        user.setTaxId(createUserDTO.getTaxId());
+
+        Set<Address> addresses = createUserDTO.getAddresses() == null ? new LinkedHashSet<>()
+                : createUserDTO.getAddresses().stream()
+                .map(this::convertToAddress)
+                .collect(Collectors.toSet());
+        addresses.forEach(address -> address.setUser(user));
+        user.setAddresses(addresses);
+
+        Set<PhoneNumber> phoneNumbers = createUserDTO.getPhoneNumbers() == null ? new LinkedHashSet<>()
+                : createUserDTO.getPhoneNumbers().stream()
+                .map(this::convertToPhoneNumber)
+                .collect(Collectors.toSet());
+        phoneNumbers.forEach(phoneNumber -> phoneNumber.setUser(user));
+        user.setPhoneNumbers(phoneNumbers);
+        return user;
+    }
+
+    /**
+     * Applies the non-null fields of a partial update. Address and phone number sets are replaced as a whole, in
+     * place: the collections are orphan-removing and cached, so their instances must stay.
+     */
+    public void applyUpdate(User user, UpdateUserDTO updateUserDTO) {
+        if (updateUserDTO.getName() != null) {
+            user.setName(updateUserDTO.getName());
+        }
+        if (updateUserDTO.getEmail() != null) {
+            user.setEmail(updateUserDTO.getEmail());
+        }
+        if (updateUserDTO.getDateOfBirth() != null) {
+            user.setDateOfBirth(updateUserDTO.getDateOfBirth());
+        }
+        if (updateUserDTO.getPlaceOfBirth() != null) {
+            user.setPlaceOfBirth(updateUserDTO.getPlaceOfBirth());
+        }
+        if (updateUserDTO.getMotherMaidenName() != null) {
+            user.setMotherMaidenName(updateUserDTO.getMotherMaidenName());
+        }
+        if (updateUserDTO.getTaj() != null) {
+            user.setTaj(updateUserDTO.getTaj());
+        }
+        if (updateUserDTO.getTaxId() != null) {
+            user.setTaxId(updateUserDTO.getTaxId());
+        }
+        if (updateUserDTO.getAddresses() != null) {
+            user.getAddresses().clear();
+            Set<Address> addresses = updateUserDTO.getAddresses().stream()
+                    .map(this::convertToAddress)
+                    .collect(Collectors.toSet());
+            addresses.forEach(address -> address.setUser(user));
+            user.getAddresses().addAll(addresses);
+        }
+        if (updateUserDTO.getPhoneNumbers() != null) {
+            user.getPhoneNumbers().clear();
+            Set<PhoneNumber> phoneNumbers = updateUserDTO.getPhoneNumbers().stream()
+                    .map(this::convertToPhoneNumber)
+                    .collect(Collectors.toSet());
+            phoneNumbers.forEach(phoneNumber -> phoneNumber.setUser(user));
+            user.getPhoneNumbers().addAll(phoneNumbers);
+        }
+    }
+
+    public UserDTO convertToDTO(User user) {
+        UserDTO userDTO = convertToScalarDTO(user);
+
+        Set<AddressDTO> addressDTOs = user.getAddresses().stream()
+                .map(this::convertToAddressDTO)
+                .collect(Collectors.toSet());
+        userDTO.setAddresses(addressDTOs);
+
+        Set<PhoneNumberDTO> phoneNumberDTOs = user.getPhoneNumbers().stream()
+                .map(this::convertToPhoneNumberDTO)
+                .collect(Collectors.toSet());
+        userDTO.setPhoneNumbers(phoneNumberDTOs);
+
+        return userDTO;
+    }
+
+    /** The user without addresses and phone numbers, which are left null and therefore never loaded. */
+    public UserDTO convertToScalarDTO(User user) {
+        UserDTO userDTO = new UserDTO();
+        userDTO.setId(user.getId());
+        userDTO.setName(user.getName());
+        userDTO.setEmail(user.getEmail());
+        userDTO.setDateOfBirth(user.getDateOfBirth());
+        userDTO.setPlaceOfBirth(user.getPlaceOfBirth());
+        userDTO.setMotherMaidenName(user.getMotherMaidenName());
+        userDTO.setTaj(user.getTaj());
+        userDTO.setTaxId(user.getTaxId());
+        userDTO.setStatus(user.getStatus());
+        return userDTO;
+    }
+
+    public Address convertToAddress(AddressDTO addressDTO) {
+        Address address = new Address();
+        // If addressDTO.getId() is null, it's a new address, generate ID.
+        // If addressDTO.getId() is not null, we should ideally fetch the existing Address
+        // and update it, or rely on JPA merge behavior. For simplicity in create/update
+        // where we clear the collection, generating a new ID might be acceptable for now,
+        // but this assumes addresses are fully replaced on update.
+        address.setId(addressDTO.getId() != null ? addressDTO.getId() : UUID.randomUUID());
+        address.setPostalCode(addressDTO.getPostalCode());
+        address.setCity(addressDTO.getCity());
+        address.setStreet(addressDTO.getStreet());
+        address.setHouseNumber(addressDTO.getHouseNumber());
+        address.setOtherInfo(addressDTO.getOtherInfo());
+        // The user link is set in the calling method (createUser/updateUser)
+        return address;
+    }
+
+    public AddressDTO convertToAddressDTO(Address address) {
+        AddressDTO addressDTO = new AddressDTO();
+        addressDTO.setId(address.getId());
+        addressDTO.setPostalCode(address.getPostalCode());
+        addressDTO.setCity(address.getCity());
+        addressDTO.setStreet(address.getStreet());
+        addressDTO.setHouseNumber(address.getHouseNumber());
+        addressDTO.setOtherInfo(address.getOtherInfo());
+        return addressDTO;
+    }
+
+    public PhoneNumber convertToPhoneNumber(PhoneNumberDTO phoneNumberDTO) {
+        PhoneNumber phoneNumber = new PhoneNumber();
+        phoneNumber.setId(UUID.randomUUID());
+        phoneNumber.setPhoneNumber(phoneNumberDTO.getPhoneNumber());
+        phoneNumber.setPhoneNumberE164(PhoneNumbers.toE164(phoneNumberDTO.getPhoneNumber()));
+        return phoneNumber;
+    }
+
+    public PhoneNumberDTO convertToPhoneNumberDTO(PhoneNumber phoneNumber) {
+        PhoneNumberDTO phoneNumberDTO = new PhoneNumberDTO();
+        phoneNumberDTO.setId(phoneNumber.getId());
+        phoneNumberDTO.setPhoneNumber(phoneNumber.getPhoneNumber());
+        return phoneNumberDTO;
+    }
+
+}
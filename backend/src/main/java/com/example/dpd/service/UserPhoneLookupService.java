@@ -0,0 +1,9 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.UserDTO;
+
+import java.util.List;
+
+public interface UserPhoneLookupService {
+    List<UserDTO> findByPhoneNumber(String phoneNumber);
+}
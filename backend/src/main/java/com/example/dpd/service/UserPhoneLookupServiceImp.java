@@ -0,0 +1,75 @@
+package com.example.dpd.service;
+
+import com.example.dpd.config.PhoneProperties;
+import com.example.dpd.dto.PhoneNumberDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.event.UserChangedEvent;
+import com.example.dpd.exception.BadRequestException;
+import com.example.dpd.repository.UserRepository;
+import com.example.dpd.shard.Shards;
+import com.example.dpd.validation.PhoneNumbers;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Answers "who owns this number?" from the indexed phone_number_e164 column, with the owners of recently asked
+ * numbers kept in memory.
+ * <p>
+ * Both the query and the cache are keyed by the E.164 form, so any spelling of a number hits the same entry. Every
+ * committed user change invalidates the numbers the user had before and has after it; an invalidation that races
+ * with a load of the same number waits for the load and then drops its result.
+ */
+@Service
+public class UserPhoneLookupServiceImp implements UserPhoneLookupService {
+
+    private final UserRepository userRepository;
+    private final UserMapper userMapper;
+    private final Shards shards;
+    private final Cache<String, List<UserDTO>> owners;
+
+    public UserPhoneLookupServiceImp(UserRepository userRepository, UserMapper userMapper, PhoneProperties properties,
+                                     Shards shards) {
+        this.userRepository = userRepository;
+        this.userMapper = userMapper;
+        this.shards = shards;
+        this.owners = Caffeine.newBuilder()
+                .maximumSize(properties.getLookupCacheSize())
+                .expireAfterWrite(properties.getLookupCacheTtl())
+                .build();
+    }
+
+    public List<UserDTO> findByPhoneNumber(String phoneNumber) {
+        String e164 = PhoneNumbers.toE164(phoneNumber);
+        if (e164 == null) {
+            throw new BadRequestException("Not a valid phone number: " + phoneNumber);
+        }
+        // Owners of a number can live on any shard
+        return owners.get(e164, number -> shards.scatter(() -> userRepository.findByPhoneNumberE164(number).stream()
+                        .map(userMapper::convertToDTO)
+                        .toList())
+                .stream()
+                .flatMap(List::stream)
+                .toList());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        owners.invalidateAll(Stream.of(event.getBefore(), event.getAfter())
+                .filter(Objects::nonNull)
+                .map(UserDTO::getPhoneNumbers)
+                .filter(Objects::nonNull)
+                .flatMap(Set::stream)
+                .map(PhoneNumberDTO::getPhoneNumber)
+                .map(PhoneNumbers::toE164)
+                .filter(Objects::nonNull)
+                .toList());
+    }
+
+}
@@ -1,8 +1,11 @@
 package com.example.dpd.service;
 
+import com.example.dpd.dto.CoalescingStatsDTO;
 import com.example.dpd.dto.CreateUserDTO;
 import com.example.dpd.dto.UpdateUserDTO;
 import com.example.dpd.dto.UserDTO;
+import com.example.dpd.dto.UserLookupResultDTO;
+import com.example.dpd.dto.UserSearchDTO;
 
 import java.util.List;
 import java.util.Optional;
@@ -12,7 +15,17 @@ public interface UserService {
     UserDTO createUser(CreateUserDTO createUserDTO);
     UserDTO updateUser(UUID id, UpdateUserDTO updateUserDTO);
     void deleteUser(UUID id);
-    List<UserDTO> getAllUsers();
-    Optional<UserDTO> getUserById(UUID id);
+    /*
+     * Reads skip depersonalised users unless includeDepersonalised is set, which is meant for administrative views.
+     */
+    List<UserDTO> getAllUsers(boolean includeDepersonalised);
+    /** Users ordered by id, starting after the given one. */
+    List<UserDTO> getUserPage(UUID after, int limit, boolean includeDepersonalised);
+    Optional<UserDTO> getUserById(UUID id, boolean includeDepersonalised);
+    List<UserDTO> searchUsers(UserSearchDTO userSearchDTO, boolean includeDepersonalised);
+    /** The users in the order of their ids, duplicates once; ids without a user are reported as missing. */
+    UserLookupResultDTO lookupUsers(List<UUID> ids, boolean includeDepersonalised);
+    /** How many user and page reads ran their own load and how many shared one already running. */
+    List<CoalescingStatsDTO> getCoalescingStats();
     // gtpr method removed
 }
@@ -1,202 +1,281 @@
 package com.example.dpd.service;
 
+import com.example.dpd.config.CoalescingProperties;
 import com.example.dpd.dto.*;
-import com.example.dpd.entity.Address;
-import com.example.dpd.entity.PhoneNumber;
+import com.example.dpd.entity.BlindIndexListener;
 import com.example.dpd.entity.User;
+import com.example.dpd.entity.UserStatus;
+import com.example.dpd.event.UserChangedEvent;
 import com.example.dpd.exception.ResourceNotFoundException;
+import com.example.dpd.repository.ScalarUserPatcher;
+import com.example.dpd.repository.UserArchive;
 import com.example.dpd.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
+import com.example.dpd.security.PiiCipher;
+import com.example.dpd.shard.Shards;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/**
+ * Work on one user runs on the shard of its id; lists and searches are gathered from every shard, see {@link Shards}.
+ * <p>
+ * Concurrent reads of the same user, or of the same page, share one load through a {@link SingleFlight}, so a user
+ * opened by many operators at once, or a burst after a cache miss, costs the queries of one read. Callers inside a
+ * transaction always load on their own, as they may have to see their own uncommitted changes. Likewise, creates
+ * outside a transaction may be persisted together with concurrent ones, see {@link UserGroupCommit}.
+ * <p>
+ * Users depersonalised long enough ago are moved to {@link UserArchive}. They still read by id as they did before,
+ * but no longer show up in lists, searches, lookups or counts.
+ */
 @Service
-@RequiredArgsConstructor
 public class UserServiceImp implements UserService {
 
     private final UserRepository userRepository;
+    private final UserMapper userMapper;
+    private final PiiCipher piiCipher;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ScalarUserPatcher scalarUserPatcher;
+    private final Shards shards;
+    private final CoalescingProperties coalescingProperties;
+    private final UserGroupCommit userGroupCommit;
+    private final UserArchive userArchive;
+    private final SingleFlight<ByIdKey, Optional<UserDTO>> byIdLoads;
+    private final SingleFlight<PageKey, List<UserDTO>> pageLoads;
+
+    public UserServiceImp(UserRepository userRepository, UserMapper userMapper, PiiCipher piiCipher,
+                          ApplicationEventPublisher eventPublisher, ScalarUserPatcher scalarUserPatcher, Shards shards,
+                          CoalescingProperties coalescingProperties, UserGroupCommit userGroupCommit,
+                          UserArchive userArchive) {
+        this.userRepository = userRepository;
+        this.userMapper = userMapper;
+        this.piiCipher = piiCipher;
+        this.eventPublisher = eventPublisher;
+        this.scalarUserPatcher = scalarUserPatcher;
+        this.shards = shards;
+        this.coalescingProperties = coalescingProperties;
+        this.userGroupCommit = userGroupCommit;
+        this.userArchive = userArchive;
+        this.byIdLoads = new SingleFlight<>("user", coalescingProperties.getMaxWait());
+        this.pageLoads = new SingleFlight<>("page", coalescingProperties.getMaxWait());
+    }
 
     public UserDTO createUser(CreateUserDTO createUserDTO) {
-        User user = new User();
-        user.setId(UUID.randomUUID());
-        user.setName(createUserDTO.getName());
-        user.setEmail(createUserDTO.getEmail());
-        user.setDateOfBirth(createUserDTO.getDateOfBirth());
-        user.setPlaceOfBirth(createUserDTO.getPlaceOfBirth());
-        user.setMotherMaidenName(createUserDTO.getMotherMaidenName());
-        user.setTaj(createUserDTO.getTaj());
-        user.setTaxId(createUserDTO.getTaxId());
-
-        Set<Address> addresses = createUserDTO.getAddresses().stream()
-                .map(this::convertToAddress)
-                .collect(Collectors.toSet());
-        addresses.forEach(address -> address.setUser(user));
-        user.setAddresses(addresses);
-
-        Set<PhoneNumber> phoneNumbers = createUserDTO.getPhoneNumbers().stream()
-                .map(this::convertToPhoneNumber)
-                .collect(Collectors.toSet());
-        phoneNumbers.forEach(phoneNumber -> phoneNumber.setUser(user));
-        user.setPhoneNumbers(phoneNumbers);
-
-        User savedUser = userRepository.save(user);
-        return convertToDTO(savedUser);
+        // The mapper assigns the id, which decides the shard
+        User user = userMapper.convertToUser(createUserDTO);
+        if (userGroupCommit.isEnabled() && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            UserDTO userDTO = userMapper.convertToDTO(userGroupCommit.persist(user));
+            eventPublisher.publishEvent(UserChangedEvent.created(userDTO));
+            return userDTO;
+        }
+        return shards.on(user.getId(), () -> {
+            User savedUser = userRepository.save(user);
+            UserDTO userDTO = userMapper.convertToDTO(savedUser);
+            eventPublisher.publishEvent(UserChangedEvent.created(userDTO));
+            return userDTO;
+        });
     }
 
     public UserDTO updateUser(UUID id, UpdateUserDTO updateUserDTO) {
-        Optional<User> userOptional = userRepository.findById(id);
+        return shards.on(id, () -> updateOnShard(id, updateUserDTO));
+    }
+
+    private UserDTO updateOnShard(UUID id, UpdateUserDTO updateUserDTO) {
+        if (scalarUserPatcher.isEnabled() && ScalarUserPatcher.isScalarOnly(updateUserDTO)) {
+            ScalarUserPatcher.Patched patched = scalarUserPatcher.patch(id, updateUserDTO)
+                    .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+            eventPublisher.publishEvent(UserChangedEvent.updated(patched.before(), patched.after()));
+            return patched.after();
+        }
+        // Depersonalised users are gone as far as the API is concerned
+        Optional<User> userOptional = userRepository.findById(id).filter(UserServiceImp::isActive);
         if (userOptional.isPresent()) {
             User user = userOptional.get();
-            if (updateUserDTO.getName() != null) {
-                user.setName(updateUserDTO.getName());
-            }
-            if (updateUserDTO.getEmail() != null) {
-                user.setEmail(updateUserDTO.getEmail());
-            }
-            if(updateUserDTO.getDateOfBirth() != null) {
-                user.setDateOfBirth(updateUserDTO.getDateOfBirth());
-            }
-            if(updateUserDTO.getPlaceOfBirth() != null) {
-                user.setPlaceOfBirth(updateUserDTO.getPlaceOfBirth());
-            }
-            if(updateUserDTO.getMotherMaidenName() != null) {
-                user.setMotherMaidenName(updateUserDTO.getMotherMaidenName());
-            }
-            if(updateUserDTO.getTaj() != null) {
-                user.setTaj(updateUserDTO.getTaj());
-            }
-            if(updateUserDTO.getTaxId() != null) {
-                user.setTaxId(updateUserDTO.getTaxId());
-            }
-            if (updateUserDTO.getAddresses() != null) {
-                user.getAddresses().clear();
-                Set<Address> addresses = updateUserDTO.getAddresses().stream()
-                        .map(this::convertToAddress)
-                        .collect(Collectors.toSet());
-                addresses.forEach(address -> address.setUser(user));
-                user.setAddresses(addresses);
-            }
-
-            if (updateUserDTO.getPhoneNumbers() != null) {
-                user.getPhoneNumbers().clear();
-                Set<PhoneNumber> phoneNumbers = updateUserDTO.getPhoneNumbers().stream()
-                        .map(this::convertToPhoneNumber)
-                        .collect(Collectors.toSet());
-                phoneNumbers.forEach(phoneNumber -> phoneNumber.setUser(user));
-                user.setPhoneNumbers(phoneNumbers);
-            }
+            UserDTO before = userMapper.convertToDTO(user);
+            userMapper.applyUpdate(user, updateUserDTO);
 
             User updatedUser = userRepository.save(user);
-            return convertToDTO(updatedUser);
+            UserDTO userDTO = userMapper.convertToDTO(updatedUser);
+            eventPublisher.publishEvent(UserChangedEvent.updated(before, userDTO));
+            return userDTO;
         } else {
             throw new ResourceNotFoundException("User not found");
         }
     }
 
     public void deleteUser(UUID id) {
+        shards.on(id, () -> {
+            depersonalise(id);
+            return null;
+        });
+    }
+
+    private void depersonalise(UUID id) {
         // GDPR-compliant deletion (Depersonalization)
         Optional<User> userOptional = userRepository.findById(id);
         if (userOptional.isPresent()) {
             User user = userOptional.get();
-            user.setName("[DELETED]"); // Or null
-            user.setEmail("[DELETED@" + user.getId().toString() + "]"); // Ensure uniqueness if email has constraint
-            user.setDateOfBirth(null);
-            user.setPlaceOfBirth("[DELETED]"); // Or null
-            user.setMotherMaidenName("[DELETED]"); // Or null
-            user.setTaj(null); // Assuming TAJ can be nullable
-            user.setTaxId(null); // Assuming Tax ID can be nullable
-
-            // Remove associated personal data collections
-            user.getAddresses().clear();
-            user.getPhoneNumbers().clear();
-            // Note: CascadeType.ALL on User entity should handle deletion of orphaned Address/PhoneNumber rows
+            if (!isActive(user)) {
+                // Already erased: like an archived user, nothing to do, and its archival is not postponed
+                return;
+            }
+            UserDTO before = userMapper.convertToDTO(user);
+            erase(user);
+            user.setDepersonalisedAt(OffsetDateTime.now());
 
             userRepository.save(user);
-        } else {
+            eventPublisher.publishEvent(UserChangedEvent.depersonalised(before, userMapper.convertToDTO(user)));
+        } else if (!userArchive.contains(id)) {
             // Optionally log or ignore if user not found, or re-throw
              throw new ResourceNotFoundException("User not found for depersonalization with id: " + id);
         }
     }
 
-    public List<UserDTO> getAllUsers() {
-        return userRepository.findAll().stream()
-                .map(this::convertToDTO)
+    /** Replaces everything personal by placeholders; all that is left of a user once depersonalised. */
+    private static void erase(User user) {
+        user.setName("[DELETED]"); // Or null
+        user.setEmail("[DELETED@" + user.getId().toString() + "]"); // Ensure uniqueness if email has constraint
+        user.setDateOfBirth(null);
+        user.setPlaceOfBirth("[DELETED]"); // Or null
+        user.setMotherMaidenName("[DELETED]"); // Or null
+        user.setTaj(null); // Assuming TAJ can be nullable
+        user.setTaxId(null); // Assuming Tax ID can be nullable
+        user.setStatus(UserStatus.DEPERSONALISED);
+
+        // Remove associated personal data collections
+        user.getAddresses().clear();
+        user.getPhoneNumbers().clear();
+        // orphanRemoval on both collections deletes the rows
+    }
+
+    public List<UserDTO> getAllUsers(boolean includeDepersonalised) {
+        return shards.scatter(() -> (includeDepersonalised ? userRepository.findAll() : userRepository.findAllActive()).stream()
+                        .map(userMapper::convertToDTO)
+                        .toList())
+                .stream()
+                .flatMap(List::stream)
                 .collect(Collectors.toList());
     }
 
-    public Optional<UserDTO> getUserById(UUID id) {
-        return userRepository.findById(id)
-                .map(this::convertToDTO);
+    public List<UserDTO> getUserPage(UUID after, int limit, boolean includeDepersonalised) {
+        return coalesced(pageLoads, new PageKey(after, limit, includeDepersonalised),
+                () -> loadUserPage(after, limit, includeDepersonalised));
+    }
+
+    private List<UserDTO> loadUserPage(UUID after, int limit, boolean includeDepersonalised) {
+        List<List<UserDTO>> pages = shards.scatter(() ->
+                userRepository.findPageWithCollections(after, limit, includeDepersonalised).stream()
+                        .map(userMapper::convertToDTO)
+                        .toList());
+        return Shards.merge(pages, Comparator.comparing(UserDTO::getId, Shards.ID_ORDER), limit);
+    }
+
+    public Optional<UserDTO> getUserById(UUID id, boolean includeDepersonalised) {
+        return coalesced(byIdLoads, new ByIdKey(id, includeDepersonalised), () -> loadUserById(id, includeDepersonalised));
+    }
+
+    private Optional<UserDTO> loadUserById(UUID id, boolean includeDepersonalised) {
+        // Filtered here rather than in the query, so that the lookup still goes through the second-level cache
+        return shards.on(id, () -> userRepository.findById(id)
+                .filter(user -> includeDepersonalised || isActive(user))
+                .map(userMapper::convertToDTO)
+                .or(() -> includeDepersonalised ? findArchived(id) : Optional.empty()));
+    }
+
+    /** Only asked for ids missing from users, so reads of users that exist cost nothing extra. */
+    private Optional<UserDTO> findArchived(UUID id) {
+        if (!userArchive.contains(id)) {
+            return Optional.empty();
+        }
+        User user = new User();
+        user.setId(id);
+        erase(user);
+        return Optional.of(userMapper.convertToDTO(user));
+    }
+
+    public List<UserDTO> searchUsers(UserSearchDTO userSearchDTO, boolean includeDepersonalised) {
+        // TAJ and tax id are encrypted with a random IV, so equality lookups go through their blind indexes
+        String tajIndex = piiCipher.blindIndex(BlindIndexListener.TAJ, userSearchDTO.getTaj());
+        String taxIdIndex = piiCipher.blindIndex(BlindIndexListener.TAX_ID, userSearchDTO.getTaxId());
+        return shards.scatter(() -> {
+                    List<User> users = tajIndex != null
+                            ? userRepository.findByTajBlindIndex(tajIndex)
+                            : userRepository.findByTaxIdBlindIndex(taxIdIndex);
+                    return users.stream()
+                            .filter(user -> taxIdIndex == null || taxIdIndex.equals(user.getTaxIdBlindIndex()))
+                            .filter(user -> includeDepersonalised || isActive(user))
+                            .map(userMapper::convertToDTO)
+                            .toList();
+                })
+                .stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    public UserLookupResultDTO lookupUsers(List<UUID> ids, boolean includeDepersonalised) {
+        Set<UUID> requested = new LinkedHashSet<>(ids);
+        Map<UUID, UserDTO> found = new HashMap<>();
+        shards.scatter(shards.groupByShard(requested, id -> id), group ->
+                        userRepository.findAllWithCollectionsByIdIn(group).stream()
+                                .filter(user -> includeDepersonalised || isActive(user))
+                                .map(userMapper::convertToDTO)
+                                .toList())
+                .forEach(part -> part.forEach(user -> found.put(user.getId(), user)));
+
+        UserLookupResultDTO result = new UserLookupResultDTO();
+        result.setUsers(new ArrayList<>(found.size()));
+        result.setMissing(new ArrayList<>());
+        for (UUID id : requested) {
+            UserDTO user = found.get(id);
+            if (user != null) {
+                result.getUsers().add(user);
+            } else {
+                result.getMissing().add(id);
+            }
+        }
+        return result;
+    }
+
+    public List<CoalescingStatsDTO> getCoalescingStats() {
+        return List.of(byIdLoads.getStats(), pageLoads.getStats());
+    }
+
+    /**
+     * Reads starting after a change must not join a load that may have read the user from before it. Any change can
+     * move users into or out of any page, so every page load is forgotten.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void forgetLoadsOf(UserChangedEvent event) {
+        UserDTO user = event.getAfter() != null ? event.getAfter() : event.getBefore();
+        if (user != null && user.getId() != null) {
+            byIdLoads.forget(new ByIdKey(user.getId(), false));
+            byIdLoads.forget(new ByIdKey(user.getId(), true));
+        }
+        pageLoads.forgetAll();
+    }
+
+    private <K, V> V coalesced(SingleFlight<K, V> loads, K key, Supplier<V> load) {
+        if (!coalescingProperties.isEnabled() || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return load.get();
+        }
+        return loads.load(key, load);
+    }
+
+    private static boolean isActive(User user) {
+        return user.getStatus() == UserStatus.ACTIVE;
     }
 
     // gtpr method removed, logic moved to deleteUser
 
-    private UserDTO convertToDTO(User user) {
-        UserDTO userDTO = new UserDTO();
-        userDTO.setId(user.getId());
-        userDTO.setName(user.getName());
-        userDTO.setEmail(user.getEmail());
-        userDTO.setDateOfBirth(user.getDateOfBirth());
-        userDTO.setPlaceOfBirth(user.getPlaceOfBirth());
-        userDTO.setMotherMaidenName(user.getMotherMaidenName());
-        userDTO.setTaj(user.getTaj());
-        userDTO.setTaxId(user.getTaxId());
-
-        Set<AddressDTO> addressDTOs = user.getAddresses().stream()
-                .map(this::convertToAddressDTO)
-                .collect(Collectors.toSet());
-        userDTO.setAddresses(addressDTOs);
-
-        Set<PhoneNumberDTO> phoneNumberDTOs = user.getPhoneNumbers().stream()
-                .map(this::convertToPhoneNumberDTO)
-                .collect(Collectors.toSet());
-        userDTO.setPhoneNumbers(phoneNumberDTOs);
-
-        return userDTO;
-    }
-
-    private Address convertToAddress(AddressDTO addressDTO) {
-        Address address = new Address();
-        // If addressDTO.getId() is null, it's a new address, generate ID.
-        // If addressDTO.getId() is not null, we should ideally fetch the existing Address
-        // and update it, or rely on JPA merge behavior. For simplicity in create/update
-        // where we clear the collection, generating a new ID might be acceptable for now,
-        // but this assumes addresses are fully replaced on update.
-        address.setId(addressDTO.getId() != null ? addressDTO.getId() : UUID.randomUUID());
-        address.setPostalCode(addressDTO.getPostalCode());
-        address.setCity(addressDTO.getCity());
-        address.setStreet(addressDTO.getStreet());
-        address.setHouseNumber(addressDTO.getHouseNumber());
-        address.setOtherInfo(addressDTO.getOtherInfo());
-        // The user link is set in the calling method (createUser/updateUser)
-        return address;
-    }
-
-    private AddressDTO convertToAddressDTO(Address address) {
-        AddressDTO addressDTO = new AddressDTO();
-        addressDTO.setId(address.getId());
-        addressDTO.setPostalCode(address.getPostalCode());
-        addressDTO.setCity(address.getCity());
-        addressDTO.setStreet(address.getStreet());
-        addressDTO.setHouseNumber(address.getHouseNumber());
-        addressDTO.setOtherInfo(address.getOtherInfo());
-        return addressDTO;
-    }
-
-    private PhoneNumber convertToPhoneNumber(PhoneNumberDTO phoneNumberDTO) {
-        PhoneNumber phoneNumber = new PhoneNumber();
-        phoneNumber.setId(UUID.randomUUID());
-        phoneNumber.setPhoneNumber(phoneNumberDTO.getPhoneNumber());
-        return phoneNumber;
-    }
-
-    private PhoneNumberDTO convertToPhoneNumberDTO(PhoneNumber phoneNumber) {
-        PhoneNumberDTO phoneNumberDTO = new PhoneNumberDTO();
-        phoneNumberDTO.setId(phoneNumber.getId());
-        phoneNumberDTO.setPhoneNumber(phoneNumber.getPhoneNumber());
-        return phoneNumberDTO;
+    private record ByIdKey(UUID id, boolean includeDepersonalised) {
+    }
+
+    private record PageKey(UUID after, int limit, boolean includeDepersonalised) {
     }
 
 }
@@ -0,0 +1,8 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.UserStatsDTO;
+
+public interface UserStatsService {
+    UserStatsDTO getStats();
+    void reconcile();
+}
@@ -0,0 +1,258 @@
+package com.example.dpd.service;
+
+import com.example.dpd.config.StatsProperties;
+import com.example.dpd.dto.AddressDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.dto.UserStatsDTO;
+import com.example.dpd.event.UserChangedEvent;
+import com.example.dpd.shard.Shards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+/**
+ * User counts by city, postal code and birth-year bucket.
+ * <p>
+ * Counts live in the small user_stat_counts table, so reading them costs the same for a thousand users as for
+ * ten million. Every user write adjusts the affected buckets: deltas are buffered in memory and upserted in one
+ * batch per flush interval, which keeps popular buckets from becoming a lock hot spot. A scheduled full recount
+ * corrects whatever drift lost deltas may have caused.
+ * <p>
+ * A recount already includes every change committed before it, so buffered deltas of those changes must not be
+ * added on top. Each delta keeps the shard of its user and the time it was buffered, which is just after its
+ * change committed. The recount stores, per shard, the time of the statement that counted it, and every instance
+ * drops the deltas it buffered before that time instead of flushing them, however long they waited; a flush waits
+ * for a recount in progress to commit, so it never misses those times. The times come from the clocks of the
+ * databases and the application, which are assumed to agree to well within a second.
+ */
+@Slf4j
+@Service
+public class UserStatsServiceImp implements UserStatsService {
+
+    static final String CITY = "CITY";
+    static final String POSTAL_CODE = "POSTAL_CODE";
+    static final String BIRTH_YEAR = "BIRTH_YEAR";
+
+    /** Arbitrary application-wide key, so only one instance recounts at a time. */
+    private static final long RECONCILIATION_LOCK = 0x757365725f737461L;
+
+    /** Held shared by flushes and exclusively by the recount. */
+    private static final long FLUSH_LOCK = RECONCILIATION_LOCK + 1;
+
+    private static final String UPSERT = "INSERT INTO user_stat_counts (dimension, bucket, user_count) VALUES (?, ?, ?) "
+            + "ON CONFLICT (dimension, bucket) DO UPDATE SET user_count = user_stat_counts.user_count + EXCLUDED.user_count";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StatsProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final Shards shards;
+    private final Queue<Delta> pending = new ConcurrentLinkedQueue<>();
+
+    public UserStatsServiceImp(JdbcTemplate jdbcTemplate, StatsProperties properties,
+                               PlatformTransactionManager transactionManager, Shards shards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = shards;
+    }
+
+    public UserStatsDTO getStats() {
+        Map<String, Map<String, Long>> dimensions = new HashMap<>();
+        jdbcTemplate.query("SELECT dimension, bucket, user_count FROM user_stat_counts WHERE user_count > 0", rs -> {
+            dimensions.computeIfAbsent(rs.getString("dimension"), d -> new TreeMap<>())
+                    .put(rs.getString("bucket"), rs.getLong("user_count"));
+        });
+        UserStatsDTO stats = new UserStatsDTO();
+        stats.setByCity(dimensions.getOrDefault(CITY, Map.of()));
+        stats.setByPostalCode(dimensions.getOrDefault(POSTAL_CODE, Map.of()));
+        stats.setByBirthYear(dimensions.getOrDefault(BIRTH_YEAR, Map.of()));
+        return stats;
+    }
+
+    /** Counted after commit only, so rolled-back writes never reach the buffer. */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        UserDTO before = event.getBefore();
+        UserDTO after = event.getAfter();
+        int shard = shards.shardOf((after != null ? after : before).getId());
+        Instant bufferedAt = Instant.now();
+        adjust(shard, bufferedAt, CITY, addressValues(before, AddressDTO::getCity), addressValues(after, AddressDTO::getCity));
+        adjust(shard, bufferedAt, POSTAL_CODE,
+                addressValues(before, AddressDTO::getPostalCode), addressValues(after, AddressDTO::getPostalCode));
+        adjust(shard, bufferedAt, BIRTH_YEAR, birthYearBucket(before), birthYearBucket(after));
+    }
+
+    /** Fills the table on first start so that existing users do not have to wait for the nightly recount. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialise() {
+        Boolean empty = jdbcTemplate.queryForObject("SELECT NOT EXISTS (SELECT 1 FROM user_stat_counts)", Boolean.class);
+        if (Boolean.TRUE.equals(empty)) {
+            reconcile();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${dpd.stats.flush-interval-millis:1000}")
+    public synchronized void flush() {
+        List<Delta> drained = new ArrayList<>();
+        for (Delta delta = pending.poll(); delta != null; delta = pending.poll()) {
+            drained.add(delta);
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                jdbcTemplate.query("SELECT pg_advisory_xact_lock_shared(?)", rs -> null, FLUSH_LOCK);
+                Map<Integer, Instant> reconciledAt = new HashMap<>();
+                jdbcTemplate.queryForList("SELECT shard, reconciled_at FROM user_stat_reconciliation").forEach(row ->
+                        reconciledAt.put(((Number) row.get("shard")).intValue(),
+                                ((Timestamp) row.get("reconciled_at")).toInstant()));
+                Map<Bucket, Long> net = new HashMap<>();
+                int dropped = 0;
+                for (Delta delta : drained) {
+                    Instant recount = reconciledAt.get(delta.shard());
+                    if (recount != null && delta.bufferedAt().isBefore(recount)) {
+                        dropped++;
+                    } else {
+                        net.merge(delta.bucket(), delta.value(), Long::sum);
+                    }
+                }
+                if (dropped > 0) {
+                    log.debug("Dropped {} user stat deltas already part of a recount", dropped);
+                }
+                List<Object[]> rows = new ArrayList<>();
+                net.forEach((bucket, value) -> {
+                    if (value != 0) {
+                        rows.add(new Object[]{bucket.dimension(), bucket.value(), value});
+                    }
+                });
+                if (!rows.isEmpty()) {
+                    jdbcTemplate.batchUpdate(UPSERT, rows);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not flush {} user stat deltas, retrying on next flush", drained.size(), e);
+            pending.addAll(drained);
+        }
+    }
+
+    @Scheduled(cron = "${dpd.stats.reconciliation-cron:0 30 3 * * *}")
+    public synchronized void reconcile() {
+        int bucketSize = properties.getBirthYearBucketSize();
+        Boolean reconciled = transactionTemplate.execute(tx -> {
+            if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)",
+                    Boolean.class, RECONCILIATION_LOCK))) {
+                return false;
+            }
+            // Waits for flushes in progress; later ones see the times below once this commits
+            jdbcTemplate.query("SELECT pg_advisory_xact_lock(?)", rs -> null, FLUSH_LOCK);
+            jdbcTemplate.update("DELETE FROM user_stat_counts");
+            // Every user lives on exactly one shard, so the counts of the shards add up
+            List<ShardCount> shardCounts = shards.scatter(() -> count(bucketSize));
+            Map<Bucket, Long> counts = new HashMap<>();
+            List<Object[]> reconciledAt = new ArrayList<>();
+            for (int shard = 0; shard < shardCounts.size(); shard++) {
+                shardCounts.get(shard).counts().forEach((bucket, count) -> counts.merge(bucket, count, Long::sum));
+                reconciledAt.add(new Object[]{shard, shardCounts.get(shard).countedAt()});
+            }
+            // Changes committed before a shard was counted are part of the recount; their deltas must not be added
+            jdbcTemplate.batchUpdate("INSERT INTO user_stat_reconciliation (shard, reconciled_at) VALUES (?, ?) "
+                    + "ON CONFLICT (shard) DO UPDATE SET reconciled_at = EXCLUDED.reconciled_at", reconciledAt);
+            List<Object[]> rows = new ArrayList<>();
+            counts.forEach((bucket, count) -> rows.add(new Object[]{bucket.dimension(), bucket.value(), count}));
+            jdbcTemplate.batchUpdate("INSERT INTO user_stat_counts (dimension, bucket, user_count) VALUES (?, ?, ?)", rows);
+            return true;
+        });
+        if (Boolean.TRUE.equals(reconciled)) {
+            log.info("User statistics reconciled");
+        }
+    }
+
+    /**
+     * The counts of the current shard, and the start of the statement that counted them. The statement's snapshot is
+     * taken right after, so the changes it counts are the ones committed before that time.
+     */
+    private ShardCount count(int bucketSize) {
+        Map<Bucket, Long> counts = new HashMap<>();
+        Timestamp[] countedAt = new Timestamp[1];
+        // Joined to a single row, so that the time comes back even from a shard without users
+        jdbcTemplate.query("SELECT statement_timestamp() AS counted_at, c.dimension, c.bucket, c.user_count "
+                        + "FROM (VALUES (1)) one LEFT JOIN ("
+                        + "SELECT ? AS dimension, a.city AS bucket, COUNT(DISTINCT a.user_id) AS user_count "
+                        + "FROM addresses a JOIN users u ON u.id = a.user_id "
+                        + "WHERE a.city IS NOT NULL AND a.city <> '' AND u.status = 'ACTIVE' GROUP BY a.city "
+                        + "UNION ALL "
+                        + "SELECT ?, a.postal_code, COUNT(DISTINCT a.user_id) FROM addresses a JOIN users u ON u.id = a.user_id "
+                        + "WHERE a.postal_code IS NOT NULL AND a.postal_code <> '' AND u.status = 'ACTIVE' "
+                        + "GROUP BY a.postal_code "
+                        + "UNION ALL "
+                        + "SELECT ?, CASE WHEN ? = 1 THEN start_year::text ELSE start_year || '-' || (start_year + ? - 1) END, "
+                        + "COUNT(*) FROM (SELECT (EXTRACT(YEAR FROM date_of_birth)::int / ?) * ? AS start_year FROM users "
+                        + "WHERE date_of_birth IS NOT NULL) years GROUP BY start_year) c ON true",
+                rs -> {
+                    countedAt[0] = rs.getTimestamp("counted_at");
+                    if (rs.getString("dimension") != null) {
+                        counts.put(new Bucket(rs.getString("dimension"), rs.getString("bucket")), rs.getLong("user_count"));
+                    }
+                }, CITY, POSTAL_CODE, BIRTH_YEAR, bucketSize, bucketSize, bucketSize, bucketSize);
+        return new ShardCount(countedAt[0], counts);
+    }
+
+    private void adjust(int shard, Instant bufferedAt, String dimension, Set<String> before, Set<String> after) {
+        for (String value : before) {
+            if (!after.contains(value)) {
+                pending.add(new Delta(shard, bufferedAt, new Bucket(dimension, value), -1));
+            }
+        }
+        for (String value : after) {
+            if (!before.contains(value)) {
+                pending.add(new Delta(shard, bufferedAt, new Bucket(dimension, value), 1));
+            }
+        }
+    }
+
+    private static Set<String> addressValues(UserDTO user, Function<AddressDTO, String> field) {
+        if (user == null || user.getAddresses() == null) {
+            return Set.of();
+        }
+        Set<String> values = new HashSet<>();
+        for (AddressDTO address : user.getAddresses()) {
+            String value = field.apply(address);
+            if (value != null && !value.isEmpty()) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    private Set<String> birthYearBucket(UserDTO user) {
+        if (user == null || user.getDateOfBirth() == null) {
+            return Set.of();
+        }
+        int size = properties.getBirthYearBucketSize();
+        int start = Math.floorDiv(user.getDateOfBirth().getYear(), size) * size;
+        return Set.of(size == 1 ? Integer.toString(start) : start + "-" + (start + size - 1));
+    }
+
+    private record Bucket(String dimension, String value) {
+    }
+
+    private record Delta(int shard, Instant bufferedAt, Bucket bucket, long value) {
+    }
+
+    private record ShardCount(Timestamp countedAt, Map<Bucket, Long> counts) {
+    }
+
+}
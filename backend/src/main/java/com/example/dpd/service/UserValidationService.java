@@ -0,0 +1,13 @@
+package com.example.dpd.service;
+
+import com.example.dpd.dto.BatchValidationResultDTO;
+import com.example.dpd.dto.CreateUserDTO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+public interface UserValidationService {
+    BatchValidationResultDTO validate(InputStream json) throws IOException;
+    BatchValidationResultDTO validate(List<CreateUserDTO> users);
+}
@@ -0,0 +1,143 @@
+package com.example.dpd.service;
+
+import com.example.dpd.config.ValidationProperties;
+import com.example.dpd.dto.BatchValidationResultDTO;
+import com.example.dpd.dto.CreateUserDTO;
+import com.example.dpd.dto.UserValidationResultDTO;
+import com.example.dpd.dto.ViolationDTO;
+import com.example.dpd.exception.BadRequestException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Dry-run validation of candidate users: the same constraints as POST /users, nothing is written.
+ * <p>
+ * The batch is cut into chunks that are validated in parallel on a fixed pool; results are collected in chunk
+ * order, so the reported indexes come back sorted without a merge step.
+ */
+@Service
+public class UserValidationServiceImp implements UserValidationService {
+
+    private static final Comparator<ViolationDTO> BY_FIELD = Comparator.comparing(ViolationDTO::getField)
+            .thenComparing(ViolationDTO::getMessage);
+
+    private final Validator validator;
+    private final ValidationProperties properties;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService workers;
+
+    public UserValidationServiceImp(Validator validator, ValidationProperties properties, ObjectMapper objectMapper) {
+        this.validator = validator;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        int threads = properties.getWorkerThreads() > 0
+                ? properties.getWorkerThreads()
+                : Runtime.getRuntime().availableProcessors();
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "user-validation-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Reads the JSON array one user at a time and stops at the first user over the maximum batch size, so that an
+     * oversized request is refused before it has all been read and mapped.
+     */
+    public BatchValidationResultDTO validate(InputStream json) throws IOException {
+        List<CreateUserDTO> users = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new BadRequestException("Expected a JSON array of users");
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (users.size() == properties.getMaxBatchSize()) {
+                    throw tooLarge();
+                }
+                users.add(parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.readValueAs(CreateUserDTO.class));
+            }
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("Malformed JSON: " + e.getOriginalMessage());
+        }
+        return validate(users);
+    }
+
+    public BatchValidationResultDTO validate(List<CreateUserDTO> users) {
+        if (users.size() > properties.getMaxBatchSize()) {
+            throw tooLarge();
+        }
+        List<Future<List<UserValidationResultDTO>>> chunks = new ArrayList<>();
+        for (int from = 0; from < users.size(); from += properties.getChunkSize()) {
+            int start = from;
+            int end = Math.min(from + properties.getChunkSize(), users.size());
+            chunks.add(workers.submit(() -> validateRange(users, start, end)));
+        }
+
+        List<UserValidationResultDTO> invalidUsers = new ArrayList<>();
+        try {
+            for (Future<List<UserValidationResultDTO>> chunk : chunks) {
+                invalidUsers.addAll(chunk.get());
+            }
+        } catch (InterruptedException e) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Validation interrupted", e);
+        } catch (ExecutionException e) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            throw new IllegalStateException("Validation failed", e.getCause());
+        }
+
+        BatchValidationResultDTO result = new BatchValidationResultDTO();
+        result.setTotal(users.size());
+        result.setInvalid(invalidUsers.size());
+        result.setValid(users.size() - invalidUsers.size());
+        result.setInvalidUsers(invalidUsers);
+        return result;
+    }
+
+    private BadRequestException tooLarge() {
+        return new BadRequestException("At most " + properties.getMaxBatchSize() + " users can be validated at once");
+    }
+
+    private List<UserValidationResultDTO> validateRange(List<CreateUserDTO> users, int start, int end) {
+        List<UserValidationResultDTO> invalid = new ArrayList<>();
+        for (int i = start; i < end; i++) {
+            CreateUserDTO user = users.get(i);
+            if (user == null) {
+                invalid.add(new UserValidationResultDTO(i, List.of(new ViolationDTO("", "User is missing"))));
+                continue;
+            }
+            Set<ConstraintViolation<CreateUserDTO>> violations = validator.validate(user);
+            if (!violations.isEmpty()) {
+                invalid.add(new UserValidationResultDTO(i, violations.stream()
+                        .map(violation -> new ViolationDTO(violation.getPropertyPath().toString(), violation.getMessage()))
+                        .sorted(BY_FIELD)
+                        .toList()));
+            }
+        }
+        return invalid;
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.example.dpd.shard;
+
+/**
+ * The shard the current thread works on, read by {@link ShardRoutingDataSource} whenever a connection is taken.
+ * Bound through {@link Shards}; unbound means the first shard.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    static Integer bind(Integer shard) {
+        Integer previous = CURRENT.get();
+        if (shard == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shard);
+        }
+        return previous;
+    }
+
+}
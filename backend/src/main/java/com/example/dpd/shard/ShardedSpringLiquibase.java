@@ -0,0 +1,33 @@
+package com.example.dpd.shard;
+
+import liquibase.exception.LiquibaseException;
+import liquibase.integration.spring.SpringLiquibase;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs the changelog against every shard in turn, through a {@link ShardRoutingDataSource}. Every shard gets the
+ * full schema, so the tables that are not sharded also exist, empty, on all but the first one.
+ */
+@Slf4j
+public class ShardedSpringLiquibase extends SpringLiquibase {
+
+    private final int shards;
+
+    public ShardedSpringLiquibase(int shards) {
+        this.shards = shards;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws LiquibaseException {
+        for (int shard = 0; shard < shards; shard++) {
+            Integer previous = ShardContext.bind(shard);
+            try {
+                log.info("Updating shard {}", shard);
+                super.afterPropertiesSet();
+            } finally {
+                ShardContext.bind(previous);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+package com.example.dpd.shard;
+
+import com.example.dpd.audit.AuditActor;
+import com.example.dpd.config.ShardingProperties;
+import com.example.dpd.sql.RequestSqlStats;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Places every user, with its addresses and phone numbers, on one of the configured databases by a hash of its id,
+ * and runs work on the right one.
+ * <p>
+ * Work on one user is wrapped in {@link #on(UUID, Supplier)} before its transaction starts. Reads that are not
+ * about one user {@link #scatter} to all shards in parallel, each shard in its own read-only transaction on its own
+ * thread, and the caller merges the parts; keyset pages stay correct when each shard returns its own first page
+ * after the cursor and the merged list is cut to size again, see {@link #merge}. A thread keeps the connection of
+ * its persistence context between transactions, which is why work touching several shards from a request thread
+ * goes through those threads rather than switching shards in place. Unique constraints, such as the one on
+ * email, only hold within a shard.
+ * <p>
+ * With sharding disabled there is a single shard and everything runs inline on the calling thread.
+ */
+@Component
+public class Shards {
+
+    /** Also holds every table that is not sharded. */
+    public static final int HOME = 0;
+
+    /** The order Postgres sorts uuid columns in, which compares bytes unsigned, unlike {@link UUID#compareTo}. */
+    public static final Comparator<UUID> ID_ORDER = (a, b) -> {
+        int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    };
+
+    private final int count;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService scatter;
+
+    public Shards(ShardingProperties properties, PlatformTransactionManager transactionManager) {
+        this.count = properties.isEnabled() ? Math.max(1, properties.getShards().size()) : 1;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // Unbounded, so that the parts of one call never wait behind those of another; the bulkheads bound the callers
+        this.scatter = count == 1 ? null : Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "shard-scatter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scatter != null) {
+            scatter.shutdownNow();
+        }
+    }
+
+    public int count() {
+        return count;
+    }
+
+    /** Jump consistent hash of the id: adding a shard only moves the users that belong on the new one. */
+    public int shardOf(UUID id) {
+        return count == 1 ? HOME : jumpHash(id.getMostSignificantBits() ^ id.getLeastSignificantBits(), count);
+    }
+
+    public <T> T on(UUID id, Supplier<T> work) {
+        return on(shardOf(id), work);
+    }
+
+    /**
+     * Runs the work with the shard bound on this thread. Must be entered before the transaction starts: inside one,
+     * the connection the transaction already holds would win.
+     */
+    public <T> T on(int shard, Supplier<T> work) {
+        Integer previous = ShardContext.current();
+        if (count == 1 || Objects.equals(previous, shard)) {
+            return work.get();
+        }
+        if (previous != null && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Cannot switch from shard " + previous + " to " + shard + " inside a transaction");
+        }
+        ShardContext.bind(shard);
+        try {
+            return work.get();
+        } finally {
+            ShardContext.bind(previous);
+        }
+    }
+
+    /**
+     * Runs the work on every shard in turn, on the calling thread. For background jobs, whose threads have no
+     * persistence context of their own.
+     */
+    public void forEachShard(IntConsumer work) {
+        for (int shard = 0; shard < count; shard++) {
+            int current = shard;
+            on(shard, () -> {
+                work.accept(current);
+                return null;
+            });
+        }
+    }
+
+    /** The items by the shard of their id, in shard order, each list in the order of the items. */
+    public <T> SortedMap<Integer, List<T>> groupByShard(Collection<T> items, Function<? super T, UUID> id) {
+        SortedMap<Integer, List<T>> groups = new TreeMap<>();
+        for (T item : items) {
+            groups.computeIfAbsent(shardOf(id.apply(item)), shard -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+
+    /** Runs the read on every shard, see {@link #scatter(Map, Function)}. */
+    public <T> List<T> scatter(Supplier<T> read) {
+        Map<Integer, Void> all = new TreeMap<>();
+        for (int shard = 0; shard < count; shard++) {
+            all.put(shard, null);
+        }
+        return scatter(all, ignored -> read.get());
+    }
+
+    /**
+     * Runs the read for each group on its shard, in a read-only transaction; in parallel when there are several.
+     * The results come back in the iteration order of the groups.
+     */
+    public <K, T> List<T> scatter(Map<Integer, K> groups, Function<K, T> read) {
+        return onEach(groups.keySet(), shard -> readOnlyTransaction.execute(status -> read.apply(groups.get(shard))));
+    }
+
+    /**
+     * Runs the work once per listed shard with that shard bound, without a transaction of its own; in parallel
+     * when there are several shards. Fails with the first failure after all parts have finished.
+     */
+    public <T> List<T> onEach(Collection<Integer> shards, IntFunction<T> work) {
+        if (scatter == null) {
+            List<T> results = new ArrayList<>(shards.size());
+            for (int shard : shards) {
+                results.add(work.apply(shard));
+            }
+            return results;
+        }
+        List<CompletableFuture<T>> parts = new ArrayList<>(shards.size());
+        for (int shard : shards) {
+            parts.add(CompletableFuture.supplyAsync(
+                    AuditActor.propagate(RequestSqlStats.propagate(() -> on(shard, () -> work.apply(shard)))), scatter));
+        }
+        try {
+            CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return parts.stream().map(CompletableFuture::join).toList();
+    }
+
+    /** The first {@code limit} elements of lists that are each sorted by the order, merged. */
+    public static <T> List<T> merge(List<? extends List<T>> sorted, Comparator<? super T> order, int limit) {
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>((a, b) -> order.compare(a.value, b.value));
+        for (List<T> part : sorted) {
+            Iterator<T> iterator = part.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Head<>(iterator.next(), iterator));
+            }
+        }
+        List<T> merged = new ArrayList<>(Math.min(limit, sorted.stream().mapToInt(List::size).sum()));
+        while (merged.size() < limit && !heads.isEmpty()) {
+            Head<T> head = heads.poll();
+            merged.add(head.value);
+            if (head.rest.hasNext()) {
+                heads.add(new Head<>(head.rest.next(), head.rest));
+            }
+        }
+        return merged;
+    }
+
+    /** Lamping and Veach, "A Fast, Minimal Memory, Consistent Hash Algorithm". */
+    static int jumpHash(long key, int buckets) {
+        long bucket = -1;
+        long next = 0;
+        while (next < buckets) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+
+    private record Head<T>(T value, Iterator<T> rest) {
+    }
+
+}
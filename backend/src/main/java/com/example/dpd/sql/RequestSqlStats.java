@@ -0,0 +1,46 @@
+package com.example.dpd.sql;
+
+import java.util.function.Supplier;
+
+/**
+ * The {@link SqlStats} of the HTTP request the current thread works for. Bound by {@link SqlStatsFilter} on the
+ * servlet thread and carried over to executor threads with {@link #propagate}.
+ */
+public final class RequestSqlStats {
+
+    private static final ThreadLocal<SqlStats> CURRENT = new ThreadLocal<>();
+
+    private RequestSqlStats() {
+    }
+
+    public static SqlStats current() {
+        return CURRENT.get();
+    }
+
+    /** Work that, wherever it runs, records its statements in the stats of the request submitting it. */
+    public static <T> Supplier<T> propagate(Supplier<T> work) {
+        SqlStats stats = CURRENT.get();
+        if (stats == null) {
+            return work;
+        }
+        return () -> {
+            SqlStats previous = bind(stats);
+            try {
+                return work.get();
+            } finally {
+                bind(previous);
+            }
+        };
+    }
+
+    static SqlStats bind(SqlStats stats) {
+        SqlStats previous = CURRENT.get();
+        if (stats == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(stats);
+        }
+        return previous;
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.example.dpd.sql;
+
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Times every statement executed through the instrumented data source, adds it to the stats of the current
+ * request and of any other open scope, and logs the slow ones. Slow statements are logged with literals
+ * masked and bound parameters reduced to their shapes, so the log never carries personal data.
+ */
+@Slf4j
+public class SqlStatementListener implements QueryExecutionListener {
+
+    private static final String START = "dpd.sql.start";
+
+    /** Scopes that count every statement, on any thread, while registered; tests open them to pin statement counts. */
+    static final Set<SqlStats> SCOPES = new CopyOnWriteArraySet<>();
+
+    private final long slowThresholdNanos;
+
+    public SqlStatementListener(Duration slowThreshold) {
+        this.slowThresholdNanos = slowThreshold.toNanos();
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        execInfo.addCustomValue(START, System.nanoTime());
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Long start = execInfo.getCustomValue(START, Long.class);
+        long elapsedNanos = start == null ? execInfo.getElapsedTime() * 1_000_000 : System.nanoTime() - start;
+        String sql = queryInfoList.isEmpty() ? "" : queryInfoList.get(0).getQuery();
+
+        SqlStats request = RequestSqlStats.current();
+        if (request != null) {
+            request.record(sql, elapsedNanos);
+        }
+        for (SqlStats scope : SCOPES) {
+            scope.record(sql, elapsedNanos);
+        }
+
+        if (elapsedNanos >= slowThresholdNanos && log.isWarnEnabled()) {
+            log.warn("Slow SQL ({} ms{}): {} parameters {}", elapsedNanos / 1_000_000,
+                    execInfo.isBatch() ? ", batch of " + batchSize(queryInfoList) : "",
+                    SqlText.mask(sql),
+                    queryInfoList.isEmpty() ? "[]" : SqlText.shapes(firstParameterSet(queryInfoList.get(0))));
+        }
+    }
+
+    private static int batchSize(List<QueryInfo> queryInfoList) {
+        return queryInfoList.stream().mapToInt(query -> Math.max(1, query.getParametersList().size())).sum();
+    }
+
+    private static List<Object> firstParameterSet(QueryInfo queryInfo) {
+        List<Object> values = new ArrayList<>();
+        if (!queryInfo.getParametersList().isEmpty()) {
+            List<ParameterSetOperation> operations = new ArrayList<>(queryInfo.getParametersList().get(0));
+            // Recorded in the order the setters were called; args[0] is the parameter index
+            operations.sort(Comparator.comparingInt(operation -> operation.getArgs()[0] instanceof Integer index ? index : 0));
+            for (ParameterSetOperation operation : operations) {
+                Object[] args = operation.getArgs();
+                values.add(ParameterSetOperation.isSetNullParameterOperation(operation) || args.length < 2 ? null : args[1]);
+            }
+        }
+        return values;
+    }
+
+}
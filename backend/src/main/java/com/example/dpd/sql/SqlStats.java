@@ -0,0 +1,62 @@
+package com.example.dpd.sql;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statement executions and database time of one scope: an HTTP request, or everything run while a test counts
+ * statements. A batch counts as one execution, as it is one round trip. Safe to update from several threads, since
+ * a request may hand its work to an executor.
+ */
+public class SqlStats {
+
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder selects = new LongAdder();
+    private final LongAdder inserts = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder deletes = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    void record(String sql, long elapsedNanos) {
+        statements.increment();
+        nanos.add(elapsedNanos);
+        switch (SqlText.kind(sql)) {
+            case "select", "with" -> selects.increment();
+            case "insert" -> inserts.increment();
+            case "update" -> updates.increment();
+            case "delete" -> deletes.increment();
+            default -> {
+            }
+        }
+    }
+
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    public long getSelects() {
+        return selects.sum();
+    }
+
+    public long getInserts() {
+        return inserts.sum();
+    }
+
+    public long getUpdates() {
+        return updates.sum();
+    }
+
+    public long getDeletes() {
+        return deletes.sum();
+    }
+
+    public double getMillis() {
+        return nanos.sum() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d statements (%d select, %d insert, %d update, %d delete) in %.1f ms",
+                getStatements(), getSelects(), getInserts(), getUpdates(), getDeletes(), getMillis());
+    }
+
+}
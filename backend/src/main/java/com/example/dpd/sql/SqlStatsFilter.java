@@ -0,0 +1,113 @@
+package com.example.dpd.sql;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Gives every HTTP request its own {@link SqlStats} and, when enabled, reports them as {@code X-Sql-Statements}
+ * and {@code X-Sql-Time-Ms} response headers. Headers have to go out before the body, so they carry the
+ * statements run until the response started; for everything but streamed downloads that is all of them.
+ * Asynchronous requests keep their stats across the dispatches in a request attribute.
+ */
+public class SqlStatsFilter extends OncePerRequestFilter {
+
+    static final String STATEMENTS_HEADER = "X-Sql-Statements";
+    static final String TIME_HEADER = "X-Sql-Time-Ms";
+    private static final String STATS_ATTRIBUTE = SqlStatsFilter.class.getName() + ".stats";
+
+    private final boolean responseHeaders;
+
+    public SqlStatsFilter(boolean responseHeaders) {
+        this.responseHeaders = responseHeaders;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlStats stats = (SqlStats) request.getAttribute(STATS_ATTRIBUTE);
+        HttpServletResponse target = response;
+        if (stats == null) {
+            stats = new SqlStats();
+            request.setAttribute(STATS_ATTRIBUTE, stats);
+            if (responseHeaders) {
+                target = new HeaderWritingResponse(response, stats);
+            }
+        }
+        SqlStats previous = RequestSqlStats.bind(stats);
+        try {
+            chain.doFilter(request, target);
+        } finally {
+            RequestSqlStats.bind(previous);
+        }
+        // Responses without a body are not committed yet
+        if (target instanceof HeaderWritingResponse headerWriting && !request.isAsyncStarted()) {
+            headerWriting.writeHeaders();
+        }
+    }
+
+    /** Adds the headers just before the response is committed. */
+    private static final class HeaderWritingResponse extends HttpServletResponseWrapper {
+
+        private final SqlStats stats;
+        private boolean written;
+
+        private HeaderWritingResponse(HttpServletResponse response, SqlStats stats) {
+            super(response);
+            this.stats = stats;
+        }
+
+        void writeHeaders() {
+            if (!written && !isCommitted()) {
+                written = true;
+                setHeader(STATEMENTS_HEADER, Long.toString(stats.getStatements()));
+                setHeader(TIME_HEADER, String.format(Locale.ROOT, "%.1f", stats.getMillis()));
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeaders();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeaders();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeaders();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeaders();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeaders();
+            super.sendError(sc);
+        }
+
+    }
+
+}
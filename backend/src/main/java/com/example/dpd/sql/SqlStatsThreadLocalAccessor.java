@@ -0,0 +1,37 @@
+package com.example.dpd.sql;
+
+import org.springframework.graphql.execution.ThreadLocalAccessor;
+
+import java.util.Map;
+
+/**
+ * Carries the {@link RequestSqlStats} of a GraphQL request to the threads its data fetchers and batch loaders run
+ * on, which {@link RequestSqlStats#propagate} cannot reach.
+ */
+public class SqlStatsThreadLocalAccessor implements ThreadLocalAccessor {
+
+    private static final String KEY = SqlStatsThreadLocalAccessor.class.getName();
+
+    @Override
+    public void extractValues(Map<String, Object> container) {
+        SqlStats stats = RequestSqlStats.current();
+        if (stats != null) {
+            container.put(KEY, stats);
+        }
+    }
+
+    @Override
+    public void restoreValues(Map<String, Object> values) {
+        if (values.get(KEY) instanceof SqlStats stats) {
+            RequestSqlStats.bind(stats);
+        }
+    }
+
+    @Override
+    public void resetValues(Map<String, Object> values) {
+        if (values.containsKey(KEY)) {
+            RequestSqlStats.bind(null);
+        }
+    }
+
+}
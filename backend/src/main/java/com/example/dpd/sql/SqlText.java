@@ -0,0 +1,53 @@
+package com.example.dpd.sql;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/** Log-safe views of statements and their parameters: shapes only, never values. */
+final class SqlText {
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private SqlText() {
+    }
+
+    /** The leading keyword in lower case: select, insert, update, delete, with... */
+    static String kind(String sql) {
+        String trimmed = sql.stripLeading();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        return trimmed.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    /** The statement with literals replaced by {@code ?}, for statements that were not prepared with parameters. */
+    static String mask(String sql) {
+        String masked = STRING_LITERAL.matcher(sql).replaceAll("?");
+        masked = NUMBER_LITERAL.matcher(masked).replaceAll("?");
+        return WHITESPACE.matcher(masked).replaceAll(" ").strip();
+    }
+
+    /** Type of each bound value, with the length of strings: {@code [String(12), UUID, null]}. */
+    static String shapes(List<Object> values) {
+        return values.stream().map(SqlText::shape).collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    private static String shape(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof CharSequence text) {
+            return "String(" + text.length() + ")";
+        }
+        if (value instanceof byte[] bytes) {
+            return "byte[" + bytes.length + "]";
+        }
+        return value.getClass().getSimpleName();
+    }
+
+}
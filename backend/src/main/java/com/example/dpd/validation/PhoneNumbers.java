@@ -0,0 +1,36 @@
+package com.example.dpd.validation;
+
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+
+/**
+ * E.164 normalisation of the free-form phone numbers users give us. Numbers without a country code are read as
+ * Hungarian, so {@code 06 30 123 4567}, {@code +36-30-123-4567} and {@code 0036301234567} all become
+ * {@code +36301234567}.
+ */
+public final class PhoneNumbers {
+
+    public static final String DEFAULT_REGION = "HU";
+
+    private static final PhoneNumberUtil UTIL = PhoneNumberUtil.getInstance();
+
+    private PhoneNumbers() {
+    }
+
+    /**
+     * The E.164 form of the number, or null when it cannot be parsed or is not a possible number in its region.
+     */
+    public static String toE164(String raw) {
+        if (raw == null || raw.isBlank()) {
+            return null;
+        }
+        try {
+            Phonenumber.PhoneNumber parsed = UTIL.parse(raw, DEFAULT_REGION);
+            return UTIL.isPossibleNumber(parsed) ? UTIL.format(parsed, PhoneNumberUtil.PhoneNumberFormat.E164) : null;
+        } catch (NumberParseException e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,13 @@
+package com.example.dpd.validation;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+public class ValidTajValidator implements ConstraintValidator<ValidTaj, CharSequence> {
+
+    @Override
+    public boolean isValid(CharSequence value, ConstraintValidatorContext context) {
+        return value == null || HungarianIds.isValidTaj(value);
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.example.dpd.validation;
+
+import javax.validation.Constraint;
+import javax.validation.Payload;
+import java.lang.annotation.*;
+
+/**
+ * The annotated string must be a Hungarian tax id of a natural person with a correct check digit. Null is valid; combine with
+ * {@code @NotBlank} where the value is mandatory.
+ */
+@Documented
+@Constraint(validatedBy = ValidTaxIdValidator.class)
+@Target({ElementType.FIELD, ElementType.PARAMETER, ElementType.TYPE_USE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ValidTaxId {
+    String message() default "Tax id is invalid";
+    Class<?>[] groups() default {};
+    Class<? extends Payload>[] payload() default {};
+}
@@ -0,0 +1,13 @@
+package com.example.dpd.validation;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+public class ValidTaxIdValidator implements ConstraintValidator<ValidTaxId, CharSequence> {
+
+    @Override
+    public boolean isValid(CharSequence value, ConstraintValidatorContext context) {
+        return value == null || HungarianIds.isValidTaxId(value);
+    }
+
+}
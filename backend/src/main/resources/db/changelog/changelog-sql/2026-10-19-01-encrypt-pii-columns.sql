@@ -0,0 +1,15 @@
+--liquibase formatted sql
+
+-- changeset dev:20261019-encrypt-pii-1
+ALTER TABLE users
+    ALTER COLUMN taj TYPE VARCHAR(128),
+    ALTER COLUMN tax_id TYPE VARCHAR(128),
+    ALTER COLUMN mother_maiden_name TYPE VARCHAR(512),
+    ADD COLUMN taj_bidx VARCHAR(64),
+    ADD COLUMN tax_id_bidx VARCHAR(64);
+
+-- changeset dev:20261019-encrypt-pii-2 runInTransaction:false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_taj_bidx ON users (taj_bidx);
+
+-- changeset dev:20261019-encrypt-pii-3 runInTransaction:false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_tax_id_bidx ON users (tax_id_bidx);
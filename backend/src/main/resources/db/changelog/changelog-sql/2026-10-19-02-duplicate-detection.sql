@@ -0,0 +1,29 @@
+--liquibase formatted sql
+
+-- changeset dev:20261019-duplicates-1
+CREATE UNLOGGED TABLE IF NOT EXISTS duplicate_blocking_keys
+(
+    run_id    UUID         NOT NULL,
+    block_key VARCHAR(128) NOT NULL,
+    user_id   UUID         NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_duplicate_blocking_keys_run_key ON duplicate_blocking_keys (run_id, block_key);
+
+-- changeset dev:20261019-duplicates-2
+CREATE TABLE IF NOT EXISTS duplicate_clusters
+(
+    id          UUID PRIMARY KEY,
+    run_id      UUID             NOT NULL,
+    status      VARCHAR(16)      NOT NULL,
+    max_score   DOUBLE PRECISION NOT NULL,
+    created_at  TIMESTAMPTZ      NOT NULL,
+    reviewed_at TIMESTAMPTZ
+);
+CREATE INDEX IF NOT EXISTS idx_duplicate_clusters_status ON duplicate_clusters (status, id);
+
+CREATE TABLE IF NOT EXISTS duplicate_cluster_members
+(
+    cluster_id UUID NOT NULL REFERENCES duplicate_clusters (id) ON DELETE CASCADE,
+    user_id    UUID NOT NULL,
+    PRIMARY KEY (cluster_id, user_id)
+);
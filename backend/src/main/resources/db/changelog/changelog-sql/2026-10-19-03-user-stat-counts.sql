@@ -0,0 +1,17 @@
+--liquibase formatted sql
+
+-- changeset dev:20261019-user-stats-1
+CREATE TABLE IF NOT EXISTS user_stat_counts
+(
+    dimension  VARCHAR(16)  NOT NULL,
+    bucket     VARCHAR(255) NOT NULL,
+    user_count BIGINT       NOT NULL,
+    PRIMARY KEY (dimension, bucket)
+);
+
+-- changeset dev:20261019-user-stats-2
+CREATE TABLE IF NOT EXISTS user_stat_reconciliation
+(
+    shard         INT PRIMARY KEY,
+    reconciled_at TIMESTAMPTZ NOT NULL
+);
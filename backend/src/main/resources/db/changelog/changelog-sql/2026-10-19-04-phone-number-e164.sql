@@ -0,0 +1,9 @@
+--liquibase formatted sql
+
+-- changeset dev:20261019-phone-e164-1
+ALTER TABLE phone_numbers
+    ADD COLUMN IF NOT EXISTS phone_number_e164 VARCHAR(16);
+
+-- Filled for existing rows by PhoneNumberBackfill, which needs libphonenumber and so cannot run here
+-- changeset dev:20261019-phone-e164-2 runInTransaction:false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_phone_numbers_e164 ON phone_numbers (phone_number_e164);
@@ -0,0 +1,81 @@
+--liquibase formatted sql
+
+-- Sharded like users: every entry lives on the shard of its user
+-- changeset dev:20261019-user-audit-1
+CREATE TABLE IF NOT EXISTS user_audit
+(
+    id          BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    user_id     UUID         NOT NULL,
+    changed_at  TIMESTAMPTZ  NOT NULL,
+    actor       VARCHAR(255) NOT NULL,
+    change_type VARCHAR(16)  NOT NULL,
+    field       VARCHAR(255) NOT NULL,
+    old_value   TEXT,
+    new_value   TEXT
+);
+CREATE INDEX IF NOT EXISTS idx_user_audit_user ON user_audit (user_id, changed_at, id);
+
+-- changeset dev:20261019-user-audit-2 splitStatements:false
+-- Rows are never changed or removed, except that erasing a user redacts the values of its history
+CREATE OR REPLACE FUNCTION user_audit_append_only() RETURNS trigger AS
+$$
+BEGIN
+    IF TG_OP = 'UPDATE' AND NEW.old_value IS NULL AND NEW.new_value IS NULL
+        AND (NEW.id, NEW.user_id, NEW.changed_at, NEW.actor, NEW.change_type, NEW.field)
+            IS NOT DISTINCT FROM (OLD.id, OLD.user_id, OLD.changed_at, OLD.actor, OLD.change_type, OLD.field) THEN
+        RETURN NEW;
+    END IF;
+    RAISE EXCEPTION 'user_audit is append-only';
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS user_audit_append_only ON user_audit;
+CREATE TRIGGER user_audit_append_only
+    BEFORE UPDATE OR DELETE ON user_audit
+    FOR EACH ROW EXECUTE FUNCTION user_audit_append_only();
+
+DROP TRIGGER IF EXISTS user_audit_no_truncate ON user_audit;
+CREATE TRIGGER user_audit_no_truncate
+    BEFORE TRUNCATE ON user_audit
+    FOR EACH STATEMENT EXECUTE FUNCTION user_audit_append_only();
+
+-- changeset dev:20261019-user-audit-3 splitStatements:false
+-- Also lets key rotation through: an update that only moves the values onto the key version the transaction declared
+-- with dpd.audit_key_version, which the re-encryption job sets to the current one, see PiiReencryptionServiceImp
+CREATE OR REPLACE FUNCTION user_audit_append_only() RETURNS trigger AS
+$$
+DECLARE
+    key_version TEXT := NULLIF(current_setting('dpd.audit_key_version', true), '');
+BEGIN
+    IF TG_OP = 'UPDATE'
+        AND (NEW.id, NEW.user_id, NEW.changed_at, NEW.actor, NEW.change_type, NEW.field)
+            IS NOT DISTINCT FROM (OLD.id, OLD.user_id, OLD.changed_at, OLD.actor, OLD.change_type, OLD.field) THEN
+        IF NEW.old_value IS NULL AND NEW.new_value IS NULL THEN
+            RETURN NEW;
+        END IF;
+        IF key_version IS NOT NULL
+            AND (NEW.old_value IS NULL) = (OLD.old_value IS NULL) AND (NEW.new_value IS NULL) = (OLD.new_value IS NULL)
+            AND (NEW.old_value IS NULL OR (split_part(NEW.old_value, ':', 1) = key_version
+                AND split_part(OLD.old_value, ':', 1) <> key_version))
+            AND (NEW.new_value IS NULL OR (split_part(NEW.new_value, ':', 1) = key_version
+                AND split_part(OLD.new_value, ':', 1) <> key_version)) THEN
+            RETURN NEW;
+        END IF;
+    END IF;
+    RAISE EXCEPTION 'user_audit is append-only';
+END;
+$$ LANGUAGE plpgsql;
+
+-- Changes the writer gave up on, see UserAuditServiceImp.flush; the field names only, never their values
+-- changeset dev:20261019-user-audit-4
+CREATE TABLE IF NOT EXISTS user_audit_dead_letter
+(
+    id          BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    user_id     UUID         NOT NULL,
+    changed_at  TIMESTAMPTZ  NOT NULL,
+    actor       TEXT         NOT NULL,
+    change_type VARCHAR(16)  NOT NULL,
+    fields      TEXT         NOT NULL,
+    failure     TEXT,
+    failed_at   TIMESTAMPTZ  NOT NULL
+);
@@ -0,0 +1,20 @@
+--liquibase formatted sql
+
+-- changeset dev:20261019-user-status-1
+-- A constant default only touches the catalog, so adding the column does not rewrite the table, and a NOT VALID
+-- check is only enforced on new rows, without scanning the table under an exclusive lock. Users erased before the
+-- column existed are only recognisable by their placeholders, and are marked as depersonalised by the
+-- users-depersonalised-status online migration, see DepersonalisedStatusBackfill.
+ALTER TABLE users
+    ADD COLUMN IF NOT EXISTS status VARCHAR(16) NOT NULL DEFAULT 'ACTIVE';
+ALTER TABLE users
+    ADD CONSTRAINT users_status_check CHECK (status IN ('ACTIVE', 'DEPERSONALISED')) NOT VALID;
+
+-- changeset dev:20261019-user-status-2
+-- Scans the existing rows with a lock that lets reads and writes through
+ALTER TABLE users
+    VALIDATE CONSTRAINT users_status_check;
+
+-- changeset dev:20261019-user-status-3 runInTransaction:false
+-- Serves the id-ordered lists and pages of active users without reading erased rows
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_active_id ON users (id) WHERE status = 'ACTIVE';
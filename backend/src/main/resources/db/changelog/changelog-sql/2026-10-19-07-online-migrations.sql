@@ -0,0 +1,17 @@
+--liquibase formatted sql
+
+-- Checkpoints of OnlineMigrationServiceImp; every shard keeps those of its own rows
+-- changeset dev:20261019-online-migrations-1
+CREATE TABLE IF NOT EXISTS online_migrations
+(
+    name           VARCHAR(64) PRIMARY KEY,
+    status         VARCHAR(16) NOT NULL,
+    owner          VARCHAR(64),
+    last_id        UUID,
+    rows_scanned   BIGINT      NOT NULL DEFAULT 0,
+    rows_changed   BIGINT      NOT NULL DEFAULT 0,
+    started_at     TIMESTAMPTZ NOT NULL,
+    updated_at     TIMESTAMPTZ NOT NULL,
+    completed_at   TIMESTAMPTZ,
+    failure_reason TEXT
+);
@@ -0,0 +1,19 @@
+--liquibase formatted sql
+
+-- Set by every depersonalisation from now on; users erased before count as old enough to archive
+-- changeset dev:20261019-users-archive-1
+ALTER TABLE users
+    ADD COLUMN IF NOT EXISTS depersonalised_at TIMESTAMPTZ;
+
+-- Sharded like users: every archived user stays on the shard of its id
+-- changeset dev:20261019-users-archive-2
+CREATE TABLE IF NOT EXISTS users_archive
+(
+    id                UUID PRIMARY KEY,
+    depersonalised_at TIMESTAMPTZ,
+    archived_at       TIMESTAMPTZ NOT NULL
+);
+
+-- Lets the archival job find erased users without reading the active ones; small, as they keep being moved out
+-- changeset dev:20261019-users-archive-3 runInTransaction:false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_depersonalised_at ON users (depersonalised_at) WHERE status = 'DEPERSONALISED';
@@ -0,0 +1,109 @@
+package com.example.dpd;
+
+import com.example.dpd.config.AsyncProperties;
+import com.example.dpd.dto.Bulkhead;
+import com.example.dpd.dto.BulkheadStatsDTO;
+import com.example.dpd.exception.ServiceUnavailableException;
+import com.example.dpd.service.BulkheadServiceImp;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BulkheadServiceTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+    private BulkheadServiceImp bulkheadService;
+
+    @BeforeEach
+    void setUp() {
+        AsyncProperties properties = new AsyncProperties();
+        AsyncProperties.Pool write = new AsyncProperties.Pool();
+        write.setThreads(1);
+        write.setQueueCapacity(1);
+        write.setTimeout(Duration.ofMillis(200));
+        properties.getPools().put(Bulkhead.WRITE, write);
+        AsyncProperties.Pool read = new AsyncProperties.Pool();
+        read.setThreads(1);
+        read.setQueueCapacity(1);
+        read.setTimeout(Duration.ofMillis(200));
+        properties.getPools().put(Bulkhead.READ, read);
+
+        EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+        when(entityManagerFactory.createEntityManager()).thenAnswer(invocation -> mock(EntityManager.class));
+        bulkheadService = new BulkheadServiceImp(properties, entityManagerFactory);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+    }
+
+    @Test
+    void submit_ShouldRejectWhenQueueIsFullWithoutAffectingOtherBulkheads() throws Exception {
+        bulkheadService.submit(Bulkhead.WRITE, this::blockUntilReleased);
+        bulkheadService.submit(Bulkhead.WRITE, this::blockUntilReleased);
+
+        assertThrows(ServiceUnavailableException.class, () -> bulkheadService.submit(Bulkhead.WRITE, () -> "rejected"));
+        assertEquals("read", bulkheadService.submit(Bulkhead.READ, () -> "read").get(1, TimeUnit.SECONDS));
+        assertThat(bulkheadService.getStats()).filteredOn(stats -> stats.getBulkhead() == Bulkhead.WRITE)
+                .extracting(BulkheadStatsDTO::getRejected).containsExactly(1L);
+    }
+
+    @Test
+    void submit_ShouldTimeOutAndDropOperationsStillQueued() throws Exception {
+        AtomicBoolean queuedRan = new AtomicBoolean();
+        CompletableFuture<String> running = bulkheadService.submit(Bulkhead.WRITE, this::blockUntilReleased);
+        CompletableFuture<String> queued = bulkheadService.submit(Bulkhead.WRITE, () -> {
+            queuedRan.set(true);
+            return "queued";
+        });
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> queued.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(ServiceUnavailableException.class, failure.getCause());
+        // A started write is answered with its outcome, however long it takes
+        Thread.sleep(300);
+        assertFalse(running.isDone());
+
+        release.countDown();
+        assertEquals("released", running.get(1, TimeUnit.SECONDS));
+        assertEquals("ok", bulkheadService.submit(Bulkhead.WRITE, () -> "ok").get(1, TimeUnit.SECONDS));
+        assertFalse(queuedRan.get());
+        assertThat(bulkheadService.getStats()).filteredOn(stats -> stats.getBulkhead() == Bulkhead.WRITE)
+                .extracting(BulkheadStatsDTO::getTimedOut).containsExactly(1L);
+    }
+
+    @Test
+    void submit_ShouldTimeOutStartedReads() throws Exception {
+        CompletableFuture<String> running = bulkheadService.submit(Bulkhead.READ, this::blockUntilReleased);
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> running.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(ServiceUnavailableException.class, failure.getCause());
+
+        // Left to finish in the background
+        release.countDown();
+        assertTrue(released.await(1, TimeUnit.SECONDS));
+    }
+
+    private String blockUntilReleased() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        released.countDown();
+        return "released";
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.example.dpd;
+
+import com.example.dpd.dto.CreateUserDTO;
+import com.example.dpd.dto.OnlineMigrationDTO;
+import com.example.dpd.dto.UpdateUserDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.entity.User;
+import com.example.dpd.exception.ResourceNotFoundException;
+import com.example.dpd.service.OnlineMigrationService;
+import com.example.dpd.service.UserService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Depersonalised users cannot be changed through the API, and the ones erased before users.status existed are
+ * marked by an online migration. Checked against an embedded database.
+ */
+@SpringBootTest(properties = {
+        "spring.profiles.active=docker",
+        "dpd.pii.keys.1=HQWKbLbnwPoC4lOTV3z5aLEZMIlW9QDxcTG9NfS8DV0=",
+        "dpd.pii.blind-index-key=Fj1z/UhTnS7xWnacBjenhi6E4z+uwPgg5zG/vXEecPo=",
+        "dpd.grpc.port=0",
+        "dpd.migrations.pause=0ms"})
+public class DepersonalisedUserIT {
+
+    private static final String BACKFILL = "users-depersonalised-status";
+
+    private static EmbeddedPostgres database;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private OnlineMigrationService onlineMigrationService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws IOException {
+        database = EmbeddedPostgres.builder().start();
+        registry.add("spring.datasource.url", () -> database.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        database.close();
+    }
+
+    @Test
+    void updateUser_ShouldNotFindDepersonalisedUsersOnEitherPath() {
+        UserDTO user = create();
+        new TransactionTemplate(transactionManager).executeWithoutResult(tx -> userService.deleteUser(user.getId()));
+
+        // Scalar fields only: the single-statement patch
+        assertThrows(ResourceNotFoundException.class, () -> userService.updateUser(user.getId(),
+                UpdateUserDTO.builder().name("Kovács Jánosné").build()));
+        // With a collection: load, apply and save
+        assertThrows(ResourceNotFoundException.class, () -> userService.updateUser(user.getId(),
+                UpdateUserDTO.builder().name("Kovács Jánosné").addresses(new HashSet<>()).build()));
+
+        assertEquals("[DELETED]", jdbcTemplate.queryForObject("SELECT name FROM users WHERE id = ?", String.class,
+                user.getId()));
+    }
+
+    @Test
+    void onlineMigration_ShouldMarkUsersErasedBeforeTheStatusColumnAndEvictThem() throws Exception {
+        awaitMigration();
+        UserDTO erased = create();
+        UserDTO active = create();
+        // Depersonalised by a version that only wrote the placeholders
+        jdbcTemplate.update("UPDATE users SET name = '[DELETED]' WHERE id = ?", erased.getId());
+        new TransactionTemplate(transactionManager).execute(tx -> userService.getUserById(erased.getId(), false).orElseThrow());
+        assertTrue(entityManagerFactory.getCache().contains(User.class, erased.getId()));
+
+        jdbcTemplate.update("UPDATE online_migrations SET status = 'FAILED', last_id = NULL WHERE name = ?", BACKFILL);
+        onlineMigrationService.startMigration(BACKFILL);
+        awaitMigration();
+
+        assertEquals("DEPERSONALISED", jdbcTemplate.queryForObject("SELECT status FROM users WHERE id = ?",
+                String.class, erased.getId()));
+        assertEquals("ACTIVE", jdbcTemplate.queryForObject("SELECT status FROM users WHERE id = ?",
+                String.class, active.getId()));
+        assertFalse(entityManagerFactory.getCache().contains(User.class, erased.getId()));
+        assertTrue(userService.getUserById(erased.getId(), false).isEmpty());
+    }
+
+    private void awaitMigration() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (System.nanoTime() < deadline) {
+            if (onlineMigrationService.getMigrations().stream()
+                    .filter(migration -> migration.getName().equals(BACKFILL))
+                    .map(OnlineMigrationDTO::getStatus)
+                    .allMatch("COMPLETED"::equals)) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        fail("Online migration " + BACKFILL + " did not complete");
+    }
+
+    private UserDTO create() {
+        return userService.createUser(CreateUserDTO.builder()
+                .name("Kovács János")
+                .email(UUID.randomUUID() + "@example.com")
+                .dateOfBirth(LocalDate.of(1980, 1, 1))
+                .placeOfBirth("Budapest")
+                .motherMaidenName("Mother")
+                .addresses(new HashSet<>())
+                .phoneNumbers(new HashSet<>())
+                .build());
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.example.dpd;
+
+import com.example.dpd.dto.CreateUserDTO;
+import com.example.dpd.dto.DuplicateClusterDTO;
+import com.example.dpd.dto.DuplicateClusterStatus;
+import com.example.dpd.dto.DuplicateRunDTO;
+import com.example.dpd.dto.PhoneNumberDTO;
+import com.example.dpd.service.DuplicateDetectionService;
+import com.example.dpd.service.UserService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs duplicate detection against an embedded database: blocking keys, scoring, clustering and the stored
+ * clusters.
+ */
+@SpringBootTest(properties = {
+        "spring.profiles.active=docker",
+        "dpd.pii.keys.1=HQWKbLbnwPoC4lOTV3z5aLEZMIlW9QDxcTG9NfS8DV0=",
+        "dpd.pii.blind-index-key=Fj1z/UhTnS7xWnacBjenhi6E4z+uwPgg5zG/vXEecPo=",
+        "dpd.grpc.port=0",
+        "dpd.duplicates.page-size=2",
+        "dpd.duplicates.scoring-batch-size=1"})
+public class DuplicateDetectionIT {
+
+    private static EmbeddedPostgres database;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private DuplicateDetectionService duplicateDetectionService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws IOException {
+        database = EmbeddedPostgres.builder().start();
+        registry.add("spring.datasource.url", () -> database.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        database.close();
+    }
+
+    @Test
+    void startRun_ShouldClusterUsersSharingKeysTransitivelyAndKeepReviewedClusters() throws Exception {
+        // Name and date of birth block, same place of birth
+        UUID kovacs = create("Kovács János", LocalDate.of(1980, 1, 1), "Budapest", "123456788", null, "+36201000001");
+        UUID janos = create("janos kovacs", LocalDate.of(1980, 1, 1), "Budapest", null, null, "+36201000002");
+        // Shares only the TAJ with the first, so it joins their cluster through the union-find
+        UUID kiss = create("Kiss Péter", LocalDate.of(1990, 5, 5), "Szeged", "123456788", null, "+36201000003");
+        // Tax id block
+        UUID nagy = create("Nagy Anna", LocalDate.of(1970, 2, 2), "Pécs", null, "8123456786", "+36201000004");
+        UUID anna = create("Nagy Anna", LocalDate.of(1971, 3, 3), "Győr", null, "8123456786", "+36201000005");
+        // Phone block: a candidate pair, but a shared number alone is not a match
+        create("Tóth Béla", LocalDate.of(1960, 6, 6), "Eger", null, null, "+36 20 100 0006");
+        create("Szabó Éva", LocalDate.of(1961, 7, 7), "Vác", null, null, "06201000006");
+
+        DuplicateRunDTO run = awaitRun();
+
+        assertEquals("COMPLETED", run.getStatus(), run.getFailureReason());
+        assertEquals(7, run.getUsersScanned());
+        assertEquals(4, run.getCandidatePairs());
+        assertEquals(3, run.getMatchedPairs());
+        assertEquals(2, run.getClusters());
+        List<DuplicateClusterDTO> pending = duplicateDetectionService.getClusters(DuplicateClusterStatus.PENDING, null, 10);
+        assertThat(pending).extracting(DuplicateDetectionIT::memberIds)
+                .containsExactlyInAnyOrder(Set.of(kovacs, janos, kiss), Set.of(nagy, anna));
+        assertThat(pending).allSatisfy(cluster -> assertThat(cluster.getMaxScore()).isGreaterThanOrEqualTo(0.6));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM duplicate_blocking_keys", Integer.class));
+
+        DuplicateClusterDTO nagys = pending.stream()
+                .filter(cluster -> memberIds(cluster).contains(nagy))
+                .findFirst().orElseThrow();
+        duplicateDetectionService.reviewCluster(nagys.getId(), DuplicateClusterStatus.REJECTED);
+
+        run = awaitRun();
+
+        // The reviewed pair is not scored again; the pending cluster of the first run is replaced
+        assertEquals(3, run.getCandidatePairs());
+        assertEquals(1, run.getClusters());
+        List<DuplicateClusterDTO> repending = duplicateDetectionService.getClusters(DuplicateClusterStatus.PENDING, null, 10);
+        assertThat(repending).extracting(DuplicateDetectionIT::memberIds).containsExactly(Set.of(kovacs, janos, kiss));
+        assertNotEquals(pending.get(0).getId(), repending.get(0).getId());
+        assertThat(duplicateDetectionService.getClusters(DuplicateClusterStatus.REJECTED, null, 10))
+                .extracting(DuplicateClusterDTO::getId).containsExactly(nagys.getId());
+        assertEquals(5, jdbcTemplate.queryForObject("SELECT count(*) FROM duplicate_cluster_members", Integer.class));
+    }
+
+    private DuplicateRunDTO awaitRun() throws InterruptedException {
+        duplicateDetectionService.startRun();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (System.nanoTime() < deadline) {
+            DuplicateRunDTO run = duplicateDetectionService.getLastRun().orElseThrow();
+            if (run.getFinishedAt() != null) {
+                return run;
+            }
+            Thread.sleep(50);
+        }
+        return fail("Duplicate detection did not finish");
+    }
+
+    private static Set<UUID> memberIds(DuplicateClusterDTO cluster) {
+        Set<UUID> ids = new HashSet<>();
+        cluster.getMembers().forEach(member -> ids.add(member.getId()));
+        return ids;
+    }
+
+    private UUID create(String name, LocalDate dateOfBirth, String placeOfBirth, String taj, String taxId, String phone) {
+        PhoneNumberDTO phoneNumber = new PhoneNumberDTO();
+        phoneNumber.setPhoneNumber(phone);
+        return userService.createUser(CreateUserDTO.builder()
+                .name(name)
+                .email(UUID.randomUUID() + "@example.com")
+                .dateOfBirth(dateOfBirth)
+                .placeOfBirth(placeOfBirth)
+                .motherMaidenName("Mother")
+                .taj(taj)
+                .taxId(taxId)
+                .addresses(new HashSet<>())
+                .phoneNumbers(new HashSet<>(Set.of(phoneNumber)))
+                .build()).getId();
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.example.dpd;
+
+import com.example.dpd.service.DuplicateScorer;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DuplicateScorerTest {
+
+    @Test
+    void normaliseName_ShouldIgnoreAccentsCaseAndTokenOrder() {
+        assertEquals("janos kovacs", DuplicateScorer.normaliseName("Kovács  János"));
+        assertEquals("janos kovacs", DuplicateScorer.normaliseName("janos KOVACS"));
+        assertNull(DuplicateScorer.normaliseName("[DELETED]"));
+        assertNull(DuplicateScorer.normaliseName("  "));
+    }
+
+    @Test
+    void phoneKey_ShouldKeepLastNineDigits() {
+        assertEquals("301234567", DuplicateScorer.phoneKey("+36 (30) 123-4567"));
+        assertEquals("301234567", DuplicateScorer.phoneKey("06301234567"));
+        assertNull(DuplicateScorer.phoneKey("112"));
+    }
+
+    @Test
+    void score_ShouldMatchSamePersonWithDifferentEmail() {
+        DuplicateScorer.Person a = person("janos kovacs", LocalDate.of(1980, 5, 1), "tajA", Set.of("301234567"));
+        DuplicateScorer.Person b = person("janos kovacs", LocalDate.of(1980, 5, 1), null, Set.of("301234567"));
+
+        assertThat(DuplicateScorer.score(a, b)).isGreaterThanOrEqualTo(0.6);
+    }
+
+    @Test
+    void score_ShouldNotMatchNamesakesBornOnDifferentDays() {
+        DuplicateScorer.Person a = person("janos kovacs", LocalDate.of(1980, 5, 1), "tajA", Set.of());
+        DuplicateScorer.Person b = person("janos kovacs", LocalDate.of(1991, 2, 3), "tajB", Set.of());
+
+        assertThat(DuplicateScorer.score(a, b)).isLessThan(0.6);
+    }
+
+    @Test
+    void score_ShouldMatchOnSharedTajAlone() {
+        DuplicateScorer.Person a = person("janos kovacs", null, "tajA", Set.of());
+        DuplicateScorer.Person b = person("anna nagy", null, "tajA", Set.of());
+
+        assertThat(DuplicateScorer.score(a, b)).isGreaterThanOrEqualTo(0.6);
+    }
+
+    private static DuplicateScorer.Person person(String name, LocalDate dateOfBirth, String tajIndex, Set<String> phones) {
+        return new DuplicateScorer.Person(UUID.randomUUID(), name, dateOfBirth, "Budapest", tajIndex, null, phones);
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.example.dpd;
+
+import com.example.dpd.config.FingerprintSpringLiquibase;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import liquibase.Liquibase;
+import liquibase.exception.LiquibaseException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * When FingerprintSpringLiquibase skips Liquibase, and that it does not skip the changesets gated on online
+ * migrations completing while another instance starts. Against an embedded database, without an application.
+ */
+public class FingerprintSpringLiquibaseIT {
+
+    private static final String COMPLETE_GATING_MIGRATIONS = "INSERT INTO online_migrations (name, status, started_at, "
+            + "updated_at, completed_at) SELECT name, 'COMPLETED', now(), now(), now() "
+            + "FROM unnest(ARRAY['addresses-without-user', 'phone-numbers-without-user']) AS name";
+
+    private final AtomicInteger updates = new AtomicInteger();
+    private EmbeddedPostgres database;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void startDatabase() throws IOException {
+        database = EmbeddedPostgres.builder().start();
+        jdbcTemplate = new JdbcTemplate(database.getPostgresDatabase());
+    }
+
+    @AfterEach
+    void stopDatabase() throws IOException {
+        database.close();
+    }
+
+    @Test
+    void afterPropertiesSet_ShouldSkipLiquibaseWhileNothingChanged() throws Exception {
+        start(null);
+        assertEquals(1, updates.get());
+
+        start(null);
+        assertEquals(1, updates.get());
+
+        // Another instance completes the migrations the contract changesets wait for
+        jdbcTemplate.update(COMPLETE_GATING_MIGRATIONS);
+        start(null);
+        assertEquals(2, updates.get());
+        assertEquals("NO", userIdNullable());
+
+        start(null);
+        assertEquals(2, updates.get());
+    }
+
+    @Test
+    void afterPropertiesSet_ShouldNotSkipChangesetsOfMigrationsCompletedWhileLiquibaseRan() throws Exception {
+        // Completed by another instance after the gated changesets were skipped, before the fingerprint is written
+        start(() -> jdbcTemplate.update(COMPLETE_GATING_MIGRATIONS));
+        assertEquals("YES", userIdNullable());
+
+        start(null);
+        assertEquals(2, updates.get());
+        assertEquals("NO", userIdNullable());
+    }
+
+    private void start(Runnable afterUpdate) throws LiquibaseException {
+        FingerprintSpringLiquibase liquibase = new FingerprintSpringLiquibase() {
+            @Override
+            protected void performUpdate(Liquibase liquibase) throws LiquibaseException {
+                updates.incrementAndGet();
+                super.performUpdate(liquibase);
+                if (afterUpdate != null) {
+                    afterUpdate.run();
+                }
+            }
+        };
+        liquibase.setDataSource(database.getPostgresDatabase());
+        liquibase.setChangeLog("classpath:db/changelog/db.change-master.xml");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+    }
+
+    private String userIdNullable() {
+        return jdbcTemplate.queryForObject("SELECT is_nullable FROM information_schema.columns "
+                + "WHERE table_name = 'addresses' AND column_name = 'user_id'", String.class);
+    }
+
+}
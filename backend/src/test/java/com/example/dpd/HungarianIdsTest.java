@@ -0,0 +1,37 @@
+package com.example.dpd;
+
+import com.example.dpd.validation.HungarianIds;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HungarianIdsTest {
+
+    @Test
+    void isValidTaj_ShouldCheckWeightedCheckDigit() {
+        assertTrue(HungarianIds.isValidTaj("123456788"));
+        assertTrue(HungarianIds.isValidTaj("111111110"));
+        assertFalse(HungarianIds.isValidTaj("123456789"));
+        assertFalse(HungarianIds.isValidTaj("12345678"));
+        assertFalse(HungarianIds.isValidTaj("1234567880"));
+        assertFalse(HungarianIds.isValidTaj("12345678a"));
+        assertFalse(HungarianIds.isValidTaj("123 45678"));
+    }
+
+    @Test
+    void isValidTaxId_ShouldCheckPrefixAndPositionalCheckDigit() {
+        assertTrue(HungarianIds.isValidTaxId("8123456786"));
+        assertFalse(HungarianIds.isValidTaxId("8123456789"));
+        assertFalse(HungarianIds.isValidTaxId("1234567890"));
+        assertFalse(HungarianIds.isValidTaxId("812345678"));
+        assertFalse(HungarianIds.isValidTaxId("812345678x"));
+    }
+
+    @Test
+    void isValidTaxId_ShouldRejectRemainderTen() {
+        // 8*1 + 2*9 = 26 gives check digit 4; 8*1 + 1*2 = 10 has no single-digit check digit
+        assertTrue(HungarianIds.isValidTaxId("8000000024"));
+        assertFalse(HungarianIds.isValidTaxId("8100000000"));
+    }
+
+}
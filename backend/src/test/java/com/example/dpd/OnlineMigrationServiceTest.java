@@ -0,0 +1,122 @@
+package com.example.dpd;
+
+import com.example.dpd.config.OnlineMigrationProperties;
+import com.example.dpd.config.ShardingProperties;
+import com.example.dpd.migration.OnlineMigration;
+import com.example.dpd.service.OnlineMigrationServiceImp;
+import com.example.dpd.shard.Shards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class OnlineMigrationServiceTest {
+
+    private static final String NAME = "test-migration";
+    private static final String CLAIM = "UPDATE online_migrations SET status = 'RUNNING'";
+    private static final String CHECKPOINT = "UPDATE online_migrations SET last_id";
+    private static final String COMPLETE = "UPDATE online_migrations SET status = 'COMPLETED'";
+    private static final String LAST_ID = "SELECT last_id FROM online_migrations WHERE name = ?";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private OnlineMigration migration;
+
+    private OnlineMigrationServiceImp migrationService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(migration.name()).thenReturn(NAME);
+        when(jdbcTemplate.update(startsWith(CLAIM), anyString(), eq(NAME), anyLong())).thenReturn(1);
+        when(jdbcTemplate.update(startsWith(CHECKPOINT), any(), anyInt(), anyInt(), eq(NAME), anyString())).thenReturn(1);
+        when(jdbcTemplate.update(startsWith(COMPLETE), eq(NAME), anyString())).thenReturn(1);
+        OnlineMigrationProperties properties = new OnlineMigrationProperties();
+        properties.setChunkSize(2);
+        properties.setPause(Duration.ZERO);
+        migrationService = new OnlineMigrationServiceImp(jdbcTemplate, transactionManager,
+                new Shards(new ShardingProperties(), transactionManager), properties, List.of(migration));
+    }
+
+    @Test
+    void resume_ShouldWalkTheChunksAfterTheCheckpointAndCompleteOnceNothingIsLeft() {
+        UUID checkpoint = new UUID(0, 10);
+        UUID second = new UUID(0, 12);
+        UUID last = new UUID(0, 13);
+        when(jdbcTemplate.queryForObject(LAST_ID, UUID.class, NAME)).thenReturn(checkpoint);
+        OnlineMigration.Chunk first = new OnlineMigration.Chunk(second, 2, List.of(second));
+        when(migration.migrateChunk(checkpoint, 2)).thenReturn(first);
+        when(migration.migrateChunk(second, 2)).thenReturn(new OnlineMigration.Chunk(last, 1, List.of(last)));
+
+        migrationService.resume();
+
+        verify(migration, timeout(1000)).completed();
+        InOrder inOrder = inOrder(migration, jdbcTemplate, transactionManager);
+        inOrder.verify(migration).migrateChunk(checkpoint, 2);
+        inOrder.verify(jdbcTemplate).update(startsWith(CHECKPOINT), eq(second), eq(2), eq(1), eq(NAME), anyString());
+        // Evicts what the chunk changed only once it is visible to others
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(migration).committed(first);
+        inOrder.verify(migration).migrateChunk(second, 2);
+        inOrder.verify(jdbcTemplate).update(startsWith(CHECKPOINT), eq(last), eq(1), eq(1), eq(NAME), anyString());
+        inOrder.verify(migration).remaining();
+        inOrder.verify(jdbcTemplate).update(startsWith(COMPLETE), eq(NAME), anyString());
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void resume_ShouldStartOverWhenTheCompletionCheckFindsRowsLeft() {
+        when(migration.migrateChunk(new UUID(0, 0), 2)).thenReturn(new OnlineMigration.Chunk(null, 0, List.of()));
+        when(migration.remaining()).thenReturn(3L);
+
+        migrationService.resume();
+
+        verify(jdbcTemplate, timeout(1000)).update(contains("last_id = NULL"),
+                eq("3 rows still need migrating after the last chunk"), eq(NAME), anyString());
+        verify(jdbcTemplate, never()).update(startsWith(COMPLETE), any(), any());
+        verify(migration, never()).completed();
+    }
+
+    @Test
+    void resume_ShouldRollBackTheChunkOfAMigrationTakenOverByAnotherInstance() {
+        UUID last = new UUID(0, 2);
+        when(migration.migrateChunk(new UUID(0, 0), 2)).thenReturn(new OnlineMigration.Chunk(last, 2, List.of(new UUID(0, 1), last)));
+        when(jdbcTemplate.update(startsWith(CHECKPOINT), eq(last), anyInt(), anyInt(), eq(NAME), anyString())).thenReturn(0);
+
+        migrationService.resume();
+
+        verify(jdbcTemplate, timeout(1000)).update(startsWith("UPDATE online_migrations SET status = 'FAILED'"),
+                eq("Online migration " + NAME + " was taken over by another instance"), eq(NAME), anyString());
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        verify(migration, times(1)).migrateChunk(any(), anyInt());
+        verify(migration, never()).remaining();
+        verify(migration, never()).committed(any());
+    }
+
+    @Test
+    void resume_ShouldLeaveAMigrationRunningOnAnotherInstanceAlone() {
+        when(jdbcTemplate.update(startsWith(CLAIM), anyString(), eq(NAME), anyLong())).thenReturn(0);
+
+        migrationService.resume();
+
+        verify(jdbcTemplate, timeout(1000)).update(startsWith(CLAIM), anyString(), eq(NAME), anyLong());
+        verify(migration, after(200).never()).migrateChunk(any(), anyInt());
+    }
+
+}
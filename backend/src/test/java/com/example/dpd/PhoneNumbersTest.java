@@ -0,0 +1,32 @@
+package com.example.dpd;
+
+import com.example.dpd.validation.PhoneNumbers;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PhoneNumbersTest {
+
+    @Test
+    void toE164_ShouldNormaliseHungarianSpellings() {
+        assertEquals("+36301234567", PhoneNumbers.toE164("+36301234567"));
+        assertEquals("+36301234567", PhoneNumbers.toE164("06 30 123 4567"));
+        assertEquals("+36301234567", PhoneNumbers.toE164("+36-30-123-4567"));
+        assertEquals("+36301234567", PhoneNumbers.toE164("0036301234567"));
+        assertEquals("+3612345678", PhoneNumbers.toE164("(1) 234-5678"));
+    }
+
+    @Test
+    void toE164_ShouldKeepForeignCountryCodes() {
+        assertEquals("+441632960961", PhoneNumbers.toE164("+44 1632 960961"));
+    }
+
+    @Test
+    void toE164_ShouldReturnNullForUnparseableNumbers() {
+        assertNull(PhoneNumbers.toE164(null));
+        assertNull(PhoneNumbers.toE164(" "));
+        assertNull(PhoneNumbers.toE164("call me"));
+        assertNull(PhoneNumbers.toE164("12"));
+    }
+
+}
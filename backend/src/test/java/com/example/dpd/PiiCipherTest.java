@@ -0,0 +1,105 @@
+package com.example.dpd;
+
+import com.example.dpd.config.PiiProperties;
+import com.example.dpd.entity.BlindIndexListener;
+import com.example.dpd.security.PiiCipher;
+import org.junit.jupiter.api.Test;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PiiCipherTest {
+
+    private static final String KEY_1 = randomKey();
+    private static final String KEY_2 = randomKey();
+    private static final String BLIND_INDEX_KEY = randomKey();
+
+    private final PiiCipher previous = cipher(1, Map.of(1, KEY_1));
+    private final PiiCipher cipher = cipher(2, Map.of(1, KEY_1, 2, KEY_2));
+
+    @Test
+    void encrypt_ShouldRoundTripWithTheCurrentKeyAndAFreshIv() {
+        String stored = cipher.encrypt("Kovács Éva");
+
+        assertThat(stored).startsWith("v2:");
+        assertEquals("Kovács Éva", cipher.decrypt(stored));
+        assertTrue(cipher.isCurrent(stored));
+        assertNotEquals(stored, cipher.encrypt("Kovács Éva"));
+        assertNull(cipher.encrypt(null));
+        assertNull(cipher.decrypt(null));
+    }
+
+    @Test
+    void decrypt_ShouldReadValuesOfAnOlderKeyVersion() {
+        String stored = previous.encrypt("123456788");
+
+        assertThat(stored).startsWith("v1:");
+        assertEquals("123456788", cipher.decrypt(stored));
+        assertFalse(cipher.isCurrent(stored));
+    }
+
+    @Test
+    void decrypt_ShouldFailForAKeyVersionNoLongerConfigured() {
+        String stored = cipher.encrypt("123456788");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> previous.decrypt(stored));
+        assertThat(e.getMessage()).contains("version 2");
+    }
+
+    @Test
+    void decrypt_ShouldFailForTamperedCiphertext() {
+        String stored = cipher.encrypt("123456788");
+        char[] chars = stored.toCharArray();
+        chars[10] = chars[10] == 'A' ? 'B' : 'A';
+
+        assertThrows(IllegalStateException.class, () -> cipher.decrypt(new String(chars)));
+    }
+
+    @Test
+    void decrypt_ShouldPassLegacyPlaintextThrough() {
+        assertEquals("123456788", cipher.decrypt("123456788"));
+        assertEquals("v:not-a-version", cipher.decrypt("v:not-a-version"));
+        assertEquals("vx1:abc", cipher.decrypt("vx1:abc"));
+        assertFalse(cipher.isCurrent("123456788"));
+        assertTrue(cipher.isCurrent(null));
+    }
+
+    @Test
+    void blindIndex_ShouldIgnoreWhitespaceDashesAndCase() {
+        String index = cipher.blindIndex(BlindIndexListener.TAX_ID, "8123456786");
+
+        assertEquals(index, cipher.blindIndex(BlindIndexListener.TAX_ID, " 8123 456-786\t"));
+        assertEquals(cipher.blindIndex(BlindIndexListener.TAJ, "ab12"), cipher.blindIndex(BlindIndexListener.TAJ, "AB 12"));
+        assertNotEquals(index, cipher.blindIndex(BlindIndexListener.TAX_ID, "8123456787"));
+        // Same value, other column: unrelated index
+        assertNotEquals(index, cipher.blindIndex(BlindIndexListener.TAJ, "8123456786"));
+        // Deterministic and independent of the encryption keys
+        assertEquals(index, previous.blindIndex(BlindIndexListener.TAX_ID, "8123456786"));
+        assertNull(cipher.blindIndex(BlindIndexListener.TAJ, null));
+    }
+
+    @Test
+    void constructor_ShouldRefuseACurrentVersionWithoutKey() {
+        assertThrows(IllegalStateException.class, () -> cipher(3, Map.of(1, KEY_1)));
+    }
+
+    private static PiiCipher cipher(int currentKeyVersion, Map<Integer, String> keys) {
+        PiiProperties properties = new PiiProperties();
+        properties.setCurrentKeyVersion(currentKeyVersion);
+        properties.setKeys(new HashMap<>(keys));
+        properties.setBlindIndexKey(BLIND_INDEX_KEY);
+        return new PiiCipher(properties);
+    }
+
+    private static String randomKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return Base64.getEncoder().encodeToString(key);
+    }
+
+}
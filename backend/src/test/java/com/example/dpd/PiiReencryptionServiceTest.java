@@ -0,0 +1,223 @@
+package com.example.dpd;
+
+import com.example.dpd.config.PiiProperties;
+import com.example.dpd.config.ShardingProperties;
+import com.example.dpd.dto.ReencryptionStatusDTO;
+import com.example.dpd.entity.BlindIndexListener;
+import com.example.dpd.entity.User;
+import com.example.dpd.security.PiiCipher;
+import com.example.dpd.service.PiiReencryptionServiceImp;
+import com.example.dpd.shard.Shards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import java.sql.ResultSet;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class PiiReencryptionServiceTest {
+
+    private static final UUID LEGACY_ID = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID OLD_KEY_ID = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final UUID CURRENT_ID = UUID.fromString("00000000-0000-0000-0000-000000000003");
+    private static final UUID CHANGED_ID = UUID.fromString("00000000-0000-0000-0000-000000000004");
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private Cache cache;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PiiCipher previous;
+    private PiiCipher cipher;
+    private PiiReencryptionServiceImp reencryptionService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        String key1 = Base64.getEncoder().encodeToString(new byte[32]);
+        byte[] bytes = new byte[32];
+        Arrays.fill(bytes, (byte) 7);
+        String key2 = Base64.getEncoder().encodeToString(bytes);
+        previous = cipher(1, Map.of(1, key1));
+        cipher = cipher(2, Map.of(1, key1, 2, key2));
+        when(entityManagerFactory.getCache()).thenReturn(cache);
+        PiiProperties properties = new PiiProperties();
+        properties.setReencryptionChunkSize(10);
+        properties.setReencryptionPauseMillis(0);
+        reencryptionService = new PiiReencryptionServiceImp(jdbcTemplate, entityManagerFactory, cipher, properties,
+                transactionManager, new Shards(new ShardingProperties(), transactionManager));
+    }
+
+    @Test
+    void startReencryption_ShouldRewriteRowsOntoTheCurrentKeyAndEvictThemAfterCommit() throws Exception {
+        List<Map<String, String>> rows = List.of(
+                row(LEGACY_ID, "123456788", "8123456786", "Maiden", null, null),
+                row(OLD_KEY_ID, previous.encrypt("123456788"), previous.encrypt("8123456786"),
+                        previous.encrypt("Maiden"), bidx(BlindIndexListener.TAJ, "123456788"),
+                        bidx(BlindIndexListener.TAX_ID, "8123456786")),
+                row(CURRENT_ID, cipher.encrypt("123456788"), null, cipher.encrypt("Maiden"),
+                        bidx(BlindIndexListener.TAJ, "123456788"), null),
+                row(CHANGED_ID, previous.encrypt("111111110"), null, null, null, null));
+        when(jdbcTemplate.query(startsWith("SELECT id, taj"), any(RowMapper.class), any(), anyInt())).thenAnswer(invocation -> {
+            RowMapper<?> mapper = invocation.getArgument(1);
+            List<Object> mapped = new ArrayList<>();
+            for (int i = 0; i < rows.size(); i++) {
+                mapped.add(mapper.mapRow(resultSet(rows.get(i)), i));
+            }
+            return mapped;
+        });
+        // The last row was changed by the application in between, so its conditional update matches nothing
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1, 1, 0});
+
+        ReencryptionStatusDTO status = awaitFinished();
+
+        assertEquals("COMPLETED", status.getStatus());
+        assertEquals(4, status.getRowsScanned());
+        assertEquals(2, status.getRowsUpdated());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> updates = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), updates.capture());
+        assertThat(updates.getValue()).extracting(update -> update[5]).containsExactly(LEGACY_ID, OLD_KEY_ID, CHANGED_ID);
+        for (Object[] update : updates.getValue().subList(0, 2)) {
+            assertThat((String) update[0]).startsWith("v2:");
+            assertThat((String) update[1]).startsWith("v2:");
+            assertThat((String) update[2]).startsWith("v2:");
+            assertEquals("123456788", cipher.decrypt((String) update[0]));
+            assertEquals("8123456786", cipher.decrypt((String) update[1]));
+            assertEquals("Maiden", cipher.decrypt((String) update[2]));
+            assertEquals(bidx(BlindIndexListener.TAJ, "123456788"), update[3]);
+            assertEquals(bidx(BlindIndexListener.TAX_ID, "8123456786"), update[4]);
+        }
+        // Only applies while the row still holds the values that were read
+        Object[] legacy = updates.getValue().get(0);
+        assertEquals(List.of("123456788", "8123456786", "Maiden"), Arrays.asList(legacy[6], legacy[7], legacy[8]));
+
+        InOrder inOrder = inOrder(transactionManager, cache);
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(cache).evict(User.class, LEGACY_ID);
+        inOrder.verify(cache).evict(User.class, OLD_KEY_ID);
+        verify(cache, never()).evict(User.class, CURRENT_ID);
+        verify(cache, never()).evict(User.class, CHANGED_ID);
+    }
+
+    @Test
+    void startReencryption_ShouldMoveAuditValuesOntoTheCurrentKeyAndLeaveRedactedOnesAlone() throws Exception {
+        List<Map<String, String>> rows = List.of(
+                auditRow(1, previous.encrypt("John Doe"), previous.encrypt("Jane Doe")),
+                auditRow(2, cipher.encrypt("John Doe"), cipher.encrypt("Jane Doe")),
+                auditRow(3, null, null),
+                auditRow(4, null, previous.encrypt("8123456786")));
+        when(jdbcTemplate.query(startsWith("SELECT id, old_value, new_value FROM user_audit"), any(RowMapper.class), any(),
+                anyInt())).thenAnswer(invocation -> {
+            RowMapper<?> mapper = invocation.getArgument(1);
+            List<Object> mapped = new ArrayList<>();
+            for (int i = 0; i < rows.size(); i++) {
+                ResultSet rs = mock(ResultSet.class);
+                Map<String, String> row = rows.get(i);
+                when(rs.getLong("id")).thenReturn(Long.parseLong(row.get("id")));
+                when(rs.getString(anyString())).thenAnswer(column -> row.get(column.<String>getArgument(0)));
+                mapped.add(mapper.mapRow(rs, i));
+            }
+            return mapped;
+        });
+        when(jdbcTemplate.batchUpdate(startsWith("UPDATE user_audit"), anyList())).thenReturn(new int[]{1, 1});
+
+        ReencryptionStatusDTO status = awaitFinished();
+
+        assertEquals("COMPLETED", status.getStatus());
+        assertEquals(4, status.getAuditRowsScanned());
+        assertEquals(2, status.getAuditRowsUpdated());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> updates = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE user_audit"), updates.capture());
+        assertThat(updates.getValue()).extracting(update -> update[2]).containsExactly(1L, 4L);
+        // The trigger only lets the rows move onto the key version declared first
+        InOrder declaredFirst = inOrder(jdbcTemplate);
+        declaredFirst.verify(jdbcTemplate).queryForObject(contains("set_config('dpd.audit_key_version'"), eq(String.class), eq("v2"));
+        declaredFirst.verify(jdbcTemplate).batchUpdate(startsWith("UPDATE user_audit"), anyList());
+        Object[] first = updates.getValue().get(0);
+        assertThat((String) first[0]).startsWith("v2:");
+        assertEquals("John Doe", cipher.decrypt((String) first[0]));
+        assertEquals("Jane Doe", cipher.decrypt((String) first[1]));
+        // Only applies while the row still holds what was read, so a redaction in between wins
+        assertEquals(rows.get(0).get("old_value"), first[3]);
+        Object[] created = updates.getValue().get(1);
+        assertNull(created[0]);
+        assertEquals("8123456786", cipher.decrypt((String) created[1]));
+    }
+
+    private ReencryptionStatusDTO awaitFinished() throws InterruptedException {
+        reencryptionService.startReencryption();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            ReencryptionStatusDTO status = reencryptionService.getStatus();
+            if (status.getFinishedAt() != null) {
+                return status;
+            }
+            Thread.sleep(10);
+        }
+        return fail("Re-encryption did not finish");
+    }
+
+    private String bidx(String column, String value) {
+        return cipher.blindIndex(column, value);
+    }
+
+    private static Map<String, String> row(UUID id, String taj, String taxId, String motherMaidenName,
+                                           String tajBidx, String taxIdBidx) {
+        Map<String, String> row = new HashMap<>();
+        row.put("id", id.toString());
+        row.put("taj", taj);
+        row.put("tax_id", taxId);
+        row.put("mother_maiden_name", motherMaidenName);
+        row.put("taj_bidx", tajBidx);
+        row.put("tax_id_bidx", taxIdBidx);
+        return row;
+    }
+
+    private static Map<String, String> auditRow(long id, String oldValue, String newValue) {
+        Map<String, String> row = new HashMap<>();
+        row.put("id", String.valueOf(id));
+        row.put("old_value", oldValue);
+        row.put("new_value", newValue);
+        return row;
+    }
+
+    private static ResultSet resultSet(Map<String, String> row) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getObject("id", UUID.class)).thenReturn(UUID.fromString(row.get("id")));
+        when(rs.getString(anyString())).thenAnswer(invocation -> row.get(invocation.<String>getArgument(0)));
+        return rs;
+    }
+
+    private static PiiCipher cipher(int currentKeyVersion, Map<Integer, String> keys) {
+        PiiProperties properties = new PiiProperties();
+        properties.setCurrentKeyVersion(currentKeyVersion);
+        properties.setKeys(new HashMap<>(keys));
+        properties.setBlindIndexKey(Base64.getEncoder().encodeToString(new byte[32]));
+        return new PiiCipher(properties);
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.example.dpd;
+
+import com.example.dpd.dto.AutocompleteSuggestionDTO;
+import com.example.dpd.service.PrefixIndex;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrefixIndexTest {
+
+    @Test
+    void suggest_ShouldRankByFrequencyThenAlphabetically() {
+        PrefixIndex index = new PrefixIndex();
+        index.add("Budaörs");
+        index.add("Budapest");
+        index.add("Budapest");
+        index.add("Budakeszi");
+        index.add("Debrecen");
+
+        assertThat(index.suggest("bud", 10)).extracting(AutocompleteSuggestionDTO::getValue)
+                .containsExactly("Budapest", "Budakeszi", "Budaörs");
+        assertThat(index.suggest("bud", 1)).extracting(AutocompleteSuggestionDTO::getCount).containsExactly(2);
+        assertThat(index.suggest("x", 10)).isEmpty();
+        assertThat(index.suggest(" ", 10)).isEmpty();
+    }
+
+    @Test
+    void suggest_ShouldIgnoreCaseAccentsAndExtraSpaces() {
+        PrefixIndex index = new PrefixIndex();
+        index.add("Győr");
+        index.add("Fő  utca");
+
+        assertThat(index.suggest("GYO", 10)).extracting(AutocompleteSuggestionDTO::getValue).containsExactly("Győr");
+        assertThat(index.suggest("fo u", 10)).extracting(AutocompleteSuggestionDTO::getValue).containsExactly("Fő  utca");
+        // Same folded value, so counted as one
+        index.add("fo utca");
+        assertThat(index.suggest("fo", 10)).extracting(AutocompleteSuggestionDTO::getCount).containsExactly(2);
+    }
+
+    @Test
+    void remove_ShouldDropValuesNoLongerUsed() {
+        PrefixIndex index = new PrefixIndex();
+        index.add("Szeged");
+        index.add("Szeged");
+        index.remove("Szeged");
+        assertEquals(1, index.distinctValues());
+        index.remove("szeged");
+        index.remove("Szolnok");
+
+        assertEquals(0, index.distinctValues());
+        assertEquals(0, index.addresses());
+        assertTrue(index.suggest("sz", 10).isEmpty());
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.example.dpd;
+
+import com.example.dpd.dto.CreateUserDTO;
+import com.example.dpd.dto.OnlineMigrationDTO;
+import com.example.dpd.dto.PhoneNumberDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.entity.PhoneNumber;
+import com.example.dpd.entity.User;
+import com.example.dpd.service.OnlineMigrationService;
+import com.example.dpd.service.UserService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Rows written with plain SQL bypass the second-level cache, so the jobs writing them evict what they changed.
+ * Checked against an embedded database with an online migration.
+ */
+@SpringBootTest(properties = {
+        "spring.profiles.active=docker",
+        "dpd.pii.keys.1=HQWKbLbnwPoC4lOTV3z5aLEZMIlW9QDxcTG9NfS8DV0=",
+        "dpd.pii.blind-index-key=Fj1z/UhTnS7xWnacBjenhi6E4z+uwPgg5zG/vXEecPo=",
+        "dpd.grpc.port=0",
+        "dpd.migrations.pause=0ms"})
+public class SecondLevelCacheIT {
+
+    private static final String BACKFILL = "phone-number-e164";
+
+    private static EmbeddedPostgres database;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private OnlineMigrationService onlineMigrationService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws IOException {
+        database = EmbeddedPostgres.builder().start();
+        registry.add("spring.datasource.url", () -> database.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        database.close();
+    }
+
+    @Test
+    void onlineMigration_ShouldEvictTheRowsItChangedFromTheSecondLevelCache() throws Exception {
+        awaitMigration();
+        UserDTO user = create("+36 20 123 4567");
+        UUID phoneId = user.getPhoneNumbers().iterator().next().getId();
+        // A number stored before phone_number_e164 existed, written outside JPA
+        jdbcTemplate.update("UPDATE phone_numbers SET phone_number_e164 = NULL WHERE id = ?", phoneId);
+        // Read the way a request reads it, loading its collections in an open session
+        new TransactionTemplate(transactionManager).execute(tx -> userService.getUserById(user.getId(), false).orElseThrow());
+        Cache cache = entityManagerFactory.getCache();
+        assertTrue(cache.contains(User.class, user.getId()));
+        assertTrue(cache.contains(PhoneNumber.class, phoneId));
+
+        jdbcTemplate.update("UPDATE online_migrations SET status = 'FAILED', last_id = NULL WHERE name = ?", BACKFILL);
+        onlineMigrationService.startMigration(BACKFILL);
+        awaitMigration();
+
+        assertEquals("+36201234567", jdbcTemplate.queryForObject(
+                "SELECT phone_number_e164 FROM phone_numbers WHERE id = ?", String.class, phoneId));
+        assertFalse(cache.contains(PhoneNumber.class, phoneId));
+        // Only what changed
+        assertTrue(cache.contains(User.class, user.getId()));
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            assertEquals("+36201234567", entityManager.find(PhoneNumber.class, phoneId).getPhoneNumberE164());
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private void awaitMigration() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (System.nanoTime() < deadline) {
+            if (onlineMigrationService.getMigrations().stream()
+                    .filter(migration -> migration.getName().equals(BACKFILL))
+                    .map(OnlineMigrationDTO::getStatus)
+                    .allMatch("COMPLETED"::equals)) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        fail("Online migration " + BACKFILL + " did not complete");
+    }
+
+    private UserDTO create(String phone) {
+        PhoneNumberDTO phoneNumber = new PhoneNumberDTO();
+        phoneNumber.setPhoneNumber(phone);
+        return userService.createUser(CreateUserDTO.builder()
+                .name("Kovács János")
+                .email(UUID.randomUUID() + "@example.com")
+                .dateOfBirth(LocalDate.of(1980, 1, 1))
+                .placeOfBirth("Budapest")
+                .motherMaidenName("Mother")
+                .addresses(new HashSet<>())
+                .phoneNumbers(new HashSet<>(Set.of(phoneNumber)))
+                .build());
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.example.dpd;
+
+import com.example.dpd.dto.AddressDTO;
+import com.example.dpd.dto.Bulkhead;
+import com.example.dpd.dto.CreateUserDTO;
+import com.example.dpd.dto.PhoneNumberDTO;
+import com.example.dpd.dto.UpdateUserDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.service.BulkheadService;
+import com.example.dpd.service.UserService;
+import com.example.dpd.shard.Shards;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Boots the application against three embedded databases with sharding enabled.
+ */
+@SpringBootTest(properties = {
+        "spring.profiles.active=docker",
+        "dpd.sharding.enabled=true",
+        "dpd.pii.keys.1=HQWKbLbnwPoC4lOTV3z5aLEZMIlW9QDxcTG9NfS8DV0=",
+        "dpd.pii.blind-index-key=Fj1z/UhTnS7xWnacBjenhi6E4z+uwPgg5zG/vXEecPo=",
+        "dpd.grpc.port=0"})
+public class ShardingIT {
+
+    private static final List<EmbeddedPostgres> DATABASES = new ArrayList<>();
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BulkheadService bulkheadService;
+
+    @Autowired
+    private Shards shards;
+
+    @DynamicPropertySource
+    static void shards(DynamicPropertyRegistry registry) throws IOException {
+        for (int i = 0; i < 3; i++) {
+            EmbeddedPostgres database = EmbeddedPostgres.builder().start();
+            DATABASES.add(database);
+            registry.add("dpd.sharding.shards[" + i + "].url", () -> database.getJdbcUrl("postgres", "postgres"));
+            registry.add("dpd.sharding.shards[" + i + "].username", () -> "postgres");
+            registry.add("dpd.sharding.shards[" + i + "].password", () -> "postgres");
+        }
+    }
+
+    @AfterAll
+    static void stopDatabases() throws IOException {
+        for (EmbeddedPostgres database : DATABASES) {
+            database.close();
+        }
+    }
+
+    @Test
+    void users_ShouldLiveOnTheShardOfTheirIdAndBeListedAcrossShards() throws Exception {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            ids.add(userService.createUser(user(i)).getId());
+        }
+
+        assertEquals(3, shards.count());
+        for (int shard = 0; shard < DATABASES.size(); shard++) {
+            JdbcTemplate database = new JdbcTemplate(DATABASES.get(shard).getPostgresDatabase());
+            int current = shard;
+            List<UUID> expected = ids.stream().filter(id -> shards.shardOf(id) == current).toList();
+            assertThat(database.queryForList("SELECT id FROM users", UUID.class)).containsExactlyInAnyOrderElementsOf(expected);
+            assertEquals(expected.size(), database.queryForObject(
+                    "SELECT count(*) FROM addresses", Integer.class));
+            assertEquals(expected.size(), database.queryForObject(
+                    "SELECT count(*) FROM phone_numbers", Integer.class));
+        }
+
+        List<UUID> paged = new ArrayList<>();
+        List<UserDTO> page = userService.getUserPage(null, 7, false);
+        while (!page.isEmpty()) {
+            assertThat(page.size()).isLessThanOrEqualTo(7);
+            page.forEach(user -> paged.add(user.getId()));
+            page = userService.getUserPage(paged.get(paged.size() - 1), 7, false);
+        }
+        assertEquals(ids.stream().sorted(Shards.ID_ORDER).toList(), paged);
+        assertEquals(ids.size(), userService.getAllUsers(false).size());
+
+        for (UUID id : ids) {
+            UpdateUserDTO update = UpdateUserDTO.builder().name("Renamed " + id).build();
+            assertEquals("Renamed " + id, userService.updateUser(id, update).getName());
+            // Like a request, with the persistence context of a bulkhead thread
+            UserDTO read = bulkheadService.submit(Bulkhead.READ, () -> userService.getUserById(id, false).orElseThrow())
+                    .get(5, TimeUnit.SECONDS);
+            assertEquals("Renamed " + id, read.getName());
+            assertEquals(1, read.getAddresses().size());
+        }
+    }
+
+    private static CreateUserDTO user(int i) {
+        AddressDTO address = new AddressDTO();
+        address.setPostalCode("1011");
+        address.setCity("Budapest");
+        address.setStreet("Fő utca");
+        address.setHouseNumber(String.valueOf(i + 1));
+        PhoneNumberDTO phoneNumber = new PhoneNumberDTO();
+        phoneNumber.setPhoneNumber("+3620" + (1_000_000 + i));
+        return CreateUserDTO.builder()
+                .name("User " + i)
+                .email("user" + i + "@example.com")
+                .dateOfBirth(LocalDate.of(1980, 1, 1).plusDays(i))
+                .placeOfBirth("Budapest")
+                .motherMaidenName("Mother " + i)
+                .taj("123456788")
+                .taxId("8123456789")
+                .addresses(new HashSet<>(Set.of(address)))
+                .phoneNumbers(new HashSet<>(Set.of(phoneNumber)))
+                .build();
+    }
+
+}
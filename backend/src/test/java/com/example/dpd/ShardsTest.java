@@ -0,0 +1,128 @@
+package com.example.dpd;
+
+import com.example.dpd.config.ShardingProperties;
+import com.example.dpd.shard.ShardContext;
+import com.example.dpd.shard.Shards;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class ShardsTest {
+
+    @Test
+    void shardOf_ShouldAlwaysBeHomeWhenShardingIsDisabled() {
+        Shards shards = shards(false, 4);
+
+        assertEquals(1, shards.count());
+        assertEquals(Shards.HOME, shards.shardOf(UUID.randomUUID()));
+    }
+
+    @Test
+    void shardOf_ShouldSpreadIdsEvenlyAndOnlyMoveIdsToAnAddedShard() {
+        Shards three = shards(true, 3);
+        Shards four = shards(true, 4);
+        int[] counts = new int[4];
+        Random random = new Random(42);
+
+        for (int i = 0; i < 40_000; i++) {
+            UUID id = new UUID(random.nextLong(), random.nextLong());
+            int before = three.shardOf(id);
+            int after = four.shardOf(id);
+            assertTrue(after == before || after == 3, "id moved between existing shards");
+            assertEquals(after, four.shardOf(id));
+            counts[after]++;
+        }
+
+        for (int count : counts) {
+            assertThat(count).isBetween(9_000, 11_000);
+        }
+    }
+
+    @Test
+    void on_ShouldBindTheShardOfTheIdForTheWorkOnly() {
+        Shards shards = shards(true, 3);
+        UUID id = UUID.randomUUID();
+
+        Integer bound = shards.on(id, ShardContext::current);
+
+        assertEquals(shards.shardOf(id), bound);
+        assertNull(ShardContext.current());
+    }
+
+    @Test
+    void onEach_ShouldRunEveryShardWithItsOwnBindingAndKeepTheOrder() {
+        Shards shards = shards(true, 3);
+
+        List<Integer> bound = shards.onEach(List.of(2, 0, 1), shard -> ShardContext.current());
+
+        assertEquals(List.of(2, 0, 1), bound);
+    }
+
+    @Test
+    void onEach_ShouldRethrowTheFailureOfAPart() {
+        Shards shards = shards(true, 2);
+
+        IllegalArgumentException failure = assertThrows(IllegalArgumentException.class,
+                () -> shards.onEach(List.of(0, 1), shard -> {
+                    if (shard == 1) {
+                        throw new IllegalArgumentException("shard 1");
+                    }
+                    return shard;
+                }));
+        assertEquals("shard 1", failure.getMessage());
+    }
+
+    @Test
+    void groupByShard_ShouldGroupInShardOrderKeepingItemOrder() {
+        Shards shards = shards(true, 3);
+        List<UUID> ids = IntStream.range(0, 30).mapToObj(i -> UUID.randomUUID()).toList();
+
+        SortedMap<Integer, List<UUID>> groups = shards.groupByShard(ids, id -> id);
+
+        assertThat(new ArrayList<>(groups.keySet())).isSorted();
+        groups.forEach((shard, group) -> {
+            assertThat(group).allSatisfy(id -> assertEquals(shard, shards.shardOf(id)));
+            assertThat(group).isSubsetOf(ids);
+            assertEquals(group, ids.stream().filter(group::contains).toList());
+        });
+        assertEquals(ids.size(), groups.values().stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    void merge_ShouldReturnTheFirstElementsOfSortedParts() {
+        List<Integer> merged = Shards.merge(List.of(List.of(1, 4, 7), List.of(), List.of(2, 3, 9), List.of(5)),
+                Comparator.naturalOrder(), 5);
+
+        assertEquals(List.of(1, 2, 3, 4, 5), merged);
+        assertEquals(List.of(1, 2, 3, 4, 5, 7, 9),
+                Shards.merge(List.of(List.of(1, 4, 7), List.of(2, 3, 9), List.of(5)), Comparator.naturalOrder(), 100));
+    }
+
+    @Test
+    void idOrder_ShouldCompareUnsignedLikePostgres() {
+        UUID low = UUID.fromString("7fffffff-ffff-ffff-ffff-ffffffffffff");
+        UUID high = UUID.fromString("80000000-0000-0000-0000-000000000000");
+
+        assertTrue(low.compareTo(high) > 0, "UUID.compareTo is signed");
+        assertTrue(Shards.ID_ORDER.compare(low, high) < 0);
+        assertTrue(Shards.ID_ORDER.compare(
+                UUID.fromString("00000000-0000-0000-7fff-ffffffffffff"),
+                UUID.fromString("00000000-0000-0000-8000-000000000000")) < 0);
+    }
+
+    private Shards shards(boolean enabled, int count) {
+        ShardingProperties properties = new ShardingProperties();
+        properties.setEnabled(enabled);
+        for (int i = 0; i < count; i++) {
+            properties.getShards().add(new ShardingProperties.Shard());
+        }
+        return new Shards(properties, mock(PlatformTransactionManager.class));
+    }
+
+}
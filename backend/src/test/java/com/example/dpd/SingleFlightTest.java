@@ -0,0 +1,139 @@
+package com.example.dpd;
+
+import com.example.dpd.dto.CoalescingStatsDTO;
+import com.example.dpd.exception.ResourceNotFoundException;
+import com.example.dpd.exception.ServiceUnavailableException;
+import com.example.dpd.service.SingleFlight;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void load_ShouldLetConcurrentCallersShareTheRunningLoad() throws Exception {
+        SingleFlight<String, List<String>> singleFlight = new SingleFlight<>("user", Duration.ofSeconds(5));
+        Future<List<String>> first = callers.submit(() -> singleFlight.load("a", blocking(List.of("loaded"))));
+        awaitInFlight(singleFlight);
+        List<Future<List<String>>> waiting = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            waiting.add(callers.submit(() -> singleFlight.load("a", blocking(List.of("not shared")))));
+        }
+        // Other keys are not held up
+        assertEquals(List.of("other"), singleFlight.load("b", () -> List.of("other")));
+        awaitCoalesced(singleFlight, 5);
+
+        release.countDown();
+
+        List<String> result = first.get(1, TimeUnit.SECONDS);
+        for (Future<List<String>> caller : waiting) {
+            assertSame(result, caller.get(1, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        CoalescingStatsDTO stats = singleFlight.getStats();
+        assertEquals(2, stats.getExecuted());
+        assertEquals(5, stats.getCoalesced());
+        assertEquals(0, stats.getInFlight());
+    }
+
+    @Test
+    void load_ShouldPassTheFailureOfTheRunningLoadToWaitingCallers() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("user", Duration.ofSeconds(5));
+        Future<String> first = callers.submit(() -> singleFlight.load("a", () -> {
+            await();
+            throw new ResourceNotFoundException("User not found");
+        }));
+        awaitInFlight(singleFlight);
+        Future<String> second = callers.submit(() -> singleFlight.load("a", () -> "not shared"));
+        awaitCoalesced(singleFlight, 1);
+
+        release.countDown();
+
+        for (Future<String> caller : List.of(first, second)) {
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> caller.get(1, TimeUnit.SECONDS));
+            assertThat(failure.getCause()).isInstanceOf(ResourceNotFoundException.class).hasMessage("User not found");
+        }
+        // Failures are not remembered either
+        assertEquals("again", singleFlight.load("a", () -> "again"));
+    }
+
+    @Test
+    void load_ShouldStopWaitingAfterMaxWait() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("user", Duration.ofMillis(50));
+        Future<String> first = callers.submit(() -> singleFlight.load("a", blocking("slow")));
+        awaitInFlight(singleFlight);
+
+        assertThrows(ServiceUnavailableException.class, () -> singleFlight.load("a", () -> "not shared"));
+        assertEquals(1, singleFlight.getStats().getTimedOut());
+
+        release.countDown();
+        assertEquals("slow", first.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void forget_ShouldMakeLaterCallersRunTheirOwnLoad() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("user", Duration.ofSeconds(5));
+        Future<String> first = callers.submit(() -> singleFlight.load("a", blocking("before the change")));
+        awaitInFlight(singleFlight);
+
+        singleFlight.forget("a");
+
+        assertEquals("after the change", singleFlight.load("a", () -> "after the change"));
+        release.countDown();
+        assertEquals("before the change", first.get(1, TimeUnit.SECONDS));
+        assertEquals(2, singleFlight.getStats().getExecuted());
+        assertEquals(0, singleFlight.getStats().getCoalesced());
+    }
+
+    private <T> Supplier<T> blocking(T result) {
+        return () -> {
+            loads.incrementAndGet();
+            await();
+            return result;
+        };
+    }
+
+    private void await() {
+        try {
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitInFlight(SingleFlight<?, ?> singleFlight) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (singleFlight.getStats().getInFlight() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, singleFlight.getStats().getInFlight());
+    }
+
+    private static void awaitCoalesced(SingleFlight<?, ?> singleFlight, long coalesced) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (singleFlight.getStats().getCoalesced() < coalesced && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(coalesced, singleFlight.getStats().getCoalesced());
+    }
+
+}
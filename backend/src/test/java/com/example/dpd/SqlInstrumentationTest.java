@@ -0,0 +1,119 @@
+package com.example.dpd;
+
+import com.example.dpd.sql.RequestSqlStats;
+import com.example.dpd.sql.SqlCapture;
+import com.example.dpd.sql.SqlStatementListener;
+import com.example.dpd.sql.SqlStats;
+import com.example.dpd.sql.SqlStatsFilter;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SqlInstrumentationTest {
+
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        DataSource target = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(target.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(mock(ResultSet.class));
+        when(statement.executeUpdate()).thenReturn(1);
+        dataSource = ProxyDataSourceBuilder.create(target)
+                .listener(new SqlStatementListener(Duration.ZERO))
+                .build();
+    }
+
+    @Test
+    void capture_ShouldCountStatementsByKind() throws Exception {
+        try (SqlCapture sql = SqlCapture.start()) {
+            query("select * from users where email = ?", "john.doe@example.com");
+            query("WITH changed AS (UPDATE users SET name = ? RETURNING id) SELECT * FROM changed", "Jane");
+            update("update users set name = ? where id = ?", "Jane");
+            update("delete from phone_numbers where user_id = ?", "id");
+
+            SqlStats stats = sql.stats();
+            assertEquals(4, stats.getStatements());
+            assertEquals(2, stats.getSelects());
+            assertEquals(1, stats.getUpdates());
+            assertEquals(1, stats.getDeletes());
+            assertEquals(0, stats.getInserts());
+        }
+    }
+
+    @Test
+    void filter_ShouldAttributeStatementsOfExecutorThreadsToTheRequest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users/1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse res) {
+                query("select * from users where id = ?", "id");
+                CompletableFuture.supplyAsync(RequestSqlStats.propagate(() -> {
+                    update("insert into users (id, name) values (?, ?)", "id");
+                    return null;
+                })).join();
+            }
+        };
+
+        new SqlStatsFilter(true).doFilter(request, response, new MockFilterChain(servlet));
+
+        assertEquals("2", response.getHeader("X-Sql-Statements"));
+        assertNotNull(response.getHeader("X-Sql-Time-Ms"));
+        assertNull(RequestSqlStats.current());
+    }
+
+    @Test
+    void filter_ShouldLeaveHeadersOffUnlessEnabled() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new SqlStatsFilter(false).doFilter(new MockHttpServletRequest("GET", "/users"), response, new MockFilterChain());
+
+        assertNull(response.getHeader("X-Sql-Statements"));
+    }
+
+    private void query(String sql, String parameter) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            if (parameter != null) {
+                statement.setString(1, parameter);
+            }
+            statement.executeQuery();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void update(String sql, String parameter) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, parameter);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,224 @@
+package com.example.dpd;
+
+import com.example.dpd.dto.AddressDTO;
+import com.example.dpd.dto.ArchivalStatusDTO;
+import com.example.dpd.dto.CreateUserDTO;
+import com.example.dpd.dto.PhoneNumberDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.entity.User;
+import com.example.dpd.entity.UserStatus;
+import com.example.dpd.repository.UserArchive;
+import com.example.dpd.service.UserArchiveService;
+import com.example.dpd.service.UserService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Moves depersonalised users to users_archive against an embedded database: what is old enough, what happens to
+ * their addresses, phone numbers and cache entries, rows locked by a concurrent write, and running again.
+ */
+@SpringBootTest(properties = {
+        "spring.profiles.active=docker",
+        "dpd.pii.keys.1=HQWKbLbnwPoC4lOTV3z5aLEZMIlW9QDxcTG9NfS8DV0=",
+        "dpd.pii.blind-index-key=Fj1z/UhTnS7xWnacBjenhi6E4z+uwPgg5zG/vXEecPo=",
+        "dpd.grpc.port=0",
+        // The async audit writer briefly locks the users it writes for, which a chunk would skip
+        "dpd.audit.mode=sync",
+        "dpd.archive.cron=-",
+        "dpd.archive.min-age=30d",
+        "dpd.archive.chunk-size=2",
+        "dpd.archive.pause=0ms"})
+public class UserArchiveIT {
+
+    private static EmbeddedPostgres database;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserArchiveService userArchiveService;
+
+    @Autowired
+    private UserArchive userArchive;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws IOException {
+        database = EmbeddedPostgres.builder().start();
+        registry.add("spring.datasource.url", () -> database.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        database.close();
+    }
+
+    @Test
+    void startArchival_ShouldMoveUsersDepersonalisedBeforeTheCutoffWithTheirChildRows() throws Exception {
+        Instant old = Instant.now().minus(40, ChronoUnit.DAYS).truncatedTo(ChronoUnit.MILLIS);
+        UUID first = depersonalised(old);
+        UUID second = depersonalised(old);
+        // Erased before depersonalised_at existed
+        UUID legacy = depersonalised(null);
+        UUID recent = depersonalised(Instant.now().minus(1, ChronoUnit.DAYS));
+        UUID active = create().getId();
+        Cache cache = entityManagerFactory.getCache();
+        for (UUID id : List.of(first, second, legacy, recent)) {
+            // Left behind by a version that did not delete them on depersonalisation
+            jdbcTemplate.update("INSERT INTO addresses (user_id, city) VALUES (?, 'Budapest')", id);
+            jdbcTemplate.update("INSERT INTO phone_numbers (user_id, phone_number) VALUES (?, '+36201234567')", id);
+            read(id);
+            assertTrue(cache.contains(User.class, id));
+        }
+
+        ArchivalStatusDTO status = archive();
+
+        assertEquals("COMPLETED", status.getStatus());
+        assertEquals(3, status.getUsersArchived());
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM users", UUID.class))
+                .containsExactlyInAnyOrder(recent, active);
+        assertEquals(3, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users_archive WHERE id IN (?, ?, ?)", Integer.class, first, second, legacy));
+        assertEquals(Timestamp.from(old), jdbcTemplate.queryForObject(
+                "SELECT depersonalised_at FROM users_archive WHERE id = ?", Timestamp.class, first));
+        assertNull(jdbcTemplate.queryForObject(
+                "SELECT depersonalised_at FROM users_archive WHERE id = ?", Timestamp.class, legacy));
+        for (String table : List.of("addresses", "phone_numbers")) {
+            assertThat(jdbcTemplate.queryForList("SELECT DISTINCT user_id FROM " + table, UUID.class))
+                    .as(table).containsExactlyInAnyOrder(recent, active);
+        }
+        // Evicted once the move committed, and read from the archive instead
+        for (UUID id : List.of(first, second, legacy)) {
+            assertFalse(cache.contains(User.class, id));
+            assertEquals(UserStatus.DEPERSONALISED, read(id).getStatus());
+        }
+        assertTrue(cache.contains(User.class, recent));
+        Integer archived = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users_archive", Integer.class);
+
+        ArchivalStatusDTO again = archive();
+
+        assertEquals("COMPLETED", again.getStatus());
+        assertEquals(0, again.getUsersArchived());
+        assertEquals(archived, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users_archive", Integer.class));
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM users", UUID.class))
+                .containsExactlyInAnyOrder(recent, active);
+    }
+
+    @Test
+    void archiveChunk_ShouldSkipUsersLockedByAConcurrentWrite() throws Exception {
+        Instant old = Instant.now().minus(40, ChronoUnit.DAYS);
+        UUID locked = depersonalised(old);
+        UUID free = depersonalised(old);
+        OffsetDateTime cutoff = OffsetDateTime.now().minusDays(30);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        // Another instance writing the user
+        try (Connection connection = database.getPostgresDatabase().getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement lock = connection.prepareStatement("SELECT id FROM users WHERE id = ? FOR UPDATE")) {
+                lock.setObject(1, locked);
+                lock.executeQuery().close();
+            }
+            // Does not wait for the lock
+            List<UUID> moved = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> transactionTemplate.execute(tx -> userArchive.archiveChunk(cutoff, 10)));
+            assertThat(moved).contains(free).doesNotContain(locked);
+            assertTrue(userArchive.contains(free));
+            assertFalse(userArchive.contains(locked));
+            connection.rollback();
+        }
+
+        List<UUID> released = transactionTemplate.execute(tx -> userArchive.archiveChunk(cutoff, 10));
+        assertThat(released).containsExactly(locked);
+        List<UUID> rerun = transactionTemplate.execute(tx -> userArchive.archiveChunk(cutoff, 10));
+        assertThat(rerun).isEmpty();
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE id IN (?, ?)", Integer.class,
+                locked, free));
+    }
+
+    private ArchivalStatusDTO archive() throws InterruptedException {
+        userArchiveService.startArchival();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (System.nanoTime() < deadline) {
+            ArchivalStatusDTO status = userArchiveService.getStatus();
+            if (!"RUNNING".equals(status.getStatus())) {
+                return status;
+            }
+            Thread.sleep(50);
+        }
+        return fail("Archival did not finish");
+    }
+
+    /** The way a request reads it, loading its collections in an open session. */
+    private UserDTO read(UUID id) {
+        return new TransactionTemplate(transactionManager).execute(tx -> userService.getUserById(id, true).orElseThrow());
+    }
+
+    private UUID depersonalised(Instant at) {
+        UUID id = create().getId();
+        new TransactionTemplate(transactionManager).executeWithoutResult(tx -> userService.deleteUser(id));
+        jdbcTemplate.update("UPDATE users SET depersonalised_at = ? WHERE id = ?",
+                at == null ? null : Timestamp.from(at), id);
+        // Written past Hibernate, as the archive is
+        entityManagerFactory.getCache().evict(User.class, id);
+        return id;
+    }
+
+    private UserDTO create() {
+        AddressDTO address = new AddressDTO();
+        address.setPostalCode("1011");
+        address.setCity("Budapest");
+        address.setStreet("Fő utca");
+        address.setHouseNumber("1");
+        PhoneNumberDTO phoneNumber = new PhoneNumberDTO();
+        phoneNumber.setPhoneNumber("+36 20 123 4567");
+        return userService.createUser(CreateUserDTO.builder()
+                .name("Kovács János")
+                .email(UUID.randomUUID() + "@example.com")
+                .dateOfBirth(LocalDate.of(1980, 1, 1))
+                .placeOfBirth("Budapest")
+                .motherMaidenName("Mother")
+                .addresses(new HashSet<>(Set.of(address)))
+                .phoneNumbers(new HashSet<>(Set.of(phoneNumber)))
+                .build());
+    }
+
+}
@@ -0,0 +1,171 @@
+package com.example.dpd;
+
+import com.example.dpd.dto.CreateUserDTO;
+import com.example.dpd.dto.UpdateUserDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.security.PiiCipher;
+import com.example.dpd.service.PiiReencryptionService;
+import com.example.dpd.service.UserAuditServiceImp;
+import com.example.dpd.service.UserService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The append-only trigger of user_audit, the re-encryption it lets through and the redaction of entries landing late,
+ * against an embedded database. The writer only runs when flushed here.
+ */
+@SpringBootTest(properties = {
+        "spring.profiles.active=docker",
+        "dpd.pii.keys.1=HQWKbLbnwPoC4lOTV3z5aLEZMIlW9QDxcTG9NfS8DV0=",
+        "dpd.pii.blind-index-key=Fj1z/UhTnS7xWnacBjenhi6E4z+uwPgg5zG/vXEecPo=",
+        "dpd.grpc.port=0",
+        "dpd.audit.mode=async",
+        "dpd.audit.flush-interval-millis=3600000"})
+public class UserAuditIT {
+
+    private static EmbeddedPostgres database;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserAuditServiceImp userAuditService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PiiReencryptionService reencryptionService;
+
+    @Autowired
+    private PiiCipher piiCipher;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws IOException {
+        database = EmbeddedPostgres.builder().start();
+        registry.add("spring.datasource.url", () -> database.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        database.close();
+    }
+
+    @Test
+    void trigger_ShouldOnlyLetKeyRotationAndRedactionThrough() {
+        long id = insertEntry("v1:old", "v1:new");
+        String rotate = "UPDATE user_audit SET old_value = 'v2:old', new_value = 'v2:new' WHERE id = ?";
+
+        // Re-encryption: same row, both values moved onto the key version the transaction declared
+        assertUpdateRejected(null, rotate, id);
+        assertUpdateRejected("v3", rotate, id);
+        assertEquals(1, update("v2", rotate, id));
+        // The declaration ends with its transaction
+        assertUpdateRejected(null, "UPDATE user_audit SET old_value = 'v3:old', new_value = 'v3:new' WHERE id = ?", id);
+        assertUpdateRejected("v2", "UPDATE user_audit SET new_value = 'v2:forged' WHERE id = ?", id);
+        assertUpdateRejected("v3", "UPDATE user_audit SET old_value = 'v3:old', new_value = 'v2:new' WHERE id = ?", id);
+        assertUpdateRejected("v3", "UPDATE user_audit SET old_value = NULL, new_value = 'v3:new' WHERE id = ?", id);
+        assertUpdateRejected("v3", "UPDATE user_audit SET field = 'email', old_value = 'v3:old', new_value = 'v3:new' WHERE id = ?", id);
+        assertUpdateRejected(null, "DELETE FROM user_audit WHERE id = ?", id);
+
+        // Redaction
+        assertEquals(1, update(null, "UPDATE user_audit SET old_value = NULL, new_value = NULL WHERE id = ?", id));
+        assertUpdateRejected("v3", "UPDATE user_audit SET new_value = 'v3:new' WHERE id = ?", id);
+        assertEquals(Map.of("old_value", "", "new_value", ""), jdbcTemplate.queryForMap(
+                "SELECT coalesce(old_value, '') AS old_value, coalesce(new_value, '') AS new_value FROM user_audit WHERE id = ?", id));
+    }
+
+    @Test
+    void reencryption_ShouldMoveEntriesOntoTheCurrentKeyThroughTheTrigger() throws Exception {
+        // Written before the values were encrypted
+        long id = insertEntry("John Doe", "Jane Doe");
+
+        reencryptionService.startReencryption();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (reencryptionService.getStatus().getFinishedAt() == null && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertEquals("COMPLETED", reencryptionService.getStatus().getStatus());
+        Map<String, Object> entry = jdbcTemplate.queryForMap("SELECT old_value, new_value FROM user_audit WHERE id = ?", id);
+        assertThat((String) entry.get("old_value")).startsWith("v1:");
+        assertEquals("Jane Doe", piiCipher.decrypt((String) entry.get("new_value")));
+    }
+
+    @Test
+    void flush_ShouldWriteChangesQueuedBeforeADepersonalisationWithoutTheirValues() {
+        UserDTO user = create();
+        userService.updateUser(user.getId(), UpdateUserDTO.builder().placeOfBirth("Szeged").build());
+        // Depersonalised elsewhere while the change is still queued here
+        jdbcTemplate.update("UPDATE users SET status = 'DEPERSONALISED' WHERE id = ?", user.getId());
+
+        userAuditService.flush();
+
+        List<Map<String, Object>> entries = jdbcTemplate.queryForList(
+                "SELECT field, old_value, new_value FROM user_audit WHERE user_id = ? ORDER BY id", user.getId());
+        assertThat(entries).extracting(entry -> entry.get("field")).contains("placeOfBirth");
+        assertThat(entries).allSatisfy(entry -> {
+            assertNull(entry.get("old_value"));
+            assertNull(entry.get("new_value"));
+        });
+    }
+
+    private long insertEntry(String oldValue, String newValue) {
+        return jdbcTemplate.queryForObject("INSERT INTO user_audit "
+                + "(user_id, changed_at, actor, change_type, field, old_value, new_value) "
+                + "VALUES (?, now(), 'test', 'UPDATE', 'name', ?, ?) RETURNING id", Long.class, UUID.randomUUID(), oldValue, newValue);
+    }
+
+    /** In a transaction of its own, which declares the key version like the re-encryption job when there is one. */
+    private int update(String keyVersion, String sql, long id) {
+        return new TransactionTemplate(transactionManager).execute(tx -> {
+            if (keyVersion != null) {
+                jdbcTemplate.queryForObject("SELECT set_config('dpd.audit_key_version', ?, true)", String.class, keyVersion);
+            }
+            return jdbcTemplate.update(sql, id);
+        });
+    }
+
+    private void assertUpdateRejected(String keyVersion, String sql, long id) {
+        DataAccessException failure = assertThrows(DataAccessException.class, () -> update(keyVersion, sql, id));
+        assertThat(failure.getMessage()).contains("user_audit is append-only");
+    }
+
+    private UserDTO create() {
+        return userService.createUser(CreateUserDTO.builder()
+                .name("Kovács János")
+                .email(UUID.randomUUID() + "@example.com")
+                .dateOfBirth(LocalDate.of(1980, 1, 1))
+                .placeOfBirth("Budapest")
+                .motherMaidenName("Mother")
+                .addresses(new HashSet<>())
+                .phoneNumbers(new HashSet<>())
+                .build());
+    }
+
+}
@@ -0,0 +1,267 @@
+package com.example.dpd;
+
+import com.example.dpd.audit.UserFieldDiff;
+import com.example.dpd.audit.WriteBehindQueue;
+import com.example.dpd.config.AuditProperties;
+import com.example.dpd.config.PiiProperties;
+import com.example.dpd.config.ShardingProperties;
+import com.example.dpd.dto.AddressDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.event.UserChangedEvent;
+import com.example.dpd.security.PiiCipher;
+import com.example.dpd.service.UserAuditServiceImp;
+import com.example.dpd.shard.Shards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.ResultSet;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class UserAuditServiceTest {
+
+    private static final UUID ADDRESS_ID = UUID.fromString("00000000-0000-0000-0000-0000000000a1");
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final AuditProperties properties = new AuditProperties();
+    private PiiCipher piiCipher;
+    private UserAuditServiceImp auditService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        PiiProperties piiProperties = new PiiProperties();
+        piiProperties.setKeys(Map.of(1, Base64.getEncoder().encodeToString(new byte[32])));
+        piiProperties.setBlindIndexKey(Base64.getEncoder().encodeToString(new byte[32]));
+        piiCipher = new PiiCipher(piiProperties);
+        properties.setQueueCapacity(2);
+        auditService = new UserAuditServiceImp(jdbcTemplate, piiCipher, properties, transactionManager,
+                new Shards(new ShardingProperties(), transactionManager));
+    }
+
+    @Test
+    void flush_ShouldWriteQueuedFieldChangesEncrypted() {
+        UserDTO before = user("John Doe", address("1011", "Budapest"));
+        UserDTO after = user("Jane Doe", address("6720", "Szeged"));
+
+        auditService.recordInTransaction(UserChangedEvent.updated(before, after));
+        verifyNoInteractions(jdbcTemplate);
+        auditService.recordAfterCommit(UserChangedEvent.updated(before, after));
+        auditService.flush();
+
+        List<Object[]> rows = captureInsert();
+        assertThat(rows).extracting(row -> row[4] + ": " + piiCipher.decrypt((String) row[5]) + " -> "
+                + piiCipher.decrypt((String) row[6])).containsExactly(
+                "name: John Doe -> Jane Doe",
+                "addresses[" + ADDRESS_ID + "]: 1011 Budapest, Fő utca 1 -> 6720 Szeged, Fő utca 1");
+        assertThat(rows).allSatisfy(row -> {
+            assertEquals("system", row[2]);
+            assertEquals("UPDATED", row[3]);
+            assertThat((String) row[5]).startsWith("v1:");
+        });
+        assertEquals(1, auditService.getStats().getWritten());
+    }
+
+    @Test
+    void recordInTransaction_ShouldWriteAtOnceInSyncMode() {
+        properties.setMode(AuditProperties.Mode.SYNC);
+
+        auditService.recordAfterCommit(UserChangedEvent.created(user("John Doe")));
+        assertEquals(0, auditService.getStats().getQueued());
+        auditService.recordInTransaction(UserChangedEvent.created(user("John Doe")));
+
+        assertThat(captureInsert()).extracting(row -> row[4]).containsExactly("name", "email");
+    }
+
+    @Test
+    void recordAfterCommit_ShouldRecordErasedFieldsWithoutValuesAndRedactHistoryInTheTransaction() {
+        UserDTO before = user("John Doe", address("1011", "Budapest"));
+        UserDTO after = user("[DELETED]");
+
+        auditService.recordInTransaction(UserChangedEvent.depersonalised(before, after));
+        verify(jdbcTemplate).queryForList(endsWith("FOR UPDATE"), eq(UUID.class), eq(before.getId()));
+        verify(jdbcTemplate).update(startsWith("UPDATE user_audit SET old_value = NULL, new_value = NULL"), eq(before.getId()));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+
+        // Only the new entries go through the queue, and dropping them leaves nothing to redact
+        auditService.recordAfterCommit(UserChangedEvent.depersonalised(before, after));
+        auditService.flush();
+
+        assertThat(captureInsert()).allSatisfy(row -> {
+            assertEquals("DEPERSONALISED", row[3]);
+            assertNull(row[5]);
+            assertNull(row[6]);
+        }).extracting(row -> row[4]).containsExactly("name", "addresses[" + ADDRESS_ID + "]");
+        verify(jdbcTemplate, times(1)).update(startsWith("UPDATE user_audit"), (Object[]) any());
+    }
+
+    @Test
+    void recordAfterCommit_ShouldDropChangesBeyondCapacityAndSkipNoOps() {
+        UserDTO user = user("John Doe");
+
+        auditService.recordAfterCommit(UserChangedEvent.updated(user, user));
+        for (int i = 0; i < 3; i++) {
+            auditService.recordAfterCommit(UserChangedEvent.updated(user, user("Name " + i)));
+        }
+
+        assertEquals(2, auditService.getStats().getQueued());
+        assertEquals(1, auditService.getStats().getDropped());
+    }
+
+    @Test
+    void flush_ShouldRetryChangesThatCouldNotBeWritten() {
+        doThrow(new IllegalStateException("database down")).when(jdbcTemplate).batchUpdate(anyString(), anyList());
+
+        auditService.recordAfterCommit(UserChangedEvent.created(user("John Doe")));
+        auditService.flush();
+
+        assertEquals(1, auditService.getStats().getQueued());
+        assertEquals(1, auditService.getStats().getFailed());
+        assertEquals(0, auditService.getStats().getWritten());
+
+        reset(jdbcTemplate);
+        auditService.flush();
+
+        assertThat(captureInsert()).hasSize(2);
+        assertEquals(0, auditService.getStats().getQueued());
+        assertEquals(1, auditService.getStats().getWritten());
+    }
+
+    @Test
+    void flush_ShouldDeadLetterChangesThatKeepFailingWithoutTheirValues() {
+        properties.setMaxAttempts(2);
+        doThrow(new IllegalStateException("value too long")).when(jdbcTemplate).batchUpdate(anyString(), anyList());
+        UserDTO user = user("John Doe");
+
+        auditService.recordAfterCommit(UserChangedEvent.created(user));
+        auditService.flush();
+        verify(jdbcTemplate, never()).update(startsWith("INSERT INTO user_audit_dead_letter"), (Object[]) any());
+        auditService.flush();
+
+        verify(jdbcTemplate).update(startsWith("INSERT INTO user_audit_dead_letter"), eq(user.getId()), any(),
+                eq("system"), eq("CREATED"), eq("name, email"), eq("value too long"));
+        assertEquals(0, auditService.getStats().getQueued());
+        assertEquals(1, auditService.getStats().getDeadLettered());
+
+        // Later changes are no longer held up
+        reset(jdbcTemplate);
+        auditService.recordAfterCommit(UserChangedEvent.updated(user, user("Jane Doe")));
+        auditService.flush();
+        assertThat(captureInsert()).extracting(row -> row[4]).containsExactly("name");
+    }
+
+    @Test
+    void flush_ShouldKeepChangesThatCannotBeDeadLetteredEither() {
+        properties.setMaxAttempts(1);
+        doThrow(new IllegalStateException("database down")).when(jdbcTemplate).batchUpdate(anyString(), anyList());
+        when(jdbcTemplate.update(startsWith("INSERT INTO user_audit_dead_letter"), (Object[]) any()))
+                .thenThrow(new IllegalStateException("database down"));
+
+        auditService.recordAfterCommit(UserChangedEvent.created(user("John Doe")));
+        auditService.flush();
+
+        assertEquals(1, auditService.getStats().getQueued());
+        assertEquals(0, auditService.getStats().getDeadLettered());
+    }
+
+    @Test
+    void flush_ShouldWriteChangesOfAUserDepersonalisedMeanwhileWithoutValues() throws Exception {
+        UserDTO user = user("John Doe");
+        doAnswer(invocation -> {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getObject("id", UUID.class)).thenReturn(user.getId());
+            when(rs.getString("status")).thenReturn("DEPERSONALISED");
+            invocation.<RowCallbackHandler>getArgument(1).processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT id, status FROM users"), any(RowCallbackHandler.class), any());
+
+        auditService.recordAfterCommit(UserChangedEvent.updated(user, user("Jane Doe")));
+        auditService.flush();
+
+        assertThat(captureInsert()).singleElement().satisfies(row -> {
+            assertEquals("name", row[4]);
+            assertNull(row[5]);
+            assertNull(row[6]);
+        });
+        verify(jdbcTemplate).query(endsWith("ORDER BY id FOR SHARE"), any(RowCallbackHandler.class), any());
+    }
+
+    @Test
+    void diff_ShouldReportCreatedFieldsAndAddedElements() {
+        assertThat(UserFieldDiff.diff(null, user("John Doe", address("1011", "Budapest"))))
+                .extracting(UserFieldDiff.FieldChange::field)
+                .containsExactly("name", "email", "addresses[" + ADDRESS_ID + "]");
+    }
+
+    @Test
+    void writeBehindQueue_ShouldNeverExceedItsCapacityUnderContention() throws Exception {
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>(1000);
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int p = 0; p < 4; p++) {
+            producers.submit(() -> {
+                start.await();
+                for (int i = 0; i < 500; i++) {
+                    queue.offer(i);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        producers.shutdown();
+        assertTrue(producers.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(1000, queue.size());
+        assertEquals(1000, queue.dropped());
+        assertEquals(600, queue.drain(600).size());
+        assertEquals(400, queue.drain(600).size());
+        assertEquals(0, queue.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> captureInsert() {
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO user_audit"), rows.capture());
+        return rows.getValue();
+    }
+
+    private static UserDTO user(String name, AddressDTO... addresses) {
+        UserDTO user = new UserDTO();
+        user.setId(UUID.fromString("00000000-0000-0000-0000-000000000001"));
+        user.setName(name);
+        user.setEmail("john@example.com");
+        user.setAddresses(new HashSet<>(List.of(addresses)));
+        user.setPhoneNumbers(Set.of());
+        return user;
+    }
+
+    private static AddressDTO address(String postalCode, String city) {
+        AddressDTO address = new AddressDTO();
+        address.setId(ADDRESS_ID);
+        address.setPostalCode(postalCode);
+        address.setCity(city);
+        address.setStreet("Fő utca");
+        address.setHouseNumber("1");
+        return address;
+    }
+
+}
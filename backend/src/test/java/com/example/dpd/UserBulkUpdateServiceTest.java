@@ -0,0 +1,189 @@
+package com.example.dpd;
+
+import com.example.dpd.config.BulkUpdateProperties;
+import com.example.dpd.config.ShardingProperties;
+import com.example.dpd.dto.*;
+import com.example.dpd.dto.BulkUpdateItemResultDTO.Status;
+import com.example.dpd.entity.Address;
+import com.example.dpd.entity.User;
+import com.example.dpd.entity.UserStatus;
+import com.example.dpd.repository.UserBatchWriter;
+import com.example.dpd.repository.UserRepository;
+import com.example.dpd.service.UserBulkUpdateServiceImp;
+import com.example.dpd.service.UserMapper;
+import com.example.dpd.shard.Shards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import javax.validation.Validation;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+public class UserBulkUpdateServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UserBatchWriter userBatchWriter;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final Map<UUID, User> stored = new HashMap<>();
+    private final List<TransactionStatus> transactions = new ArrayList<>();
+    private UserBulkUpdateServiceImp bulkUpdateService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        BulkUpdateProperties properties = new BulkUpdateProperties();
+        properties.setBatchSize(2);
+        bulkUpdateService = new UserBulkUpdateServiceImp(userRepository, userBatchWriter, new UserMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator(), eventPublisher, properties, transactionManager,
+                new Shards(new ShardingProperties(), transactionManager));
+
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> {
+            SimpleTransactionStatus status = new SimpleTransactionStatus();
+            transactions.add(status);
+            return status;
+        });
+        when(userRepository.findWithAddressesByIdIn(any())).thenAnswer(invocation -> {
+            Collection<UUID> ids = invocation.getArgument(0);
+            return ids.stream().map(stored::get).filter(Objects::nonNull).toList();
+        });
+    }
+
+    @Test
+    void bulkUpdate_AllOrNothing_ShouldRollBackEverythingWhenOneUserIsMissing() {
+        User first = store("first@test.com");
+        User second = store("second@test.com");
+        UUID missing = UUID.randomUUID();
+
+        BulkUpdateResultDTO result = bulkUpdateService.bulkUpdate(items(BulkUpdateMode.ALL_OR_NOTHING,
+                first.getId(), second.getId(), missing));
+
+        assertFalse(result.isCommitted());
+        assertThat(result.getItems()).extracting(BulkUpdateItemResultDTO::getStatus)
+                .containsExactly(Status.ROLLED_BACK, Status.ROLLED_BACK, Status.NOT_FOUND);
+        assertEquals(1, transactions.size());
+        assertTrue(transactions.get(0).isRollbackOnly());
+    }
+
+    @Test
+    void bulkUpdate_BestEffort_ShouldNotFindDepersonalisedUsers() {
+        User active = store("active@test.com");
+        User erased = store("[DELETED@erased]");
+        erased.setName("[DELETED]");
+        erased.setStatus(UserStatus.DEPERSONALISED);
+
+        BulkUpdateResultDTO result = bulkUpdateService.bulkUpdate(items(BulkUpdateMode.BEST_EFFORT,
+                active.getId(), erased.getId()));
+
+        assertThat(result.getItems()).extracting(BulkUpdateItemResultDTO::getStatus)
+                .containsExactly(Status.UPDATED, Status.NOT_FOUND);
+        assertEquals("Debrecen", active.getPlaceOfBirth());
+        assertNull(erased.getPlaceOfBirth());
+        assertEquals("[DELETED]", erased.getName());
+        verify(eventPublisher, times(1)).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void bulkUpdate_AllOrNothing_ShouldNotWriteWhenAPatchIsInvalid() {
+        User user = store("user@test.com");
+        UpdateUserDTO invalid = UpdateUserDTO.builder().taj("123456789").build();
+        BulkUpdateUserDTO request = new BulkUpdateUserDTO();
+        request.setItems(List.of(new BulkUpdateItemDTO(user.getId(), invalid)));
+
+        BulkUpdateResultDTO result = bulkUpdateService.bulkUpdate(request);
+
+        assertFalse(result.isCommitted());
+        assertEquals(Status.INVALID, result.getItems().get(0).getStatus());
+        assertThat(result.getItems().get(0).getMessage()).contains("taj");
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void bulkUpdate_BestEffort_ShouldRetryFailedBatchItemByItem() {
+        User first = store("first@test.com");
+        User second = store("second@test.com");
+        doAnswer(invocation -> {
+            // The batch and the retry of the second item clash; the retry of the first item goes through
+            if (transactions.size() != 2) {
+                throw new DataIntegrityViolationException("duplicate key value violates unique constraint");
+            }
+            return null;
+        }).when(userBatchWriter).flushAndClear();
+        BulkUpdateUserDTO request = new BulkUpdateUserDTO();
+        request.setMode(BulkUpdateMode.BEST_EFFORT);
+        request.setItems(List.of(
+                new BulkUpdateItemDTO(first.getId(), UpdateUserDTO.builder().name("First").build()),
+                new BulkUpdateItemDTO(second.getId(), UpdateUserDTO.builder().email("taken@test.com").build())));
+
+        BulkUpdateResultDTO result = bulkUpdateService.bulkUpdate(request);
+
+        assertTrue(result.isCommitted());
+        assertEquals(3, transactions.size());
+        assertThat(result.getItems()).extracting(BulkUpdateItemResultDTO::getStatus)
+                .containsExactly(Status.UPDATED, Status.FAILED);
+        assertThat(result.getItems().get(1).getMessage()).contains("duplicate key");
+    }
+
+    @Test
+    void bulkUpdate_WithFilter_ShouldPatchOnlyMatchingAddresses() {
+        User user = store("user@test.com");
+        Address old = Address.builder().id(UUID.randomUUID()).city("Budapest").postalCode("1011").user(user).build();
+        Address other = Address.builder().id(UUID.randomUUID()).city("Szeged").postalCode("6720").user(user).build();
+        user.getAddresses().addAll(List.of(old, other));
+        when(userRepository.findIdsByAddress(eq("Budapest"), isNull(), any())).thenReturn(List.of(user.getId()));
+        BulkUpdateUserDTO request = new BulkUpdateUserDTO();
+        BulkUserFilterDTO filter = new BulkUserFilterDTO();
+        filter.setCity("Budapest");
+        request.setFilter(filter);
+        AddressPatchDTO addressPatch = new AddressPatchDTO();
+        addressPatch.setPostalCode("1012");
+        request.setAddressPatch(addressPatch);
+
+        BulkUpdateResultDTO result = bulkUpdateService.bulkUpdate(request);
+
+        assertTrue(result.isCommitted());
+        assertEquals(1, result.getUpdated());
+        assertEquals("1012", old.getPostalCode());
+        assertEquals("6720", other.getPostalCode());
+        verify(userBatchWriter).flushAndClear();
+        verify(eventPublisher).publishEvent(any(Object.class));
+    }
+
+    private User store(String email) {
+        User user = User.builder().id(UUID.randomUUID()).name("User").email(email)
+                .addresses(new LinkedHashSet<>()).phoneNumbers(new LinkedHashSet<>()).build();
+        stored.put(user.getId(), user);
+        return user;
+    }
+
+    private static BulkUpdateUserDTO items(BulkUpdateMode mode, UUID... ids) {
+        BulkUpdateUserDTO request = new BulkUpdateUserDTO();
+        request.setMode(mode);
+        request.setItems(Arrays.stream(ids)
+                .map(id -> new BulkUpdateItemDTO(id, UpdateUserDTO.builder().placeOfBirth("Debrecen").build()))
+                .toList());
+        return request;
+    }
+
+}
@@ -4,6 +4,7 @@ import com.example.dpd.dto.CreateUserDTO;
 import com.example.dpd.dto.UpdateUserDTO;
 import com.example.dpd.entity.User;
 import com.example.dpd.repository.UserRepository;
+import com.example.dpd.sql.SqlCapture;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,12 +13,14 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.http.MediaType;
 import static org.junit.jupiter.api.Assertions.*;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import javax.persistence.EntityManagerFactory;
 import java.util.Set;
 import java.util.UUID;
 
@@ -35,6 +38,9 @@ public class UserControllerIT {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @BeforeEach
     void setUp() {
         userRepository.deleteAll();
@@ -45,7 +51,7 @@ public class UserControllerIT {
         CreateUserDTO createUserDTO = CreateUserDTO.builder()
                 .name("John Doe")
                 .email("john.doe@example.com")
-                .taj("123456789")
+                .taj("123456788")
                 .addresses(Set.of())
                 .phoneNumbers(Set.of())
                 .build();
@@ -122,6 +128,28 @@ public class UserControllerIT {
                 .andExpect(jsonPath("$.email").value("john.doe@example.com"));
     }
 
+    @Test
+    void getUserById_ShouldLoadUserAndCollectionsInThreeSelects() throws Exception {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setName("John Doe");
+        user.setEmail("john.doe@example.com");
+        user.setTaj("123456789");
+        userRepository.save(user);
+        entityManagerFactory.getCache().evictAll();
+
+        try (SqlCapture sql = SqlCapture.start()) {
+            MvcResult result = mockMvc.perform(get("/users/{id}", user.getId()))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk());
+
+            assertEquals(3, sql.stats().getStatements());
+            assertEquals(3, sql.stats().getSelects());
+        }
+    }
+
     @Test
     void getUserById_ShouldReturnNotFound() throws Exception {
         mockMvc.perform(get("/api/users/{id}", UUID.randomUUID()))
@@ -7,17 +7,27 @@ import com.example.dpd.dto.PhoneNumberDTO;
 import com.example.dpd.dto.UpdateUserDTO;
 import com.example.dpd.dto.UserDTO;
 import com.example.dpd.exception.ResourceNotFoundException;
+import com.example.dpd.service.BulkheadService;
+import com.example.dpd.service.UserAuditService;
+import com.example.dpd.service.UserCountService;
+import com.example.dpd.service.UserPhoneLookupService;
 import com.example.dpd.service.UserService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -35,9 +45,29 @@ public class UserControllerTest {
     @MockBean // Creates a Mockito mock and registers it in the ApplicationContext
     private UserService userService;
 
+    @MockBean
+    private BulkheadService bulkheadService;
+
+    @MockBean
+    private UserPhoneLookupService userPhoneLookupService;
+
+    @MockBean
+    private UserAuditService userAuditService;
+
+    @MockBean
+    private UserCountService userCountService;
+
     @Autowired
     private ObjectMapper objectMapper; // For converting objects to JSON
 
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        // Runs the work right away, like the bulkheads do when disabled; the response still completes asynchronously
+        when(bulkheadService.submit(any(), any())).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(((Supplier<Object>) invocation.getArgument(1)).get()));
+    }
+
     @Test
     void createUser_ShouldReturnCreatedUserAndStatus201() throws Exception {
         // Arrange
@@ -56,8 +86,8 @@ public class UserControllerTest {
                 .dateOfBirth(LocalDate.now())
                 .placeOfBirth("Test Place") // Added
                 .motherMaidenName("Test Maiden") // Added
-                .taj("123456789") // Added
-                .taxId("1234567890") // Added
+                .taj("123456788") // Added
+                .taxId("8123456786") // Added
                 .addresses(Set.of(addressDTO))
                 .phoneNumbers(Set.of(phoneDTO))
                 .build();
@@ -76,12 +106,12 @@ public class UserControllerTest {
         when(userService.createUser(any(CreateUserDTO.class))).thenReturn(returnedUserDTO);
 
         // Act & Assert
-        mockMvc.perform(post("/api/users")
+        performAsync(post("/users")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(createUserDTO)))
                 .andExpect(status().isCreated()) // 201
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$.id", is(returnedUserDTO.getId())))
+                .andExpect(jsonPath("$.id", is(returnedUserDTO.getId().toString())))
                 .andExpect(jsonPath("$.name", is("John Doe")))
                 .andExpect(jsonPath("$.email", is("john@test.com")));
 
@@ -96,7 +126,7 @@ public class UserControllerTest {
                 .build();
 
         // Act & Assert
-        mockMvc.perform(post("/api/users")
+        mockMvc.perform(post("/users")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(invalidCreateUserDTO)))
                 .andExpect(status().isBadRequest()); // Expect 400 due to validation failure
@@ -119,7 +149,7 @@ public class UserControllerTest {
         when(userService.updateUser(eq(userId), any(UpdateUserDTO.class))).thenReturn(returnedUserDTO);
 
         // Act & Assert
-        mockMvc.perform(patch("/api/users/{id}", userId)
+        performAsync(patch("/users/{id}", userId)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(updateUserDTO)))
                 .andExpect(status().isOk()) // 200
@@ -141,7 +171,7 @@ public class UserControllerTest {
                 .thenThrow(new ResourceNotFoundException("User not found"));
 
         // Act & Assert
-        mockMvc.perform(patch("/api/users/{id}", userId)
+        mockMvc.perform(patch("/users/{id}", userId)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(updateUserDTO)))
                 .andExpect(status().isNotFound()); // Expect 404
@@ -157,7 +187,7 @@ public class UserControllerTest {
         doNothing().when(userService).deleteUser(userId); // Mock the void method
 
         // Act & Assert
-        mockMvc.perform(delete("/api/users/{id}", userId))
+        performAsync(delete("/users/{id}", userId))
                 .andExpect(status().isNoContent()); // 204
 
         verify(userService, times(1)).deleteUser(userId);
@@ -172,7 +202,7 @@ public class UserControllerTest {
             .when(userService).deleteUser(userId);
 
         // Act & Assert
-        mockMvc.perform(delete("/api/users/{id}", userId))
+        mockMvc.perform(delete("/users/{id}", userId))
                 .andExpect(status().isNotFound()); // Expect 404
 
         verify(userService, times(1)).deleteUser(userId);
@@ -186,31 +216,31 @@ public class UserControllerTest {
         UserDTO user2 = new UserDTO(); user2.setId(UUID.randomUUID()); user2.setName("User Two"); // Use String ID
         List<UserDTO> userList = Arrays.asList(user1, user2);
 
-        when(userService.getAllUsers()).thenReturn(userList);
+        when(userService.getAllUsers(false)).thenReturn(userList);
 
         // Act & Assert
-        mockMvc.perform(get("/api/users"))
+        performAsync(get("/users"))
                 .andExpect(status().isOk()) // 200
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$", hasSize(2)))
                 .andExpect(jsonPath("$[0].name", is("User One")))
                 .andExpect(jsonPath("$[1].name", is("User Two")));
 
-        verify(userService, times(1)).getAllUsers();
+        verify(userService, times(1)).getAllUsers(false);
     }
 
      @Test
     void getAllUsers_ShouldReturnEmptyList() throws Exception {
         // Arrange
-        when(userService.getAllUsers()).thenReturn(Collections.emptyList());
+        when(userService.getAllUsers(false)).thenReturn(Collections.emptyList());
 
         // Act & Assert
-        mockMvc.perform(get("/api/users"))
+        performAsync(get("/users"))
                 .andExpect(status().isOk()) // 200
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$", hasSize(0)));
 
-        verify(userService, times(1)).getAllUsers();
+        verify(userService, times(1)).getAllUsers(false);
     }
 
 
@@ -223,30 +253,38 @@ public class UserControllerTest {
         userDTO.setName("Specific User");
         userDTO.setEmail("specific@test.com");
 
-        when(userService.getUserById(userId)).thenReturn(Optional.of(userDTO));
+        when(userService.getUserById(userId, false)).thenReturn(Optional.of(userDTO));
 
         // Act & Assert
-        mockMvc.perform(get("/api/users/{id}", userId))
+        performAsync(get("/users/{id}", userId))
                 .andExpect(status().isOk()) // 200
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.id", is(userId.toString())))
                 .andExpect(jsonPath("$.name", is("Specific User")))
                 .andExpect(jsonPath("$.email", is("specific@test.com")));
 
-        verify(userService, times(1)).getUserById(userId);
+        verify(userService, times(1)).getUserById(userId, false);
     }
 
     @Test
     void getUserById_WhenUserNotFound_ShouldReturnNotFound() throws Exception {
         // Arrange
         UUID userId = UUID.randomUUID();
-        when(userService.getUserById(userId)).thenReturn(Optional.empty());
+        when(userService.getUserById(userId, false)).thenReturn(Optional.empty());
 
         // Act & Assert
         // The controller throws ResourceNotFoundException when Optional is empty
-        mockMvc.perform(get("/api/users/{id}", userId))
+        mockMvc.perform(get("/users/{id}", userId))
                 .andExpect(status().isNotFound()); // Expect 404
 
-        verify(userService, times(1)).getUserById(userId);
+        verify(userService, times(1)).getUserById(userId, false);
+    }
+
+    /** Performs a request whose handler returns a future, and dispatches the completed result. */
+    private ResultActions performAsync(RequestBuilder builder) throws Exception {
+        MvcResult result = mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
     }
 }
@@ -0,0 +1,101 @@
+package com.example.dpd;
+
+import com.example.dpd.config.ShardingProperties;
+import com.example.dpd.dto.CountMode;
+import com.example.dpd.dto.UserCountDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.entity.UserStatus;
+import com.example.dpd.event.UserChangedEvent;
+import com.example.dpd.service.UserCountServiceImp;
+import com.example.dpd.shard.Shards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class UserCountServiceTest {
+
+    private static final String COUNT_ACTIVE = "SELECT count(*) FROM users WHERE status = 'ACTIVE'";
+    private static final String COUNT_ALL = "SELECT count(*) FROM users";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private UserCountServiceImp countService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        countService = new UserCountServiceImp(jdbcTemplate, new Shards(new ShardingProperties(), transactionManager));
+    }
+
+    @Test
+    void count_ShouldFlagEveryModeButExactAsEstimated() {
+        when(jdbcTemplate.queryForObject(COUNT_ACTIVE, Long.class)).thenReturn(42L);
+        when(jdbcTemplate.queryForList("EXPLAIN SELECT 1 FROM users WHERE status = 'ACTIVE'", String.class))
+                .thenReturn(List.of("Seq Scan on users  (cost=0.00..1693.00 rows=40017 width=4)",
+                        "  Filter: ((status)::text = 'ACTIVE'::text)"));
+
+        UserCountDTO exact = countService.count(CountMode.EXACT, false);
+        UserCountDTO estimate = countService.count(CountMode.ESTIMATE, false);
+
+        assertEquals(42, exact.getCount());
+        assertFalse(exact.isEstimated());
+        assertEquals(40017, estimate.getCount());
+        assertTrue(estimate.isEstimated());
+    }
+
+    @Test
+    void count_ShouldAdjustTheCachedCountsWithoutRecountingOnEveryRead() {
+        when(jdbcTemplate.queryForObject(COUNT_ACTIVE, Long.class)).thenReturn(10L);
+        when(jdbcTemplate.queryForObject(COUNT_ALL, Long.class)).thenReturn(12L);
+
+        assertEquals(10, countService.count(CountMode.CACHED, false).getCount());
+        UserDTO user = user(UserStatus.ACTIVE);
+        countService.onUserChanged(UserChangedEvent.created(user));
+        countService.onUserChanged(UserChangedEvent.created(user));
+        countService.onUserChanged(UserChangedEvent.depersonalised(user, user(UserStatus.DEPERSONALISED)));
+        // Erasing a user again must not count it out twice
+        countService.onUserChanged(UserChangedEvent.depersonalised(user(UserStatus.DEPERSONALISED), user(UserStatus.DEPERSONALISED)));
+
+        assertEquals(11, countService.count(CountMode.CACHED, false).getCount());
+        assertEquals(14, countService.count(CountMode.CACHED, true).getCount());
+        verify(jdbcTemplate, times(1)).queryForObject(COUNT_ACTIVE, Long.class);
+    }
+
+    @Test
+    void refresh_ShouldKeepChangesMadeWhileRecounting() {
+        when(jdbcTemplate.queryForObject(COUNT_ACTIVE, Long.class)).thenReturn(10L);
+        when(jdbcTemplate.queryForObject(COUNT_ALL, Long.class)).thenReturn(10L);
+        countService.refresh();
+
+        // A user created while the next recount runs, committed after the database counted
+        when(jdbcTemplate.queryForObject(COUNT_ACTIVE, Long.class)).thenAnswer(invocation -> {
+            countService.onUserChanged(UserChangedEvent.created(user(UserStatus.ACTIVE)));
+            return 10L;
+        });
+        countService.refresh();
+
+        assertEquals(11, countService.count(CountMode.CACHED, false).getCount());
+        assertEquals(11, countService.count(CountMode.CACHED, true).getCount());
+    }
+
+    private static UserDTO user(UserStatus status) {
+        UserDTO user = new UserDTO();
+        user.setId(UUID.fromString("00000000-0000-0000-0000-000000000001"));
+        user.setStatus(status);
+        return user;
+    }
+
+}
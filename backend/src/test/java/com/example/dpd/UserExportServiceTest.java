@@ -0,0 +1,246 @@
+package com.example.dpd;
+
+import com.example.dpd.config.ExportProperties;
+import com.example.dpd.config.ShardingProperties;
+import com.example.dpd.controller.UserExportController;
+import com.example.dpd.dto.ExportFormat;
+import com.example.dpd.dto.ExportJobDTO;
+import com.example.dpd.entity.User;
+import com.example.dpd.repository.UserRepository;
+import com.example.dpd.service.UserExportServiceImp;
+import com.example.dpd.service.UserMapper;
+import com.example.dpd.shard.ShardContext;
+import com.example.dpd.shard.Shards;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class UserExportServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @TempDir
+    Path exportDir;
+
+    private ExportProperties properties;
+
+    private Shards shards;
+
+    private UserExportServiceImp exportService;
+
+    /** The users of each shard, in id order. */
+    private final Map<Integer, List<User>> usersByShard = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new ExportProperties();
+        properties.setPageSize(2);
+        properties.setDir(exportDir);
+        shards = new Shards(twoShards(), mock(PlatformTransactionManager.class));
+        exportService = new UserExportServiceImp(userRepository, new UserMapper(),
+                new ObjectMapper().registerModule(new JavaTimeModule()), properties,
+                mock(PlatformTransactionManager.class), shards);
+
+        when(userRepository.findPageWithCollections(any(), anyInt(), eq(true))).thenAnswer(invocation -> {
+            UUID after = invocation.getArgument(0);
+            int size = invocation.getArgument(1);
+            return usersByShard.getOrDefault(ShardContext.current(), List.of()).stream()
+                    .filter(user -> after == null || Shards.ID_ORDER.compare(user.getId(), after) > 0)
+                    .limit(size)
+                    .toList();
+        });
+    }
+
+    @Test
+    void submitExport_ShouldPageThroughEveryShardAndMoveTheFinishedFileInPlace() throws Exception {
+        addUsers(0, 3);
+        addUsers(1, 2);
+
+        ExportJobDTO job = awaitFinished(exportService.submitExport(ExportFormat.NDJSON).getId());
+
+        assertEquals("COMPLETED", job.getStatus());
+        assertEquals(5, job.getRowsWritten());
+        Path file = exportService.getExportFile(job.getId()).orElseThrow().getFile().toPath();
+        assertEquals(List.of(file), listDir());
+        assertThat(file.getFileName().toString()).endsWith(".ndjson.gz");
+        List<String> lines = gunzip(file);
+        assertEquals(5, lines.size());
+        Set<String> exported = new HashSet<>(lines);
+        usersByShard.values().stream().flatMap(List::stream)
+                .forEach(user -> assertThat(exported).anyMatch(line -> line.contains(user.getId().toString())));
+        // Shard 0 in two pages, shard 1 in one full page and one empty one
+        verify(userRepository, times(5)).findPageWithCollections(any(), eq(2), eq(true));
+    }
+
+    @Test
+    void submitExport_WhenCsv_ShouldWriteHeaderAndOneRecordPerUser() throws Exception {
+        addUsers(0, 1);
+        addUsers(1, 1);
+
+        ExportJobDTO job = awaitFinished(exportService.submitExport(ExportFormat.CSV).getId());
+
+        List<String> lines = gunzip(exportService.getExportFile(job.getId()).orElseThrow().getFile().toPath());
+        assertThat(lines.get(0)).startsWith("name,email");
+        assertEquals(3, lines.size());
+    }
+
+    @Test
+    void cancelExport_ShouldStopTheRunningJobAndDeleteItsFiles() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(userRepository.findPageWithCollections(any(), anyInt(), eq(true))).thenAnswer(invocation -> {
+            reading.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+            }
+            return List.of();
+        });
+        UUID id = exportService.submitExport(ExportFormat.NDJSON).getId();
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+
+        exportService.cancelExport(id);
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals("CANCELLED", exportService.getExportJob(id).orElseThrow().getStatus());
+        assertTrue(exportService.getExportFile(id).isEmpty());
+        awaitEmpty();
+    }
+
+    @Test
+    void cancelExport_WhenCompleted_ShouldKeepTheFile() throws Exception {
+        addUsers(0, 1);
+        UUID id = awaitFinished(exportService.submitExport(ExportFormat.NDJSON).getId()).getId();
+        Path file = exportService.getExportFile(id).orElseThrow().getFile().toPath();
+
+        exportService.cancelExport(id);
+
+        assertEquals("COMPLETED", exportService.getExportJob(id).orElseThrow().getStatus());
+        assertTrue(Files.exists(file));
+        assertTrue(exportService.getExportFile(id).isPresent());
+    }
+
+    @Test
+    void deleteExpiredExports_ShouldForgetExpiredJobsAndDeleteTheirAndOrphanedFiles() throws Exception {
+        addUsers(0, 1);
+        UUID id = awaitFinished(exportService.submitExport(ExportFormat.NDJSON).getId()).getId();
+        Path file = exportService.getExportFile(id).orElseThrow().getFile().toPath();
+        Path orphan = Files.createFile(exportDir.resolve("users-" + UUID.randomUUID() + ".ndjson.gz"));
+        Files.setLastModifiedTime(orphan, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+
+        exportService.deleteExpiredExports();
+        assertTrue(exportService.getExportJob(id).isPresent());
+        assertEquals(List.of(file), listDir());
+
+        properties.setRetention(Duration.ZERO);
+        id = awaitFinished(exportService.submitExport(ExportFormat.NDJSON).getId()).getId();
+        Thread.sleep(5);
+        exportService.deleteExpiredExports();
+
+        assertTrue(exportService.getExportJob(id).isEmpty());
+        assertEquals(List.of(file), listDir());
+    }
+
+    @Test
+    void getExportFile_ShouldAnswerRangeRequestsWithPartialContent() throws Exception {
+        addUsers(0, 3);
+        UUID id = awaitFinished(exportService.submitExport(ExportFormat.NDJSON).getId()).getId();
+        long size = exportService.getExportJob(id).orElseThrow().getFileSize();
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new UserExportController(exportService)).build();
+
+        mockMvc.perform(get("/users/exports/{id}/file", id).header(HttpHeaders.RANGE, "bytes=10-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 10-" + (size - 1) + "/" + size))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, size - 10));
+    }
+
+    private void addUsers(int shard, int count) {
+        List<User> users = usersByShard.computeIfAbsent(shard, ignored -> new ArrayList<>());
+        while (users.size() < count) {
+            UUID id = UUID.randomUUID();
+            if (shards.shardOf(id) == shard) {
+                User user = new User();
+                user.setId(id);
+                user.setName("User " + id);
+                user.setEmail(id + "@test.com");
+                users.add(user);
+            }
+        }
+        users.sort(Comparator.comparing(User::getId, Shards.ID_ORDER));
+    }
+
+    private static ShardingProperties twoShards() {
+        ShardingProperties sharding = new ShardingProperties();
+        sharding.setEnabled(true);
+        sharding.getShards().add(new ShardingProperties.Shard());
+        sharding.getShards().add(new ShardingProperties.Shard());
+        return sharding;
+    }
+
+    private ExportJobDTO awaitFinished(UUID id) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            ExportJobDTO job = exportService.getExportJob(id).orElseThrow();
+            if (job.getFinishedAt() != null) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        return fail("Export " + id + " did not finish");
+    }
+
+    private void awaitEmpty() throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!listDir().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of(), listDir());
+    }
+
+    private List<Path> listDir() throws Exception {
+        try (var files = Files.list(exportDir)) {
+            return files.toList();
+        }
+    }
+
+    private static List<String> gunzip(Path file) throws Exception {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            return reader.lines().toList();
+        }
+    }
+
+}
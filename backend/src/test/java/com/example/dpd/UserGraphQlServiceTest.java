@@ -0,0 +1,74 @@
+package com.example.dpd;
+
+import com.example.dpd.config.ShardingProperties;
+import com.example.dpd.dto.AddressDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.entity.Address;
+import com.example.dpd.entity.User;
+import com.example.dpd.entity.UserStatus;
+import com.example.dpd.repository.UserRepository;
+import com.example.dpd.service.UserGraphQlServiceImp;
+import com.example.dpd.service.UserMapper;
+import com.example.dpd.shard.Shards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class UserGraphQlServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private UserGraphQlServiceImp graphQlService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        graphQlService = new UserGraphQlServiceImp(userRepository, new UserMapper(),
+                new Shards(new ShardingProperties(), transactionManager));
+    }
+
+    @Test
+    void getUserPage_ShouldNotTouchTheCollections() {
+        // Null collections would fail as soon as anything reads them, like uninitialised lazy ones
+        User user = User.builder().id(UUID.randomUUID()).name("John Doe").addresses(null).phoneNumbers(null).build();
+        when(userRepository.findPage(null, 21, false)).thenReturn(List.of(user));
+
+        List<UserDTO> page = graphQlService.getUserPage(null, 21, false);
+
+        assertThat(page).extracting(UserDTO::getName).containsExactly("John Doe");
+        assertNull(page.get(0).getAddresses());
+        assertEquals(UserStatus.ACTIVE, page.get(0).getStatus());
+    }
+
+    @Test
+    void getAddresses_ShouldLoadAllUsersAtOnceAndLeaveOutUnknownOnes() {
+        UUID withAddress = UUID.randomUUID();
+        UUID withoutAddress = UUID.randomUUID();
+        UUID unknown = UUID.randomUUID();
+        Address address = Address.builder().id(UUID.randomUUID()).city("Budapest").build();
+        when(userRepository.findWithAddressesByIdIn(any())).thenReturn(List.of(
+                User.builder().id(withAddress).addresses(Set.of(address)).build(),
+                User.builder().id(withoutAddress).addresses(Set.of()).build()));
+
+        Map<UUID, List<AddressDTO>> addresses = graphQlService.getAddresses(List.of(withAddress, withoutAddress, unknown));
+
+        assertThat(addresses.get(withAddress)).extracting(AddressDTO::getCity).containsExactly("Budapest");
+        assertThat(addresses.get(withoutAddress)).isEmpty();
+        assertFalse(addresses.containsKey(unknown));
+        verify(userRepository, times(1)).findWithAddressesByIdIn(any());
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.example.dpd;
+
+import com.example.dpd.config.GroupCommitProperties;
+import com.example.dpd.config.ShardingProperties;
+import com.example.dpd.entity.User;
+import com.example.dpd.repository.UserBatchWriter;
+import com.example.dpd.service.UserGroupCommit;
+import com.example.dpd.shard.Shards;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class UserGroupCommitTest {
+
+    @Mock
+    private UserBatchWriter userBatchWriter;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final GroupCommitProperties properties = new GroupCommitProperties();
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private UserGroupCommit groupCommit;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties.setEnabled(true);
+        properties.setWindow(Duration.ofSeconds(5));
+        properties.setMaxBatchSize(3);
+        groupCommit = new UserGroupCommit(userBatchWriter, new Shards(new ShardingProperties(), transactionManager),
+                properties);
+        when(userBatchWriter.persistAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void persist_ShouldWriteConcurrentCreatesInOneBatchOnceTheGroupIsFull() throws Exception {
+        List<User> users = List.of(user("a"), user("b"), user("c"));
+
+        List<Future<User>> results = persistConcurrently(users);
+
+        for (int i = 0; i < users.size(); i++) {
+            assertSame(users.get(i), results.get(i).get(1, TimeUnit.SECONDS));
+        }
+        verify(userBatchWriter).persistAll(argThat(batch -> batch.size() == 3 && batch.containsAll(users)));
+        verifyNoMoreInteractions(userBatchWriter);
+    }
+
+    @Test
+    void persist_ShouldFailOnlyTheCreatesAtFaultWhenTheGroupCannotBeWritten() throws Exception {
+        User taken = user("taken");
+        when(userBatchWriter.persistAll(argThat(batch -> batch.contains(taken))))
+                .thenThrow(new DataIntegrityViolationException("users_email_key"));
+
+        List<Future<User>> results = persistConcurrently(List.of(user("a"), taken, user("c")));
+
+        assertEquals("a@example.com", results.get(0).get(1, TimeUnit.SECONDS).getEmail());
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> results.get(1).get(1, TimeUnit.SECONDS));
+        assertThat(failure.getCause()).isInstanceOf(DataIntegrityViolationException.class);
+        assertEquals("c@example.com", results.get(2).get(1, TimeUnit.SECONDS).getEmail());
+        // The group once, then each of its users on their own
+        verify(userBatchWriter, times(4)).persistAll(anyList());
+    }
+
+    @Test
+    void persist_ShouldWriteAGroupThatIsNotFullOnceTheWindowHasPassed() {
+        properties.setWindow(Duration.ofMillis(20));
+
+        User user = user("alone");
+
+        assertSame(user, groupCommit.persist(user));
+        verify(userBatchWriter).persistAll(List.of(user));
+    }
+
+    private List<Future<User>> persistConcurrently(List<User> users) throws InterruptedException {
+        List<Future<User>> results = new ArrayList<>();
+        for (User user : users) {
+            results.add(callers.submit(() -> groupCommit.persist(user)));
+            // Keeps the order of the group the order of the list
+            Thread.sleep(20);
+        }
+        return results;
+    }
+
+    private static User user(String name) {
+        return User.builder().id(UUID.randomUUID()).name(name).email(name + "@example.com").build();
+    }
+
+}
@@ -0,0 +1,193 @@
+package com.example.dpd;
+
+import com.example.dpd.audit.AuditActor;
+import com.example.dpd.audit.AuditActorGrpcInterceptor;
+import com.example.dpd.config.AsyncProperties;
+import com.example.dpd.config.GrpcProperties;
+import com.example.dpd.dto.UpdateUserDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.grpc.UserGrpcService;
+import com.example.dpd.grpc.UserProtoMapper;
+import com.example.dpd.grpc.proto.CreateUserRequest;
+import com.example.dpd.grpc.proto.GetUserRequest;
+import com.example.dpd.grpc.proto.ListUsersRequest;
+import com.example.dpd.grpc.proto.PatchUserRequest;
+import com.example.dpd.grpc.proto.User;
+import com.example.dpd.grpc.proto.UserServiceGrpc;
+import com.example.dpd.service.BulkheadServiceImp;
+import com.example.dpd.service.UserService;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.MetadataUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.validation.Validation;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class UserGrpcServiceTest {
+
+    @Mock
+    private UserService userService;
+
+    private Server server;
+    private ManagedChannel channel;
+    private UserServiceGrpc.UserServiceBlockingStub blockingStub;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+        when(entityManagerFactory.createEntityManager()).thenAnswer(invocation -> mock(EntityManager.class));
+        GrpcProperties properties = new GrpcProperties();
+        properties.setListPageSize(2);
+        UserGrpcService service = new UserGrpcService(userService,
+                new BulkheadServiceImp(new AsyncProperties(), entityManagerFactory), new UserProtoMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator(), properties);
+
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .addService(ServerInterceptors.intercept(service, new AuditActorGrpcInterceptor()))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).build();
+        blockingStub = UserServiceGrpc.newBlockingStub(channel);
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    void listUsers_ShouldStreamEveryPageInIdOrder() {
+        List<UserDTO> users = users(3);
+        when(userService.getUserPage(null, 2, false)).thenReturn(users.subList(0, 2));
+        when(userService.getUserPage(users.get(1).getId(), 2, false)).thenReturn(users.subList(2, 3));
+
+        List<String> streamed = new ArrayList<>();
+        blockingStub.listUsers(ListUsersRequest.getDefaultInstance()).forEachRemaining(user -> streamed.add(user.getId()));
+
+        assertEquals(users.stream().map(user -> user.getId().toString()).toList(), streamed);
+        verify(userService, times(2)).getUserPage(any(), eq(2), eq(false));
+    }
+
+    @Test
+    void listUsers_ShouldReadTheNextPageOnlyOnceTheClientTakesMore() throws Exception {
+        List<UserDTO> users = users(4);
+        when(userService.getUserPage(null, 2, true)).thenReturn(users.subList(0, 2));
+        when(userService.getUserPage(users.get(1).getId(), 2, true)).thenReturn(users.subList(2, 4));
+        when(userService.getUserPage(users.get(3).getId(), 2, true)).thenReturn(List.of());
+
+        List<User> received = new CopyOnWriteArrayList<>();
+        AtomicReference<ClientCallStreamObserver<ListUsersRequest>> call = new AtomicReference<>();
+        CountDownLatch completed = new CountDownLatch(1);
+        UserServiceGrpc.newStub(channel).listUsers(ListUsersRequest.newBuilder().setIncludeDepersonalised(true).build(),
+                new ClientResponseObserver<ListUsersRequest, User>() {
+                    @Override
+                    public void beforeStart(ClientCallStreamObserver<ListUsersRequest> requestStream) {
+                        requestStream.disableAutoRequestWithInitial(1);
+                        call.set(requestStream);
+                    }
+
+                    @Override
+                    public void onNext(User user) {
+                        received.add(user);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        completed.countDown();
+                    }
+                });
+
+        verify(userService, timeout(1000)).getUserPage(null, 2, true);
+        Thread.sleep(200);
+        assertEquals(1, received.size());
+        verify(userService, times(1)).getUserPage(any(), anyInt(), anyBoolean());
+
+        call.get().request(Integer.MAX_VALUE);
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertEquals(4, received.size());
+        verify(userService, times(3)).getUserPage(any(), anyInt(), anyBoolean());
+    }
+
+    @Test
+    void getUser_ShouldAnswerWithTheStatusOfTheRestApi() {
+        UUID id = UUID.randomUUID();
+        when(userService.getUserById(id, false)).thenReturn(Optional.empty());
+
+        StatusRuntimeException notFound = assertThrows(StatusRuntimeException.class,
+                () -> blockingStub.getUser(GetUserRequest.newBuilder().setId(id.toString()).build()));
+        StatusRuntimeException invalidId = assertThrows(StatusRuntimeException.class,
+                () -> blockingStub.getUser(GetUserRequest.newBuilder().setId("not-a-uuid").build()));
+        StatusRuntimeException invalidUser = assertThrows(StatusRuntimeException.class,
+                () -> blockingStub.createUser(CreateUserRequest.newBuilder().setName("John Doe").build()));
+
+        assertEquals(Status.Code.NOT_FOUND, notFound.getStatus().getCode());
+        assertEquals(Status.Code.INVALID_ARGUMENT, invalidId.getStatus().getCode());
+        assertEquals(Status.Code.INVALID_ARGUMENT, invalidUser.getStatus().getCode());
+        assertThat(invalidUser.getStatus().getDescription()).contains("email: Email is mandatory");
+        verify(userService, never()).createUser(any());
+    }
+
+    @Test
+    void patchUser_ShouldChangeOnlyPresentFieldsAsTheActorOfTheCall() {
+        UserDTO user = users(1).get(0);
+        AtomicReference<String> actor = new AtomicReference<>();
+        when(userService.updateUser(eq(user.getId()), any())).thenAnswer(invocation -> {
+            actor.set(AuditActor.current());
+            return user;
+        });
+        Metadata headers = new Metadata();
+        headers.put(Metadata.Key.of("x-actor", Metadata.ASCII_STRING_MARSHALLER), "support-desk");
+
+        User patched = blockingStub.withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers))
+                .patchUser(PatchUserRequest.newBuilder().setId(user.getId().toString()).setName("Jane Doe").build());
+
+        assertEquals(user.getId().toString(), patched.getId());
+        assertEquals("support-desk", actor.get());
+        verify(userService).updateUser(user.getId(), UpdateUserDTO.builder().name("Jane Doe").build());
+    }
+
+    private static List<UserDTO> users(int count) {
+        List<UserDTO> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            UserDTO user = new UserDTO();
+            user.setId(new UUID(0, i + 1));
+            user.setName("User " + i);
+            user.setAddresses(Set.of());
+            user.setPhoneNumbers(Set.of());
+            users.add(user);
+        }
+        return users;
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.example.dpd;
+
+import com.example.dpd.config.ImportProperties;
+import com.example.dpd.config.ShardingProperties;
+import com.example.dpd.dto.ImportJobDTO;
+import com.example.dpd.entity.User;
+import com.example.dpd.repository.UserBatchWriter;
+import com.example.dpd.service.UserImportServiceImp;
+import com.example.dpd.service.UserMapper;
+import com.example.dpd.shard.Shards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+public class UserImportServiceTest {
+
+    private static final String HEADER =
+            "name,email,date_of_birth,place_of_birth,mother_maiden_name,taj,tax_id,addresses,phone_numbers\n";
+
+    @Mock
+    private UserBatchWriter userBatchWriter;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @TempDir
+    Path reportDir;
+
+    private ImportProperties properties;
+
+    private UserImportServiceImp importService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new ImportProperties();
+        properties.setChunkSize(2);
+        properties.setMaxInFlightChunks(2);
+        properties.setWorkerThreads(2);
+        properties.setReportDir(reportDir);
+        importService = new UserImportServiceImp(new UserMapper(), userBatchWriter,
+                Validation.buildDefaultValidatorFactory().getValidator(), properties, eventPublisher,
+                new Shards(new ShardingProperties(), mock(PlatformTransactionManager.class)));
+    }
+
+    @Test
+    void importUsers_ShouldPersistValidRowsAndReportInvalidOnes() throws Exception {
+        String csv = HEADER
+                + "John Doe,john@test.com,1990-01-01,Budapest,Maiden,123456788,8123456786,1111|Budapest|Fo utca|1|,+36301234567\n"
+                + ",missing-name@test.com,1990-01-01,Budapest,Maiden,123456788,8123456786,,\n"
+                + "Jane Doe,jane@test.com,not-a-date,Budapest,Maiden,123456788,8123456786,,\n";
+
+        ImportJobDTO job = importService.importUsers("users.csv", stream(csv));
+
+        assertEquals("COMPLETED", job.getStatus());
+        assertEquals(3, job.getRowsRead());
+        assertEquals(1, job.getRowsImported());
+        assertEquals(2, job.getRowsRejected());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<User>> captor = ArgumentCaptor.forClass(List.class);
+        verify(userBatchWriter, times(1)).persistAll(captor.capture());
+        User imported = captor.getValue().get(0);
+        assertEquals("john@test.com", imported.getEmail());
+        assertThat(imported.getAddresses()).hasSize(1);
+        assertThat(imported.getPhoneNumbers()).hasSize(1);
+        imported.getAddresses().forEach(a -> assertSame(imported, a.getUser()));
+
+        List<String> report = Files.readAllLines(importService.getRejectedReport(job.getId()).orElseThrow().getFile().toPath());
+        assertThat(report).hasSize(3);
+        assertThat(report.get(1) + report.get(2)).contains("name: Name is mandatory").contains("Invalid date_of_birth")
+                .contains("missing-name@test.com").doesNotContain("123456788", "8123456786", "Maiden");
+    }
+
+    @Test
+    void importUsers_WhenTheFileCannotBeParsed_ShouldFailTheJob() {
+        // The parser rejects a blank column name with an IllegalArgumentException rather than an IOException
+        String csv = "," + HEADER
+                + ",John Doe,john@test.com,1990-01-01,Budapest,Maiden,123456788,8123456786,,\n";
+
+        ImportJobDTO job = importService.importUsers("users.csv", stream(csv));
+
+        assertEquals("FAILED", job.getStatus());
+        assertNotNull(job.getFinishedAt());
+        verifyNoInteractions(userBatchWriter);
+    }
+
+    @Test
+    void importUsers_WhenBatchFails_ShouldRetryRowByRow() {
+        String csv = HEADER
+                + "John Doe,john@test.com,1990-01-01,Budapest,Maiden,123456788,8123456786,,\n"
+                + "Jane Doe,taken@test.com,1990-01-01,Budapest,Maiden,123456788,8123456786,,\n";
+
+        when(userBatchWriter.persistAll(any())).thenAnswer(invocation -> {
+            List<User> users = invocation.getArgument(0);
+            if (users.stream().anyMatch(user -> user.getEmail().equals("taken@test.com"))) {
+                throw new DataIntegrityViolationException("duplicate key value violates unique constraint");
+            }
+            return users;
+        });
+
+        ImportJobDTO job = importService.importUsers("users.csv", stream(csv));
+
+        assertEquals(1, job.getRowsImported());
+        assertEquals(1, job.getRowsRejected());
+        verify(userBatchWriter, times(3)).persistAll(any());
+        verify(userBatchWriter).persistAll(argThat(users -> users.size() == 1 && users.get(0).getEmail().equals("john@test.com")));
+    }
+
+    @Test
+    void importUsers_ShouldPersistChunksOnNumberedWorkerThreads() {
+        String csv = HEADER
+                + "John Doe,john@test.com,1990-01-01,Budapest,Maiden,123456788,8123456786,,\n"
+                + "Jane Doe,jane@test.com,1990-01-01,Budapest,Maiden,123456788,8123456786,,\n"
+                + "Jim Doe,jim@test.com,1990-01-01,Budapest,Maiden,123456788,8123456786,,\n";
+        Set<String> threadNames = ConcurrentHashMap.newKeySet();
+        when(userBatchWriter.persistAll(any())).thenAnswer(invocation -> {
+            threadNames.add(Thread.currentThread().getName());
+            return invocation.getArgument(0);
+        });
+
+        importService.importUsers("users.csv", stream(csv));
+
+        assertThat(threadNames).isNotEmpty().allMatch(name -> name.matches("user-import-worker-\\d+"));
+    }
+
+    @Test
+    void deleteExpiredImports_ShouldForgetFinishedJobsAndDeleteTheirAndOrphanedReports() throws Exception {
+        String csv = HEADER + ",missing-name@test.com,1990-01-01,Budapest,Maiden,123456788,8123456786,,\n";
+        ImportJobDTO job = importService.importUsers("users.csv", stream(csv));
+        Path report = importService.getRejectedReport(job.getId()).orElseThrow().getFile().toPath();
+        Path orphan = Files.createFile(reportDir.resolve(UUID.randomUUID() + "-rejected.csv"));
+        Files.setLastModifiedTime(orphan, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+
+        importService.deleteExpiredImports();
+        assertTrue(importService.getImportJob(job.getId()).isPresent());
+        assertTrue(Files.exists(report));
+        assertFalse(Files.exists(orphan));
+
+        properties.setRetention(Duration.ZERO);
+        Thread.sleep(5);
+        importService.deleteExpiredImports();
+
+        assertTrue(importService.getImportJob(job.getId()).isEmpty());
+        assertTrue(importService.getRejectedReport(job.getId()).isEmpty());
+        assertFalse(Files.exists(report));
+    }
+
+    private static ByteArrayInputStream stream(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
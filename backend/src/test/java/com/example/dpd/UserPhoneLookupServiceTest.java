@@ -0,0 +1,90 @@
+package com.example.dpd;
+
+import com.example.dpd.config.PhoneProperties;
+import com.example.dpd.config.ShardingProperties;
+import com.example.dpd.dto.PhoneNumberDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.entity.PhoneNumber;
+import com.example.dpd.entity.User;
+import com.example.dpd.event.UserChangedEvent;
+import com.example.dpd.exception.BadRequestException;
+import com.example.dpd.repository.UserRepository;
+import com.example.dpd.service.UserMapper;
+import com.example.dpd.service.UserPhoneLookupServiceImp;
+import com.example.dpd.shard.Shards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class UserPhoneLookupServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserPhoneLookupServiceImp lookupService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        lookupService = new UserPhoneLookupServiceImp(userRepository, new UserMapper(), new PhoneProperties(),
+                new Shards(new ShardingProperties(), mock(PlatformTransactionManager.class)));
+    }
+
+    @Test
+    void findByPhoneNumber_ShouldQueryByE164AndServeRepeatsFromCache() {
+        User owner = user("Owner", "06 30 123 4567");
+        when(userRepository.findByPhoneNumberE164("+36301234567")).thenReturn(List.of(owner));
+
+        List<UserDTO> first = lookupService.findByPhoneNumber("+36 30 123 4567");
+        List<UserDTO> second = lookupService.findByPhoneNumber("06301234567");
+
+        assertEquals(1, first.size());
+        assertEquals("Owner", first.get(0).getName());
+        assertEquals(first, second);
+        verify(userRepository, times(1)).findByPhoneNumberE164(anyString());
+    }
+
+    @Test
+    void onUserChanged_ShouldInvalidateOldAndNewNumbers() {
+        when(userRepository.findByPhoneNumberE164(anyString())).thenReturn(List.of());
+        lookupService.findByPhoneNumber("+36301234567");
+        lookupService.findByPhoneNumber("+36209876543");
+
+        lookupService.onUserChanged(UserChangedEvent.updated(dto("06 30 123 4567"), dto("06 20 987 6543")));
+        lookupService.findByPhoneNumber("+36301234567");
+        lookupService.findByPhoneNumber("+36209876543");
+
+        verify(userRepository, times(2)).findByPhoneNumberE164("+36301234567");
+        verify(userRepository, times(2)).findByPhoneNumberE164("+36209876543");
+    }
+
+    @Test
+    void findByPhoneNumber_ShouldRejectUnparseableNumber() {
+        assertThrows(BadRequestException.class, () -> lookupService.findByPhoneNumber("call me"));
+        verifyNoInteractions(userRepository);
+    }
+
+    private static User user(String name, String phoneNumber) {
+        User user = User.builder().id(UUID.randomUUID()).name(name)
+                .addresses(new LinkedHashSet<>()).phoneNumbers(new LinkedHashSet<>()).build();
+        user.getPhoneNumbers().add(PhoneNumber.builder().id(UUID.randomUUID()).phoneNumber(phoneNumber).user(user).build());
+        return user;
+    }
+
+    private static UserDTO dto(String phoneNumber) {
+        PhoneNumberDTO phoneNumberDTO = new PhoneNumberDTO();
+        phoneNumberDTO.setPhoneNumber(phoneNumber);
+        UserDTO user = new UserDTO();
+        user.setPhoneNumbers(Set.of(phoneNumberDTO));
+        return user;
+    }
+
+}
@@ -1,17 +1,28 @@
 package com.example.dpd;
 
+import com.example.dpd.config.CoalescingProperties;
+import com.example.dpd.config.ShardingProperties;
 import com.example.dpd.dto.*;
 import com.example.dpd.entity.Address;
 import com.example.dpd.entity.PhoneNumber;
 import com.example.dpd.entity.User;
+import com.example.dpd.entity.UserStatus;
 import com.example.dpd.exception.ResourceNotFoundException;
+import com.example.dpd.repository.ScalarUserPatcher;
+import com.example.dpd.repository.UserArchive;
 import com.example.dpd.repository.UserRepository;
+import com.example.dpd.service.UserGroupCommit;
+import com.example.dpd.service.UserMapper;
 import com.example.dpd.service.UserServiceImp;
+import com.example.dpd.shard.Shards;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
 import java.util.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -24,6 +35,27 @@ public class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Spy
+    private UserMapper userMapper = new UserMapper();
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ScalarUserPatcher scalarUserPatcher;
+
+    @Mock
+    private UserGroupCommit userGroupCommit;
+
+    @Mock
+    private UserArchive userArchive;
+
+    @Spy
+    private CoalescingProperties coalescingProperties = new CoalescingProperties();
+
+    @Spy
+    private Shards shards = new Shards(new ShardingProperties(), mock(PlatformTransactionManager.class));
+
     @InjectMocks
     private UserServiceImp userService;
 
@@ -117,6 +149,65 @@ public class UserServiceTest {
         verify(userRepository, times(1)).findById(userId);
     }
 
+    @Test
+    void updateUser_ShouldThrowNotFoundForDepersonalisedUser() {
+        UUID userId = UUID.randomUUID();
+        UpdateUserDTO updateUserDTO = UpdateUserDTO.builder()
+                .name("Jane Doe")
+                .addresses(Set.of())
+                .build();
+        User depersonalised = User.builder()
+                .id(userId)
+                .name("[DELETED]")
+                .status(UserStatus.DEPERSONALISED)
+                .addresses(new HashSet<>())
+                .phoneNumbers(new HashSet<>())
+                .build();
+
+        when(userRepository.findById(userId)).thenReturn(Optional.of(depersonalised));
+
+        assertThrows(ResourceNotFoundException.class, () -> userService.updateUser(userId, updateUserDTO));
+        assertEquals("[DELETED]", depersonalised.getName());
+        verify(userRepository, never()).save(any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void updateUser_WithScalarFieldsOnly_ShouldUseSingleStatementPatch() {
+        UUID userId = UUID.randomUUID();
+        UpdateUserDTO updateUserDTO = UpdateUserDTO.builder()
+                .name("Jane Doe")
+                .build();
+        UserDTO before = new UserDTO();
+        before.setName("John Doe");
+        UserDTO after = new UserDTO();
+        after.setName("Jane Doe");
+
+        when(scalarUserPatcher.isEnabled()).thenReturn(true);
+        when(scalarUserPatcher.patch(userId, updateUserDTO))
+                .thenReturn(Optional.of(new ScalarUserPatcher.Patched(before, after)));
+
+        UserDTO userDTO = userService.updateUser(userId, updateUserDTO);
+
+        assertSame(after, userDTO);
+        verifyNoInteractions(userRepository);
+        verify(eventPublisher).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void updateUser_WithScalarFieldsOnly_ShouldThrowNotFoundWhenNoRowChanged() {
+        UUID userId = UUID.randomUUID();
+        UpdateUserDTO updateUserDTO = UpdateUserDTO.builder()
+                .email("jane@test.com")
+                .build();
+
+        when(scalarUserPatcher.isEnabled()).thenReturn(true);
+        when(scalarUserPatcher.patch(userId, updateUserDTO)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> userService.updateUser(userId, updateUserDTO));
+        verifyNoInteractions(userRepository, eventPublisher);
+    }
+
     @Test
     void updateUser_ShouldReturnUpdatedUser() {
         // Arrange
@@ -219,6 +310,8 @@ public class UserServiceTest {
         assertNull(capturedUser.getTaxId());
         assertThat(capturedUser.getAddresses()).isEmpty(); // Check collections are cleared
         assertThat(capturedUser.getPhoneNumbers()).isEmpty();
+        assertEquals(UserStatus.DEPERSONALISED, capturedUser.getStatus());
+        assertNotNull(capturedUser.getDepersonalisedAt()); // Decides when the user is archived
     }
 
      @Test
@@ -239,29 +332,29 @@ public class UserServiceTest {
         // Arrange
         User user1 = User.builder().id(UUID.randomUUID()).name("User One").email("one@test.com").addresses(Set.of()).phoneNumbers(Set.of()).build();
         User user2 = User.builder().id(UUID.randomUUID()).name("User Two").email("two@test.com").addresses(Set.of()).phoneNumbers(Set.of()).build();
-        when(userRepository.findAll()).thenReturn(List.of(user1, user2));
+        when(userRepository.findAllActive()).thenReturn(List.of(user1, user2));
 
         // Act
-        List<UserDTO> userDTOs = userService.getAllUsers();
+        List<UserDTO> userDTOs = userService.getAllUsers(false);
 
         // Assert
         assertThat(userDTOs).hasSize(2);
         assertThat(userDTOs).extracting(UserDTO::getName).containsExactlyInAnyOrder("User One", "User Two");
         assertThat(userDTOs).extracting(UserDTO::getEmail).containsExactlyInAnyOrder("one@test.com", "two@test.com");
-        verify(userRepository, times(1)).findAll();
+        verify(userRepository, times(1)).findAllActive();
     }
 
      @Test
     void getAllUsers_ShouldReturnEmptyListWhenNoUsers() {
         // Arrange
-        when(userRepository.findAll()).thenReturn(Collections.emptyList());
+        when(userRepository.findAllActive()).thenReturn(Collections.emptyList());
 
         // Act
-        List<UserDTO> userDTOs = userService.getAllUsers();
+        List<UserDTO> userDTOs = userService.getAllUsers(false);
 
         // Assert
         assertThat(userDTOs).isEmpty();
-        verify(userRepository, times(1)).findAll();
+        verify(userRepository, times(1)).findAllActive();
     }
 
 
@@ -281,7 +374,7 @@ public class UserServiceTest {
         when(userRepository.findById(userId)).thenReturn(Optional.of(existingUser));
 
         // Act
-        Optional<UserDTO> userDTOOptional = userService.getUserById(userId);
+        Optional<UserDTO> userDTOOptional = userService.getUserById(userId, false);
 
         // Assert
         assertTrue(userDTOOptional.isPresent());
@@ -299,13 +392,105 @@ public class UserServiceTest {
         when(userRepository.findById(userId)).thenReturn(Optional.empty());
 
         // Act
-        Optional<UserDTO> userDTOOptional = userService.getUserById(userId);
+        Optional<UserDTO> userDTOOptional = userService.getUserById(userId, false);
 
         // Assert
         assertTrue(userDTOOptional.isEmpty()); // Check if Optional is empty
         verify(userRepository, times(1)).findById(userId);
     }
 
+    @Test
+    void getUserById_ShouldHideDepersonalisedUserUnlessIncluded() {
+        // Arrange
+        UUID userId = UUID.randomUUID();
+        User erasedUser = User.builder()
+                .id(userId)
+                .name("[DELETED]")
+                .status(UserStatus.DEPERSONALISED)
+                .addresses(Set.of())
+                .phoneNumbers(Set.of())
+                .build();
+
+        when(userRepository.findById(userId)).thenReturn(Optional.of(erasedUser));
+
+        // Act & Assert
+        assertTrue(userService.getUserById(userId, false).isEmpty());
+        assertEquals(UserStatus.DEPERSONALISED, userService.getUserById(userId, true).orElseThrow().getStatus());
+    }
+
+    @Test
+    void getUserById_ShouldReadArchivedUserAsItWasBeforeArchival() {
+        // Arrange
+        UUID userId = UUID.randomUUID();
+        when(userRepository.findById(userId)).thenReturn(Optional.empty());
+        when(userArchive.contains(userId)).thenReturn(true);
+
+        // Act & Assert
+        assertTrue(userService.getUserById(userId, false).isEmpty());
+        UserDTO archived = userService.getUserById(userId, true).orElseThrow();
+        assertEquals(userId, archived.getId());
+        assertEquals("[DELETED]", archived.getName());
+        assertEquals("[DELETED@" + userId + "]", archived.getEmail());
+        assertEquals(UserStatus.DEPERSONALISED, archived.getStatus());
+        assertThat(archived.getAddresses()).isEmpty();
+        assertThat(archived.getPhoneNumbers()).isEmpty();
+        // Only ids missing from users are looked up in the archive
+        verify(userArchive, times(1)).contains(userId);
+    }
+
+    @Test
+    void deleteUser_ShouldAcceptAlreadyArchivedUser() {
+        // Arrange
+        UUID userId = UUID.randomUUID();
+        when(userRepository.findById(userId)).thenReturn(Optional.empty());
+        when(userArchive.contains(userId)).thenReturn(true);
+
+        // Act
+        userService.deleteUser(userId);
+
+        // Assert
+        verify(userRepository, never()).save(any(User.class));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void deleteUser_ShouldLeaveAnAlreadyDepersonalisedUserAlone() {
+        // Arrange
+        UUID userId = UUID.randomUUID();
+        OffsetDateTime depersonalisedAt = OffsetDateTime.now().minusDays(10);
+        User erased = User.builder().id(userId).name("[DELETED]").status(UserStatus.DEPERSONALISED)
+                .depersonalisedAt(depersonalisedAt).addresses(new HashSet<>()).phoneNumbers(new HashSet<>()).build();
+        when(userRepository.findById(userId)).thenReturn(Optional.of(erased));
+
+        // Act
+        userService.deleteUser(userId);
+
+        // Assert
+        assertEquals(depersonalisedAt, erased.getDepersonalisedAt());
+        verify(userRepository, never()).save(any(User.class));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void lookupUsers_ShouldKeepRequestOrderAndReportMissingIds() {
+        // Arrange
+        User first = User.builder().id(UUID.randomUUID()).name("First").addresses(Set.of()).phoneNumbers(Set.of()).build();
+        User second = User.builder().id(UUID.randomUUID()).name("Second").addresses(Set.of()).phoneNumbers(Set.of()).build();
+        User erased = User.builder().id(UUID.randomUUID()).name("[DELETED]").status(UserStatus.DEPERSONALISED)
+                .addresses(Set.of()).phoneNumbers(Set.of()).build();
+        UUID unknownId = UUID.randomUUID();
+        when(userRepository.findAllWithCollectionsByIdIn(any())).thenReturn(List.of(first, erased, second));
+
+        // Act
+        UserLookupResultDTO result = userService.lookupUsers(
+                List.of(second.getId(), unknownId, erased.getId(), first.getId(), second.getId()), false);
+
+        // Assert
+        assertThat(result.getUsers()).extracting(UserDTO::getName).containsExactly("Second", "First");
+        assertEquals(List.of(unknownId, erased.getId()), result.getMissing());
+        verify(userRepository, times(1)).findAllWithCollectionsByIdIn(any());
+    }
+
     // Removed gtpr tests as the method was removed from the service
 
 }
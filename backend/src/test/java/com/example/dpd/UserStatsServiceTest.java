@@ -0,0 +1,135 @@
+package com.example.dpd;
+
+import com.example.dpd.config.ShardingProperties;
+import com.example.dpd.config.StatsProperties;
+import com.example.dpd.dto.AddressDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.event.UserChangedEvent;
+import com.example.dpd.service.UserStatsServiceImp;
+import com.example.dpd.shard.Shards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class UserStatsServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private UserStatsServiceImp statsService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        statsService = new UserStatsServiceImp(jdbcTemplate, new StatsProperties(), transactionManager,
+                new Shards(new ShardingProperties(), transactionManager));
+    }
+
+    @Test
+    void flush_ShouldUpsertNetDeltasOfChangedBucketsOnly() {
+        UserDTO before = user(LocalDate.of(1985, 3, 1), address("1111", "Budapest"));
+        UserDTO after = user(LocalDate.of(1985, 3, 1), address("6720", "Szeged"), address("1111", "Budapest"));
+
+        statsService.onUserChanged(UserChangedEvent.created(before));
+        statsService.onUserChanged(UserChangedEvent.updated(before, after));
+        statsService.flush();
+
+        List<Object[]> rows = captureUpsert();
+        assertThat(rows).extracting(row -> row[0] + "/" + row[1] + "=" + row[2]).containsExactlyInAnyOrder(
+                "CITY/Budapest=1", "CITY/Szeged=1",
+                "POSTAL_CODE/1111=1", "POSTAL_CODE/6720=1",
+                "BIRTH_YEAR/1980-1989=1");
+    }
+
+    @Test
+    void flush_ShouldSkipBucketsThatNetToZero() {
+        UserDTO user = user(LocalDate.of(1990, 1, 1), address("1111", "Budapest"));
+        UserDTO erased = user(null);
+
+        statsService.onUserChanged(UserChangedEvent.created(user));
+        statsService.onUserChanged(UserChangedEvent.depersonalised(user, erased));
+        statsService.flush();
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void flush_ShouldDropDeltasBufferedBeforeARecountOfAnotherInstance() {
+        UserDTO user = user(LocalDate.of(1990, 1, 1), address("1111", "Budapest"));
+        reconciledAt(Instant.now().plusSeconds(1));
+
+        statsService.onUserChanged(UserChangedEvent.created(user));
+        statsService.flush();
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+
+        // Buffered after the recount: flushed
+        reconciledAt(Instant.now().minusSeconds(1));
+        statsService.onUserChanged(UserChangedEvent.created(user));
+        statsService.flush();
+
+        assertThat(captureUpsert()).hasSize(3);
+    }
+
+    @Test
+    void flush_ShouldDropDeltasBufferedBeforeARecountThatCommittedBeforeTheFlush() throws Exception {
+        statsService.onUserChanged(UserChangedEvent.created(user(LocalDate.of(1990, 1, 1), address("1111", "Budapest"))));
+        Thread.sleep(5);
+        // Another instance counts this shard after the first change and before the second
+        reconciledAt(Instant.now());
+        Thread.sleep(5);
+        statsService.onUserChanged(UserChangedEvent.created(user(LocalDate.of(1990, 1, 1), address("6720", "Szeged"))));
+
+        statsService.flush();
+
+        assertThat(captureUpsert()).extracting(row -> row[0] + "/" + row[1] + "=" + row[2]).containsExactlyInAnyOrder(
+                "CITY/Szeged=1", "POSTAL_CODE/6720=1", "BIRTH_YEAR/1990-1999=1");
+    }
+
+    private void reconciledAt(Instant at) {
+        when(jdbcTemplate.queryForList(contains("user_stat_reconciliation")))
+                .thenReturn(List.of(Map.of("shard", 0, "reconciled_at", Timestamp.from(at))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> captureUpsert() {
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), captor.capture());
+        return captor.getValue();
+    }
+
+    private static UserDTO user(LocalDate dateOfBirth, AddressDTO... addresses) {
+        UserDTO user = new UserDTO();
+        user.setDateOfBirth(dateOfBirth);
+        user.setAddresses(Set.of(addresses));
+        return user;
+    }
+
+    private static AddressDTO address(String postalCode, String city) {
+        AddressDTO address = new AddressDTO();
+        address.setPostalCode(postalCode);
+        address.setCity(city);
+        return address;
+    }
+
+}
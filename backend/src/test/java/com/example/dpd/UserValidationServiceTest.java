@@ -0,0 +1,113 @@
+package com.example.dpd;
+
+import com.example.dpd.config.ValidationProperties;
+import com.example.dpd.dto.BatchValidationResultDTO;
+import com.example.dpd.dto.CreateUserDTO;
+import com.example.dpd.dto.ViolationDTO;
+import com.example.dpd.exception.BadRequestException;
+import com.example.dpd.service.UserValidationServiceImp;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserValidationServiceTest {
+
+    private static final String USER_JSON = "{\"name\": \"John Doe\", \"email\": \"john@test.com\", "
+            + "\"dateOfBirth\": \"1990-01-01\", \"placeOfBirth\": \"Budapest\", \"motherMaidenName\": \"Maiden\", "
+            + "\"taj\": \"123456788\", \"taxId\": \"8123456786\"}";
+
+    private UserValidationServiceImp validationService;
+
+    @BeforeEach
+    void setUp() {
+        ValidationProperties properties = new ValidationProperties();
+        properties.setChunkSize(2);
+        properties.setWorkerThreads(2);
+        properties.setMaxBatchSize(10);
+        validationService = new UserValidationServiceImp(Validation.buildDefaultValidatorFactory().getValidator(), properties,
+                Jackson2ObjectMapperBuilder.json().modulesToInstall(new ParameterNamesModule()).build());
+    }
+
+    @Test
+    void validate_ShouldReportViolationsByIndexInSubmissionOrder() {
+        List<CreateUserDTO> users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            users.add(user("123456788", "8123456786"));
+        }
+        users.set(1, user("123456789", "8123456786"));
+        users.set(4, user("123456788", "1234567890"));
+        users.add(null);
+
+        BatchValidationResultDTO result = validationService.validate(users);
+
+        assertEquals(6, result.getTotal());
+        assertEquals(3, result.getValid());
+        assertEquals(3, result.getInvalid());
+        assertThat(result.getInvalidUsers()).extracting("index").containsExactly(1, 4, 5);
+        assertThat(result.getInvalidUsers().get(0).getViolations()).extracting(ViolationDTO::getField).containsExactly("taj");
+        assertThat(result.getInvalidUsers().get(1).getViolations()).extracting(ViolationDTO::getMessage)
+                .containsExactly("Tax id is invalid");
+    }
+
+    @Test
+    void validate_WhenBatchTooLarge_ShouldThrowBadRequest() {
+        List<CreateUserDTO> users = Collections.nCopies(11, user("123456788", "8123456786"));
+
+        assertThrows(BadRequestException.class, () -> validationService.validate(users));
+    }
+
+    @Test
+    void validate_ShouldReadTheUsersOfAJsonArrayOneByOne() throws Exception {
+        String json = "[" + USER_JSON + ", null, " + USER_JSON.replace("8123456786", "1234567890") + "]";
+
+        BatchValidationResultDTO result = validationService.validate(stream(json));
+
+        assertEquals(3, result.getTotal());
+        assertThat(result.getInvalidUsers()).extracting("index").containsExactly(1, 2);
+    }
+
+    @Test
+    void validate_WhenStreamedBatchTooLarge_ShouldStopReadingAtTheFirstUserOverTheLimit() {
+        // Whatever follows the eleventh user is never read
+        String json = "[" + String.join(",", Collections.nCopies(11, USER_JSON)) + ", not json";
+
+        BadRequestException e = assertThrows(BadRequestException.class, () -> validationService.validate(stream(json)));
+        assertEquals("At most 10 users can be validated at once", e.getMessage());
+    }
+
+    @Test
+    void validate_WhenBodyIsNoJsonArray_ShouldThrowBadRequest() {
+        assertThrows(BadRequestException.class, () -> validationService.validate(stream(USER_JSON)));
+        assertThrows(BadRequestException.class, () -> validationService.validate(stream("[" + USER_JSON)));
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static CreateUserDTO user(String taj, String taxId) {
+        return CreateUserDTO.builder()
+                .name("John Doe")
+                .email("john@test.com")
+                .dateOfBirth(LocalDate.of(1990, 1, 1))
+                .placeOfBirth("Budapest")
+                .motherMaidenName("Maiden")
+                .taj(taj)
+                .taxId(taxId)
+                .build();
+    }
+
+}
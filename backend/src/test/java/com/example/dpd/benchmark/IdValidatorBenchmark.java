@@ -0,0 +1,79 @@
+package com.example.dpd.benchmark;
+
+import com.example.dpd.dto.CreateUserDTO;
+import com.example.dpd.validation.HungarianIds;
+import org.openjdk.jmh.annotations.*;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Throughput of the TAJ and tax-id check-digit validators.
+ * <p>
+ * {@code *Regex} is the obvious alternative (pattern match, then per-digit substring parsing) for comparison;
+ * {@code createUserDTO} is the full Bean Validation pass that POST /users/validate runs per user.
+ * Add {@code -prof gc} to the JMH arguments to confirm that the check-digit methods allocate nothing.
+ * Run with {@code mvn -Pbenchmark test -Dbenchmark=IdValidatorBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdValidatorBenchmark {
+
+    private static final Pattern TAJ_PATTERN = Pattern.compile("\\d{9}");
+
+    private String taj = "123456788";
+    private String taxId = "8123456786";
+    private Validator validator;
+    private CreateUserDTO createUserDTO;
+
+    @Setup
+    public void setUp() {
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        createUserDTO = CreateUserDTO.builder()
+                .name("John Doe")
+                .email("john.doe@example.com")
+                .dateOfBirth(LocalDate.of(1990, 1, 1))
+                .placeOfBirth("Budapest")
+                .motherMaidenName("Jane Roe")
+                .taj(taj)
+                .taxId(taxId)
+                .build();
+    }
+
+    @Benchmark
+    public boolean taj() {
+        return HungarianIds.isValidTaj(taj);
+    }
+
+    @Benchmark
+    public boolean tajRegex() {
+        if (!TAJ_PATTERN.matcher(taj).matches()) {
+            return false;
+        }
+        int sum = 0;
+        for (int i = 0; i < 8; i++) {
+            sum += Integer.parseInt(taj.substring(i, i + 1)) * (i % 2 == 0 ? 3 : 7);
+        }
+        return Integer.parseInt(taj.substring(8)) == sum % 10;
+    }
+
+    @Benchmark
+    public boolean taxId() {
+        return HungarianIds.isValidTaxId(taxId);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<CreateUserDTO>> createUserDTO() {
+        return validator.validate(createUserDTO);
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.example.dpd.benchmark;
+
+import com.example.dpd.config.PiiProperties;
+import com.example.dpd.dto.AddressDTO;
+import com.example.dpd.dto.CreateUserDTO;
+import com.example.dpd.dto.PhoneNumberDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.entity.BlindIndexListener;
+import com.example.dpd.entity.User;
+import com.example.dpd.security.PiiCipher;
+import com.example.dpd.service.UserMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.SecureRandom;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row cost of the PII encryption on the two hot mapping paths.
+ * <p>
+ * The {@code *Plain} variants are the mapping alone; the {@code *Encrypted} variants add what the attribute converter
+ * and blind-index listener do for one row (three decrypts on load; three encrypts and two HMACs on insert).
+ * Run with {@code mvn -Pbenchmark test -Dbenchmark=PiiEncryptionBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PiiEncryptionBenchmark {
+
+    private final UserMapper userMapper = new UserMapper();
+    private PiiCipher piiCipher;
+    private CreateUserDTO createUserDTO;
+    private User loadedUser;
+    private String storedTaj;
+    private String storedTaxId;
+    private String storedMotherMaidenName;
+
+    @Setup
+    public void setUp() {
+        PiiProperties properties = new PiiProperties();
+        properties.setKeys(Map.of(1, randomKey()));
+        properties.setBlindIndexKey(randomKey());
+        piiCipher = new PiiCipher(properties);
+
+        AddressDTO address = new AddressDTO();
+        address.setPostalCode("1111");
+        address.setCity("Budapest");
+        address.setStreet("Fo utca");
+        address.setHouseNumber("1");
+        PhoneNumberDTO phoneNumber = new PhoneNumberDTO();
+        phoneNumber.setPhoneNumber("+36301234567");
+
+        createUserDTO = CreateUserDTO.builder()
+                .name("John Doe")
+                .email("john.doe@example.com")
+                .dateOfBirth(LocalDate.of(1990, 1, 1))
+                .placeOfBirth("Budapest")
+                .motherMaidenName("Jane Roe")
+                .taj("111111110")
+                .taxId("8123456789")
+                .addresses(Set.of(address))
+                .phoneNumbers(Set.of(phoneNumber))
+                .build();
+        loadedUser = userMapper.convertToUser(createUserDTO);
+        storedTaj = piiCipher.encrypt(loadedUser.getTaj());
+        storedTaxId = piiCipher.encrypt(loadedUser.getTaxId());
+        storedMotherMaidenName = piiCipher.encrypt(loadedUser.getMotherMaidenName());
+    }
+
+    @Benchmark
+    public UserDTO convertToDTOPlain() {
+        return userMapper.convertToDTO(loadedUser);
+    }
+
+    @Benchmark
+    public UserDTO convertToDTOEncrypted() {
+        loadedUser.setTaj(piiCipher.decrypt(storedTaj));
+        loadedUser.setTaxId(piiCipher.decrypt(storedTaxId));
+        loadedUser.setMotherMaidenName(piiCipher.decrypt(storedMotherMaidenName));
+        return userMapper.convertToDTO(loadedUser);
+    }
+
+    @Benchmark
+    public User createUserPlain() {
+        return userMapper.convertToUser(createUserDTO);
+    }
+
+    @Benchmark
+    public Object[] createUserEncrypted() {
+        User user = userMapper.convertToUser(createUserDTO);
+        return new Object[]{
+                user,
+                piiCipher.encrypt(user.getTaj()),
+                piiCipher.encrypt(user.getTaxId()),
+                piiCipher.encrypt(user.getMotherMaidenName()),
+                piiCipher.blindIndex(BlindIndexListener.TAJ, user.getTaj()),
+                piiCipher.blindIndex(BlindIndexListener.TAX_ID, user.getTaxId())
+        };
+    }
+
+    private static String randomKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return Base64.getEncoder().encodeToString(key);
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.example.dpd.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from launching the JVM to the first answered HTTP request, which is what the autoscaler waits for.
+ * <p>
+ * Each invocation starts the thin jar built by the appcds profile as a fresh process and polls
+ * {@code GET /users/stats} until it answers. {@code default} is the plain docker profile, {@code fast} adds the
+ * fast profile and {@code fast-cds} also maps the AppCDS archive. Needs {@code mvn -Pappcds package} first and the
+ * same database environment variables as the application.
+ * Run with {@code mvn -Pbenchmark test -Dbenchmark=StartupBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final long TIMEOUT_MILLIS = 120_000;
+
+    @Param({"default", "fast", "fast-cds"})
+    public String variant;
+
+    private final File appCdsDir = new File(System.getProperty("dpd.appcds.dir", "target/app-cds"));
+    private Process process;
+
+    @Setup
+    public void checkBuild() {
+        if (!new File(appCdsDir, "dpd-cds.jar").isFile()) {
+            throw new IllegalStateException("Build the thin jar first: mvn -Pappcds package");
+        }
+    }
+
+    @Benchmark
+    public int timeToFirstRequest() throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>(List.of("java"));
+        if (variant.equals("fast-cds")) {
+            command.add("-XX:SharedArchiveFile=dpd.jsa");
+        }
+        command.add("-Dspring.profiles.active=" + (variant.equals("default") ? "docker" : "docker,fast"));
+        command.add("-Dserver.port=" + port);
+        command.addAll(List.of("-jar", "dpd-cds.jar"));
+
+        process = new ProcessBuilder(command)
+                .directory(appCdsDir)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        URL url = new URL("http://localhost:" + port + "/api/v1/users/stats");
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited with status " + process.exitValue());
+            }
+            try {
+                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                connection.setConnectTimeout(100);
+                return connection.getResponseCode();
+            } catch (IOException notListeningYet) {
+                Thread.sleep(10);
+            }
+        }
+        throw new IllegalStateException("No response within " + TIMEOUT_MILLIS + " ms");
+    }
+
+    @TearDown(Level.Invocation)
+    public void stop() throws InterruptedException {
+        if (process != null) {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.example.dpd.benchmark;
+
+import com.example.dpd.DpdApplication;
+import com.example.dpd.audit.AuditActorGrpcInterceptor;
+import com.example.dpd.dto.AddressDTO;
+import com.example.dpd.dto.CreateUserDTO;
+import com.example.dpd.dto.PhoneNumberDTO;
+import com.example.dpd.dto.UserDTO;
+import com.example.dpd.grpc.UserGrpcService;
+import com.example.dpd.grpc.proto.GetUserRequest;
+import com.example.dpd.grpc.proto.ListUsersRequest;
+import com.example.dpd.grpc.proto.User;
+import com.example.dpd.grpc.proto.UserServiceGrpc;
+import com.example.dpd.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.servlet.Filter;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Users read through UserGrpcService against the same reads through UserController, both without a network in
+ * between: gRPC over an in-process channel, REST through MockMvc with the application's filters.
+ * <p>
+ * The in-process transport hands protobuf messages over as they are, so the gRPC methods encode and decode every
+ * user once, as the REST methods do with the JSON the controller writes; what is compared is everything but the
+ * network. {@code getUser} reads one user by id; {@code listAll} reads every user, as one ListUsers stream reading
+ * {@code pageSize} users at a time, or as keyset pages of {@code pageSize} users requested one after the other.
+ * Boots the application against the database of the same environment variables as the application, and creates
+ * users until there are {@value #USERS}.
+ * Run with {@code mvn -Pbenchmark test -Dbenchmark=UserTransportBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UserTransportBenchmark {
+
+    static final int USERS = 1000;
+
+    @Param({"100", "500"})
+    public int pageSize;
+
+    private ConfigurableApplicationContext context;
+    private Server server;
+    private ManagedChannel channel;
+    private UserServiceGrpc.UserServiceBlockingStub stub;
+    private MockMvc mockMvc;
+    private ObjectMapper objectMapper;
+    private UUID userId;
+
+    @Setup
+    @SuppressWarnings("rawtypes")
+    public void start() throws Exception {
+        context = new SpringApplicationBuilder(DpdApplication.class)
+                .run("--server.port=0", "--dpd.grpc.enabled=false", "--dpd.grpc.list-page-size=" + pageSize,
+                        "--logging.level.root=WARN");
+        UserService userService = context.getBean(UserService.class);
+        List<UserDTO> users = userService.getUserPage(null, USERS, false);
+        for (int i = users.size(); i < USERS; i++) {
+            userService.createUser(user());
+        }
+        userId = userService.getUserPage(null, 1, false).get(0).getId();
+
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .addService(ServerInterceptors.intercept(context.getBean(UserGrpcService.class),
+                        new AuditActorGrpcInterceptor()))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).build();
+        stub = UserServiceGrpc.newBlockingStub(channel);
+
+        List<FilterRegistrationBean> registrations =
+                List.copyOf(context.getBeansOfType(FilterRegistrationBean.class).values());
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context)
+                .addFilters(registrations.stream()
+                        .sorted(AnnotationAwareOrderComparator.INSTANCE)
+                        .map(FilterRegistrationBean::getFilter)
+                        .toArray(Filter[]::new))
+                .build();
+        objectMapper = context.getBean(ObjectMapper.class);
+    }
+
+    @TearDown
+    public void stop() {
+        channel.shutdownNow();
+        server.shutdownNow();
+        context.close();
+    }
+
+    @Benchmark
+    public User getUserGrpc() throws Exception {
+        return User.parseFrom(stub.getUser(GetUserRequest.newBuilder().setId(userId.toString()).build()).toByteArray());
+    }
+
+    @Benchmark
+    public UserDTO getUserRest() throws Exception {
+        return objectMapper.readValue(rest("/users/" + userId), UserDTO.class);
+    }
+
+    @Benchmark
+    public int listAllGrpc(Blackhole blackhole) throws Exception {
+        int received = 0;
+        Iterator<User> users = stub.listUsers(ListUsersRequest.getDefaultInstance());
+        while (users.hasNext()) {
+            blackhole.consume(User.parseFrom(users.next().toByteArray()));
+            received++;
+        }
+        return received;
+    }
+
+    @Benchmark
+    public int listAllRest(Blackhole blackhole) throws Exception {
+        int received = 0;
+        String after = "";
+        while (true) {
+            UserDTO[] page = objectMapper.readValue(rest("/users?limit=" + pageSize + after), UserDTO[].class);
+            blackhole.consume(page);
+            received += page.length;
+            if (page.length < pageSize) {
+                return received;
+            }
+            after = "&after=" + page[page.length - 1].getId();
+        }
+    }
+
+    private byte[] rest(String path) throws Exception {
+        MvcResult started = mockMvc.perform(get(path)).andReturn();
+        return mockMvc.perform(asyncDispatch(started)).andReturn().getResponse().getContentAsByteArray();
+    }
+
+    private static CreateUserDTO user() {
+        AddressDTO address = new AddressDTO();
+        address.setPostalCode("1011");
+        address.setCity("Budapest");
+        address.setStreet("Fő utca");
+        address.setHouseNumber("1");
+        PhoneNumberDTO phoneNumber = new PhoneNumberDTO();
+        phoneNumber.setPhoneNumber("+36201234567");
+        return CreateUserDTO.builder()
+                .name("Benchmark User")
+                .email("benchmark-" + UUID.randomUUID() + "@example.com")
+                .dateOfBirth(LocalDate.of(1980, 1, 1))
+                .placeOfBirth("Budapest")
+                .motherMaidenName("Benchmark Mother")
+                .taj("111111110")
+                .taxId("8123456786")
+                .addresses(new HashSet<>(Set.of(address)))
+                .phoneNumbers(new HashSet<>(Set.of(phoneNumber)))
+                .build();
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.example.dpd.sql;
+
+/**
+ * Counts every statement the application runs while open, on any thread. For tests that pin the number of
+ * statements an endpoint needs:
+ * <pre>
+ * try (SqlCapture sql = SqlCapture.start()) {
+ *     mockMvc.perform(get("/users/{id}", id));
+ *     assertEquals(1, sql.stats().getSelects());
+ * }
+ * </pre>
+ */
+public final class SqlCapture implements AutoCloseable {
+
+    private final SqlStats stats = new SqlStats();
+
+    private SqlCapture() {
+    }
+
+    public static SqlCapture start() {
+        SqlCapture capture = new SqlCapture();
+        SqlStatementListener.SCOPES.add(capture.stats);
+        return capture;
+    }
+
+    public SqlStats stats() {
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        SqlStatementListener.SCOPES.remove(stats);
+    }
+
+}